@@ -15,37 +15,103 @@
  */
 package io.github.qubitpi.athena.application;
 
+import io.github.qubitpi.athena.config.SystemConfig;
+import io.github.qubitpi.athena.config.SystemConfigFactory;
 import io.github.qubitpi.athena.file.identifier.FileIdGenerator;
 import io.github.qubitpi.athena.file.identifier.FileIdGeneratorFactory;
 import io.github.qubitpi.athena.filestore.FileStore;
+import io.github.qubitpi.athena.filestore.cache.CachingFileStore;
+import io.github.qubitpi.athena.filestore.compression.CompressingFileStore;
+import io.github.qubitpi.athena.filestore.compression.EncodingIndex;
+import io.github.qubitpi.athena.filestore.dedup.ContentIndex;
+import io.github.qubitpi.athena.filestore.dedup.DeduplicatingFileStore;
 import io.github.qubitpi.athena.metadata.MetaData;
 import io.github.qubitpi.athena.metastore.MetaStore;
+import io.github.qubitpi.athena.metastore.cache.CachingMetaStore;
+import io.github.qubitpi.athena.metastore.writebehind.WriteBehindMetaStore;
 import io.github.qubitpi.athena.web.graphql.JacksonParser;
 import io.github.qubitpi.athena.web.graphql.JsonDocumentParser;
 
 import org.glassfish.hk2.api.TypeLiteral;
 import org.glassfish.hk2.utilities.Binder;
 import org.glassfish.hk2.utilities.binding.AbstractBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import graphql.schema.DataFetcher;
 import jakarta.validation.constraints.NotNull;
+import net.jcip.annotations.GuardedBy;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
 
 /**
  * {@link AbstractBinderFactory} implements standard buildBinder functionality.
  * <p>
  * It is left to individual projects to subclass, providing {@link FileStore} and {@link MetaStore} classes, etc.
+ * <p>
+ * If the {@code file_store_cache_dir} config property is set, the {@link #buildFileStore() file store} is decorated
+ * with a {@link CachingFileStore} that serves repeated downloads from local disk. If the
+ * {@code file_store_compressed_types} config property lists any file type, it is decorated with a
+ * {@link CompressingFileStore} that keeps files of those types compressed, which requires an
+ * {@link #buildEncodingIndex() encoding index}. If a {@link #buildContentIndex() content
+ * index} is provided, it is decorated with a {@link DeduplicatingFileStore} that stores each distinct file content
+ * once.
+ * <p>
+ * If the {@code meta_store_write_behind_enabled} config property is {@code true}, the {@link #buildMetaStore() meta
+ * store} is decorated with a {@link WriteBehindMetaStore} that groups concurrent metadata saves into batches. If the
+ * {@code meta_store_cache_max_entries} config property is positive, it is decorated with a {@link CachingMetaStore}.
  */
 public abstract class AbstractBinderFactory implements BinderFactory {
 
+    /**
+     * The name of the {@link Executor} binding on which {@link FileStore} transfers run.
+     */
+    public static final String FILE_STORE_EXECUTOR = "fileStoreExecutor";
+
+    /**
+     * The name of the {@link Executor} binding on which blocking metadata lookups and saves run.
+     */
+    public static final String META_STORE_EXECUTOR = "metaStoreExecutor";
+
+    /**
+     * The name of the {@link Executor} binding on which file download responses are written out to clients.
+     */
+    public static final String RESPONSE_WRITER_EXECUTOR = "responseWriterExecutor";
+
+    private static final Logger LOG = LoggerFactory.getLogger(AbstractBinderFactory.class);
+
+    private static final SystemConfig SYSTEM_CONFIG = SystemConfigFactory.getInstance();
+
+    private static final String FILE_STORE_EXECUTOR_THREADS_KEY = "file_store_executor_threads";
+    private static final String FILE_STORE_EXECUTOR_QUEUE_SIZE_KEY = "file_store_executor_queue_size";
+    private static final int FILE_STORE_EXECUTOR_THREADS_DEFAULT = 32;
+    private static final int FILE_STORE_EXECUTOR_QUEUE_SIZE_DEFAULT = 256;
+    private static final String META_STORE_EXECUTOR_THREADS_KEY = "meta_store_executor_threads";
+    private static final String META_STORE_EXECUTOR_QUEUE_SIZE_KEY = "meta_store_executor_queue_size";
+    private static final int META_STORE_EXECUTOR_THREADS_DEFAULT = 16;
+    private static final int META_STORE_EXECUTOR_QUEUE_SIZE_DEFAULT = 256;
+    private static final String RESPONSE_WRITER_EXECUTOR_THREADS_KEY = "response_writer_executor_threads";
+    private static final String RESPONSE_WRITER_EXECUTOR_QUEUE_SIZE_KEY = "response_writer_executor_queue_size";
+    private static final int RESPONSE_WRITER_EXECUTOR_THREADS_DEFAULT = 64;
+    private static final int RESPONSE_WRITER_EXECUTOR_QUEUE_SIZE_DEFAULT = 1024;
+
+    @GuardedBy("this")
+    private Executor metaStoreExecutor;
+
     @Override
     public Binder buildBinder() {
         return new AbstractBinder() {
             @Override
             protected void configure() {
-                bind(buildFileStore()).to(FileStore.class);
-                bind(buildMetaStore()).to(MetaStore.class);
+                bindFileStore(this);
+                bindMetaStore(this);
                 bind(buildFileIdGenerator()).to(FileIdGenerator.class);
                 bind(buildJsonDocumentParser()).to(JsonDocumentParser.class);
+                bind(buildFileStoreExecutor()).named(FILE_STORE_EXECUTOR).to(Executor.class);
+                bind(getMetaStoreExecutor()).named(META_STORE_EXECUTOR).to(Executor.class);
+                bind(buildResponseWriterExecutor()).named(RESPONSE_WRITER_EXECUTOR).to(Executor.class);
                 bind(buildQueryDataFetcher())
                         .named("queryDataFetcher")
                         .to(new TypeLiteral<DataFetcher<MetaData>>() { });
@@ -71,6 +137,31 @@ public abstract class AbstractBinderFactory implements BinderFactory {
     @NotNull
     protected abstract Class<? extends FileStore> buildFileStore();
 
+    /**
+     * Registers the shared index that records how compressed files are encoded.
+     * <p>
+     * No index is provided by default, so compression cannot be enabled. Projects that list file types in the
+     * {@code file_store_compressed_types} config property return an index kept in a store shared by all application
+     * instances, such as the metadata database; the index is bound as {@link EncodingIndex}.
+     *
+     * @return the index implementation or {@code null} if files are never stored compressed
+     */
+    protected Class<? extends EncodingIndex> buildEncodingIndex() {
+        return null;
+    }
+
+    /**
+     * Registers the shared index that deduplicates file contents.
+     * <p>
+     * Deduplication is disabled by default. Projects enable it by returning an index kept in a store shared by all
+     * application instances, such as the metadata database; the index is bound as {@link ContentIndex}.
+     *
+     * @return the index implementation or {@code null} to store every upload as is
+     */
+    protected Class<? extends ContentIndex> buildContentIndex() {
+        return null;
+    }
+
     /**
      * Registers GraphQL service that provides file metadata read/write API.
      *
@@ -123,6 +214,84 @@ public abstract class AbstractBinderFactory implements BinderFactory {
         return JacksonParser.getInstance();
     }
 
+    /**
+     * Initializes the bounded executor on which file uploads and downloads run, so that request threads are released
+     * while bytes are moved to and from the {@link FileStore}.
+     * <p>
+     * The pool size and queue size can be configured through the {@code file_store_executor_threads} and
+     * {@code file_store_executor_queue_size} config properties.
+     *
+     * @return a new bounded executor
+     */
+    @NotNull
+    protected Executor buildFileStoreExecutor() {
+        return BoundedExecutors.newBoundedExecutor(
+                FILE_STORE_EXECUTOR,
+                SYSTEM_CONFIG.getIntProperty(SYSTEM_CONFIG.getPackageVariableName(FILE_STORE_EXECUTOR_THREADS_KEY))
+                        .orElse(FILE_STORE_EXECUTOR_THREADS_DEFAULT),
+                SYSTEM_CONFIG.getIntProperty(SYSTEM_CONFIG.getPackageVariableName(FILE_STORE_EXECUTOR_QUEUE_SIZE_KEY))
+                        .orElse(FILE_STORE_EXECUTOR_QUEUE_SIZE_DEFAULT)
+        );
+    }
+
+    /**
+     * Initializes the bounded executor on which file download responses are written out, so that a slow client holds
+     * a writer thread rather than one of the threads that move bytes out of the {@link FileStore}.
+     * <p>
+     * The pool size and queue size can be configured through the {@code response_writer_executor_threads} and
+     * {@code response_writer_executor_queue_size} config properties.
+     *
+     * @return a new bounded executor
+     */
+    @NotNull
+    protected Executor buildResponseWriterExecutor() {
+        return BoundedExecutors.newBoundedExecutor(
+                RESPONSE_WRITER_EXECUTOR,
+                SYSTEM_CONFIG.getIntProperty(SYSTEM_CONFIG.getPackageVariableName(RESPONSE_WRITER_EXECUTOR_THREADS_KEY))
+                        .orElse(RESPONSE_WRITER_EXECUTOR_THREADS_DEFAULT),
+                SYSTEM_CONFIG.getIntProperty(
+                        SYSTEM_CONFIG.getPackageVariableName(RESPONSE_WRITER_EXECUTOR_QUEUE_SIZE_KEY)
+                ).orElse(RESPONSE_WRITER_EXECUTOR_QUEUE_SIZE_DEFAULT)
+        );
+    }
+
+    /**
+     * Initializes the bounded executor on which blocking metadata lookups and saves run, so that GraphQL data fetchers
+     * can return futures instead of holding on to request threads while the metadata database answers.
+     * <p>
+     * The pool size and queue size can be configured through the {@code meta_store_executor_threads} and
+     * {@code meta_store_executor_queue_size} config properties.
+     *
+     * @return a new bounded executor
+     */
+    @NotNull
+    protected Executor buildMetaStoreExecutor() {
+        return BoundedExecutors.newBoundedExecutor(
+                META_STORE_EXECUTOR,
+                SYSTEM_CONFIG.getIntProperty(SYSTEM_CONFIG.getPackageVariableName(META_STORE_EXECUTOR_THREADS_KEY))
+                        .orElse(META_STORE_EXECUTOR_THREADS_DEFAULT),
+                SYSTEM_CONFIG.getIntProperty(SYSTEM_CONFIG.getPackageVariableName(META_STORE_EXECUTOR_QUEUE_SIZE_KEY))
+                        .orElse(META_STORE_EXECUTOR_QUEUE_SIZE_DEFAULT)
+        );
+    }
+
+    /**
+     * Returns the executor on which blocking metadata lookups and saves run, {@link #buildMetaStoreExecutor() building}
+     * it on first use.
+     * <p>
+     * Data fetchers built by {@link #buildQueryDataFetcher()} and {@link #buildMutationDataFetcher()} should run on
+     * this executor, which is also bound as {@value #META_STORE_EXECUTOR}.
+     *
+     * @return the same executor on every call
+     */
+    @NotNull
+    protected final synchronized Executor getMetaStoreExecutor() {
+        if (metaStoreExecutor == null) {
+            metaStoreExecutor = buildMetaStoreExecutor();
+        }
+        return metaStoreExecutor;
+    }
+
     /**
      * Allows additional app-specific binding.
      *
@@ -131,4 +300,73 @@ public abstract class AbstractBinderFactory implements BinderFactory {
     protected void afterBinding(final @NotNull AbstractBinder abstractBinder) {
         // No-ops by default
     }
+
+    /**
+     * Binds the {@link #buildFileStore() file store} together with the decorators enabled by configuration.
+     * <p>
+     * Decorators are chained through named bindings, each one injecting the binding named after the
+     * {@code DELEGATE} constant of its own class. The outermost one has the highest rank so that it is the
+     * {@link FileStore} injected into endpoints. From the innermost, the chain is: cache, compression, deduplication;
+     * the cache therefore holds compressed bytes, and each distinct content is compressed and cached only once.
+     *
+     * @param abstractBinder  Binder to use for binding
+     *
+     * @throws IllegalStateException if compression is configured without an {@link #buildEncodingIndex() encoding
+     * index}
+     */
+    private void bindFileStore(final @NotNull AbstractBinder abstractBinder) {
+        final Map<Class<? extends FileStore>, String> decorators = new LinkedHashMap<>();
+        if (CachingFileStore.isConfigured()) {
+            decorators.put(CachingFileStore.class, CachingFileStore.DELEGATE);
+        }
+        if (CompressingFileStore.isConfigured()) {
+            final Class<? extends EncodingIndex> encodingIndex = buildEncodingIndex();
+            if (encodingIndex == null) {
+                final String message = "File store compression is configured, but no encoding index is provided";
+                LOG.error(message);
+                throw new IllegalStateException(message);
+            }
+            abstractBinder.bind(encodingIndex).to(EncodingIndex.class);
+            decorators.put(CompressingFileStore.class, CompressingFileStore.DELEGATE);
+        }
+        final Class<? extends ContentIndex> contentIndex = buildContentIndex();
+        if (contentIndex != null) {
+            abstractBinder.bind(contentIndex).to(ContentIndex.class);
+            decorators.put(DeduplicatingFileStore.class, DeduplicatingFileStore.DELEGATE);
+        }
+
+        Class<? extends FileStore> decorated = buildFileStore();
+        int rank = 0;
+        for (final Map.Entry<Class<? extends FileStore>, String> decorator : decorators.entrySet()) {
+            abstractBinder.bind(decorated).named(decorator.getValue()).to(FileStore.class).ranked(rank++);
+            decorated = decorator.getKey();
+        }
+        abstractBinder.bind(decorated).to(FileStore.class).ranked(rank);
+    }
+
+    /**
+     * Binds the {@link #buildMetaStore() meta store} together with the decorators enabled by configuration.
+     * <p>
+     * Decorators are chained the same way as {@link #bindFileStore(AbstractBinder) file store decorators}. From the
+     * innermost, the chain is: write-behind, cache; a save therefore updates the cache only once it has been written.
+     *
+     * @param abstractBinder  Binder to use for binding
+     */
+    private void bindMetaStore(final @NotNull AbstractBinder abstractBinder) {
+        final Map<Class<? extends MetaStore>, String> decorators = new LinkedHashMap<>();
+        if (WriteBehindMetaStore.isConfigured()) {
+            decorators.put(WriteBehindMetaStore.class, WriteBehindMetaStore.DELEGATE);
+        }
+        if (CachingMetaStore.isConfigured()) {
+            decorators.put(CachingMetaStore.class, CachingMetaStore.DELEGATE);
+        }
+
+        Class<? extends MetaStore> decorated = buildMetaStore();
+        int rank = 0;
+        for (final Map.Entry<Class<? extends MetaStore>, String> decorator : decorators.entrySet()) {
+            abstractBinder.bind(decorated).named(decorator.getValue()).to(MetaStore.class).ranked(rank++);
+            decorated = decorator.getKey();
+        }
+        abstractBinder.bind(decorated).to(MetaStore.class).ranked(rank);
+    }
 }
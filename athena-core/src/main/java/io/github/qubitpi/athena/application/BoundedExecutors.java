@@ -0,0 +1,94 @@
+/*
+ * Copyright 2024 Jiaqi Liu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.qubitpi.athena.application;
+
+import jakarta.validation.constraints.NotNull;
+import net.jcip.annotations.Immutable;
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link BoundedExecutors} creates the thread pools on which Athena runs blocking I/O off the request threads.
+ * <p>
+ * Both the number of threads and the number of queued tasks are bounded. Once the queue is full, new tasks are
+ * rejected with a {@link RejectedExecutionException} instead of piling up, so that an overloaded storage backend
+ * translates into fast failures rather than unbounded memory growth.
+ */
+@Immutable
+@ThreadSafe
+public final class BoundedExecutors {
+
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    /**
+     * Constructor.
+     * <p>
+     * Suppress default constructor for noninstantiability.
+     *
+     * @throws AssertionError when called
+     */
+    private BoundedExecutors() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Creates a bounded thread pool made of daemon threads.
+     * <p>
+     * Idle threads time out after a minute, so a pool that sees no traffic does not keep any threads around.
+     *
+     * @param name  The prefix of the names of the pool threads
+     * @param threads  The max number of threads
+     * @param queueSize  The max number of tasks waiting for a thread
+     *
+     * @return a new thread pool
+     *
+     * @throws NullPointerException if {@code name} is {@code null}
+     * @throws IllegalArgumentException if {@code threads} or {@code queueSize} is not positive
+     */
+    @NotNull
+    public static ExecutorService newBoundedExecutor(
+            final @NotNull String name,
+            final int threads,
+            final int queueSize
+    ) {
+        Objects.requireNonNull(name);
+
+        final AtomicInteger threadCount = new AtomicInteger();
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                threads,
+                threads,
+                KEEP_ALIVE_SECONDS,
+                TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize),
+                runnable -> {
+                    final Thread thread = new Thread(runnable, name + "-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+        executor.allowCoreThreadTimeOut(true);
+
+        return executor;
+    }
+}
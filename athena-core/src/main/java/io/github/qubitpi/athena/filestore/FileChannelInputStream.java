@@ -0,0 +1,158 @@
+/*
+ * Copyright 2024 Jiaqi Liu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.qubitpi.athena.filestore;
+
+import jakarta.validation.constraints.NotNull;
+import net.jcip.annotations.NotThreadSafe;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Objects;
+
+/**
+ * An {@link InputStream} view of a {@link FileChannel} whose {@link #transferTo(OutputStream)} hands the remaining
+ * content over with {@link FileChannel#transferTo(long, long, WritableByteChannel)}.
+ * <p>
+ * When the sink is itself a {@link WritableByteChannel} backed by a socket or a file, the JDK turns the transfer into
+ * {@code sendfile(2)} or an equivalent, and the bytes never enter the JVM. Any other sink, such as a servlet response
+ * stream, is {@link Channels#newChannel(OutputStream) wrapped} into a channel; the JDK then copies the content through
+ * a small bounded buffer, which is no worse than a plain buffered read.
+ * <p>
+ * File stores that keep files on local disk, and caches of remote ones, should serve downloads with this stream.
+ */
+@NotThreadSafe
+public final class FileChannelInputStream extends InputStream {
+
+    private final FileChannel channel;
+
+    /**
+     * The file position where this stream ends, exclusive.
+     */
+    private final long end;
+
+    /**
+     * Constructor.
+     *
+     * @param channel  An opened, readable channel whose current position is where this stream starts reading
+     * @param end  The file position where this stream ends, exclusive; the stream ends earlier if the file is shorter
+     *
+     * @throws NullPointerException if {@code channel} is {@code null}
+     */
+    public FileChannelInputStream(final @NotNull FileChannel channel, final long end) {
+        this.channel = Objects.requireNonNull(channel);
+        this.end = end;
+    }
+
+    @Override
+    public int read() throws IOException {
+        final byte[] single = new byte[1];
+        return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(final byte[] bytes, final int offset, final int length) throws IOException {
+        Objects.checkFromIndexSize(offset, length, bytes.length);
+        if (length == 0) {
+            return 0;
+        }
+
+        final long remaining = getEnd() - channel.position();
+        if (remaining <= 0) {
+            return -1;
+        }
+
+        return channel.read(ByteBuffer.wrap(bytes, offset, (int) Math.min(length, remaining)));
+    }
+
+    @Override
+    public long skip(final long n) throws IOException {
+        if (n <= 0) {
+            return 0;
+        }
+
+        final long position = channel.position();
+        final long skipped = Math.min(n, Math.max(0, getEnd() - position));
+        channel.position(position + skipped);
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(0, getEnd() - channel.position()));
+    }
+
+    @Override
+    public long transferTo(final OutputStream out) throws IOException {
+        Objects.requireNonNull(out);
+
+        final long start = channel.position();
+        final long stop = Math.max(start, getEnd());
+
+        final WritableByteChannel target = out instanceof WritableByteChannel
+                ? (WritableByteChannel) out
+                : Channels.newChannel(out);
+        final long transferredTo = transferTo(target, start, stop);
+
+        channel.position(transferredTo);
+        return transferredTo - start;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Returns the file position where this stream ends, taking into account that the file might be shorter.
+     *
+     * @return a file position, exclusive
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    private long getEnd() throws IOException {
+        return Math.min(end, channel.size());
+    }
+
+    /**
+     * Transfers a region of the underlying file to a channel sink via {@link FileChannel#transferTo(long, long,
+     * WritableByteChannel)}.
+     *
+     * @param target  The channel sink
+     * @param start  The file position of the first byte to transfer, inclusive
+     * @param stop  The file position of the last byte to transfer, exclusive
+     *
+     * @return the file position after the last transferred byte, which is short of {@code stop} if the file was
+     * truncated meanwhile
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    private long transferTo(final WritableByteChannel target, final long start, final long stop) throws IOException {
+        long position = start;
+        while (position < stop) {
+            final long transferred = channel.transferTo(position, stop - position, target);
+            if (transferred == 0 && position >= channel.size()) {
+                break;
+            }
+            position += transferred;
+        }
+        return position;
+    }
+}
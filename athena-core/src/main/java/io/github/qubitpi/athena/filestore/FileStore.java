@@ -24,6 +24,11 @@ import jakarta.validation.constraints.NotNull;
 import net.jcip.annotations.NotThreadSafe;
 
 import java.io.InputStream;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * {@link FileStore} is an abstraction layer between Athena application and object storage; it can persist an
@@ -62,4 +67,178 @@ public interface FileStore {
      */
     @NotNull
     InputStream download(@NotNull String fileId);
+
+    /**
+     * Retrieves a contiguous byte range of a file identified by a specified file ID from object storage.
+     * <p>
+     * The default implementation discards the bytes before the range out of {@link #download(String)}. Stores that
+     * can seek or issue ranged reads natively should override this method, so that only the requested bytes leave the
+     * storage.
+     *
+     * @param fileId  The provided file ID, which is the same as the return value of {@link #upload(File)}
+     * @param offset  The position of the first byte of the range
+     * @param length  The max number of bytes in the range; fewer bytes are returned if the file ends earlier
+     *
+     * @return a stream of the requested bytes of a previously {@link #upload(File) uploaded file}
+     *
+     * @throws NullPointerException if {@code fileId} is {@code null}
+     * @throws IllegalArgumentException if {@code offset} or {@code length} is negative
+     */
+    @NotNull
+    default InputStream download(@NotNull String fileId, long offset, long length) {
+        return new RangeInputStream(download(Objects.requireNonNull(fileId)), offset, length);
+    }
+
+    /**
+     * Returns the size, in bytes, of a file identified by a specified file ID.
+     * <p>
+     * The size is needed to answer ranged requests; stores that cannot tell it without reading the whole file return
+     * an empty value, in which case callers fall back to serving the whole file.
+     *
+     * @param fileId  The provided file ID, which is the same as the return value of {@link #upload(File)}
+     *
+     * @return the file size or an empty value if this store is unable to tell it
+     *
+     * @throws NullPointerException if {@code fileId} is {@code null}
+     */
+    @NotNull
+    default OptionalLong getSize(@NotNull String fileId) {
+        Objects.requireNonNull(fileId);
+        return OptionalLong.empty();
+    }
+
+    /**
+     * Returns the content coding, such as {@code gzip}, in which a file is kept in object storage.
+     * <p>
+     * {@link #download(String)} always returns the original file content. A file kept in an encoded form can also be
+     * {@link #downloadEncoded(String) downloaded as stored}, which lets a client that accepts the coding decode it
+     * instead of the server.
+     *
+     * @param fileId  The provided file ID, which is the same as the return value of {@link #upload(File)}
+     *
+     * @return an HTTP content coding or an empty value if the file is kept as uploaded
+     *
+     * @throws NullPointerException if {@code fileId} is {@code null}
+     */
+    @NotNull
+    default Optional<String> getContentEncoding(@NotNull String fileId) {
+        Objects.requireNonNull(fileId);
+        return Optional.empty();
+    }
+
+    /**
+     * Returns the version of a file, which HTTP clients and caches use to validate a copy of the file they hold.
+     * <p>
+     * The version describes the bytes {@link #downloadEncoded(String) as stored}. Stores should look it up without
+     * reading the file, e.g. from the object metadata.
+     *
+     * @param fileId  The provided file ID, which is the same as the return value of {@link #upload(File)}
+     *
+     * @return the file version or an empty value if this store is unable to tell it
+     *
+     * @throws NullPointerException if {@code fileId} is {@code null}
+     */
+    @NotNull
+    default Optional<FileVersion> getVersion(@NotNull String fileId) {
+        Objects.requireNonNull(fileId);
+        return Optional.empty();
+    }
+
+    /**
+     * Retrieves a file as it is kept in object storage, i.e. encoded with its
+     * {@link #getContentEncoding(String) content coding}.
+     * <p>
+     * The default implementation returns {@link #download(String)}, which is correct for stores that keep files as
+     * uploaded.
+     *
+     * @param fileId  The provided file ID, which is the same as the return value of {@link #upload(File)}
+     *
+     * @return a stream of the stored bytes of a previously {@link #upload(File) uploaded file}
+     *
+     * @throws NullPointerException if {@code fileId} is {@code null}
+     */
+    @NotNull
+    default InputStream downloadEncoded(@NotNull String fileId) {
+        return download(Objects.requireNonNull(fileId));
+    }
+
+    /**
+     * Removes a file from object storage.
+     * <p>
+     * The default implementation keeps every file and returns {@code false}, which is correct for stores whose files
+     * are never reclaimed.
+     *
+     * @param fileId  The provided file ID, which is the same as the return value of {@link #upload(File)}
+     *
+     * @return {@code true} if the file was removed, or {@code false} if it did not exist or cannot be removed
+     *
+     * @throws NullPointerException if {@code fileId} is {@code null}
+     */
+    default boolean delete(@NotNull String fileId) {
+        Objects.requireNonNull(fileId);
+        return false;
+    }
+
+    /**
+     * Persists a file into object storage database on a specified executor.
+     * <p>
+     * The default implementation runs {@link #upload(File)} on {@code executor}. Stores with a natively asynchronous
+     * client may override this method to avoid holding an executor thread for the whole transfer.
+     *
+     * @param file  An object representing the file to be persisted
+     * @param executor  The executor on which the blocking transfer runs
+     *
+     * @return a future completed with the file ID that can be used later to retrieve that file in Athena
+     *
+     * @throws NullPointerException if any argument is {@code null}
+     * @throws java.util.concurrent.RejectedExecutionException if {@code executor} does not accept more work
+     */
+    @NotNull
+    default CompletableFuture<String> uploadAsync(@NotNull File file, @NotNull Executor executor) {
+        Objects.requireNonNull(file);
+        return CompletableFuture.supplyAsync(() -> upload(file), Objects.requireNonNull(executor));
+    }
+
+    /**
+     * Retrieves a file identified by a specified file ID from object storage on a specified executor.
+     *
+     * @param fileId  The provided file ID, which is the same as the return value of {@link #upload(File)}
+     * @param executor  The executor on which the blocking retrieval runs
+     *
+     * @return a future completed with a previously {@link #upload(File) uploaded file stream}
+     *
+     * @throws NullPointerException if any argument is {@code null}
+     * @throws java.util.concurrent.RejectedExecutionException if {@code executor} does not accept more work
+     */
+    @NotNull
+    default CompletableFuture<InputStream> downloadAsync(@NotNull String fileId, @NotNull Executor executor) {
+        Objects.requireNonNull(fileId);
+        return CompletableFuture.supplyAsync(() -> download(fileId), Objects.requireNonNull(executor));
+    }
+
+    /**
+     * Retrieves a contiguous byte range of a file from object storage on a specified executor.
+     *
+     * @param fileId  The provided file ID, which is the same as the return value of {@link #upload(File)}
+     * @param offset  The position of the first byte of the range
+     * @param length  The max number of bytes in the range
+     * @param executor  The executor on which the blocking retrieval runs
+     *
+     * @return a future completed with the requested bytes of a previously {@link #upload(File) uploaded file}
+     *
+     * @throws NullPointerException if {@code fileId} or {@code executor} is {@code null}
+     * @throws java.util.concurrent.RejectedExecutionException if {@code executor} does not accept more work
+     *
+     * @see #download(String, long, long)
+     */
+    @NotNull
+    default CompletableFuture<InputStream> downloadAsync(
+            @NotNull String fileId,
+            long offset,
+            long length,
+            @NotNull Executor executor
+    ) {
+        Objects.requireNonNull(fileId);
+        return CompletableFuture.supplyAsync(() -> download(fileId, offset, length), Objects.requireNonNull(executor));
+    }
 }
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2024 Jiaqi Liu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.qubitpi.athena.filestore;
+
+import jakarta.validation.constraints.NotNull;
+import net.jcip.annotations.Immutable;
+import net.jcip.annotations.ThreadSafe;
+
+import java.time.Instant;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.OptionalLong;
+
+/**
+ * The version of a file as kept in object storage, which lets clients and caches validate a copy of the file they
+ * already hold.
+ * <p>
+ * A file never changes under its file ID, so its version never changes either; it only tells apart files whose
+ * stored bytes differ.
+ * <p>
+ * Stores that read the version from object metadata usually get the file size along with it, in which case they
+ * report it here so that callers need a single metadata lookup.
+ */
+@Immutable
+@ThreadSafe
+public final class FileVersion {
+
+    private final String eTag;
+    private final Instant lastModified;
+    private final OptionalLong size;
+
+    /**
+     * Constructor for a version that does not tell the file size.
+     *
+     * @param eTag  An opaque tag that differs between files whose stored bytes differ, such as a content hash, without
+     * the surrounding quotes of an HTTP entity tag
+     * @param lastModified  When the file was stored, can be {@code null} if unknown
+     *
+     * @throws NullPointerException if {@code eTag} is {@code null}
+     */
+    public FileVersion(final @NotNull String eTag, final Instant lastModified) {
+        this(eTag, lastModified, OptionalLong.empty());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param eTag  An opaque tag that differs between files whose stored bytes differ, such as a content hash, without
+     * the surrounding quotes of an HTTP entity tag
+     * @param lastModified  When the file was stored, can be {@code null} if unknown
+     * @param size  The size of the file as {@link FileStore#download(String) downloaded}, or an empty value if unknown
+     *
+     * @throws NullPointerException if {@code eTag} or {@code size} is {@code null}
+     */
+    public FileVersion(final @NotNull String eTag, final Instant lastModified, final @NotNull OptionalLong size) {
+        this.eTag = Objects.requireNonNull(eTag, "eTag");
+        this.lastModified = lastModified;
+        this.size = Objects.requireNonNull(size, "size");
+    }
+
+    /**
+     * Returns the opaque tag of the stored bytes.
+     *
+     * @return a tag such as the MD5 hash Swift keeps for an object
+     */
+    @NotNull
+    public String getETag() {
+        return eTag;
+    }
+
+    /**
+     * Returns when the file was stored.
+     *
+     * @return the time of storage or an empty {@link Optional} if it is unknown
+     */
+    @NotNull
+    public Optional<Instant> getLastModified() {
+        return Optional.ofNullable(lastModified);
+    }
+
+    /**
+     * Returns the size of the file as {@link FileStore#download(String) downloaded}, i.e. decoded.
+     *
+     * @return the file size or an empty value if it was not looked up together with the version
+     */
+    @NotNull
+    public OptionalLong getSize() {
+        return size;
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2024 Jiaqi Liu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.qubitpi.athena.filestore;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.validation.constraints.NotNull;
+import net.jcip.annotations.NotThreadSafe;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Objects;
+
+/**
+ * An {@link InputStream} that exposes a contiguous byte range of another stream.
+ * <p>
+ * The bytes before the range are skipped lazily on the first read, so that constructing the stream never blocks and
+ * any I/O error surfaces through the usual {@link InputStream} contract.
+ */
+@NotThreadSafe
+public class RangeInputStream extends FilterInputStream {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RangeInputStream.class);
+
+    private long bytesToSkip;
+    private long remaining;
+
+    /**
+     * Constructor.
+     *
+     * @param in  The stream of the whole file, positioned at its beginning
+     * @param offset  The position of the first byte of the range
+     * @param length  The max number of bytes in the range
+     *
+     * @throws NullPointerException if {@code in} is {@code null}
+     * @throws IllegalArgumentException if {@code offset} or {@code length} is negative
+     */
+    public RangeInputStream(final @NotNull InputStream in, final long offset, final long length) {
+        super(Objects.requireNonNull(in));
+
+        if (offset < 0 || length < 0) {
+            final String message = String.format("Invalid byte range: offset=%d, length=%d", offset, length);
+            LOG.error(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.bytesToSkip = offset;
+        this.remaining = length;
+    }
+
+    @Override
+    public int read() throws IOException {
+        skipToRange();
+        if (remaining <= 0) {
+            return -1;
+        }
+
+        final int value = super.read();
+        if (value != -1) {
+            remaining--;
+        }
+        return value;
+    }
+
+    @Override
+    public int read(final byte[] bytes, final int offset, final int length) throws IOException {
+        Objects.checkFromIndexSize(offset, length, bytes.length);
+        skipToRange();
+        if (length == 0) {
+            return 0;
+        }
+        if (remaining <= 0) {
+            return -1;
+        }
+
+        final int read = super.read(bytes, offset, (int) Math.min(length, remaining));
+        if (read > 0) {
+            remaining -= read;
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(final long n) throws IOException {
+        skipToRange();
+        final long skipped = super.skip(Math.min(n, remaining));
+        remaining -= skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return bytesToSkip > 0 ? 0 : (int) Math.min(super.available(), remaining);
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    /**
+     * Discards the bytes before the range if that has not been done yet.
+     *
+     * @throws IOException if the underlying stream ends before the range starts or if an I/O error occurs
+     */
+    private void skipToRange() throws IOException {
+        if (bytesToSkip > 0) {
+            in.skipNBytes(bytesToSkip);
+            bytesToSkip = 0;
+        }
+    }
+}
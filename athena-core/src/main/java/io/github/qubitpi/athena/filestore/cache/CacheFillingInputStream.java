@@ -0,0 +1,208 @@
+/*
+ * Copyright 2024 Jiaqi Liu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.qubitpi.athena.filestore.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.validation.constraints.NotNull;
+import net.jcip.annotations.NotThreadSafe;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Objects;
+
+/**
+ * An {@link InputStream} that copies everything read from an origin stream into a temporary file and hands that file
+ * over once the origin stream has been read to its end.
+ * <p>
+ * The cache reserves disk space for the whole copy before the stream is created, so the copy is bounded by that
+ * reservation. The copy is abandoned, and the temporary file deleted, if the stream is closed before its end, if
+ * writing the copy fails, or if the origin stream turns out longer than the reservation. Failures of the copy never
+ * affect the bytes returned to the reader.
+ */
+@NotThreadSafe
+final class CacheFillingInputStream extends FilterInputStream {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CacheFillingInputStream.class);
+
+    private final Path temp;
+    private final long maxSize;
+    private final Fill fill;
+
+    private OutputStream copy;
+    private long bytesRead;
+
+    /**
+     * Constructor.
+     *
+     * @param origin  The stream being cached
+     * @param temp  An empty temporary file that receives the copy
+     * @param maxSize  The number of bytes reserved for the copy
+     * @param fill  The cache being filled, which is told how the copy ends
+     *
+     * @throws NullPointerException if any argument is {@code null}
+     * @throws IOException if the temporary file cannot be opened
+     */
+    CacheFillingInputStream(
+            final @NotNull InputStream origin,
+            final @NotNull Path temp,
+            final long maxSize,
+            final @NotNull Fill fill
+    ) throws IOException {
+        super(Objects.requireNonNull(origin));
+        this.temp = Objects.requireNonNull(temp);
+        this.maxSize = maxSize;
+        this.fill = Objects.requireNonNull(fill);
+        this.copy = Files.newOutputStream(temp);
+    }
+
+    @Override
+    public int read() throws IOException {
+        final int value = super.read();
+        if (value == -1) {
+            complete();
+        } else {
+            copy(new byte[] {(byte) value}, 0, 1);
+        }
+        return value;
+    }
+
+    @Override
+    public int read(final byte[] bytes, final int offset, final int length) throws IOException {
+        final int read = super.read(bytes, offset, length);
+        if (read == -1) {
+            complete();
+        } else {
+            copy(bytes, offset, read);
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(final long n) throws IOException {
+        // skipped bytes would leave a hole in the copy
+        abandon();
+        return super.skip(n);
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        } finally {
+            abandon();
+        }
+    }
+
+    /**
+     * Appends bytes that have just been read to the copy.
+     *
+     * @param bytes  The buffer holding the bytes
+     * @param offset  The position of the first byte in the buffer
+     * @param length  The number of bytes
+     */
+    private void copy(final @NotNull byte[] bytes, final int offset, final int length) {
+        if (copy == null) {
+            return;
+        }
+
+        if (bytesRead + length > maxSize) {
+            abandon();
+            return;
+        }
+        bytesRead += length;
+
+        try {
+            copy.write(bytes, offset, length);
+        } catch (final IOException exception) {
+            LOG.warn("Unable to write cache file '{}'", temp, exception);
+            abandon();
+        }
+    }
+
+    /**
+     * Hands the complete copy over once the end of the origin stream has been reached.
+     */
+    private void complete() {
+        if (copy == null) {
+            return;
+        }
+
+        try {
+            copy.close();
+            copy = null;
+        } catch (final IOException exception) {
+            LOG.warn("Unable to write cache file '{}'", temp, exception);
+            abandon();
+            return;
+        }
+
+        fill.complete(temp, bytesRead);
+    }
+
+    /**
+     * Stops copying and deletes the incomplete copy.
+     */
+    private void abandon() {
+        if (copy == null) {
+            return;
+        }
+
+        try {
+            copy.close();
+        } catch (final IOException exception) {
+            LOG.warn("Unable to close cache file '{}'", temp, exception);
+        }
+        copy = null;
+
+        try {
+            Files.deleteIfExists(temp);
+        } catch (final IOException exception) {
+            LOG.warn("Unable to delete cache file '{}'", temp, exception);
+        }
+
+        fill.abandon();
+    }
+
+    /**
+     * The cache that a {@link CacheFillingInputStream} fills.
+     */
+    interface Fill {
+
+        /**
+         * Takes over the complete copy.
+         *
+         * @param temp  The temporary file holding the whole content
+         * @param size  The content size, no greater than the reserved space
+         */
+        void complete(@NotNull Path temp, long size);
+
+        /**
+         * Releases the space reserved for an abandoned copy, whose temporary file has been deleted.
+         */
+        void abandon();
+    }
+}
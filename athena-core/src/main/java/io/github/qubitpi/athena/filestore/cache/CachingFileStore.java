@@ -0,0 +1,600 @@
+/*
+ * Copyright 2024 Jiaqi Liu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.qubitpi.athena.filestore.cache;
+
+import static io.github.qubitpi.athena.config.ErrorMessageFormat.CONFIG_NOT_FOUND;
+import static io.github.qubitpi.athena.config.ErrorMessageFormat.FILE_STORE_IO_ERROR;
+
+import io.github.qubitpi.athena.config.SystemConfig;
+import io.github.qubitpi.athena.config.SystemConfigFactory;
+import io.github.qubitpi.athena.file.File;
+import io.github.qubitpi.athena.filestore.FileChannelInputStream;
+import io.github.qubitpi.athena.filestore.FileStore;
+import io.github.qubitpi.athena.filestore.FileVersion;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import jakarta.inject.Singleton;
+import jakarta.validation.constraints.NotNull;
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A read-through {@link FileStore} decorator that keeps recently downloaded files on local disk.
+ * <p>
+ * On a cache miss, the file is streamed from the decorated store to the caller and, at the same time, teed into a
+ * temporary file in the cache directory; once the caller has read the whole file, the temporary file is moved into the
+ * cache. Subsequent downloads of the same file are then served from local disk, as a {@link FileChannelInputStream}
+ * that is written out with zero-copy transfers. A partially read download never enters the cache.
+ * <p>
+ * A file is fetched into the cache by one download at a time. Other downloads of a file that is being fetched do not
+ * wait for it; they are served by the decorated store without being cached. Byte-range downloads of a file that is not
+ * cached are served by the decorated store as well and never fill the cache, which only the first whole download of a
+ * file does.
+ * <p>
+ * The cache is bounded by the total number of bytes it holds, including the bytes reserved by fetches in progress, and
+ * evicts the least recently used files first. A fetch reserves the whole {@link FileStore#getSize(String) file size}
+ * once, before it starts, so a burst of concurrent cache misses never fills the disk; a file whose size the decorated
+ * store cannot tell, or that does not fit, is served uncached. Only the cache bookkeeping is guarded by a lock; cached
+ * files are written, moved, and deleted outside of it. File IDs are immutable after {@link #upload(File) upload}, so
+ * cached files never need to be invalidated.
+ * <p>
+ * Cached files survive restarts: the cache directory is re-indexed on construction, oldest files first.
+ */
+@Singleton
+@ThreadSafe
+public class CachingFileStore implements FileStore {
+
+    /**
+     * The name of the {@link FileStore} binding that this cache decorates.
+     */
+    public static final String DELEGATE = "cachingFileStoreDelegate";
+
+    private static final Logger LOG = LoggerFactory.getLogger(CachingFileStore.class);
+
+    private static final SystemConfig SYSTEM_CONFIG = SystemConfigFactory.getInstance();
+
+    private static final String CACHE_DIR_KEY = "file_store_cache_dir";
+    private static final String CACHE_MAX_BYTES_KEY = "file_store_cache_max_bytes";
+    private static final long CACHE_MAX_BYTES_DEFAULT = 10L * 1024 * 1024 * 1024;
+
+    private static final String TEMP_FILE_PREFIX = ".fill-";
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+
+    private final FileStore delegate;
+    private final Path cacheDirectory;
+    private final long maxBytes;
+
+    /**
+     * Cached file sizes by file ID, in least-recently-used-first order.
+     */
+    @GuardedBy("this")
+    private final LinkedHashMap<String, Long> sizeByFileId = new LinkedHashMap<>(16, 0.75f, true);
+
+    @GuardedBy("this")
+    private long totalBytes;
+
+    /**
+     * The bytes reserved by fetches in progress, which count against the cache capacity.
+     */
+    @GuardedBy("this")
+    private long reservedBytes;
+
+    /**
+     * The fetches in progress by file ID.
+     */
+    @GuardedBy("this")
+    private final Map<String, CacheFill> fillByFileId = new HashMap<>();
+
+    /**
+     * DI constructor.
+     * <p>
+     * The cache directory and its capacity are read from the {@code file_store_cache_dir} and
+     * {@code file_store_cache_max_bytes} config properties.
+     *
+     * @param delegate  The store whose downloads are cached
+     *
+     * @throws NullPointerException if {@code delegate} is {@code null}
+     * @throws IllegalStateException if the cache directory is not configured or cannot be prepared
+     */
+    @Inject
+    public CachingFileStore(final @NotNull @Named(DELEGATE) FileStore delegate) {
+        this(
+                delegate,
+                getConfiguredCacheDirectory(),
+                SYSTEM_CONFIG.getLongProperty(SYSTEM_CONFIG.getPackageVariableName(CACHE_MAX_BYTES_KEY))
+                        .orElse(CACHE_MAX_BYTES_DEFAULT)
+        );
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param delegate  The store whose downloads are cached
+     * @param cacheDirectory  The directory holding cached files; it is created if it does not exist yet
+     * @param maxBytes  The max total size of all cached files
+     *
+     * @throws NullPointerException if {@code delegate} or {@code cacheDirectory} is {@code null}
+     * @throws IllegalArgumentException if {@code maxBytes} is negative
+     * @throws IllegalStateException if the cache directory cannot be prepared
+     */
+    public CachingFileStore(
+            final @NotNull FileStore delegate,
+            final @NotNull Path cacheDirectory,
+            final long maxBytes
+    ) {
+        if (maxBytes < 0) {
+            final String message = String.format("Invalid file store cache size: %d bytes", maxBytes);
+            LOG.error(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.delegate = Objects.requireNonNull(delegate);
+        this.cacheDirectory = Objects.requireNonNull(cacheDirectory).toAbsolutePath().normalize();
+        this.maxBytes = maxBytes;
+
+        loadCacheDirectory();
+    }
+
+    /**
+     * Returns whether a file store cache is configured, i.e. whether the {@code file_store_cache_dir} config property
+     * is set.
+     *
+     * @return {@code true} if downloads should go through a {@link CachingFileStore}
+     */
+    public static boolean isConfigured() {
+        return SYSTEM_CONFIG.getStringProperty(SYSTEM_CONFIG.getPackageVariableName(CACHE_DIR_KEY)).isPresent();
+    }
+
+    @Override
+    public String upload(final File file) {
+        return delegate.upload(file);
+    }
+
+    @Override
+    public InputStream download(final String fileId) {
+        Objects.requireNonNull(fileId);
+
+        final FileChannel cached = openCached(fileId);
+        if (cached != null) {
+            return new FileChannelInputStream(cached, Long.MAX_VALUE);
+        }
+
+        final OptionalLong size = delegate.getSize(fileId);
+        final CacheFill fill = size.isPresent() ? startFill(fileId, size.getAsLong()) : null;
+        if (fill == null) {
+            return delegate.download(fileId);
+        }
+
+        boolean filling = false;
+        try {
+            final InputStream origin = delegate.download(fileId);
+            try {
+                final InputStream download = new CacheFillingInputStream(
+                        origin,
+                        Files.createTempFile(cacheDirectory, TEMP_FILE_PREFIX, TEMP_FILE_SUFFIX),
+                        size.getAsLong(),
+                        fill
+                );
+                filling = true;
+                return download;
+            } catch (final IOException exception) {
+                LOG.warn("Unable to cache file '{}'; serving it uncached", fileId, exception);
+                return origin;
+            }
+        } finally {
+            if (!filling) {
+                fill.abandon();
+            }
+        }
+    }
+
+    @Override
+    public InputStream download(final String fileId, final long offset, final long length) {
+        Objects.requireNonNull(fileId);
+
+        final FileChannel cached = openCached(fileId);
+        if (cached == null) {
+            return delegate.download(fileId, offset, length);
+        }
+
+        try {
+            cached.position(offset);
+        } catch (final IOException exception) {
+            closeQuietly(cached);
+            return delegate.download(fileId, offset, length);
+        }
+        return new FileChannelInputStream(cached, length > Long.MAX_VALUE - offset ? Long.MAX_VALUE : offset + length);
+    }
+
+    @Override
+    public OptionalLong getSize(final String fileId) {
+        Objects.requireNonNull(fileId);
+
+        synchronized (this) {
+            final Long size = sizeByFileId.get(fileId);
+            if (size != null) {
+                return OptionalLong.of(size);
+            }
+        }
+
+        return delegate.getSize(fileId);
+    }
+
+    @Override
+    public Optional<FileVersion> getVersion(final String fileId) {
+        return delegate.getVersion(Objects.requireNonNull(fileId));
+    }
+
+    @Override
+    public boolean delete(final String fileId) {
+        Objects.requireNonNull(fileId);
+
+        final Long size;
+        synchronized (this) {
+            // a fetch in progress is not admitted once the file is deleted
+            fillByFileId.remove(fileId);
+            size = sizeByFileId.remove(fileId);
+            if (size != null) {
+                totalBytes -= size;
+            }
+        }
+        if (size != null) {
+            deleteQuietly(resolve(fileId));
+        }
+
+        return delegate.delete(fileId);
+    }
+
+    /**
+     * Returns the total size of all cached files.
+     *
+     * @return a number of bytes no greater than the cache capacity
+     */
+    public synchronized long getCachedBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * Returns whether a file is currently cached.
+     *
+     * @param fileId  The ID of the file
+     *
+     * @return {@code true} if downloads of the file are served from local disk
+     */
+    public synchronized boolean isCached(final @NotNull String fileId) {
+        return sizeByFileId.containsKey(Objects.requireNonNull(fileId));
+    }
+
+    /**
+     * Starts fetching a file into the cache, reserving space for the whole file and evicting least recently used files
+     * to make room.
+     *
+     * @param fileId  The ID of the file
+     * @param size  The file size
+     *
+     * @return the started fetch, or {@code null} if the file is already being fetched or does not fit in the cache
+     * besides the other fetches in progress
+     */
+    private CacheFill startFill(final @NotNull String fileId, final long size) {
+        final CacheFill fill = new CacheFill(fileId, size);
+        List<String> evicted = Collections.emptyList();
+        boolean started = false;
+
+        synchronized (this) {
+            if (!fillByFileId.containsKey(fileId) && reservedBytes + size <= maxBytes) {
+                evicted = evict(size);
+                reservedBytes += size;
+                fillByFileId.put(fileId, fill);
+                started = true;
+            }
+        }
+
+        deleteQuietly(evicted);
+        return started ? fill : null;
+    }
+
+    /**
+     * Moves a completely downloaded file into the cache, turning the space reserved for it into cached bytes.
+     * <p>
+     * The file is moved outside the cache lock; it is only then accounted for, unless the file has been deleted
+     * meanwhile.
+     *
+     * @param fill  The fetch that downloaded the file
+     * @param temp  The temporary file holding the whole file content
+     * @param size  The file size, no greater than the reserved space
+     */
+    private void admit(final @NotNull CacheFill fill, final @NotNull Path temp, final long size) {
+        final String fileId = fill.fileId;
+        final Path target = resolve(fileId);
+
+        boolean moved = false;
+        if (isCurrent(fill)) {
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                moved = true;
+            } catch (final IOException exception) {
+                LOG.warn("Unable to cache file '{}'", fileId, exception);
+            }
+        }
+
+        List<String> evicted = Collections.emptyList();
+        boolean cached = false;
+        synchronized (this) {
+            reservedBytes -= fill.reservation;
+
+            // a file deleted while being fetched is not admitted
+            if (fillByFileId.remove(fileId, fill) && moved) {
+                final Long previousSize = sizeByFileId.put(fileId, size);
+                totalBytes += size - (previousSize == null ? 0 : previousSize);
+                evicted = evict(0);
+                cached = true;
+            }
+        }
+
+        if (!cached) {
+            deleteQuietly(moved ? target : temp);
+        }
+        deleteQuietly(evicted);
+    }
+
+    /**
+     * Tells whether a fetch still owns its file ID, i.e. the file has not been deleted since the fetch started.
+     *
+     * @param fill  The fetch
+     *
+     * @return {@code true} if the fetch may cache its file
+     */
+    private synchronized boolean isCurrent(final @NotNull CacheFill fill) {
+        return fillByFileId.get(fill.fileId) == fill;
+    }
+
+    /**
+     * Ends a fetch that did not cache its file, releasing the space reserved for it.
+     *
+     * @param fill  The fetch
+     */
+    private synchronized void release(final @NotNull CacheFill fill) {
+        reservedBytes -= fill.reservation;
+        fillByFileId.remove(fill.fileId, fill);
+    }
+
+    /**
+     * Removes least recently used files from the cache index until the cache fits its capacity with room for more
+     * bytes.
+     * <p>
+     * The removed files are only deleted from disk by the caller, once it has released the cache lock.
+     *
+     * @param bytes  The number of bytes to make room for, besides the bytes of the fetches in progress
+     *
+     * @return the IDs of the evicted files
+     */
+    @GuardedBy("this")
+    @NotNull
+    private List<String> evict(final long bytes) {
+        final List<String> evicted = new ArrayList<>();
+        final Iterator<Map.Entry<String, Long>> leastRecentlyUsed = sizeByFileId.entrySet().iterator();
+        while (totalBytes + reservedBytes + bytes > maxBytes && leastRecentlyUsed.hasNext()) {
+            final Map.Entry<String, Long> eldest = leastRecentlyUsed.next();
+            leastRecentlyUsed.remove();
+            totalBytes -= eldest.getValue();
+            evicted.add(eldest.getKey());
+        }
+        return evicted;
+    }
+
+    /**
+     * Opens a cached file for reading and marks it as most recently used.
+     * <p>
+     * An opened file stays readable even if it gets evicted while being read.
+     *
+     * @param fileId  The ID of the file
+     *
+     * @return a channel positioned at the beginning of the cached file, or {@code null} if the file is not cached
+     */
+    private FileChannel openCached(final @NotNull String fileId) {
+        synchronized (this) {
+            if (sizeByFileId.get(fileId) == null) {
+                return null;
+            }
+        }
+
+        try {
+            return FileChannel.open(resolve(fileId), StandardOpenOption.READ);
+        } catch (final NoSuchFileException exception) {
+            synchronized (this) {
+                final Long size = sizeByFileId.remove(fileId);
+                totalBytes -= size == null ? 0 : size;
+            }
+            return null;
+        } catch (final IOException exception) {
+            LOG.warn("Unable to read cached file '{}'; serving it uncached", fileId, exception);
+            return null;
+        }
+    }
+
+    /**
+     * Prepares the cache directory and indexes the files already in it, least recently modified first.
+     * <p>
+     * Leftover temporary files of interrupted downloads are removed.
+     *
+     * @throws IllegalStateException if the cache directory cannot be prepared
+     */
+    private void loadCacheDirectory() {
+        final Map<String, Long> sizeByCachedFileId = new LinkedHashMap<>();
+        try {
+            Files.createDirectories(cacheDirectory);
+
+            final List<Path> files;
+            try (Stream<Path> entries = Files.list(cacheDirectory)) {
+                files = entries.filter(Files::isRegularFile).collect(Collectors.toList());
+            }
+
+            files.stream()
+                    .filter(file -> file.getFileName().toString().startsWith(TEMP_FILE_PREFIX))
+                    .forEach(CachingFileStore::deleteQuietly);
+
+            final List<Path> cachedFiles = files.stream()
+                    .filter(file -> !file.getFileName().toString().startsWith(TEMP_FILE_PREFIX))
+                    .sorted(Comparator.comparing(file -> file.toFile().lastModified()))
+                    .collect(Collectors.toList());
+            for (final Path file : cachedFiles) {
+                sizeByCachedFileId.put(
+                        URLDecoder.decode(file.getFileName().toString(), StandardCharsets.UTF_8),
+                        Files.size(file)
+                );
+            }
+        } catch (final IOException exception) {
+            LOG.error(FILE_STORE_IO_ERROR.logFormat(cacheDirectory, exception.getMessage()), exception);
+            throw new IllegalStateException(FILE_STORE_IO_ERROR.format(), exception);
+        }
+
+        final List<String> evicted;
+        synchronized (this) {
+            sizeByCachedFileId.forEach((fileId, size) -> {
+                sizeByFileId.put(fileId, size);
+                totalBytes += size;
+            });
+            evicted = evict(0);
+        }
+        deleteQuietly(evicted);
+    }
+
+    /**
+     * Returns the path of the cached copy of a file.
+     *
+     * @param fileId  The ID of the file
+     *
+     * @return a path directly under the cache directory
+     */
+    @NotNull
+    private Path resolve(final @NotNull String fileId) {
+        return cacheDirectory.resolve(URLEncoder.encode(fileId, StandardCharsets.UTF_8).replace(".", "%2E"));
+    }
+
+    /**
+     * Deletes the cached copies of evicted files, swallowing any failure.
+     *
+     * @param fileIds  The IDs of the evicted files
+     */
+    private void deleteQuietly(final @NotNull List<String> fileIds) {
+        fileIds.forEach(fileId -> deleteQuietly(resolve(fileId)));
+    }
+
+    /**
+     * Deletes a file if it exists, swallowing any failure.
+     *
+     * @param file  The file to delete
+     */
+    private static void deleteQuietly(final @NotNull Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (final IOException exception) {
+            LOG.warn("Unable to delete cached file '{}'", file, exception);
+        }
+    }
+
+    /**
+     * Closes a channel, swallowing any failure.
+     *
+     * @param channel  The channel to close
+     */
+    private static void closeQuietly(final @NotNull FileChannel channel) {
+        try {
+            channel.close();
+        } catch (final IOException exception) {
+            LOG.warn("Unable to close cached file", exception);
+        }
+    }
+
+    /**
+     * Reads the cache directory from the {@code file_store_cache_dir} config property.
+     *
+     * @return the configured cache directory
+     *
+     * @throws IllegalStateException if the config property is not set
+     */
+    @NotNull
+    private static Path getConfiguredCacheDirectory() {
+        return Paths.get(
+                SYSTEM_CONFIG.getStringProperty(SYSTEM_CONFIG.getPackageVariableName(CACHE_DIR_KEY))
+                        .orElseThrow(() -> {
+                            LOG.error(CONFIG_NOT_FOUND.logFormat(CACHE_DIR_KEY));
+                            return new IllegalStateException(CONFIG_NOT_FOUND.format());
+                        })
+        );
+    }
+
+    /**
+     * The fetch of a file into this cache by a {@link CacheFillingInputStream}, holding the space reserved for the
+     * whole file.
+     */
+    private final class CacheFill implements CacheFillingInputStream.Fill {
+
+        private final String fileId;
+        private final long reservation;
+
+        /**
+         * Constructor.
+         *
+         * @param fileId  The ID of the fetched file
+         * @param reservation  The number of bytes reserved for the file
+         */
+        private CacheFill(final @NotNull String fileId, final long reservation) {
+            this.fileId = fileId;
+            this.reservation = reservation;
+        }
+
+        @Override
+        public void complete(final Path temp, final long size) {
+            admit(this, temp, size);
+        }
+
+        @Override
+        public void abandon() {
+            release(this);
+        }
+    }
+}
@@ -0,0 +1,375 @@
+/*
+ * Copyright 2024 Jiaqi Liu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.qubitpi.athena.filestore.compression;
+
+import static io.github.qubitpi.athena.config.ErrorMessageFormat.FILE_STORE_IO_ERROR;
+
+import io.github.qubitpi.athena.config.SystemConfig;
+import io.github.qubitpi.athena.config.SystemConfigFactory;
+import io.github.qubitpi.athena.file.File;
+import io.github.qubitpi.athena.filestore.FileStore;
+import io.github.qubitpi.athena.filestore.FileVersion;
+import io.github.qubitpi.athena.filestore.RangeInputStream;
+import io.github.qubitpi.athena.metadata.FileType;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import jakarta.inject.Singleton;
+import jakarta.validation.constraints.NotNull;
+import net.jcip.annotations.Immutable;
+import net.jcip.annotations.NotThreadSafe;
+import net.jcip.annotations.ThreadSafe;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.OptionalLong;
+
+/**
+ * A {@link FileStore} decorator that compresses files on upload and decompresses them on download, with a
+ * {@link CompressionCodec} chosen by {@link FileType}.
+ * <p>
+ * Compression is opt-in per file type: only the types listed in the {@code file_store_compressed_types} config
+ * property, such as {@code TXT,PDF}, are kept gzip-compressed, and every other file passes through untouched. Formats
+ * whose content is already compressed, such as {@link FileType#MP4}, gain nothing from it. Compression and
+ * decompression are streamed, so a file is never held in memory as a whole.
+ * <p>
+ * File IDs are those of the decorated store. How a compressed file is encoded, and its size once decoded, are recorded
+ * in an {@link EncodingIndex} at upload, so that a download knows how to decode a file before fetching it. Files
+ * without such record, including those stored before compression was enabled, are passed to the decorated store
+ * unchanged.
+ * <p>
+ * Compressed files are also available {@link #downloadEncoded(String) as stored}, for clients that accept their
+ * content coding. Byte ranges of a compressed file are served, but they are cut out of its decompressed stream: every
+ * byte before a range is fetched and decompressed to reach it, and a compressed file cannot be read with zero-copy
+ * transfers. File types that are mostly fetched by range should therefore be left uncompressed.
+ */
+@Singleton
+@Immutable
+@ThreadSafe
+public class CompressingFileStore implements FileStore {
+
+    /**
+     * The name of the {@link FileStore} binding that this store decorates.
+     */
+    public static final String DELEGATE = "compressingFileStoreDelegate";
+
+    private static final Logger LOG = LoggerFactory.getLogger(CompressingFileStore.class);
+
+    private static final SystemConfig SYSTEM_CONFIG = SystemConfigFactory.getInstance();
+
+    /**
+     * The config key whose value is the comma-separated list of the {@link FileType file types} to keep compressed.
+     */
+    private static final String COMPRESSED_TYPES_KEY = "file_store_compressed_types";
+
+    private final FileStore delegate;
+    private final EncodingIndex encodingIndex;
+    private final Map<FileType, CompressionCodec> codecs;
+
+    /**
+     * DI constructor, which gzip-compresses the file types listed in the {@code file_store_compressed_types} config
+     * property.
+     *
+     * @param delegate  The store keeping the compressed files
+     * @param encodingIndex  The shared record of how stored files are encoded
+     *
+     * @throws NullPointerException if any argument is {@code null}
+     * @throws IllegalStateException if the config property lists an unknown file type
+     */
+    @Inject
+    public CompressingFileStore(
+            final @NotNull @Named(DELEGATE) FileStore delegate,
+            final @NotNull EncodingIndex encodingIndex
+    ) {
+        this(delegate, encodingIndex, getConfiguredCodecs());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param delegate  The store keeping the compressed files
+     * @param encodingIndex  The shared record of how stored files are encoded
+     * @param codecs  The codec applied to each file type; file types without a codec are stored uncompressed
+     *
+     * @throws NullPointerException if any argument is {@code null}
+     */
+    public CompressingFileStore(
+            final @NotNull FileStore delegate,
+            final @NotNull EncodingIndex encodingIndex,
+            final @NotNull Map<FileType, CompressionCodec> codecs
+    ) {
+        this.delegate = Objects.requireNonNull(delegate);
+        this.encodingIndex = Objects.requireNonNull(encodingIndex);
+        // an EnumMap cannot be copied from an empty map of another kind
+        this.codecs = Objects.requireNonNull(codecs).isEmpty()
+                ? Collections.emptyMap()
+                : Collections.unmodifiableMap(new EnumMap<>(codecs));
+    }
+
+    /**
+     * Returns whether compression is configured, i.e. whether the {@code file_store_compressed_types} config property
+     * lists any file type.
+     *
+     * @return {@code true} if files should go through a {@link CompressingFileStore}
+     *
+     * @throws IllegalStateException if the config property lists an unknown file type
+     */
+    public static boolean isConfigured() {
+        return !getConfiguredCodecs().isEmpty();
+    }
+
+    @Override
+    public String upload(final File file) {
+        Objects.requireNonNull(file);
+
+        final CompressionCodec codec = codecs.get(file.getMetaData().getFileType());
+        if (codec == null) {
+            return delegate.upload(file);
+        }
+
+        final CountingInputStream raw = new CountingInputStream(file.getFileContent());
+        final String fileId;
+        try (InputStream compressed = codec.compress(raw)) {
+            fileId = delegate.upload(new File(file.getMetaData(), compressed));
+        } catch (final IOException exception) {
+            final String fileName = file.getMetaData().getFileName();
+            LOG.error(FILE_STORE_IO_ERROR.logFormat(fileName, exception.getMessage()), exception);
+            throw new IllegalStateException(FILE_STORE_IO_ERROR.format(), exception);
+        }
+
+        try {
+            encodingIndex.addEncoding(fileId, new FileEncoding(codec.getContentCoding(), raw.getCount()));
+        } catch (final IllegalStateException | IllegalArgumentException exception) {
+            // without its record, the file would be served compressed as if it were not
+            delegate.delete(fileId);
+            throw exception;
+        }
+
+        return fileId;
+    }
+
+    @Override
+    public InputStream download(final String fileId) {
+        final Optional<FileEncoding> encoding = encodingIndex.getEncoding(fileId);
+        return encoding.isPresent() ? decompress(fileId, encoding.get()) : delegate.download(fileId);
+    }
+
+    @Override
+    public InputStream download(final String fileId, final long offset, final long length) {
+        final Optional<FileEncoding> encoding = encodingIndex.getEncoding(fileId);
+        return encoding.isPresent()
+                ? new RangeInputStream(decompress(fileId, encoding.get()), offset, length)
+                : delegate.download(fileId, offset, length);
+    }
+
+    @Override
+    public OptionalLong getSize(final String fileId) {
+        final Optional<FileEncoding> encoding = encodingIndex.getEncoding(fileId);
+        return encoding.isPresent() ? OptionalLong.of(encoding.get().getSize()) : delegate.getSize(fileId);
+    }
+
+    @Override
+    public Optional<String> getContentEncoding(final String fileId) {
+        final Optional<FileEncoding> encoding = encodingIndex.getEncoding(fileId);
+        return encoding.isPresent()
+                ? Optional.of(encoding.get().getContentCoding())
+                : delegate.getContentEncoding(fileId);
+    }
+
+    @Override
+    public InputStream downloadEncoded(final String fileId) {
+        return encodingIndex.getEncoding(fileId).isPresent()
+                ? delegate.download(fileId)
+                : delegate.downloadEncoded(fileId);
+    }
+
+    @Override
+    public Optional<FileVersion> getVersion(final String fileId) {
+        final Optional<FileEncoding> encoding = encodingIndex.getEncoding(fileId);
+        if (encoding.isEmpty()) {
+            return delegate.getVersion(fileId);
+        }
+
+        // the stored size is that of the compressed bytes, not of the file as downloaded
+        return delegate.getVersion(fileId).map(version -> new FileVersion(
+                version.getETag(),
+                version.getLastModified().orElse(null),
+                OptionalLong.of(encoding.get().getSize())
+        ));
+    }
+
+    @Override
+    public boolean delete(final String fileId) {
+        final boolean deleted = delegate.delete(fileId);
+        encodingIndex.removeEncoding(fileId);
+        return deleted;
+    }
+
+    /**
+     * Reads the codecs to apply from the {@code file_store_compressed_types} config property; each listed file type is
+     * gzip-compressed.
+     *
+     * @return the codec of each listed file type, or an empty map if the property is not set
+     *
+     * @throws IllegalStateException if the config property lists an unknown file type
+     */
+    @NotNull
+    private static Map<FileType, CompressionCodec> getConfiguredCodecs() {
+        final Map<FileType, CompressionCodec> codecs = new EnumMap<>(FileType.class);
+        SYSTEM_CONFIG.getStringProperty(SYSTEM_CONFIG.getPackageVariableName(COMPRESSED_TYPES_KEY))
+                .stream()
+                .flatMap(types -> Arrays.stream(types.split(",")))
+                .map(String::trim)
+                .filter(type -> !type.isEmpty())
+                .forEach(type -> codecs.put(getFileType(type), CompressionCodec.GZIP));
+        return codecs;
+    }
+
+    /**
+     * Parses a file type listed in the {@code file_store_compressed_types} config property.
+     *
+     * @param type  The name of a {@link FileType}, case-insensitive
+     *
+     * @return the file type
+     *
+     * @throws IllegalStateException if there is no such file type
+     */
+    @NotNull
+    private static FileType getFileType(final @NotNull String type) {
+        try {
+            return FileType.valueOf(type.toUpperCase(Locale.ROOT));
+        } catch (final IllegalArgumentException exception) {
+            final String message = String.format(
+                    "'%s' in config '%s' is not one of %s",
+                    type,
+                    COMPRESSED_TYPES_KEY,
+                    Arrays.toString(FileType.values())
+            );
+            LOG.error(message, exception);
+            throw new IllegalStateException(message, exception);
+        }
+    }
+
+    /**
+     * Downloads a compressed file and decodes it as it is read.
+     *
+     * @param fileId  The ID of the file
+     * @param encoding  The recorded encoding of the file
+     *
+     * @return the decompressed file content
+     *
+     * @throws IllegalStateException if the content coding is not supported or the compressed file cannot be read
+     */
+    @NotNull
+    private InputStream decompress(final @NotNull String fileId, final @NotNull FileEncoding encoding) {
+        final CompressionCodec codec = CompressionCodec.of(encoding.getContentCoding()).orElseThrow(() -> {
+            final String message = String.format("Unsupported content coding '%s'", encoding.getContentCoding());
+            LOG.error(FILE_STORE_IO_ERROR.logFormat(fileId, message));
+            return new IllegalStateException(FILE_STORE_IO_ERROR.format());
+        });
+
+        final InputStream encoded = delegate.download(fileId);
+        try {
+            return codec.decompress(encoded);
+        } catch (final IOException exception) {
+            closeQuietly(encoded);
+            LOG.error(FILE_STORE_IO_ERROR.logFormat(fileId, exception.getMessage()), exception);
+            throw new IllegalStateException(FILE_STORE_IO_ERROR.format(), exception);
+        }
+    }
+
+    /**
+     * Closes a stream, swallowing any failure.
+     *
+     * @param stream  The stream to close
+     */
+    private static void closeQuietly(final @NotNull InputStream stream) {
+        try {
+            stream.close();
+        } catch (final IOException exception) {
+            LOG.warn("Unable to close file stream", exception);
+        }
+    }
+
+    /**
+     * An {@link InputStream} that counts the bytes read through it, which gives the size of an upload once it has been
+     * consumed.
+     */
+    @NotThreadSafe
+    private static final class CountingInputStream extends FilterInputStream {
+
+        private long count;
+
+        /**
+         * Constructor.
+         *
+         * @param in  The counted stream
+         */
+        private CountingInputStream(final @NotNull InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int value = super.read();
+            if (value != -1) {
+                count++;
+            }
+            return value;
+        }
+
+        @Override
+        public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+            final int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(final long n) throws IOException {
+            final long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        /**
+         * Returns the number of bytes read or skipped so far.
+         *
+         * @return a number of bytes
+         */
+        private long getCount() {
+            return count;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2024 Jiaqi Liu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.qubitpi.athena.filestore.compression;
+
+import jakarta.validation.constraints.NotNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.zip.DeflaterInputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * The compression formats a {@link CompressingFileStore} can keep files in.
+ * <p>
+ * Each codec is named after its HTTP content coding, so that a stored file can be handed to a client that accepts the
+ * coding without being decoded first. Both directions are pull-based streams: compressing an upload or decompressing
+ * a download never needs an extra thread or a buffer holding the whole file.
+ */
+public enum CompressionCodec {
+
+    /**
+     * The gzip file format, RFC 1952.
+     */
+    GZIP("gzip") {
+        @Override
+        public InputStream compress(final InputStream raw) {
+            return new GzipCompressingInputStream(Objects.requireNonNull(raw));
+        }
+
+        @Override
+        public InputStream decompress(final InputStream encoded) throws IOException {
+            return new GZIPInputStream(Objects.requireNonNull(encoded));
+        }
+    },
+
+    /**
+     * The zlib format, RFC 1950, which HTTP calls "deflate".
+     */
+    DEFLATE("deflate") {
+        @Override
+        public InputStream compress(final InputStream raw) {
+            return new DeflaterInputStream(Objects.requireNonNull(raw));
+        }
+
+        @Override
+        public InputStream decompress(final InputStream encoded) {
+            return new InflaterInputStream(Objects.requireNonNull(encoded));
+        }
+    };
+
+    private final String contentCoding;
+
+    /**
+     * Constructor.
+     *
+     * @param contentCoding  The HTTP content coding of this format
+     */
+    CompressionCodec(final @NotNull String contentCoding) {
+        this.contentCoding = contentCoding;
+    }
+
+    /**
+     * Returns the HTTP content coding of this format, such as {@code gzip}.
+     *
+     * @return a lower case content coding
+     */
+    @NotNull
+    public String getContentCoding() {
+        return contentCoding;
+    }
+
+    /**
+     * Finds the codec of an HTTP content coding.
+     *
+     * @param contentCoding  The content coding, case-insensitive
+     *
+     * @return the codec or an empty value if the coding is not supported
+     *
+     * @throws NullPointerException if {@code contentCoding} is {@code null}
+     */
+    @NotNull
+    public static Optional<CompressionCodec> of(final @NotNull String contentCoding) {
+        Objects.requireNonNull(contentCoding);
+        return Arrays.stream(values())
+                .filter(codec -> codec.getContentCoding().equalsIgnoreCase(contentCoding))
+                .findFirst();
+    }
+
+    /**
+     * Returns a stream of the compressed form of some content.
+     *
+     * @param raw  The content to compress
+     *
+     * @return a stream that compresses {@code raw} as it is read
+     *
+     * @throws NullPointerException if {@code raw} is {@code null}
+     */
+    @NotNull
+    public abstract InputStream compress(@NotNull InputStream raw);
+
+    /**
+     * Returns a stream of the original form of some compressed content.
+     *
+     * @param encoded  The content previously {@link #compress(InputStream) compressed} with this codec
+     *
+     * @return a stream that decompresses {@code encoded} as it is read
+     *
+     * @throws NullPointerException if {@code encoded} is {@code null}
+     * @throws IOException if the compressed content cannot be read
+     */
+    @NotNull
+    public abstract InputStream decompress(@NotNull InputStream encoded) throws IOException;
+}
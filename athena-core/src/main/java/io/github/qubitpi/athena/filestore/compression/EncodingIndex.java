@@ -0,0 +1,69 @@
+/*
+ * Copyright 2024 Jiaqi Liu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.qubitpi.athena.filestore.compression;
+
+import jakarta.validation.constraints.NotNull;
+
+import java.util.Optional;
+
+/**
+ * {@link EncodingIndex} is the bookkeeping behind a {@link CompressingFileStore}: it records, next to each file that
+ * is stored compressed, the content coding of the stored bytes and the size of the file once decoded.
+ * <p>
+ * The record is kept aside rather than encoded in the file ID, so that the IDs handed out to clients are those of the
+ * decorated store. An index must be shared by every {@link CompressingFileStore} in front of the same decorated store,
+ * for example by keeping it in the metadata database, so that a file uploaded through one instance is decoded by all
+ * others. Files without a record are served as stored.
+ */
+public interface EncodingIndex {
+
+    /**
+     * Records how a newly stored file is encoded.
+     *
+     * @param fileId  The ID of the file in the decorated store
+     * @param encoding  The encoding of the stored bytes
+     *
+     * @throws NullPointerException if any argument is {@code null}
+     * @throws IllegalArgumentException if an encoding is already recorded for {@code fileId}
+     * @throws IllegalStateException if the index cannot be updated
+     */
+    void addEncoding(@NotNull String fileId, @NotNull FileEncoding encoding);
+
+    /**
+     * Looks up how a file is encoded.
+     *
+     * @param fileId  The ID of the file in the decorated store
+     *
+     * @return the encoding of the stored bytes or an empty value if the file is stored as is
+     *
+     * @throws NullPointerException if {@code fileId} is {@code null}
+     * @throws IllegalStateException if the index cannot be read
+     */
+    @NotNull
+    Optional<FileEncoding> getEncoding(@NotNull String fileId);
+
+    /**
+     * Forgets how a deleted file was encoded.
+     *
+     * @param fileId  The ID of the file in the decorated store
+     *
+     * @return {@code true} if an encoding was recorded for the file
+     *
+     * @throws NullPointerException if {@code fileId} is {@code null}
+     * @throws IllegalStateException if the index cannot be updated
+     */
+    boolean removeEncoding(@NotNull String fileId);
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2024 Jiaqi Liu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.qubitpi.athena.filestore.compression;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.validation.constraints.NotNull;
+import net.jcip.annotations.Immutable;
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.Objects;
+
+/**
+ * {@link FileEncoding} describes how a file kept by a {@link CompressingFileStore} is stored: the HTTP content coding
+ * of the stored bytes and the size of the file once decoded, which makes byte ranges servable without decoding the
+ * whole file first.
+ */
+@Immutable
+@ThreadSafe
+public final class FileEncoding {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FileEncoding.class);
+
+    private final String contentCoding;
+    private final long size;
+
+    /**
+     * Constructor.
+     *
+     * @param contentCoding  The HTTP content coding of the stored bytes, such as {@code gzip}
+     * @param size  The size of the file once decoded, in bytes
+     *
+     * @throws NullPointerException if {@code contentCoding} is {@code null}
+     * @throws IllegalArgumentException if {@code size} is negative
+     */
+    public FileEncoding(final @NotNull String contentCoding, final long size) {
+        if (size < 0) {
+            final String message = String.format("Invalid decoded file size: %d", size);
+            LOG.error(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.contentCoding = Objects.requireNonNull(contentCoding);
+        this.size = size;
+    }
+
+    /**
+     * Returns the HTTP content coding of the stored bytes.
+     *
+     * @return a content coding such as {@code gzip}
+     */
+    @NotNull
+    public String getContentCoding() {
+        return contentCoding;
+    }
+
+    /**
+     * Returns the size of the file once decoded.
+     *
+     * @return a number of bytes
+     */
+    public long getSize() {
+        return size;
+    }
+}
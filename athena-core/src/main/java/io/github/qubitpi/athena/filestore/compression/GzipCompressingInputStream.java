@@ -0,0 +1,136 @@
+/*
+ * Copyright 2024 Jiaqi Liu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.qubitpi.athena.filestore.compression;
+
+import jakarta.validation.constraints.NotNull;
+import net.jcip.annotations.NotThreadSafe;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterInputStream;
+
+/**
+ * An {@link InputStream} that reads the gzip-compressed form of another stream.
+ * <p>
+ * The JDK only offers gzip compression as an {@link java.io.OutputStream}; this stream produces the same format by
+ * pulling from the raw content, which is what a {@link io.github.qubitpi.athena.filestore.FileStore} upload consumes.
+ * It is a fixed 10-byte header, followed by the raw deflate data and by a trailer holding the CRC-32 and the size of
+ * the raw content, which are only known once the raw content has been read to its end.
+ */
+@NotThreadSafe
+final class GzipCompressingInputStream extends SequenceInputStream {
+
+    private static final byte[] HEADER = {
+            0x1f, (byte) 0x8b, // magic number
+            Deflater.DEFLATED, // compression method
+            0, // flags
+            0, 0, 0, 0, // modification time
+            0, // extra flags
+            (byte) 0xff // operating system: unknown
+    };
+
+    private final Deflater deflater;
+
+    /**
+     * Constructor.
+     *
+     * @param raw  The content to compress
+     *
+     * @throws NullPointerException if {@code raw} is {@code null}
+     */
+    GzipCompressingInputStream(final @NotNull InputStream raw) {
+        this(
+                new CheckedInputStream(Objects.requireNonNull(raw), new CRC32()),
+                new Deflater(Deflater.DEFAULT_COMPRESSION, true)
+        );
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param raw  The content to compress, whose checksum is computed as it is read
+     * @param deflater  A deflater producing raw deflate data, without zlib wrapper
+     */
+    private GzipCompressingInputStream(final @NotNull CheckedInputStream raw, final @NotNull Deflater deflater) {
+        super(enumerate(List.of(
+                () -> new ByteArrayInputStream(HEADER),
+                () -> new DeflaterInputStream(raw, deflater),
+                () -> new ByteArrayInputStream(trailer(raw.getChecksum().getValue(), deflater.getBytesRead()))
+        )));
+        this.deflater = deflater;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Enumerates streams that are only created when {@link SequenceInputStream} moves to them, so that the trailer is
+     * computed after the whole raw content has been compressed.
+     *
+     * @param streams  Suppliers of the successive streams
+     *
+     * @return a lazy enumeration of the streams
+     */
+    @NotNull
+    private static Enumeration<InputStream> enumerate(final @NotNull List<Supplier<InputStream>> streams) {
+        final Iterator<Supplier<InputStream>> iterator = streams.iterator();
+        return new Enumeration<>() {
+            @Override
+            public boolean hasMoreElements() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public InputStream nextElement() {
+                return iterator.next().get();
+            }
+        };
+    }
+
+    /**
+     * Returns the gzip trailer of some content.
+     *
+     * @param crc  The CRC-32 of the raw content
+     * @param size  The size of the raw content
+     *
+     * @return the 8-byte trailer, little-endian
+     */
+    @NotNull
+    private static byte[] trailer(final long crc, final long size) {
+        final byte[] trailer = new byte[8];
+        for (int i = 0; i < 4; i++) {
+            trailer[i] = (byte) (crc >>> (8 * i));
+            trailer[4 + i] = (byte) (size >>> (8 * i));
+        }
+        return trailer;
+    }
+}
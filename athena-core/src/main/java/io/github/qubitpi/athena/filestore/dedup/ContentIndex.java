@@ -0,0 +1,111 @@
+/*
+ * Copyright 2024 Jiaqi Liu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.qubitpi.athena.filestore.dedup;
+
+import jakarta.validation.constraints.NotNull;
+
+import java.util.Optional;
+
+/**
+ * {@link ContentIndex} is the bookkeeping behind a {@link DeduplicatingFileStore}: it maps content digests to the
+ * stored blobs holding that content and file IDs to the digests of their content.
+ * <p>
+ * Each blob carries a reference count, which is the number of file IDs sharing it. A blob whose count drops to zero is
+ * unregistered and handed back to the caller for deletion.
+ * <p>
+ * An index must be shared by every {@link DeduplicatingFileStore} in front of the same decorated store, for example
+ * by keeping it in the metadata database, so that a file uploaded through one instance resolves through all others.
+ * Each method must therefore update the mapping and the reference count atomically, e.g. in a single transaction.
+ * Two uploads of the same content may race to {@link #addBlob(String, String, String) register} a blob, in which case
+ * the blob registered first wins.
+ */
+public interface ContentIndex {
+
+    /**
+     * Maps a file ID to an already stored blob holding content with a specified digest and increments the reference
+     * count of that blob.
+     *
+     * @param fileId  The new file ID
+     * @param digest  The digest of the file content
+     *
+     * @return the ID of the blob the file ID now refers to, or an empty value if the content is not stored, in which
+     * case nothing is recorded
+     *
+     * @throws NullPointerException if any argument is {@code null}
+     * @throws IllegalArgumentException if {@code fileId} is already mapped
+     * @throws IllegalStateException if the index cannot be updated
+     */
+    @NotNull
+    Optional<String> addReference(@NotNull String fileId, @NotNull String digest);
+
+    /**
+     * Registers a newly stored blob holding content with a specified digest and maps a file ID to it.
+     * <p>
+     * If a blob has been registered for the digest concurrently, that blob is kept, {@code blobId} is ignored, and the
+     * file ID is {@link #addReference(String, String) added} to the registered blob instead.
+     *
+     * @param fileId  The new file ID
+     * @param digest  The digest of the file content
+     * @param blobId  The ID, in the decorated file store, of the newly stored blob
+     *
+     * @return the ID of the blob the file ID now refers to
+     *
+     * @throws NullPointerException if any argument is {@code null}
+     * @throws IllegalArgumentException if {@code fileId} is already mapped
+     * @throws IllegalStateException if the index cannot be updated
+     */
+    @NotNull
+    String addBlob(@NotNull String fileId, @NotNull String digest, @NotNull String blobId);
+
+    /**
+     * Unmaps a file ID and decrements the reference count of the blob it refers to.
+     *
+     * @param fileId  The file ID
+     *
+     * @return the ID of the blob if no file ID refers to it anymore, in which case it has been unregistered and should
+     * be deleted from the decorated store, or an empty value if the blob is still referenced or the file ID is unknown
+     *
+     * @throws NullPointerException if {@code fileId} is {@code null}
+     * @throws IllegalStateException if the index cannot be updated
+     */
+    @NotNull
+    Optional<String> removeReference(@NotNull String fileId);
+
+    /**
+     * Looks up the stored blob holding the content of a file.
+     *
+     * @param fileId  The file ID
+     *
+     * @return the ID of the blob in the decorated file store or an empty value if the file ID is unknown
+     *
+     * @throws NullPointerException if {@code fileId} is {@code null}
+     * @throws IllegalStateException if the index cannot be read
+     */
+    @NotNull
+    Optional<String> getBlobId(@NotNull String fileId);
+
+    /**
+     * Returns the number of file IDs sharing the blob that holds content with a specified digest.
+     *
+     * @param digest  The content digest
+     *
+     * @return a positive count or {@code 0} if the content is not stored
+     *
+     * @throws NullPointerException if {@code digest} is {@code null}
+     * @throws IllegalStateException if the index cannot be read
+     */
+    long getReferenceCount(@NotNull String digest);
+}
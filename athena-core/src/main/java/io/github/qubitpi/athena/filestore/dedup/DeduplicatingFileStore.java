@@ -0,0 +1,208 @@
+/*
+ * Copyright 2024 Jiaqi Liu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.qubitpi.athena.filestore.dedup;
+
+import static io.github.qubitpi.athena.config.ErrorMessageFormat.FILE_STORE_IO_ERROR;
+
+import io.github.qubitpi.athena.file.File;
+import io.github.qubitpi.athena.file.identifier.FileIdGenerator;
+import io.github.qubitpi.athena.filestore.FileStore;
+import io.github.qubitpi.athena.filestore.FileVersion;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import jakarta.inject.Singleton;
+import jakarta.validation.constraints.NotNull;
+import net.jcip.annotations.Immutable;
+import net.jcip.annotations.ThreadSafe;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.OptionalLong;
+
+/**
+ * A content-addressed {@link FileStore} decorator that stores each distinct file content only once.
+ * <p>
+ * An upload is streamed straight to the decorated store as a provisional blob and hashed with SHA-256 on the way, so
+ * that it is neither spooled to local disk nor read twice. Once the digest is known, the blob is registered in the
+ * {@link ContentIndex}; if the index already knows the digest, the new file ID is mapped to the existing blob instead
+ * and the provisional blob is deleted. Either way the caller receives a fresh file ID, so file IDs keep identifying
+ * uploads while duplicate content is kept only once. A duplicate still costs one transfer to the decorated store,
+ * which is the price of not buffering uploads before their digest is known.
+ * <p>
+ * {@link #delete(String) Deleting} a file releases its reference; a blob is deleted from the decorated store once no
+ * file ID refers to it anymore. Since the index keeps the reference counts, it must be shared by all instances in front
+ * of the same decorated store.
+ * <p>
+ * File IDs unknown to the index are passed to the decorated store unchanged, so files uploaded before deduplication
+ * was enabled stay downloadable.
+ */
+@Singleton
+@Immutable
+@ThreadSafe
+public class DeduplicatingFileStore implements FileStore {
+
+    /**
+     * The name of the {@link FileStore} binding that this store decorates.
+     */
+    public static final String DELEGATE = "deduplicatingFileStoreDelegate";
+
+    private static final Logger LOG = LoggerFactory.getLogger(DeduplicatingFileStore.class);
+
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+    private static final String DIGEST_PREFIX = "sha256-";
+
+    private final FileStore delegate;
+    private final FileIdGenerator fileIdGenerator;
+    private final ContentIndex contentIndex;
+
+    /**
+     * DI constructor.
+     *
+     * @param delegate  The store holding the distinct blobs
+     * @param fileIdGenerator  An object that provides file unique identifiers
+     * @param contentIndex  The mapping between file IDs, content digests, and blobs, shared by all instances
+     *
+     * @throws NullPointerException if any argument is {@code null}
+     */
+    @Inject
+    public DeduplicatingFileStore(
+            final @NotNull @Named(DELEGATE) FileStore delegate,
+            final @NotNull FileIdGenerator fileIdGenerator,
+            final @NotNull ContentIndex contentIndex
+    ) {
+        this.delegate = Objects.requireNonNull(delegate);
+        this.fileIdGenerator = Objects.requireNonNull(fileIdGenerator);
+        this.contentIndex = Objects.requireNonNull(contentIndex);
+    }
+
+    @Override
+    public String upload(final File file) {
+        Objects.requireNonNull(file);
+        final String fileId = fileIdGenerator.apply(file);
+
+        final MessageDigest messageDigest = newMessageDigest();
+        final String uploadedBlobId;
+        try (InputStream content = new DigestInputStream(file.getFileContent(), messageDigest)) {
+            uploadedBlobId = delegate.upload(new File(file.getMetaData(), content));
+        } catch (final IOException exception) {
+            LOG.error(FILE_STORE_IO_ERROR.logFormat(fileId, exception.getMessage()), exception);
+            throw new IllegalStateException(FILE_STORE_IO_ERROR.format(), exception);
+        }
+        final String digest = DIGEST_PREFIX + HexFormat.of().formatHex(messageDigest.digest());
+
+        final String indexedBlobId;
+        try {
+            indexedBlobId = contentIndex.addBlob(fileId, digest, uploadedBlobId);
+        } catch (final IllegalArgumentException | IllegalStateException exception) {
+            delegate.delete(uploadedBlobId);
+            throw exception;
+        }
+
+        if (!indexedBlobId.equals(uploadedBlobId)) {
+            LOG.debug("Deleting blob '{}', which duplicates blob '{}'", uploadedBlobId, indexedBlobId);
+            delegate.delete(uploadedBlobId);
+        }
+
+        return fileId;
+    }
+
+    @Override
+    public InputStream download(final String fileId) {
+        return delegate.download(getBlobId(fileId));
+    }
+
+    @Override
+    public InputStream download(final String fileId, final long offset, final long length) {
+        return delegate.download(getBlobId(fileId), offset, length);
+    }
+
+    @Override
+    public OptionalLong getSize(final String fileId) {
+        return delegate.getSize(getBlobId(fileId));
+    }
+
+    @Override
+    public Optional<String> getContentEncoding(final String fileId) {
+        return delegate.getContentEncoding(getBlobId(fileId));
+    }
+
+    @Override
+    public InputStream downloadEncoded(final String fileId) {
+        return delegate.downloadEncoded(getBlobId(fileId));
+    }
+
+    @Override
+    public Optional<FileVersion> getVersion(final String fileId) {
+        return delegate.getVersion(getBlobId(fileId));
+    }
+
+    /**
+     * Releases the reference of a file to its blob and deletes the blob from the decorated store if it was the last
+     * reference.
+     *
+     * @param fileId  The file ID
+     *
+     * @return {@code true} if the file was known and has been removed
+     */
+    @Override
+    public boolean delete(final String fileId) {
+        if (contentIndex.getBlobId(Objects.requireNonNull(fileId)).isEmpty()) {
+            return delegate.delete(fileId);
+        }
+
+        contentIndex.removeReference(fileId).ifPresent(delegate::delete);
+        return true;
+    }
+
+    /**
+     * Returns the ID of the blob holding the content of a file.
+     *
+     * @param fileId  The file ID
+     *
+     * @return the indexed blob ID, or the file ID itself if the file was stored without deduplication
+     */
+    @NotNull
+    private String getBlobId(final @NotNull String fileId) {
+        return contentIndex.getBlobId(Objects.requireNonNull(fileId)).orElse(fileId);
+    }
+
+    /**
+     * Creates a new SHA-256 message digest.
+     *
+     * @return a new digest
+     *
+     * @throws IllegalStateException if the JVM does not support SHA-256, which every Java platform is required to
+     */
+    @NotNull
+    private static MessageDigest newMessageDigest() {
+        try {
+            return MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (final NoSuchAlgorithmException exception) {
+            LOG.error(exception.getMessage(), exception);
+            throw new IllegalStateException(exception.getMessage(), exception);
+        }
+    }
+}
@@ -15,6 +15,7 @@
  */
 package io.github.qubitpi.athena.metastore;
 
+import io.github.qubitpi.athena.config.ErrorMessageFormat;
 import io.github.qubitpi.athena.file.File;
 import io.github.qubitpi.athena.metadata.MetaData;
 
@@ -24,7 +25,14 @@ import graphql.ExecutionResult;
 import jakarta.validation.constraints.NotNull;
 import net.jcip.annotations.NotThreadSafe;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * {@link MetaStore} is a GraphQL abstraction layer between Athena application and a custom file metadata database; it
@@ -45,6 +53,58 @@ public interface MetaStore {
     @NotNull
     ExecutionResult executeNative(@NotNull String query);
 
+    /**
+     * Asynchronously retrieves a file metadata using a native GraphQL query.
+     * <p>
+     * The default implementation runs {@link #executeNative(String)} in the calling thread. Implementations that can
+     * execute queries without blocking the caller, e.g. by running data fetchers on an executor of their own, should
+     * override this method.
+     *
+     * @param query  The query for fetching file metadata
+     *
+     * @return a future of the query result, completed exceptionally if the query cannot be executed
+     *
+     * @throws NullPointerException if {@code query} is {@code null}
+     */
+    @NotNull
+    default CompletableFuture<ExecutionResult> executeAsync(@NotNull String query) {
+        Objects.requireNonNull(query);
+        return CompletableFuture.supplyAsync(() -> executeNative(query), Runnable::run);
+    }
+
+    /**
+     * Asynchronously executes a native GraphQL query whose request-specific values are passed as variables.
+     * <p>
+     * The default implementation {@link #executeAsync(String) executes} queries that come without variables and
+     * without an operation name, and rejects the others. Implementations that can bind variables should override this
+     * method.
+     *
+     * @param query  The query for fetching file metadata
+     * @param variables  The values of the variables declared by {@code query}, keyed by variable name
+     * @param operationName  The name of the operation to execute in {@code query}, can be {@code null}
+     *
+     * @return a future of the query result, completed exceptionally if the query cannot be executed
+     *
+     * @throws NullPointerException if {@code query} or {@code variables} is {@code null}
+     */
+    @NotNull
+    default CompletableFuture<ExecutionResult> executeAsync(
+            @NotNull String query,
+            @NotNull Map<String, Object> variables,
+            String operationName
+    ) {
+        Objects.requireNonNull(query);
+        if (!Objects.requireNonNull(variables).isEmpty() || operationName != null) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException(
+                    ErrorMessageFormat.INVALID_GRAPHQL_REQUEST.format(
+                            "variables and operation names are not supported by the metadata store",
+                            query
+                    )
+            ));
+        }
+        return executeAsync(query);
+    }
+
     /**
      * Retrieves a file metadata identified by a specified file ID.
      *
@@ -59,6 +119,107 @@ public interface MetaStore {
     @NotNull
     ExecutionResult getMetaData(@NotNull String fileId, @NotNull List<String> metadataFields);
 
+    /**
+     * Asynchronously retrieves a file metadata identified by a specified file ID.
+     * <p>
+     * The default implementation runs {@link #getMetaData(String, List)} in the calling thread.
+     *
+     * @param fileId  The provided file ID
+     * @param metadataFields  The dynamic set up fields that are returned to the service client
+     *
+     * @return a future of a metadata object containing all requested metadata fields, completed exceptionally with a
+     * {@link NullPointerException} if {@code fileId} or {@code metadataFields} is {@code null}, or with an
+     * {@link IllegalArgumentException} if {@code metadataFields} is an empty list
+     */
+    @NotNull
+    default CompletableFuture<ExecutionResult> getMetaDataAsync(
+            @NotNull String fileId,
+            @NotNull List<String> metadataFields
+    ) {
+        return CompletableFuture.supplyAsync(() -> getMetaData(fileId, metadataFields), Runnable::run);
+    }
+
+    /**
+     * Retrieves the metadata of a file as a typed object.
+     * <p>
+     * This is the lookup meant for Athena's own use, such as naming a downloaded file, while
+     * {@link #executeNative(String)} and {@link #getMetaData(String, List)} serve GraphQL clients. The default
+     * implementation runs a {@link #getMetaData(String, List) GraphQL lookup} of all metadata fields; implementations
+     * that can read a file's metadata without building and executing a GraphQL document should override this method.
+     *
+     * @param fileId  The provided file ID
+     *
+     * @return the metadata of the file or an empty {@link Optional} if the lookup yields no metadata for it
+     *
+     * @throws NullPointerException if {@code fileId} is {@code null}
+     */
+    @NotNull
+    default Optional<MetaData> findMetaData(@NotNull String fileId) {
+        final Map<String, Object> data = getMetaData(
+                Objects.requireNonNull(fileId),
+                Arrays.asList(MetaData.FILE_NAME, MetaData.FILE_TYPE)
+        ).getData();
+
+        @SuppressWarnings("unchecked")
+        final Map<String, Object> metaData = data == null ? null : (Map<String, Object>) data.get("metaData");
+
+        return metaData == null ? Optional.empty() : Optional.of(MetaData.of(metaData));
+    }
+
+    /**
+     * Asynchronously retrieves the metadata of a file as a typed object.
+     * <p>
+     * The default implementation runs {@link #findMetaData(String)} in the calling thread. Implementations whose
+     * lookups complete on their own, e.g. batched ones, should override this method so that callers can compose the
+     * lookup instead of blocking on it.
+     *
+     * @param fileId  The provided file ID
+     *
+     * @return a future of the metadata of the file or of an empty {@link Optional} if the lookup yields no metadata
+     * for it, completed exceptionally with a {@link NullPointerException} if {@code fileId} is {@code null}
+     */
+    @NotNull
+    default CompletableFuture<Optional<MetaData>> findMetaDataAsync(@NotNull String fileId) {
+        return CompletableFuture.supplyAsync(() -> findMetaData(fileId), Runnable::run);
+    }
+
+    /**
+     * Retrieves the metadata of many files as typed objects.
+     * <p>
+     * The default implementation {@link #findMetaData(String) looks up} one file at a time. Implementations that can
+     * read the metadata of several files in a single round trip should override this method.
+     *
+     * @param fileIds  The provided file IDs
+     *
+     * @return the metadata of the requested files that have metadata, keyed by file ID in the order of
+     * {@code fileIds}
+     *
+     * @throws NullPointerException if {@code fileIds} is {@code null}
+     */
+    @NotNull
+    default Map<String, MetaData> findAllMetaData(@NotNull Collection<String> fileIds) {
+        final Map<String, MetaData> metaDataByFileId = new LinkedHashMap<>();
+        for (final String fileId : Objects.requireNonNull(fileIds)) {
+            findMetaData(fileId).ifPresent(metaData -> metaDataByFileId.put(fileId, metaData));
+        }
+        return metaDataByFileId;
+    }
+
+    /**
+     * Asynchronously retrieves the metadata of many files as typed objects.
+     * <p>
+     * The default implementation runs {@link #findAllMetaData(Collection)} in the calling thread.
+     *
+     * @param fileIds  The provided file IDs
+     *
+     * @return a future of the metadata of the requested files that have metadata, keyed by file ID in the order of
+     * {@code fileIds}, completed exceptionally with a {@link NullPointerException} if {@code fileIds} is {@code null}
+     */
+    @NotNull
+    default CompletableFuture<Map<String, MetaData>> findAllMetaDataAsync(@NotNull Collection<String> fileIds) {
+        return CompletableFuture.supplyAsync(() -> findAllMetaData(fileIds), Runnable::run);
+    }
+
     /**
      * Persists a file metadata into database.
      * <p>
@@ -73,4 +234,51 @@ public interface MetaStore {
      * @throws NullPointerException if {@code fileId} or {@code metaData} is {@code null}
      */
     void saveMetaData(@NotNull String fileId, @NotNull MetaData metaData);
+
+    /**
+     * Persists the metadata of many files into database at once.
+     * <p>
+     * The default implementation {@link #saveMetaData(String, MetaData) saves} the metadata one file at a time.
+     * Implementations that can write several records in a single round trip should override this method.
+     *
+     * @param metaDataByFileId  The metadata objects to be saved, keyed by the IDs of the files that have already been
+     * uploaded to object storage
+     *
+     * @throws NullPointerException if {@code metaDataByFileId} is {@code null}
+     */
+    default void saveMetaData(@NotNull Map<String, MetaData> metaDataByFileId) {
+        Objects.requireNonNull(metaDataByFileId).forEach(this::saveMetaData);
+    }
+
+    /**
+     * Asynchronously persists a file metadata into database.
+     * <p>
+     * The default implementation runs {@link #saveMetaData(String, MetaData)} in the calling thread.
+     *
+     * @param fileId  The ID of the file that has already been uploaded to object storage
+     * @param metaData  The metadata object that is going to be saved into database
+     *
+     * @return a future completed once the metadata is saved, or exceptionally with a {@link NullPointerException} if
+     * {@code fileId} or {@code metaData} is {@code null}
+     */
+    @NotNull
+    default CompletableFuture<Void> saveMetaDataAsync(@NotNull String fileId, @NotNull MetaData metaData) {
+        return CompletableFuture.runAsync(() -> saveMetaData(fileId, metaData), Runnable::run);
+    }
+
+    /**
+     * Asynchronously persists the metadata of many files into database at once.
+     * <p>
+     * The default implementation runs {@link #saveMetaData(Map)} in the calling thread.
+     *
+     * @param metaDataByFileId  The metadata objects to be saved, keyed by the IDs of the files that have already been
+     * uploaded to object storage
+     *
+     * @return a future completed once all metadata is saved, or exceptionally with a {@link NullPointerException} if
+     * {@code metaDataByFileId} is {@code null}
+     */
+    @NotNull
+    default CompletableFuture<Void> saveMetaDataAsync(@NotNull Map<String, MetaData> metaDataByFileId) {
+        return CompletableFuture.runAsync(() -> saveMetaData(metaDataByFileId), Runnable::run);
+    }
 }
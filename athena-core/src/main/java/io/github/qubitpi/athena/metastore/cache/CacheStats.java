@@ -0,0 +1,104 @@
+/*
+ * Copyright 2024 Jiaqi Liu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.qubitpi.athena.metastore.cache;
+
+import net.jcip.annotations.Immutable;
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * A point-in-time snapshot of the statistics of a {@link CachingMetaStore}.
+ */
+@Immutable
+@ThreadSafe
+public final class CacheStats {
+
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+    private final long size;
+
+    /**
+     * Constructor.
+     *
+     * @param hitCount  The number of lookups answered from the cache
+     * @param missCount  The number of lookups passed on to the decorated store
+     * @param evictionCount  The number of entries dropped because the cache was full or they expired
+     * @param size  The number of entries in the cache
+     */
+    CacheStats(final long hitCount, final long missCount, final long evictionCount, final long size) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+        this.size = size;
+    }
+
+    /**
+     * Returns the number of lookups answered from the cache.
+     *
+     * @return a non-negative count
+     */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Returns the number of lookups passed on to the decorated store.
+     *
+     * @return a non-negative count
+     */
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Returns the number of entries dropped because the cache was full or they expired.
+     *
+     * @return a non-negative count
+     */
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Returns the number of entries in the cache.
+     *
+     * @return a non-negative count
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the ratio of lookups answered from the cache.
+     *
+     * @return a value between 0 and 1, or 1 if there was no lookup yet
+     */
+    public double getHitRate() {
+        final long lookupCount = hitCount + missCount;
+        return lookupCount == 0 ? 1.0 : (double) hitCount / lookupCount;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "CacheStats{hitCount=%d, missCount=%d, evictionCount=%d, size=%d}",
+                hitCount,
+                missCount,
+                evictionCount,
+                size
+        );
+    }
+}
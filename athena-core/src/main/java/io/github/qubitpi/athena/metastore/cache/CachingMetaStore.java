@@ -0,0 +1,648 @@
+/*
+ * Copyright 2024 Jiaqi Liu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.qubitpi.athena.metastore.cache;
+
+import static io.github.qubitpi.athena.config.ErrorMessageFormat.EMPTY_LIST;
+
+import io.github.qubitpi.athena.config.SystemConfig;
+import io.github.qubitpi.athena.config.SystemConfigFactory;
+import io.github.qubitpi.athena.metadata.MetaData;
+import io.github.qubitpi.athena.metastore.MetaStore;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import graphql.ExecutionResult;
+import graphql.ExecutionResultImpl;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import jakarta.inject.Singleton;
+import jakarta.validation.constraints.NotNull;
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.Immutable;
+import net.jcip.annotations.ThreadSafe;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * A read-through {@link MetaStore} decorator that keeps the metadata of recently requested files in memory.
+ * <p>
+ * Entries are keyed by file ID and hold the metadata fields fetched so far for that file. A
+ * {@link #getMetaData(String, List) lookup} whose fields are all cached is answered without touching the decorated
+ * store; any other lookup is passed on, and the fields it returns are added to the entry. Failed lookups and lookups of
+ * unknown files are not cached. {@link #findMetaData(String) Typed lookups} share the same entries, and
+ * {@link #findAllMetaData(Collection) bulk lookups} only pass on the files that are not cached.
+ * <p>
+ * The cache is bounded by the number of entries and evicts the least recently used ones first. Each entry also expires
+ * a fixed time after it was created, which bounds how long a change made behind the back of this cache, e.g. through
+ * {@link #executeNative(String)} or by another Athena instance, can go unnoticed. Saving the metadata of a file through
+ * this cache replaces its entry with the saved fields.
+ * <p>
+ * Hit, miss, and eviction counts are available through {@link #getStats()}.
+ */
+@Singleton
+@ThreadSafe
+public class CachingMetaStore implements MetaStore {
+
+    /**
+     * The name of the {@link MetaStore} binding that this cache decorates.
+     */
+    public static final String DELEGATE = "cachingMetaStoreDelegate";
+
+    private static final Logger LOG = LoggerFactory.getLogger(CachingMetaStore.class);
+
+    private static final SystemConfig SYSTEM_CONFIG = SystemConfigFactory.getInstance();
+
+    private static final String CACHE_MAX_ENTRIES_KEY = "meta_store_cache_max_entries";
+    private static final String CACHE_TTL_SECONDS_KEY = "meta_store_cache_ttl_seconds";
+    private static final long CACHE_TTL_SECONDS_DEFAULT = 300;
+
+    private static final String DATA = "data";
+    private static final String META_DATA = "metaData";
+    private static final List<String> ALL_FIELDS = Arrays.asList(MetaData.FILE_NAME, MetaData.FILE_TYPE);
+
+    private final MetaStore delegate;
+    private final int maxEntries;
+    private final long timeToLiveNanos;
+    private final LongSupplier nanoClock;
+
+    /**
+     * Cache entries by file ID, in least-recently-used-first order.
+     */
+    @GuardedBy("this")
+    private final LinkedHashMap<String, Entry> entryByFileId = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+
+    /**
+     * DI constructor.
+     * <p>
+     * The max number of entries and their time to live are read from the {@code meta_store_cache_max_entries} and
+     * {@code meta_store_cache_ttl_seconds} config properties.
+     *
+     * @param delegate  The store whose lookups are cached
+     *
+     * @throws NullPointerException if {@code delegate} is {@code null}
+     * @throws IllegalArgumentException if the configured cache size is not positive or its time to live is negative
+     */
+    @Inject
+    public CachingMetaStore(final @NotNull @Named(DELEGATE) MetaStore delegate) {
+        this(
+                delegate,
+                SYSTEM_CONFIG.getIntProperty(SYSTEM_CONFIG.getPackageVariableName(CACHE_MAX_ENTRIES_KEY)).orElse(0),
+                Duration.ofSeconds(
+                        SYSTEM_CONFIG.getLongProperty(SYSTEM_CONFIG.getPackageVariableName(CACHE_TTL_SECONDS_KEY))
+                                .orElse(CACHE_TTL_SECONDS_DEFAULT)
+                )
+        );
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param delegate  The store whose lookups are cached
+     * @param maxEntries  The max number of files whose metadata is cached
+     * @param timeToLive  How long an entry is kept after it was created
+     *
+     * @throws NullPointerException if {@code delegate} or {@code timeToLive} is {@code null}
+     * @throws IllegalArgumentException if {@code maxEntries} is not positive or {@code timeToLive} is negative
+     */
+    public CachingMetaStore(
+            final @NotNull MetaStore delegate,
+            final int maxEntries,
+            final @NotNull Duration timeToLive
+    ) {
+        this(delegate, maxEntries, timeToLive, System::nanoTime);
+    }
+
+    /**
+     * Constructor with a custom clock.
+     *
+     * @param delegate  The store whose lookups are cached
+     * @param maxEntries  The max number of files whose metadata is cached
+     * @param timeToLive  How long an entry is kept after it was created
+     * @param nanoClock  The source of the current time in nanoseconds, such as {@link System#nanoTime()}
+     *
+     * @throws NullPointerException if {@code delegate}, {@code timeToLive}, or {@code nanoClock} is {@code null}
+     * @throws IllegalArgumentException if {@code maxEntries} is not positive or {@code timeToLive} is negative
+     */
+    CachingMetaStore(
+            final @NotNull MetaStore delegate,
+            final int maxEntries,
+            final @NotNull Duration timeToLive,
+            final @NotNull LongSupplier nanoClock
+    ) {
+        if (maxEntries <= 0 || timeToLive.isNegative()) {
+            final String message = String.format(
+                    "Invalid meta store cache size or time to live: %d, %s",
+                    maxEntries,
+                    timeToLive
+            );
+            LOG.error(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.delegate = Objects.requireNonNull(delegate);
+        this.maxEntries = maxEntries;
+        this.timeToLiveNanos = timeToLive.toNanos();
+        this.nanoClock = Objects.requireNonNull(nanoClock);
+    }
+
+    /**
+     * Returns whether a meta store cache is configured, i.e. whether the {@code meta_store_cache_max_entries} config
+     * property is set to a positive number.
+     *
+     * @return {@code true} if metadata lookups should go through a {@link CachingMetaStore}
+     */
+    public static boolean isConfigured() {
+        return SYSTEM_CONFIG.getIntProperty(SYSTEM_CONFIG.getPackageVariableName(CACHE_MAX_ENTRIES_KEY)).orElse(0) > 0;
+    }
+
+    @Override
+    public ExecutionResult executeNative(final String query) {
+        return delegate.executeNative(query);
+    }
+
+    @Override
+    public CompletableFuture<ExecutionResult> executeAsync(final String query) {
+        return delegate.executeAsync(query);
+    }
+
+    @Override
+    public CompletableFuture<ExecutionResult> executeAsync(
+            final String query,
+            final Map<String, Object> variables,
+            final String operationName
+    ) {
+        return delegate.executeAsync(query, variables, operationName);
+    }
+
+    @Override
+    public ExecutionResult getMetaData(final String fileId, final List<String> metadataFields) {
+        final ExecutionResult cached = getCachedResult(fileId, metadataFields);
+        if (cached != null) {
+            return cached;
+        }
+
+        return cacheResult(fileId, delegate.getMetaData(fileId, metadataFields));
+    }
+
+    @Override
+    public CompletableFuture<ExecutionResult> getMetaDataAsync(
+            final String fileId,
+            final List<String> metadataFields
+    ) {
+        final ExecutionResult cached = getCachedResult(fileId, metadataFields);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        return delegate.getMetaDataAsync(fileId, metadataFields).thenApply(result -> cacheResult(fileId, result));
+    }
+
+    @Override
+    public Optional<MetaData> findMetaData(final String fileId) {
+        final MetaData cached = getCachedMetaData(Objects.requireNonNull(fileId));
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+
+        return cacheMetaData(fileId, delegate.findMetaData(fileId));
+    }
+
+    @Override
+    public CompletableFuture<Optional<MetaData>> findMetaDataAsync(final String fileId) {
+        if (fileId == null) {
+            return CompletableFuture.failedFuture(new NullPointerException());
+        }
+
+        final MetaData cached = getCachedMetaData(fileId);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(Optional.of(cached));
+        }
+
+        return delegate.findMetaDataAsync(fileId).thenApply(metaData -> cacheMetaData(fileId, metaData));
+    }
+
+    @Override
+    public Map<String, MetaData> findAllMetaData(final Collection<String> fileIds) {
+        final Map<String, MetaData> cached = new HashMap<>();
+        final Set<String> uncachedFileIds = getCachedMetaData(Objects.requireNonNull(fileIds), cached);
+
+        return cacheMetaData(
+                fileIds,
+                cached,
+                uncachedFileIds.isEmpty() ? Collections.emptyMap() : delegate.findAllMetaData(uncachedFileIds)
+        );
+    }
+
+    @Override
+    public CompletableFuture<Map<String, MetaData>> findAllMetaDataAsync(final Collection<String> fileIds) {
+        if (fileIds == null) {
+            return CompletableFuture.failedFuture(new NullPointerException());
+        }
+
+        final Map<String, MetaData> cached = new HashMap<>();
+        final Set<String> uncachedFileIds = getCachedMetaData(fileIds, cached);
+        if (uncachedFileIds.isEmpty()) {
+            return CompletableFuture.completedFuture(cacheMetaData(fileIds, cached, Collections.emptyMap()));
+        }
+
+        return delegate.findAllMetaDataAsync(uncachedFileIds)
+                .thenApply(fetched -> cacheMetaData(fileIds, cached, fetched));
+    }
+
+    @Override
+    public void saveMetaData(final String fileId, final MetaData metaData) {
+        Objects.requireNonNull(fileId);
+        Objects.requireNonNull(metaData);
+
+        invalidate(fileId);
+        delegate.saveMetaData(fileId, metaData);
+        replaceFields(fileId, metaData);
+    }
+
+    @Override
+    public CompletableFuture<Void> saveMetaDataAsync(final String fileId, final MetaData metaData) {
+        if (fileId == null || metaData == null) {
+            return CompletableFuture.failedFuture(new NullPointerException());
+        }
+
+        invalidate(fileId);
+        return delegate.saveMetaDataAsync(fileId, metaData).thenRun(() -> replaceFields(fileId, metaData));
+    }
+
+    @Override
+    public void saveMetaData(final Map<String, MetaData> metaDataByFileId) {
+        Objects.requireNonNull(metaDataByFileId);
+
+        metaDataByFileId.keySet().forEach(this::invalidate);
+        delegate.saveMetaData(metaDataByFileId);
+        metaDataByFileId.forEach(this::replaceFields);
+    }
+
+    @Override
+    public CompletableFuture<Void> saveMetaDataAsync(final Map<String, MetaData> metaDataByFileId) {
+        if (metaDataByFileId == null) {
+            return CompletableFuture.failedFuture(new NullPointerException());
+        }
+
+        metaDataByFileId.keySet().forEach(this::invalidate);
+        return delegate.saveMetaDataAsync(metaDataByFileId)
+                .thenRun(() -> metaDataByFileId.forEach(this::replaceFields));
+    }
+
+    /**
+     * Returns a snapshot of the statistics of this cache.
+     *
+     * @return the hit, miss, and eviction counts so far, together with the current number of entries
+     */
+    @NotNull
+    public CacheStats getStats() {
+        final int size;
+        synchronized (this) {
+            size = entryByFileId.size();
+        }
+        return new CacheStats(hitCount.sum(), missCount.sum(), evictionCount.sum(), size);
+    }
+
+    /**
+     * Answers a typed lookup from the cache if all metadata fields of the file are cached, counting it as a hit or a
+     * miss.
+     *
+     * @param fileId  The ID of the file
+     *
+     * @return the metadata of the file or {@code null} if it has to be looked up by the decorated store
+     */
+    private MetaData getCachedMetaData(final @NotNull String fileId) {
+        final Map<String, Object> cachedFields = getCachedFields(fileId);
+        if (cachedFields != null && cachedFields.keySet().containsAll(ALL_FIELDS)) {
+            hitCount.increment();
+            return MetaData.of(cachedFields);
+        }
+
+        missCount.increment();
+        return null;
+    }
+
+    /**
+     * Caches the metadata of a file returned by the decorated store.
+     *
+     * @param fileId  The ID of the file
+     * @param metaData  The metadata of the file, if any
+     *
+     * @return {@code metaData}
+     */
+    @NotNull
+    private Optional<MetaData> cacheMetaData(final @NotNull String fileId, final @NotNull Optional<MetaData> metaData) {
+        metaData.ifPresent(found -> addFields(fileId, toFields(found)));
+        return metaData;
+    }
+
+    /**
+     * Answers the typed lookups of many files from the cache, counting each distinct file as a hit or a miss.
+     *
+     * @param fileIds  The IDs of the files
+     * @param cached  Receives the metadata of the files whose metadata fields are all cached
+     *
+     * @return the IDs of the other files, which have to be looked up by the decorated store, in the order of
+     * {@code fileIds}
+     */
+    @NotNull
+    private Set<String> getCachedMetaData(
+            final @NotNull Collection<String> fileIds,
+            final @NotNull Map<String, MetaData> cached
+    ) {
+        final Set<String> uncachedFileIds = new LinkedHashSet<>();
+        for (final String fileId : fileIds) {
+            final Map<String, Object> cachedFields = getCachedFields(fileId);
+            if (cachedFields != null && cachedFields.keySet().containsAll(ALL_FIELDS)) {
+                hitCount.increment();
+                cached.put(fileId, MetaData.of(cachedFields));
+            } else if (uncachedFileIds.add(fileId)) {
+                missCount.increment();
+            }
+        }
+        return uncachedFileIds;
+    }
+
+    /**
+     * Caches the metadata of many files returned by the decorated store and merges it with the cached metadata.
+     *
+     * @param fileIds  The IDs of the requested files
+     * @param cached  The metadata of the files answered from the cache
+     * @param fetched  The metadata of the other files, as returned by the decorated store
+     *
+     * @return the metadata of the requested files that have metadata, keyed by file ID in the order of
+     * {@code fileIds}
+     */
+    @NotNull
+    private Map<String, MetaData> cacheMetaData(
+            final @NotNull Collection<String> fileIds,
+            final @NotNull Map<String, MetaData> cached,
+            final @NotNull Map<String, MetaData> fetched
+    ) {
+        fetched.forEach((fileId, metaData) -> addFields(fileId, toFields(metaData)));
+
+        final Map<String, MetaData> metaDataByFileId = new LinkedHashMap<>();
+        for (final String fileId : fileIds) {
+            final MetaData metaData = cached.containsKey(fileId) ? cached.get(fileId) : fetched.get(fileId);
+            if (metaData != null) {
+                metaDataByFileId.put(fileId, metaData);
+            }
+        }
+        return metaDataByFileId;
+    }
+
+    /**
+     * Answers a lookup from the cache if all requested fields are cached, counting it as a hit or a miss.
+     *
+     * @param fileId  The ID of the file
+     * @param metadataFields  The requested fields
+     *
+     * @return the result of the lookup or {@code null} if it has to be passed on
+     *
+     * @throws NullPointerException if {@code fileId} or {@code metadataFields} is {@code null}
+     * @throws IllegalArgumentException if {@code metadataFields} is empty
+     */
+    private ExecutionResult getCachedResult(final @NotNull String fileId, final @NotNull List<String> metadataFields) {
+        Objects.requireNonNull(fileId);
+        Objects.requireNonNull(metadataFields);
+        if (metadataFields.isEmpty()) {
+            LOG.error(EMPTY_LIST.logFormat());
+            throw new IllegalArgumentException(EMPTY_LIST.format());
+        }
+
+        final Map<String, Object> cachedFields = getCachedFields(fileId);
+        if (cachedFields == null || !cachedFields.keySet().containsAll(metadataFields)) {
+            missCount.increment();
+            return null;
+        }
+
+        hitCount.increment();
+
+        final Map<String, Object> fields = new LinkedHashMap<>();
+        metadataFields.forEach(field -> fields.put(field, cachedFields.get(field)));
+        return ExecutionResultImpl.newExecutionResult()
+                .data(Collections.singletonMap(META_DATA, fields))
+                .build();
+    }
+
+    /**
+     * Adds the fields returned by a lookup that was passed on to the entry of the file.
+     *
+     * @param fileId  The ID of the file
+     * @param result  The result of the lookup
+     *
+     * @return {@code result}
+     */
+    @NotNull
+    private ExecutionResult cacheResult(final @NotNull String fileId, final @NotNull ExecutionResult result) {
+        final Map<String, Object> fetchedFields = getFields(result);
+        if (fetchedFields != null) {
+            addFields(fileId, fetchedFields);
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the cached metadata fields of a file, dropping its entry if it has expired.
+     *
+     * @param fileId  The ID of the file
+     *
+     * @return an immutable map of fields or {@code null} if the file has no live entry
+     */
+    private synchronized Map<String, Object> getCachedFields(final @NotNull String fileId) {
+        final Entry entry = entryByFileId.get(fileId);
+        if (entry == null) {
+            return null;
+        }
+
+        if (entry.isExpired(nanoClock.getAsLong())) {
+            entryByFileId.remove(fileId);
+            evictionCount.increment();
+            return null;
+        }
+
+        return entry.getFields();
+    }
+
+    /**
+     * Adds fetched metadata fields to the entry of a file, creating the entry if needed.
+     * <p>
+     * The fields of an existing entry are merged with the fetched ones but keep the entry's original expiry, so that no
+     * field outlives the time to live.
+     *
+     * @param fileId  The ID of the file
+     * @param fields  The fetched fields
+     */
+    private synchronized void addFields(final @NotNull String fileId, final @NotNull Map<String, Object> fields) {
+        final long now = nanoClock.getAsLong();
+        final Entry entry = entryByFileId.get(fileId);
+
+        if (entry == null || entry.isExpired(now)) {
+            put(fileId, new Entry(fields, now + timeToLiveNanos));
+            return;
+        }
+
+        final Map<String, Object> mergedFields = new LinkedHashMap<>(entry.getFields());
+        mergedFields.putAll(fields);
+        put(fileId, new Entry(mergedFields, entry.getExpiry()));
+    }
+
+    /**
+     * Replaces the entry of a file with the fields of its newly saved metadata.
+     *
+     * @param fileId  The ID of the file
+     * @param metaData  The saved metadata
+     */
+    private synchronized void replaceFields(final @NotNull String fileId, final @NotNull MetaData metaData) {
+        put(fileId, new Entry(toFields(metaData), nanoClock.getAsLong() + timeToLiveNanos));
+    }
+
+    /**
+     * Drops the entry of a file, if any.
+     *
+     * @param fileId  The ID of the file
+     */
+    private synchronized void invalidate(final @NotNull String fileId) {
+        entryByFileId.remove(fileId);
+    }
+
+    /**
+     * Puts an entry into the cache and evicts the least recently used entries that no longer fit.
+     *
+     * @param fileId  The ID of the file
+     * @param entry  The entry of the file
+     */
+    @GuardedBy("this")
+    private void put(final @NotNull String fileId, final @NotNull Entry entry) {
+        entryByFileId.put(fileId, entry);
+
+        final Iterator<String> leastRecentlyUsed = entryByFileId.keySet().iterator();
+        while (entryByFileId.size() > maxEntries && leastRecentlyUsed.hasNext()) {
+            leastRecentlyUsed.next();
+            leastRecentlyUsed.remove();
+            evictionCount.increment();
+        }
+    }
+
+    /**
+     * Returns the fields of a metadata object, as they would be returned by a GraphQL lookup.
+     *
+     * @param metaData  The metadata
+     *
+     * @return a new map of field values by field name
+     */
+    @NotNull
+    private static Map<String, Object> toFields(final @NotNull MetaData metaData) {
+        final Map<String, Object> fields = new LinkedHashMap<>();
+        fields.put(MetaData.FILE_NAME, metaData.getFileName());
+        fields.put(MetaData.FILE_TYPE, metaData.getFileType().toString());
+        return fields;
+    }
+
+    /**
+     * Extracts the metadata fields out of a successful lookup.
+     *
+     * @param result  The result of a {@link MetaStore#getMetaData(String, List) lookup}
+     *
+     * @return the fields or {@code null} if the lookup failed or found no metadata
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> getFields(final @NotNull ExecutionResult result) {
+        if (!result.getErrors().isEmpty()) {
+            return null;
+        }
+
+        final Object data = result.toSpecification().get(DATA);
+        if (!(data instanceof Map) || !(((Map<?, ?>) data).get(META_DATA) instanceof Map)) {
+            return null;
+        }
+
+        return (Map<String, Object>) ((Map<?, ?>) data).get(META_DATA);
+    }
+
+    /**
+     * The cached metadata fields of a file.
+     */
+    @Immutable
+    @ThreadSafe
+    private static final class Entry {
+
+        private final Map<String, Object> fields;
+        private final long expiry;
+
+        /**
+         * Constructor.
+         *
+         * @param fields  The metadata fields
+         * @param expiry  The time, in {@link CachingMetaStore#nanoClock} nanoseconds, at which this entry expires
+         */
+        Entry(final @NotNull Map<String, Object> fields, final long expiry) {
+            this.fields = Collections.unmodifiableMap(new LinkedHashMap<>(fields));
+            this.expiry = expiry;
+        }
+
+        /**
+         * Returns the metadata fields.
+         *
+         * @return an immutable map of field values by field name
+         */
+        @NotNull
+        Map<String, Object> getFields() {
+            return fields;
+        }
+
+        /**
+         * Returns the time at which this entry expires.
+         *
+         * @return a time in nanoseconds
+         */
+        long getExpiry() {
+            return expiry;
+        }
+
+        /**
+         * Returns whether this entry has expired.
+         *
+         * @param now  The current time in nanoseconds
+         *
+         * @return {@code true} if the entry should no longer be used
+         */
+        boolean isExpired(final long now) {
+            return now - expiry >= 0;
+        }
+    }
+}
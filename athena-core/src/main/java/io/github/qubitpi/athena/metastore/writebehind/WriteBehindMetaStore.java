@@ -0,0 +1,424 @@
+/*
+ * Copyright 2024 Jiaqi Liu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.qubitpi.athena.metastore.writebehind;
+
+import io.github.qubitpi.athena.config.SystemConfig;
+import io.github.qubitpi.athena.config.SystemConfigFactory;
+import io.github.qubitpi.athena.metadata.MetaData;
+import io.github.qubitpi.athena.metastore.MetaStore;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import graphql.ExecutionResult;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import jakarta.inject.Singleton;
+import jakarta.validation.constraints.NotNull;
+import net.jcip.annotations.ThreadSafe;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link MetaStore} decorator that groups concurrent metadata saves into batches.
+ * <p>
+ * Each save is put on a bounded queue, which a single background writer drains into batches of up to a max batch size;
+ * once it has taken the first save of a batch, the writer waits up to a max delay for more saves to join it. Each batch
+ * is written with one {@link MetaStore#saveMetaData(Map) batched save} of the decorated store, which for a database
+ * means one round trip and one transaction for the whole batch, i.e. a group commit.
+ * <p>
+ * A save returns only once the batch holding it has been written, so the metadata of an upload is durably stored
+ * before the upload is acknowledged, and a failed batch fails every save in it. If the queue is full, saves wait for
+ * room. Lookups are passed on to the decorated store unchanged.
+ */
+@Singleton
+@ThreadSafe
+public class WriteBehindMetaStore implements MetaStore {
+
+    /**
+     * The name of the {@link MetaStore} binding that this store decorates.
+     */
+    public static final String DELEGATE = "writeBehindMetaStoreDelegate";
+
+    private static final Logger LOG = LoggerFactory.getLogger(WriteBehindMetaStore.class);
+
+    private static final SystemConfig SYSTEM_CONFIG = SystemConfigFactory.getInstance();
+
+    private static final String WRITE_BEHIND_ENABLED_KEY = "meta_store_write_behind_enabled";
+    private static final String MAX_BATCH_SIZE_KEY = "meta_store_write_behind_max_batch_size";
+    private static final String MAX_DELAY_MILLIS_KEY = "meta_store_write_behind_max_delay_millis";
+    private static final String QUEUE_SIZE_KEY = "meta_store_write_behind_queue_size";
+    private static final int MAX_BATCH_SIZE_DEFAULT = 100;
+    private static final long MAX_DELAY_MILLIS_DEFAULT = 5;
+    private static final int QUEUE_SIZE_DEFAULT = 1000;
+
+    private final MetaStore delegate;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final BlockingQueue<PendingSave> queue;
+    private final Thread writer;
+
+    private volatile boolean closed;
+
+    /**
+     * DI constructor.
+     * <p>
+     * The max batch size, the max delay, and the queue size are read from the
+     * {@code meta_store_write_behind_max_batch_size}, {@code meta_store_write_behind_max_delay_millis}, and
+     * {@code meta_store_write_behind_queue_size} config properties.
+     *
+     * @param delegate  The store that batches are written to
+     *
+     * @throws NullPointerException if {@code delegate} is {@code null}
+     * @throws IllegalArgumentException if any configured value is out of range
+     */
+    @Inject
+    public WriteBehindMetaStore(final @NotNull @Named(DELEGATE) MetaStore delegate) {
+        this(
+                delegate,
+                SYSTEM_CONFIG.getIntProperty(SYSTEM_CONFIG.getPackageVariableName(MAX_BATCH_SIZE_KEY))
+                        .orElse(MAX_BATCH_SIZE_DEFAULT),
+                Duration.ofMillis(
+                        SYSTEM_CONFIG.getLongProperty(SYSTEM_CONFIG.getPackageVariableName(MAX_DELAY_MILLIS_KEY))
+                                .orElse(MAX_DELAY_MILLIS_DEFAULT)
+                ),
+                SYSTEM_CONFIG.getIntProperty(SYSTEM_CONFIG.getPackageVariableName(QUEUE_SIZE_KEY))
+                        .orElse(QUEUE_SIZE_DEFAULT)
+        );
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param delegate  The store that batches are written to
+     * @param maxBatchSize  The max number of saves written in one batch
+     * @param maxDelay  How long the writer waits for more saves to join a batch
+     * @param queueSize  The max number of saves waiting for the writer
+     *
+     * @throws NullPointerException if {@code delegate} or {@code maxDelay} is {@code null}
+     * @throws IllegalArgumentException if {@code maxBatchSize} or {@code queueSize} is not positive, or
+     * {@code maxDelay} is negative
+     */
+    public WriteBehindMetaStore(
+            final @NotNull MetaStore delegate,
+            final int maxBatchSize,
+            final @NotNull Duration maxDelay,
+            final int queueSize
+    ) {
+        if (maxBatchSize <= 0 || maxDelay.isNegative() || queueSize <= 0) {
+            final String message = String.format(
+                    "Invalid meta store write-behind batch size, delay, or queue size: %d, %s, %d",
+                    maxBatchSize,
+                    maxDelay,
+                    queueSize
+            );
+            LOG.error(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.delegate = Objects.requireNonNull(delegate);
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+
+        this.writer = new Thread(this::write, "metaStoreWriteBehind");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Returns whether write-behind is configured, i.e. whether the {@code meta_store_write_behind_enabled} config
+     * property is {@code true}.
+     *
+     * @return {@code true} if metadata saves should go through a {@link WriteBehindMetaStore}
+     */
+    public static boolean isConfigured() {
+        return SYSTEM_CONFIG.getBooleanProperty(SYSTEM_CONFIG.getPackageVariableName(WRITE_BEHIND_ENABLED_KEY))
+                .orElse(false);
+    }
+
+    @Override
+    public ExecutionResult executeNative(final String query) {
+        return delegate.executeNative(query);
+    }
+
+    @Override
+    public CompletableFuture<ExecutionResult> executeAsync(final String query) {
+        return delegate.executeAsync(query);
+    }
+
+    @Override
+    public CompletableFuture<ExecutionResult> executeAsync(
+            final String query,
+            final Map<String, Object> variables,
+            final String operationName
+    ) {
+        return delegate.executeAsync(query, variables, operationName);
+    }
+
+    @Override
+    public ExecutionResult getMetaData(final String fileId, final List<String> metadataFields) {
+        return delegate.getMetaData(fileId, metadataFields);
+    }
+
+    @Override
+    public CompletableFuture<ExecutionResult> getMetaDataAsync(
+            final String fileId,
+            final List<String> metadataFields
+    ) {
+        return delegate.getMetaDataAsync(fileId, metadataFields);
+    }
+
+    @Override
+    public Optional<MetaData> findMetaData(final String fileId) {
+        return delegate.findMetaData(fileId);
+    }
+
+    @Override
+    public Map<String, MetaData> findAllMetaData(final Collection<String> fileIds) {
+        return delegate.findAllMetaData(fileIds);
+    }
+
+    @Override
+    public CompletableFuture<Optional<MetaData>> findMetaDataAsync(final String fileId) {
+        return delegate.findMetaDataAsync(fileId);
+    }
+
+    @Override
+    public CompletableFuture<Map<String, MetaData>> findAllMetaDataAsync(final Collection<String> fileIds) {
+        return delegate.findAllMetaDataAsync(fileIds);
+    }
+
+    @Override
+    public void saveMetaData(final String fileId, final MetaData metaData) {
+        enqueue(new PendingSave(Objects.requireNonNull(fileId), Objects.requireNonNull(metaData))).join();
+    }
+
+    @Override
+    public CompletableFuture<Void> saveMetaDataAsync(final String fileId, final MetaData metaData) {
+        if (fileId == null || metaData == null) {
+            return CompletableFuture.failedFuture(new NullPointerException());
+        }
+
+        try {
+            return enqueue(new PendingSave(fileId, metaData));
+        } catch (final IllegalStateException exception) {
+            return CompletableFuture.failedFuture(exception);
+        }
+    }
+
+    @Override
+    public void saveMetaData(final Map<String, MetaData> metaDataByFileId) {
+        saveMetaDataAsync(Objects.requireNonNull(metaDataByFileId)).join();
+    }
+
+    @Override
+    public CompletableFuture<Void> saveMetaDataAsync(final Map<String, MetaData> metaDataByFileId) {
+        if (metaDataByFileId == null) {
+            return CompletableFuture.failedFuture(new NullPointerException());
+        }
+
+        final List<CompletableFuture<Void>> saved = new ArrayList<>(metaDataByFileId.size());
+        try {
+            for (final Map.Entry<String, MetaData> entry : metaDataByFileId.entrySet()) {
+                saved.add(enqueue(new PendingSave(entry.getKey(), entry.getValue())));
+            }
+        } catch (final IllegalStateException exception) {
+            return CompletableFuture.failedFuture(exception);
+        }
+
+        return CompletableFuture.allOf(saved.toArray(new CompletableFuture<?>[0]));
+    }
+
+    /**
+     * Stops taking saves, writes the ones already queued, and stops the background writer.
+     * <p>
+     * This is meant to be called on shutdown, once no more saves come in.
+     *
+     * @throws InterruptedException if interrupted while waiting for the queued saves to be written
+     */
+    @PreDestroy
+    public void close() throws InterruptedException {
+        closed = true;
+        writer.interrupt();
+        writer.join();
+    }
+
+    /**
+     * Puts a save on the queue, waiting for room if the queue is full.
+     *
+     * @param save  The save
+     *
+     * @return a future completed once the save has been written
+     *
+     * @throws IllegalStateException if this store is closed or the caller is interrupted while waiting for room
+     */
+    @NotNull
+    private CompletableFuture<Void> enqueue(final @NotNull PendingSave save) {
+        if (closed) {
+            final String message = "Meta store write-behind queue is closed";
+            LOG.error(message);
+            throw new IllegalStateException(message);
+        }
+
+        try {
+            queue.put(save);
+        } catch (final InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            final String message = "Interrupted while waiting for room in the meta store write-behind queue";
+            LOG.error(message);
+            throw new IllegalStateException(message, exception);
+        }
+
+        return save.getSaved();
+    }
+
+    /**
+     * Runs the background writer, which writes queued saves in batches until it is interrupted, and then writes
+     * whatever is left in the queue.
+     */
+    private void write() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                final List<PendingSave> batch = new ArrayList<>(maxBatchSize);
+                batch.add(queue.take());
+                fill(batch);
+                flush(batch);
+            }
+        } catch (final InterruptedException exception) {
+            LOG.debug("Meta store write-behind writer is stopping");
+        }
+
+        final List<PendingSave> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        for (int from = 0; from < remaining.size(); from += maxBatchSize) {
+            flush(remaining.subList(from, Math.min(from + maxBatchSize, remaining.size())));
+        }
+    }
+
+    /**
+     * Adds queued saves to a batch until it is full or the max delay has passed since it was started.
+     *
+     * @param batch  A batch holding at least one save
+     *
+     * @throws InterruptedException if interrupted while waiting for more saves
+     */
+    private void fill(final @NotNull List<PendingSave> batch) throws InterruptedException {
+        final long deadline = System.nanoTime() + maxDelayNanos;
+
+        queue.drainTo(batch, maxBatchSize - batch.size());
+        while (batch.size() < maxBatchSize) {
+            final long remainingNanos = deadline - System.nanoTime();
+            if (remainingNanos <= 0) {
+                return;
+            }
+
+            final PendingSave next = queue.poll(remainingNanos, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+            queue.drainTo(batch, maxBatchSize - batch.size());
+        }
+    }
+
+    /**
+     * Writes a batch of saves with a single batched save of the decorated store, and completes their futures.
+     * <p>
+     * If a file is saved more than once in the batch, the last save wins.
+     *
+     * @param batch  The saves
+     */
+    private void flush(final @NotNull List<PendingSave> batch) {
+        final Map<String, MetaData> metaDataByFileId = new LinkedHashMap<>();
+        batch.forEach(save -> metaDataByFileId.put(save.getFileId(), save.getMetaData()));
+
+        // run in place through a future so that any failure of the batch is handed to every save in it
+        CompletableFuture.runAsync(() -> delegate.saveMetaData(metaDataByFileId), Runnable::run)
+                .whenComplete((ignored, error) -> {
+                    if (error != null) {
+                        LOG.error("Failed to save the metadata of files {}", metaDataByFileId.keySet(), error);
+                        batch.forEach(save -> save.getSaved().completeExceptionally(error));
+                    } else {
+                        batch.forEach(save -> save.getSaved().complete(null));
+                    }
+                });
+    }
+
+    /**
+     * A metadata save waiting to be written.
+     */
+    @ThreadSafe
+    private static final class PendingSave {
+
+        private final String fileId;
+        private final MetaData metaData;
+        private final CompletableFuture<Void> saved = new CompletableFuture<>();
+
+        /**
+         * Constructor.
+         *
+         * @param fileId  The ID of the file
+         * @param metaData  The metadata of the file
+         */
+        PendingSave(final @NotNull String fileId, final @NotNull MetaData metaData) {
+            this.fileId = fileId;
+            this.metaData = metaData;
+        }
+
+        /**
+         * Returns the ID of the file.
+         *
+         * @return a file ID
+         */
+        @NotNull
+        String getFileId() {
+            return fileId;
+        }
+
+        /**
+         * Returns the metadata of the file.
+         *
+         * @return the metadata to be saved
+         */
+        @NotNull
+        MetaData getMetaData() {
+            return metaData;
+        }
+
+        /**
+         * Returns the future completed once this save has been written.
+         *
+         * @return a future of the save
+         */
+        @NotNull
+        CompletableFuture<Void> getSaved() {
+            return saved;
+        }
+    }
+}
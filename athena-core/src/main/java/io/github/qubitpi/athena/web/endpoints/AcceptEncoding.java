@@ -0,0 +1,96 @@
+/*
+ * Copyright 2024 Jiaqi Liu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.qubitpi.athena.web.endpoints;
+
+import jakarta.validation.constraints.NotNull;
+import net.jcip.annotations.Immutable;
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.Locale;
+import java.util.Objects;
+import java.util.OptionalDouble;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Content negotiation against an HTTP {@code Accept-Encoding} request header, as defined by
+ * <a href="https://www.rfc-editor.org/rfc/rfc9110#section-12.5.3">RFC 9110</a>.
+ * <p>
+ * An explicitly listed coding takes precedence over the {@code *} wildcard, and a coding whose weight is {@code 0} is
+ * not acceptable. An absent header accepts no coding, so that such clients always receive decoded content.
+ */
+@Immutable
+@ThreadSafe
+final class AcceptEncoding {
+
+    private static final Pattern CODING = Pattern.compile(
+            "^\\s*([!#$%&'*+.^_`|~0-9A-Za-z-]+)\\s*(?:;\\s*q\\s*=\\s*([0-9.]+)\\s*)?$"
+    );
+    private static final String WILDCARD = "*";
+
+    /**
+     * Constructor.
+     *
+     * @throws AssertionError when called
+     */
+    private AcceptEncoding() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Returns whether a client accepts a specified content coding.
+     *
+     * @param header  The value of the {@code Accept-Encoding} request header, can be {@code null}
+     * @param contentCoding  The content coding, such as {@code gzip}
+     *
+     * @return {@code true} if a response may be sent encoded with {@code contentCoding}
+     *
+     * @throws NullPointerException if {@code contentCoding} is {@code null}
+     */
+    static boolean accepts(final String header, final @NotNull String contentCoding) {
+        Objects.requireNonNull(contentCoding);
+        if (header == null) {
+            return false;
+        }
+
+        final OptionalDouble explicit = getWeight(header, contentCoding.toLowerCase(Locale.ROOT));
+        final OptionalDouble weight = explicit.isPresent() ? explicit : getWeight(header, WILDCARD);
+        return weight.isPresent() && weight.getAsDouble() > 0;
+    }
+
+    /**
+     * Returns the weight given to a coding by an {@code Accept-Encoding} header.
+     *
+     * @param header  The header value
+     * @param coding  A lower case coding or {@code *}
+     *
+     * @return the weight, {@code 1} if unspecified, or an empty value if the coding is not listed
+     */
+    @NotNull
+    private static OptionalDouble getWeight(final @NotNull String header, final @NotNull String coding) {
+        for (final String element : header.split(",")) {
+            final Matcher matcher = CODING.matcher(element);
+            if (matcher.matches() && matcher.group(1).toLowerCase(Locale.ROOT).equals(coding)) {
+                try {
+                    return OptionalDouble.of(matcher.group(2) == null ? 1 : Double.parseDouble(matcher.group(2)));
+                } catch (final NumberFormatException exception) {
+                    return OptionalDouble.empty();
+                }
+            }
+        }
+        return OptionalDouble.empty();
+    }
+}
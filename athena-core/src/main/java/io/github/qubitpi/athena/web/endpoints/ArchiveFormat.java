@@ -0,0 +1,127 @@
+/*
+ * Copyright 2024 Jiaqi Liu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.qubitpi.athena.web.endpoints;
+
+import jakarta.validation.constraints.NotNull;
+import net.jcip.annotations.Immutable;
+import net.jcip.annotations.ThreadSafe;
+
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * The archive formats in which many files can be downloaded in a single response.
+ */
+@Immutable
+@ThreadSafe
+enum ArchiveFormat {
+
+    /**
+     * A ZIP archive whose entries are deflated.
+     */
+    ZIP("zip", "application/zip", false) {
+        @Override
+        ArchiveWriter newWriter(final @NotNull OutputStream output) {
+            return new ZipArchiveWriter(output);
+        }
+    },
+
+    /**
+     * An uncompressed POSIX tar archive.
+     */
+    TAR("tar", "application/x-tar", true) {
+        @Override
+        ArchiveWriter newWriter(final @NotNull OutputStream output) {
+            return new TarArchiveWriter(output);
+        }
+    };
+
+    private final String name;
+    private final String mediaType;
+    private final boolean entrySizeRequired;
+
+    /**
+     * Constructor.
+     *
+     * @param name  The name of the format, which is also the extension of its archive files
+     * @param mediaType  The media type of the archive files
+     * @param entrySizeRequired  Whether the size of an entry is written ahead of its content
+     */
+    ArchiveFormat(final @NotNull String name, final @NotNull String mediaType, final boolean entrySizeRequired) {
+        this.name = Objects.requireNonNull(name);
+        this.mediaType = Objects.requireNonNull(mediaType);
+        this.entrySizeRequired = entrySizeRequired;
+    }
+
+    /**
+     * Returns the format with a specified name, such as {@code zip}, ignoring case.
+     *
+     * @param name  The name of the format
+     *
+     * @return the format or an empty value if no format has that name
+     *
+     * @throws NullPointerException if {@code name} is {@code null}
+     */
+    @NotNull
+    static Optional<ArchiveFormat> of(final @NotNull String name) {
+        Objects.requireNonNull(name);
+        return Arrays.stream(values()).filter(format -> format.name.equalsIgnoreCase(name.trim())).findFirst();
+    }
+
+    /**
+     * Returns the name of this format, which is also the extension of its archive files.
+     *
+     * @return a file extension such as {@code zip}
+     */
+    @NotNull
+    String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the media type of the archive files of this format.
+     *
+     * @return a media type such as {@code application/zip}
+     */
+    @NotNull
+    String getMediaType() {
+        return mediaType;
+    }
+
+    /**
+     * Returns whether this format writes the size of an entry ahead of its content.
+     * <p>
+     * Sizes should be looked up before writing entries of such formats; an entry of unknown size has to be spooled
+     * before it can be written.
+     *
+     * @return {@code true} if the entry sizes are needed upfront
+     */
+    boolean isEntrySizeRequired() {
+        return entrySizeRequired;
+    }
+
+    /**
+     * Creates a writer of an archive of this format.
+     *
+     * @param output  The stream the archive is written to
+     *
+     * @return a new archive writer
+     */
+    @NotNull
+    abstract ArchiveWriter newWriter(@NotNull OutputStream output);
+}
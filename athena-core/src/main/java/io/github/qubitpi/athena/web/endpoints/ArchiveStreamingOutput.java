@@ -0,0 +1,311 @@
+/*
+ * Copyright 2024 Jiaqi Liu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.qubitpi.athena.web.endpoints;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.ws.rs.core.StreamingOutput;
+import net.jcip.annotations.Immutable;
+import net.jcip.annotations.NotThreadSafe;
+import net.jcip.annotations.ThreadSafe;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+
+/**
+ * A response entity that streams many files as a single archive.
+ * <p>
+ * Files are fetched ahead of the one being written: while an entry is written to the client, up to a fixed number of
+ * the following files are already being opened on an executor, so that the latency of the storage is paid once per
+ * window rather than once per file. Only the opened streams are held ahead, never their content, so the memory used
+ * does not depend on the size of the files or of the archive. If the executor does not accept a fetch, the file is
+ * fetched on the writing thread when its turn comes.
+ * <p>
+ * The entry of each file is named after its original file name. Directory parts are dropped from the names, and a
+ * name that is already taken by an earlier entry is placed under a directory named after the file ID.
+ */
+@NotThreadSafe
+final class ArchiveStreamingOutput implements StreamingOutput, Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ArchiveStreamingOutput.class);
+
+    private final List<String> fileIds;
+    private final ArchiveFormat format;
+    private final Function<String, Entry> fetcher;
+    private final Executor executor;
+    private final int prefetchSize;
+
+    /**
+     * The fetches started ahead, in the order of {@link #fileIds}.
+     */
+    private final Deque<CompletableFuture<Entry>> prefetched = new ArrayDeque<>();
+
+    /**
+     * The index of the next file whose fetch is not started yet.
+     */
+    private int nextFetch;
+
+    /**
+     * Constructor.
+     *
+     * @param fileIds  The IDs of the files in the archive, in the order of their entries
+     * @param format  The archive format
+     * @param fetcher  A blocking function that opens the file of an ID as an archive entry
+     * @param executor  The executor on which files are fetched ahead
+     * @param prefetchSize  The max number of files fetched ahead of the one being written
+     *
+     * @throws NullPointerException if any argument is {@code null}
+     * @throws IllegalArgumentException if {@code prefetchSize} is negative
+     */
+    ArchiveStreamingOutput(
+            final @NotNull List<String> fileIds,
+            final @NotNull ArchiveFormat format,
+            final @NotNull Function<String, Entry> fetcher,
+            final @NotNull Executor executor,
+            final int prefetchSize
+    ) {
+        if (prefetchSize < 0) {
+            throw new IllegalArgumentException("Prefetch size cannot be negative: " + prefetchSize);
+        }
+
+        this.fileIds = new ArrayList<>(Objects.requireNonNull(fileIds));
+        this.format = Objects.requireNonNull(format);
+        this.fetcher = Objects.requireNonNull(fetcher);
+        this.executor = Objects.requireNonNull(executor);
+        this.prefetchSize = prefetchSize;
+    }
+
+    /**
+     * Starts fetching the first files of the archive.
+     * <p>
+     * Callers wait for the returned future before sending the response, so that a first file that cannot be fetched
+     * fails the request before any part of the archive is sent.
+     *
+     * @return a future completed once the first file is opened, or an already completed future if the archive is empty
+     *
+     * @throws RejectedExecutionException if the executor does not accept the fetch of the first file
+     */
+    @NotNull
+    CompletableFuture<?> start() {
+        if (fileIds.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        prefetched.addLast(fetchAsync(fileIds.get(nextFetch)));
+        nextFetch++;
+        prefetch();
+
+        return prefetched.peekFirst();
+    }
+
+    @Override
+    public void write(final OutputStream output) throws IOException {
+        final ArchiveWriter writer = format.newWriter(output);
+        final Set<String> entryNames = new HashSet<>();
+
+        try {
+            for (final String fileId : fileIds) {
+                final Entry entry = next();
+                prefetch();
+
+                try (InputStream content = entry.getContent()) {
+                    writer.putEntry(getEntryName(fileId, entry.getName(), entryNames), entry.getSize(), content);
+                }
+            }
+            writer.finish();
+        } finally {
+            discardPrefetched();
+        }
+    }
+
+    /**
+     * Closes the files that were fetched ahead, for an archive that is not going to be written.
+     */
+    @Override
+    public void close() {
+        discardPrefetched();
+    }
+
+    /**
+     * Starts fetching the following files until the prefetch window is full or the executor stops accepting fetches.
+     */
+    private void prefetch() {
+        try {
+            while (prefetched.size() < prefetchSize && nextFetch < fileIds.size()) {
+                prefetched.addLast(fetchAsync(fileIds.get(nextFetch)));
+                nextFetch++;
+            }
+        } catch (final RejectedExecutionException exception) {
+            LOG.debug("Executor is saturated; fetching the remaining archive entries on the writing thread");
+        }
+    }
+
+    /**
+     * Returns the next file of the archive, waiting for its fetch if it was started ahead or fetching it on the
+     * calling thread otherwise.
+     *
+     * @return the next entry
+     *
+     * @throws IOException if the file cannot be fetched
+     */
+    @NotNull
+    private Entry next() throws IOException {
+        if (prefetched.isEmpty()) {
+            final String fileId = fileIds.get(nextFetch);
+            nextFetch++;
+            return fetcher.apply(fileId);
+        }
+
+        try {
+            return prefetched.removeFirst().join();
+        } catch (final CompletionException exception) {
+            if (exception.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) exception.getCause();
+            }
+            throw new IOException(exception.getCause());
+        }
+    }
+
+    /**
+     * Starts fetching a file on the executor.
+     *
+     * @param fileId  The ID of the file
+     *
+     * @return a future completed with the opened file
+     */
+    @NotNull
+    private CompletableFuture<Entry> fetchAsync(final @NotNull String fileId) {
+        return CompletableFuture.supplyAsync(() -> fetcher.apply(fileId), executor);
+    }
+
+    /**
+     * Closes the files that were fetched ahead but will never be written, e.g. because the client went away.
+     */
+    private void discardPrefetched() {
+        while (!prefetched.isEmpty()) {
+            prefetched.removeFirst().thenAccept(entry -> {
+                try {
+                    entry.getContent().close();
+                } catch (final IOException exception) {
+                    LOG.debug("Failed to close a discarded archive entry '{}'", entry.getName(), exception);
+                }
+            });
+        }
+    }
+
+    /**
+     * Returns a unique entry name for a file.
+     *
+     * @param fileId  The ID of the file
+     * @param fileName  The original name of the file
+     * @param entryNames  The names taken by the earlier entries, to which the returned name is added
+     *
+     * @return the base name of {@code fileName}, placed under a directory named after {@code fileId} if that name is
+     * already taken
+     */
+    @NotNull
+    private static String getEntryName(
+            final @NotNull String fileId,
+            final @NotNull String fileName,
+            final @NotNull Set<String> entryNames
+    ) {
+        final String normalized = fileName.replace('\\', '/');
+        final String baseName = normalized.substring(normalized.lastIndexOf('/') + 1);
+        final String name = baseName.isEmpty() || ".".equals(baseName) || "..".equals(baseName) ? fileId : baseName;
+
+        if (entryNames.add(name)) {
+            return name;
+        }
+
+        final String qualifiedName = fileId.replace('/', '_') + "/" + name;
+        entryNames.add(qualifiedName);
+        return qualifiedName;
+    }
+
+    /**
+     * A file opened for writing into an archive.
+     */
+    @Immutable
+    @ThreadSafe
+    static final class Entry {
+
+        private final String name;
+        private final OptionalLong size;
+        private final InputStream content;
+
+        /**
+         * Constructor.
+         *
+         * @param name  The original name of the file
+         * @param size  The size of the file in bytes, if known
+         * @param content  The file content, closed once the file is written or discarded
+         *
+         * @throws NullPointerException if any argument is {@code null}
+         */
+        Entry(final @NotNull String name, final @NotNull OptionalLong size, final @NotNull InputStream content) {
+            this.name = Objects.requireNonNull(name);
+            this.size = Objects.requireNonNull(size);
+            this.content = Objects.requireNonNull(content);
+        }
+
+        /**
+         * Returns the original name of the file.
+         *
+         * @return a file name
+         */
+        @NotNull
+        String getName() {
+            return name;
+        }
+
+        /**
+         * Returns the size of the file, if known.
+         *
+         * @return the size in bytes or an empty value
+         */
+        @NotNull
+        OptionalLong getSize() {
+            return size;
+        }
+
+        /**
+         * Returns the file content.
+         *
+         * @return a stream to be closed by its reader
+         */
+        @NotNull
+        InputStream getContent() {
+            return content;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2024 Jiaqi Liu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.qubitpi.athena.web.endpoints;
+
+import jakarta.validation.constraints.NotNull;
+import net.jcip.annotations.NotThreadSafe;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.OptionalLong;
+
+/**
+ * {@link ArchiveWriter} writes files, one entry after another, into an archive on an output stream.
+ * <p>
+ * Entries are streamed straight to the output stream; an archive is never held in memory as a whole.
+ */
+@NotThreadSafe
+interface ArchiveWriter {
+
+    /**
+     * Writes a file as the next entry of the archive.
+     * <p>
+     * The content stream is read to its end but not closed.
+     *
+     * @param name  The name of the entry
+     * @param size  The size of the file in bytes, if known
+     * @param content  The file content
+     *
+     * @throws IOException if the content cannot be read or the entry cannot be written
+     */
+    void putEntry(@NotNull String name, @NotNull OptionalLong size, @NotNull InputStream content) throws IOException;
+
+    /**
+     * Writes the end of the archive, after all entries.
+     * <p>
+     * The underlying output stream is flushed but not closed.
+     *
+     * @throws IOException if the end of the archive cannot be written
+     */
+    void finish() throws IOException;
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2024 Jiaqi Liu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.qubitpi.athena.web.endpoints;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.ws.rs.container.AsyncResponse;
+import jakarta.ws.rs.core.Response;
+import net.jcip.annotations.Immutable;
+import net.jcip.annotations.ThreadSafe;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * {@link AsyncResponses} completes suspended requests whose processing runs off the request threads.
+ */
+@Immutable
+@ThreadSafe
+final class AsyncResponses {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AsyncResponses.class);
+
+    /**
+     * Constructor.
+     * <p>
+     * Suppress default constructor for noninstantiability.
+     *
+     * @throws AssertionError when called
+     */
+    private AsyncResponses() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Resumes a suspended request with either the response or the failure of its asynchronous processing.
+     * <p>
+     * A failure is unwrapped from its {@link CompletionException} so that it is mapped to an HTTP response exactly as
+     * if it had been thrown synchronously from the resource method. A {@link RejectedExecutionException}, raised by an
+     * executor that a later stage of the processing was handed to, is answered with a 503 Service Unavailable just like
+     * a rejection of the first stage.
+     *
+     * @param asyncResponse  The suspended response
+     * @param response  The response to resume with, or {@code null} if the processing failed
+     * @param error  The failure to resume with, or {@code null} if the processing succeeded
+     */
+    static void resume(
+            final @NotNull AsyncResponse asyncResponse,
+            final Response response,
+            final Throwable error
+    ) {
+        if (error == null) {
+            asyncResponse.resume(response);
+            return;
+        }
+
+        final Throwable cause = error instanceof CompletionException && error.getCause() != null
+                ? error.getCause()
+                : error;
+        if (cause instanceof RejectedExecutionException) {
+            reject(asyncResponse, (RejectedExecutionException) cause);
+        } else {
+            asyncResponse.resume(cause);
+        }
+    }
+
+    /**
+     * Resumes a suspended request like {@link #resume(AsyncResponse, Response, Throwable)}, but writes a successful
+     * response out on a dedicated executor.
+     * <p>
+     * Jersey writes the entity of a resumed response on the resuming thread, so a response that streams a file to a
+     * slow client would otherwise hold the thread that completed the processing. If the executor is saturated, the
+     * request is answered with a 503 Service Unavailable and the unsent entity is closed.
+     *
+     * @param asyncResponse  The suspended response
+     * @param response  The response to resume with, or {@code null} if the processing failed
+     * @param error  The failure to resume with, or {@code null} if the processing succeeded
+     * @param writer  The executor on which a successful response is written out
+     */
+    static void resume(
+            final @NotNull AsyncResponse asyncResponse,
+            final Response response,
+            final Throwable error,
+            final @NotNull Executor writer
+    ) {
+        if (error != null) {
+            resume(asyncResponse, null, error);
+            return;
+        }
+
+        try {
+            writer.execute(() -> asyncResponse.resume(response));
+        } catch (final RejectedExecutionException exception) {
+            closeEntity(response);
+            reject(asyncResponse, exception);
+        }
+    }
+
+    /**
+     * Answers a suspended request with a 503 Service Unavailable because the executor it was handed to is saturated.
+     *
+     * @param asyncResponse  The suspended response
+     * @param exception  The rejection raised by the executor
+     */
+    static void reject(
+            final @NotNull AsyncResponse asyncResponse,
+            final @NotNull RejectedExecutionException exception
+    ) {
+        LOG.warn("Executor is saturated; rejecting request", exception);
+        asyncResponse.resume(Response.status(Response.Status.SERVICE_UNAVAILABLE).build());
+    }
+
+    /**
+     * Closes the entity of a response that is not going to be sent, if it holds any resource.
+     *
+     * @param response  The unsent response
+     */
+    private static void closeEntity(final @NotNull Response response) {
+        if (!(response.getEntity() instanceof Closeable)) {
+            return;
+        }
+
+        try {
+            ((Closeable) response.getEntity()).close();
+        } catch (final IOException exception) {
+            LOG.warn("Unable to close the entity of an unsent response", exception);
+        }
+    }
+}
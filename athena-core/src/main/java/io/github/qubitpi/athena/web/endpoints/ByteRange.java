@@ -0,0 +1,152 @@
+/*
+ * Copyright 2024 Jiaqi Liu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.qubitpi.athena.web.endpoints;
+
+import jakarta.validation.constraints.NotNull;
+import net.jcip.annotations.Immutable;
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A single byte range of an HTTP {@code Range} request header, as defined by
+ * <a href="https://www.rfc-editor.org/rfc/rfc7233#section-2.1">RFC 7233</a>.
+ * <p>
+ * Only single ranges are supported; a header with multiple ranges or with an invalid syntax is ignored, which the RFC
+ * permits and which results in the whole file being served.
+ */
+@Immutable
+@ThreadSafe
+final class ByteRange {
+
+    private static final Pattern SINGLE_BYTE_RANGE = Pattern.compile("^\\s*bytes\\s*=\\s*(\\d*)\\s*-\\s*(\\d*)\\s*$");
+
+    /**
+     * The position of the first byte, or {@code -1} for a suffix range such as {@code bytes=-500}.
+     */
+    private final long first;
+
+    /**
+     * The position of the last byte, or {@code -1} for an open range such as {@code bytes=500-}; for a suffix range
+     * this is the number of bytes at the end of the file.
+     */
+    private final long last;
+
+    /**
+     * Constructor.
+     *
+     * @param first  The position of the first byte, or {@code -1} for a suffix range
+     * @param last  The position of the last byte, or {@code -1} for an open range
+     */
+    private ByteRange(final long first, final long last) {
+        this.first = first;
+        this.last = last;
+    }
+
+    /**
+     * Parses the value of a {@code Range} request header.
+     *
+     * @param header  The header value, can be {@code null}
+     *
+     * @return the requested range or an empty value if the header is absent or should be ignored
+     */
+    @NotNull
+    static Optional<ByteRange> parse(final String header) {
+        if (header == null) {
+            return Optional.empty();
+        }
+
+        final Matcher matcher = SINGLE_BYTE_RANGE.matcher(header);
+        if (!matcher.matches() || (matcher.group(1).isEmpty() && matcher.group(2).isEmpty())) {
+            return Optional.empty();
+        }
+
+        try {
+            final long first = matcher.group(1).isEmpty() ? -1 : Long.parseLong(matcher.group(1));
+            final long last = matcher.group(2).isEmpty() ? -1 : Long.parseLong(matcher.group(2));
+
+            return first >= 0 && last >= 0 && last < first
+                    ? Optional.empty()
+                    : Optional.of(new ByteRange(first, last));
+        } catch (final NumberFormatException exception) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Returns whether this range overlaps with a file of a specified size.
+     *
+     * @param size  The file size in bytes
+     *
+     * @return {@code true} if at least one byte of the file falls into this range
+     */
+    boolean isSatisfiable(final long size) {
+        return first < 0 ? last > 0 && size > 0 : first < size;
+    }
+
+    /**
+     * Returns the position of the first byte of this range in a file of a specified size.
+     *
+     * @param size  The file size in bytes
+     *
+     * @return a position that is only meaningful if this range {@link #isSatisfiable(long) is satisfiable}
+     */
+    long getOffset(final long size) {
+        return first < 0 ? Math.max(0, size - last) : first;
+    }
+
+    /**
+     * Returns the number of bytes of this range in a file of a specified size.
+     *
+     * @param size  The file size in bytes
+     *
+     * @return a length that is only meaningful if this range {@link #isSatisfiable(long) is satisfiable}
+     */
+    long getLength(final long size) {
+        if (first < 0) {
+            return Math.min(last, size);
+        }
+
+        return (last < 0 ? size - 1 : Math.min(last, size - 1)) - first + 1;
+    }
+
+    /**
+     * Returns the {@code Content-Range} response header value of this range in a file of a specified size.
+     *
+     * @param size  The file size in bytes
+     *
+     * @return a header value such as {@code bytes 0-499/1234}
+     */
+    @NotNull
+    String toContentRange(final long size) {
+        final long offset = getOffset(size);
+        return String.format("bytes %d-%d/%d", offset, offset + getLength(size) - 1, size);
+    }
+
+    /**
+     * Returns the {@code Content-Range} response header value of an unsatisfiable range.
+     *
+     * @param size  The file size in bytes
+     *
+     * @return a header value such as {@code bytes *}{@code /1234}
+     */
+    @NotNull
+    static String toUnsatisfiedContentRange(final long size) {
+        return String.format("bytes */%d", size);
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2024 Jiaqi Liu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.qubitpi.athena.web.endpoints;
+
+import jakarta.validation.constraints.NotNull;
+import net.jcip.annotations.Immutable;
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Entity tags and their validation against an HTTP {@code If-None-Match} request header, as defined by
+ * <a href="https://www.rfc-editor.org/rfc/rfc9110#section-13.1.2">RFC 9110</a>.
+ * <p>
+ * {@code If-None-Match} is evaluated with the weak comparison, i.e. a {@code W/} prefix is ignored, and the {@code *}
+ * wildcard matches any current representation.
+ */
+@Immutable
+@ThreadSafe
+final class EntityTags {
+
+    private static final Pattern ENTITY_TAG = Pattern.compile("(?:W/)?(\"[^\"]*\")");
+    private static final String WILDCARD = "*";
+
+    /**
+     * Constructor.
+     *
+     * @throws AssertionError when called
+     */
+    private EntityTags() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Returns the strong entity tag of an opaque tag.
+     *
+     * @param opaqueTag  The opaque tag, which must not contain double quotes
+     *
+     * @return the quoted tag, such as {@code "d41d8cd98f00b204e9800998ecf8427e"}
+     *
+     * @throws NullPointerException if {@code opaqueTag} is {@code null}
+     */
+    @NotNull
+    static String strong(final @NotNull String opaqueTag) {
+        return '"' + Objects.requireNonNull(opaqueTag) + '"';
+    }
+
+    /**
+     * Returns whether an {@code If-None-Match} header matches the entity tag of the current representation, in which
+     * case a GET is answered with a 304 Not Modified.
+     *
+     * @param header  The value of the {@code If-None-Match} request header, can be {@code null}
+     * @param entityTag  The {@link #strong(String) entity tag} of the current representation
+     *
+     * @return {@code true} if the client already holds the current representation
+     *
+     * @throws NullPointerException if {@code entityTag} is {@code null}
+     */
+    static boolean matches(final String header, final @NotNull String entityTag) {
+        Objects.requireNonNull(entityTag);
+        if (header == null) {
+            return false;
+        }
+        if (header.trim().equals(WILDCARD)) {
+            return true;
+        }
+
+        final Matcher matcher = ENTITY_TAG.matcher(header);
+        while (matcher.find()) {
+            if (matcher.group(1).equals(entityTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2024 Jiaqi Liu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.qubitpi.athena.web.endpoints;
+
+import io.github.qubitpi.athena.web.graphql.ObjectMappers;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import graphql.ExecutionResult;
+import graphql.GraphQLError;
+import jakarta.validation.constraints.NotNull;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.MultivaluedMap;
+import jakarta.ws.rs.ext.MessageBodyWriter;
+import jakarta.ws.rs.ext.Provider;
+import net.jcip.annotations.Immutable;
+import net.jcip.annotations.ThreadSafe;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.Map;
+
+import jakarta.inject.Singleton;
+
+/**
+ * {@link ExecutionResultWriter} writes GraphQL results as JSON response bodies.
+ * <p>
+ * A result is written in the <a href="https://spec.graphql.org/June2018/#sec-Response-Format">response format</a> of
+ * the GraphQL specification, straight to the response stream through a streaming {@link JsonGenerator}. Unlike
+ * {@link ExecutionResult#toSpecification()}, this does not copy the result into an intermediate map first, and unlike
+ * the generic JSON provider, it does not introspect {@link ExecutionResult} as a bean. The {@code errors} entry is
+ * only written when there are errors, and the {@code extensions} entry only when there are extensions. Errors are rare
+ * and small, so each of them is still written through its own {@link GraphQLError#toSpecification()}, which keeps
+ * the format of errors that customize it.
+ */
+@Singleton
+@Immutable
+@ThreadSafe
+@Provider
+@Produces(MediaType.APPLICATION_JSON)
+public class ExecutionResultWriter implements MessageBodyWriter<ExecutionResult> {
+
+    private static final ObjectMapper JSON_MAPPER = ObjectMappers.getJsonMapper();
+
+    @Override
+    public boolean isWriteable(
+            final Class<?> type,
+            final Type genericType,
+            final Annotation[] annotations,
+            final MediaType mediaType
+    ) {
+        return ExecutionResult.class.isAssignableFrom(type);
+    }
+
+    @Override
+    public void writeTo(
+            final ExecutionResult result,
+            final Class<?> type,
+            final Type genericType,
+            final Annotation[] annotations,
+            final MediaType mediaType,
+            final MultivaluedMap<String, Object> httpHeaders,
+            final OutputStream entityStream
+    ) throws IOException, WebApplicationException {
+        write(result, entityStream);
+    }
+
+    /**
+     * Writes a GraphQL result as a UTF-8 JSON object to a stream, which is left open.
+     *
+     * @param result  The GraphQL result to write
+     * @param outputStream  The stream to write to
+     *
+     * @throws IOException if the result cannot be written
+     */
+    static void write(final @NotNull ExecutionResult result, final @NotNull OutputStream outputStream)
+            throws IOException {
+        try (JsonGenerator generator = JSON_MAPPER.getFactory().createGenerator(outputStream, JsonEncoding.UTF8)) {
+            write(result, generator);
+        }
+    }
+
+    /**
+     * Writes a GraphQL result as a JSON object.
+     *
+     * @param result  The GraphQL result to write
+     * @param generator  The generator to write with
+     *
+     * @throws IOException if the result cannot be written
+     */
+    private static void write(final @NotNull ExecutionResult result, final @NotNull JsonGenerator generator)
+            throws IOException {
+        generator.writeStartObject();
+
+        final List<GraphQLError> errors = result.getErrors();
+        if (!errors.isEmpty()) {
+            generator.writeArrayFieldStart("errors");
+            for (final GraphQLError error : errors) {
+                generator.writeObject(error.toSpecification());
+            }
+            generator.writeEndArray();
+        }
+
+        if (result.isDataPresent()) {
+            generator.writeFieldName("data");
+            generator.writeObject(result.getData());
+        }
+
+        final Map<Object, Object> extensions = result.getExtensions();
+        if (extensions != null) {
+            generator.writeFieldName("extensions");
+            generator.writeObject(extensions);
+        }
+
+        generator.writeEndObject();
+    }
+}
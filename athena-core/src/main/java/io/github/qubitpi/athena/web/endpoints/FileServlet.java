@@ -15,32 +15,66 @@
  */
 package io.github.qubitpi.athena.web.endpoints;
 
+import io.github.qubitpi.athena.application.AbstractBinderFactory;
+import io.github.qubitpi.athena.config.ErrorMessageFormat;
+import io.github.qubitpi.athena.config.SystemConfig;
+import io.github.qubitpi.athena.config.SystemConfigFactory;
 import io.github.qubitpi.athena.file.File;
 import io.github.qubitpi.athena.filestore.FileStore;
+import io.github.qubitpi.athena.filestore.FileVersion;
 import io.github.qubitpi.athena.metadata.MetaData;
 import io.github.qubitpi.athena.metastore.MetaStore;
 
+import org.glassfish.jersey.media.multipart.FormDataBodyPart;
 import org.glassfish.jersey.media.multipart.FormDataContentDisposition;
 import org.glassfish.jersey.media.multipart.FormDataParam;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import jakarta.inject.Inject;
+import jakarta.inject.Named;
 import jakarta.inject.Singleton;
 import jakarta.validation.constraints.NotNull;
+import jakarta.ws.rs.BadRequestException;
 import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.DefaultValue;
 import jakarta.ws.rs.GET;
+import jakarta.ws.rs.HeaderParam;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.container.AsyncResponse;
+import jakarta.ws.rs.container.Suspended;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
 import net.jcip.annotations.Immutable;
 import net.jcip.annotations.ThreadSafe;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 /**
  * Endpoint for POSTing files.
@@ -51,83 +85,743 @@ import java.util.Objects;
 @Path("/file")
 public class FileServlet {
 
+    private static final Logger LOG = LoggerFactory.getLogger(FileServlet.class);
+
+    private static final SystemConfig SYSTEM_CONFIG = SystemConfigFactory.getInstance();
+
     private static final String FILE_ID = "fileId";
+    private static final String FILE_IDS = "fileIds";
+    private static final String FORMAT = "format";
+    private static final String RANGE = "Range";
+    private static final String ACCEPT_RANGES = "Accept-Ranges";
+    private static final String CONTENT_RANGE = "Content-Range";
+    private static final String BYTES = "bytes";
+
+    private static final String BATCH_UPLOAD_PARALLELISM_KEY = "file_upload_batch_parallelism";
+    private static final int BATCH_UPLOAD_PARALLELISM_DEFAULT = 8;
+    private static final String ARCHIVE_PREFETCH_SIZE_KEY = "file_archive_prefetch_size";
+    private static final int ARCHIVE_PREFETCH_SIZE_DEFAULT = 4;
+    private static final String DOWNLOAD_MAX_AGE_KEY = "file_download_max_age_seconds";
+    private static final long DOWNLOAD_MAX_AGE_DEFAULT = 365L * 24 * 60 * 60;
 
     private final FileStore fileStore;
     private final MetaStore metaStore;
+    private final Executor fileStoreExecutor;
+    private final Executor responseWriterExecutor;
+    private final int batchUploadParallelism;
+    private final int archivePrefetchSize;
+    private final String downloadCacheControl;
 
     /**
      * DI constructor.
+     * <p>
+     * The max number of files of a single {@link #uploadFiles(List, AsyncResponse) batch upload} that are stored
+     * concurrently is read from the {@code file_upload_batch_parallelism} config property, and the max number of files
+     * fetched ahead while an {@link #downloadArchive(List, String, AsyncResponse) archive} is written is read from the
+     * {@code file_archive_prefetch_size} config property. How long, in seconds, caches may keep a downloaded file
+     * is read from the {@code file_download_max_age_seconds} config property.
      *
      * @param fileStore  A client connecting file data and persistence storage
      * @param metaStore  A client connecting file metadata and persistence storage
+     * @param fileStoreExecutor  A bounded executor on which file transfers run off the request threads
+     * @param responseWriterExecutor  A bounded executor on which downloaded files are written out to clients
      *
      * @throws NullPointerException if any argument is {@code null}
      */
     @Inject
-    public FileServlet(final @NotNull FileStore fileStore, final @NotNull MetaStore metaStore) {
+    public FileServlet(
+            final @NotNull FileStore fileStore,
+            final @NotNull MetaStore metaStore,
+            final @NotNull @Named(AbstractBinderFactory.FILE_STORE_EXECUTOR) Executor fileStoreExecutor,
+            final @NotNull @Named(AbstractBinderFactory.RESPONSE_WRITER_EXECUTOR) Executor responseWriterExecutor
+    ) {
         this.fileStore = Objects.requireNonNull(fileStore);
         this.metaStore = Objects.requireNonNull(metaStore);
+        this.fileStoreExecutor = Objects.requireNonNull(fileStoreExecutor);
+        this.responseWriterExecutor = Objects.requireNonNull(responseWriterExecutor);
+        this.batchUploadParallelism = Math.max(
+                1,
+                SYSTEM_CONFIG.getIntProperty(SYSTEM_CONFIG.getPackageVariableName(BATCH_UPLOAD_PARALLELISM_KEY))
+                        .orElse(BATCH_UPLOAD_PARALLELISM_DEFAULT)
+        );
+        this.archivePrefetchSize = Math.max(
+                0,
+                SYSTEM_CONFIG.getIntProperty(SYSTEM_CONFIG.getPackageVariableName(ARCHIVE_PREFETCH_SIZE_KEY))
+                        .orElse(ARCHIVE_PREFETCH_SIZE_DEFAULT)
+        );
+        this.downloadCacheControl = String.format(
+                "public, max-age=%d, immutable",
+                Math.max(
+                        0,
+                        SYSTEM_CONFIG.getLongProperty(SYSTEM_CONFIG.getPackageVariableName(DOWNLOAD_MAX_AGE_KEY))
+                                .orElse(DOWNLOAD_MAX_AGE_DEFAULT)
+                )
+        );
     }
 
     /**
      * Persists a file to object storage.
+     * <p>
+     * The request is suspended while the file is transferred to the {@link FileStore} on the file store executor, so
+     * that the request thread is free to serve other requests in the meantime. If the executor is saturated, the
+     * request is answered with a 503 Service Unavailable right away.
      *
      * @param fileContent  The file content
      * @param fileMetaData  The file metadata
-     *
-     * @return a Json object indicating whether the request is successful or not
+     * @param asyncResponse  The suspended response, resumed with a Json object indicating whether the request is
+     * successful or not
      *
      * @throws NullPointerException if any argument is {@code null}
      */
     @POST
-    @NotNull
     @Path("/upload")
     @Produces(MediaType.APPLICATION_JSON)
     @Consumes(MediaType.MULTIPART_FORM_DATA)
-    public Response uploadFile(
+    public void uploadFile(
             final @NotNull @FormDataParam("file") InputStream fileContent,
-            final @NotNull @FormDataParam("file") FormDataContentDisposition fileMetaData
+            final @NotNull @FormDataParam("file") FormDataContentDisposition fileMetaData,
+            final @NotNull @Suspended AsyncResponse asyncResponse
     ) {
         final File file = new File(MetaData.of(fileMetaData), fileContent);
-        final String fileId = fileStore.upload(file);
-        metaStore.saveMetaData(fileId, file.getMetaData());
-        return Response
-                .status(Response.Status.CREATED)
-                .entity(Collections.singletonMap(FILE_ID, fileId))
-                .build();
+
+        try {
+            fileStore.uploadAsync(file, fileStoreExecutor)
+                    .thenCompose(fileId -> metaStore.saveMetaDataAsync(fileId, file.getMetaData())
+                            .whenComplete((ignored, error) -> {
+                                if (error != null) {
+                                    deleteStoredFiles(fileId);
+                                }
+                            })
+                            .thenApply(ignored -> Response
+                                    .status(Response.Status.CREATED)
+                                    .entity(Collections.singletonMap(FILE_ID, fileId))
+                                    .build()
+                            )
+                    )
+                    .whenComplete((response, error) -> AsyncResponses.resume(asyncResponse, response, error));
+        } catch (final RejectedExecutionException exception) {
+            AsyncResponses.reject(asyncResponse, exception);
+        }
     }
 
     /**
-     * Retrieves a file from object storage.
+     * Persists many files to object storage in a single request.
+     * <p>
+     * The files are stored concurrently by up to {@code file_upload_batch_parallelism} workers on the file store
+     * executor; each worker takes the next file that is not stored yet until all of them are. The metadata of all
+     * files is then written with a single {@link MetaStore#saveMetaDataAsync(Map) batched call}. If storing any file
+     * fails, the remaining files are skipped, no metadata is written, and the request fails. The files already stored
+     * for a failed request are deleted again, so that no file is left in the file store without metadata.
+     * <p>
+     * The request is answered with a 503 Service Unavailable only if the file store executor does not accept any
+     * worker; otherwise the workers it accepted store the whole batch.
+     * <p>
+     * File IDs are derived from file names, so files of the same batch must have distinct names. A batch with
+     * duplicate names is answered with a 400 Bad Request before any file is stored; otherwise the files would share an
+     * ID and all but one would be lost.
      *
-     * @param fileId  The {@link #uploadFile(InputStream, FormDataContentDisposition) ID of the file} previously
-     * uploaded.
+     * @param fileParts  The file parts, all named {@code file}
+     * @param asyncResponse  The suspended response, resumed with a Json object listing the IDs of the stored files in
+     * the order of their parts
+     */
+    @POST
+    @Path("/upload/batch")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Consumes(MediaType.MULTIPART_FORM_DATA)
+    public void uploadFiles(
+            final @FormDataParam("file") List<FormDataBodyPart> fileParts,
+            final @NotNull @Suspended AsyncResponse asyncResponse
+    ) {
+        final List<File> files = fileParts == null
+                ? Collections.emptyList()
+                : fileParts.stream()
+                        .map(part -> new File(
+                                MetaData.of(part.getFormDataContentDisposition()),
+                                part.getValueAs(InputStream.class)
+                        ))
+                        .collect(Collectors.toList());
+
+        final Set<String> fileNames = new HashSet<>();
+        final Set<String> duplicateFileNames = files.stream()
+                .map(file -> file.getMetaData().getFileName())
+                .filter(fileName -> !fileNames.add(fileName))
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        if (!duplicateFileNames.isEmpty()) {
+            final String cause = String.format("file names %s appear more than once", duplicateFileNames);
+            LOG.error(ErrorMessageFormat.INVALID_UPLOAD_REQUEST.logFormat(cause));
+            asyncResponse.resume(new BadRequestException(ErrorMessageFormat.INVALID_UPLOAD_REQUEST.format(cause)));
+            return;
+        }
+
+        final String[] fileIds = new String[files.size()];
+        final AtomicInteger nextFile = new AtomicInteger();
+        final List<CompletableFuture<Void>> workers = new ArrayList<>();
+
+        try {
+            while (workers.size() < Math.min(batchUploadParallelism, files.size())) {
+                workers.add(CompletableFuture.runAsync(() -> upload(files, fileIds, nextFile), fileStoreExecutor));
+            }
+        } catch (final RejectedExecutionException exception) {
+            if (workers.isEmpty()) {
+                AsyncResponses.reject(asyncResponse, exception);
+                return;
+            }
+            LOG.debug(
+                    "File store executor is saturated; storing {} files with {} workers",
+                    files.size(),
+                    workers.size()
+            );
+        }
+
+        CompletableFuture.allOf(workers.toArray(new CompletableFuture<?>[0]))
+                .thenCompose(ignored -> {
+                    final Map<String, MetaData> metaDataByFileId = new LinkedHashMap<>();
+                    for (int index = 0; index < fileIds.length; index++) {
+                        metaDataByFileId.put(fileIds[index], files.get(index).getMetaData());
+                    }
+                    return metaStore.saveMetaDataAsync(metaDataByFileId);
+                })
+                .thenApply(ignored -> Response
+                        .status(Response.Status.CREATED)
+                        .entity(Collections.singletonMap(FILE_IDS, Arrays.asList(fileIds)))
+                        .build()
+                )
+                .whenComplete((response, error) -> {
+                    if (error != null) {
+                        deleteStoredFiles(fileIds);
+                    }
+                    AsyncResponses.resume(asyncResponse, response, error);
+                });
+    }
+
+    /**
+     * Retrieves a file, or a byte range of it, from object storage.
+     * <p>
+     * A single-range {@code Range} header is answered with a 206 Partial Content response carrying only the requested
+     * bytes, or with a 416 Range Not Satisfiable response if the range lies outside the file. The whole file is served
+     * with a 200 if there is no {@code Range} header, if the header cannot be honored, or if the {@link FileStore}
+     * cannot tell the file size.
+     * <p>
+     * A file that the {@link FileStore} keeps {@link FileStore#getContentEncoding(String) encoded}, e.g. compressed, is
+     * sent as stored, with a {@code Content-Encoding} header, to clients whose {@code Accept-Encoding} header accepts
+     * its coding; other clients receive the decoded file.
+     * <p>
+     * A file never changes under its file ID, so a downloaded file is marked {@code immutable} and may be cached for
+     * {@code file_download_max_age_seconds}. The {@link FileStore#getVersion(String) version} of the file, which also
+     * tells its size, is only looked up for a request with an {@code If-None-Match} or a {@code Range} header, so that
+     * a plain download costs a single file store request. If the {@link FileStore} can tell it, the response then
+     * carries a strong {@code ETag}, which tells encoded and decoded content apart, and a {@code Last-Modified} header.
+     * A request whose {@code If-None-Match} header matches the {@code ETag} is answered with a 304 Not Modified without
+     * downloading the file.
+     * <p>
+     * The request is suspended while the file is looked up on the file store executor. The response is then resumed,
+     * and therefore written out, on the response writer executor, so that a slow client holds neither a request thread
+     * nor a file store executor thread. If either executor is saturated, the request is answered with a 503 Service
+     * Unavailable.
+     * <p>
+     * The file content is written with {@link InputStream#transferTo(java.io.OutputStream)}, which lets a
+     * {@link FileStore} whose stream is backed by a file channel hand the copy over to the channel.
      *
-     * @return a file to be downloaded
+     * @param fileId  The {@link #uploadFile(InputStream, FormDataContentDisposition, AsyncResponse) ID of the file}
+     * previously uploaded.
+     * @param range  The value of the {@code Range} request header, can be {@code null}
+     * @param acceptEncoding  The value of the {@code Accept-Encoding} request header, can be {@code null}
+     * @param ifNoneMatch  The value of the {@code If-None-Match} request header, can be {@code null}
+     * @param asyncResponse  The suspended response, resumed with a file, or part of it, to be downloaded
      *
      * @throws NullPointerException if {@code fileId} is {@code null}
      */
     @GET
-    @NotNull
     @Path("/download")
     @Produces(MediaType.APPLICATION_OCTET_STREAM)
-    public Response downloadFile(@QueryParam(FILE_ID) final String fileId) {
-        return Response
-                .ok(
-                        fileStore.download(Objects.requireNonNull(fileId)),
-                        MediaType.APPLICATION_OCTET_STREAM
+    public void downloadFile(
+            @QueryParam(FILE_ID) final String fileId,
+            @HeaderParam(RANGE) final String range,
+            @HeaderParam(HttpHeaders.ACCEPT_ENCODING) final String acceptEncoding,
+            @HeaderParam(HttpHeaders.IF_NONE_MATCH) final String ifNoneMatch,
+            final @NotNull @Suspended AsyncResponse asyncResponse
+    ) {
+        Objects.requireNonNull(fileId);
+        final Optional<ByteRange> byteRange = ByteRange.parse(range);
+
+        try {
+            CompletableFuture
+                    .supplyAsync(() -> validate(fileId, byteRange, ifNoneMatch), fileStoreExecutor)
+                    .thenCompose(validation -> download(fileId, byteRange, validation, acceptEncoding))
+                    .whenComplete((response, error) -> AsyncResponses.resume(
+                            asyncResponse,
+                            response,
+                            error,
+                            responseWriterExecutor
+                    ));
+        } catch (final RejectedExecutionException exception) {
+            AsyncResponses.reject(asyncResponse, exception);
+        }
+    }
+
+    /**
+     * Retrieves many files from object storage as a single archive.
+     * <p>
+     * The archive is streamed while its entries are fetched: up to {@code file_archive_prefetch_size} files following
+     * the one being written are opened concurrently on the file store executor, and no file, nor the archive, is
+     * buffered in memory. Each entry is named after the original file name; a file requested more than once is
+     * archived once.
+     * <p>
+     * The request is suspended until the first file is opened, so that a missing first file fails the request before
+     * any part of the archive is sent. If the executor is saturated, the request is answered with a 503 Service
+     * Unavailable right away.
+     *
+     * @param fileIds  The {@link #uploadFile(InputStream, FormDataContentDisposition, AsyncResponse) IDs of the files}
+     * to archive, given as repeated {@code fileId} query parameters, in the order of their entries
+     * @param format  The archive format, either {@code zip}, the default, or {@code tar}
+     * @param asyncResponse  The suspended response, resumed with the archive to be downloaded
+     *
+     * @throws IllegalArgumentException if no file ID is given or the format is not supported
+     */
+    @GET
+    @Path("/download/archive")
+    public void downloadArchive(
+            @QueryParam(FILE_ID) final List<String> fileIds,
+            @QueryParam(FORMAT) @DefaultValue("zip") final String format,
+            final @NotNull @Suspended AsyncResponse asyncResponse
+    ) {
+        if (fileIds == null || fileIds.isEmpty()) {
+            final String cause = "no file ID was given";
+            LOG.error(ErrorMessageFormat.INVALID_ARCHIVE_REQUEST.logFormat(cause));
+            throw new IllegalArgumentException(ErrorMessageFormat.INVALID_ARCHIVE_REQUEST.format(cause));
+        }
+        final ArchiveFormat archiveFormat = ArchiveFormat.of(format).orElseThrow(() -> {
+            final String cause = String.format("format '%s' is not supported", format);
+            LOG.error(ErrorMessageFormat.INVALID_ARCHIVE_REQUEST.logFormat(cause));
+            return new IllegalArgumentException(ErrorMessageFormat.INVALID_ARCHIVE_REQUEST.format(cause));
+        });
+
+        final ArchiveStreamingOutput archive = new ArchiveStreamingOutput(
+                new ArrayList<>(new LinkedHashSet<>(fileIds)),
+                archiveFormat,
+                fileId -> openArchiveEntry(fileId, archiveFormat),
+                fileStoreExecutor,
+                archivePrefetchSize
+        );
+
+        try {
+            archive.start()
+                    .thenApply(ignored -> Response
+                            .ok(archive, archiveFormat.getMediaType())
+                            .header(
+                                    HttpHeaders.CONTENT_DISPOSITION,
+                                    String.format("attachment; filename = files.%s", archiveFormat.getName())
+                            )
+                            .build()
+                    )
+                    .whenComplete((response, error) -> AsyncResponses.resume(
+                            asyncResponse,
+                            response,
+                            error,
+                            responseWriterExecutor
+                    ));
+        } catch (final RejectedExecutionException exception) {
+            AsyncResponses.reject(asyncResponse, exception);
+        }
+    }
+
+    /**
+     * Looks up what a download request needs to know about a file before its content is fetched.
+     * <p>
+     * A request that is neither conditional nor ranged needs nothing. Otherwise the file version is looked up with a
+     * single file store request, and the file size is only looked up on its own for a ranged request if the version
+     * does not tell it.
+     *
+     * @param fileId  The ID of the file to download
+     * @param byteRange  The requested byte range, if any
+     * @param ifNoneMatch  The value of the {@code If-None-Match} request header, can be {@code null}
+     *
+     * @return the validators and size of the file, as far as they are needed and known
+     */
+    @NotNull
+    private Validation validate(
+            final @NotNull String fileId,
+            final @NotNull Optional<ByteRange> byteRange,
+            final String ifNoneMatch
+    ) {
+        if (ifNoneMatch == null && byteRange.isEmpty()) {
+            return new Validation(Optional.empty(), null, OptionalLong.empty());
+        }
+
+        final Optional<FileVersion> version = fileStore.getVersion(fileId);
+        if (byteRange.isEmpty()) {
+            return new Validation(version, ifNoneMatch, OptionalLong.empty());
+        }
+
+        final OptionalLong size = version.map(FileVersion::getSize).orElse(OptionalLong.empty());
+        return new Validation(version, ifNoneMatch, size.isPresent() ? size : fileStore.getSize(fileId));
+    }
+
+    /**
+     * Builds the response of a download request once the file size, if needed, is known.
+     *
+     * @param fileId  The ID of the file to download
+     * @param byteRange  The requested byte range, if any
+     * @param validation  The file version, the size of the file, if known, and the {@code If-None-Match} header
+     * @param acceptEncoding  The value of the {@code Accept-Encoding} request header, can be {@code null}
+     *
+     * @return a future completed with a 200, 206, 304, or 416 response
+     */
+    @NotNull
+    private CompletableFuture<Response> download(
+            final @NotNull String fileId,
+            final @NotNull Optional<ByteRange> byteRange,
+            final @NotNull Validation validation,
+            final String acceptEncoding
+    ) {
+        final OptionalLong size = validation.size;
+        if (byteRange.isEmpty() || size.isEmpty()) {
+            return download(fileId, validation, acceptEncoding);
+        }
+
+        final Optional<String> entityTag = validation.getEntityTag(Optional.empty());
+        if (validation.isNotModified(entityTag)) {
+            return CompletableFuture.completedFuture(notModified(validation, entityTag, null));
+        }
+
+        if (!byteRange.get().isSatisfiable(size.getAsLong())) {
+            return CompletableFuture.completedFuture(
+                    Response
+                            .status(Response.Status.REQUESTED_RANGE_NOT_SATISFIABLE)
+                            .header(ACCEPT_RANGES, BYTES)
+                            .header(CONTENT_RANGE, ByteRange.toUnsatisfiedContentRange(size.getAsLong()))
+                            .build()
+            );
+        }
+
+        final long offset = byteRange.get().getOffset(size.getAsLong());
+        final long length = byteRange.get().getLength(size.getAsLong());
+
+        return getContentDisposition(fileId).thenCompose(contentDisposition -> fileStore
+                .downloadAsync(fileId, offset, length, fileStoreExecutor)
+                .thenApply(content -> Response
+                        .status(Response.Status.PARTIAL_CONTENT)
+                        .entity(stream(content))
+                        .type(MediaType.APPLICATION_OCTET_STREAM)
+                        .header(ACCEPT_RANGES, BYTES)
+                        .header(CONTENT_RANGE, byteRange.get().toContentRange(size.getAsLong()))
+                        .header(HttpHeaders.CONTENT_LENGTH, length)
+                        .header(HttpHeaders.CONTENT_DISPOSITION, contentDisposition)
+                        .header(HttpHeaders.ETAG, entityTag.orElse(null))
+                        .lastModified(validation.getLastModified())
+                        .header(HttpHeaders.CACHE_CONTROL, downloadCacheControl)
+                        .build()
                 )
-                .header(
-                        "content-disposition",
-                        String.format(
-                                "attachment; filename = %s",
-                                ((Map<?, ?>) ((Map<?, ?>) metaStore
-                                        .getMetaData(fileId, Collections.singletonList(MetaData.FILE_NAME))
-                                        .toSpecification().get("data")).get("metaData"))
-                                        .get(MetaData.FILE_NAME).toString()
-                        )
+        );
+    }
+
+    /**
+     * Builds the response of a download request for a whole file, sending the file as stored if the client accepts
+     * its content coding.
+     *
+     * @param fileId  The ID of the file to download
+     * @param validation  The file version and the {@code If-None-Match} header
+     * @param acceptEncoding  The value of the {@code Accept-Encoding} request header, can be {@code null}
+     *
+     * @return a future completed with a 200 or 304 response
+     */
+    @NotNull
+    private CompletableFuture<Response> download(
+            final @NotNull String fileId,
+            final @NotNull Validation validation,
+            final String acceptEncoding
+    ) {
+        final Optional<String> contentEncoding = fileStore.getContentEncoding(fileId);
+        final String vary = contentEncoding.isPresent() ? HttpHeaders.ACCEPT_ENCODING : null;
+
+        if (contentEncoding.isPresent() && AcceptEncoding.accepts(acceptEncoding, contentEncoding.get())) {
+            final Optional<String> entityTag = validation.getEntityTag(contentEncoding);
+            if (validation.isNotModified(entityTag)) {
+                return CompletableFuture.completedFuture(notModified(validation, entityTag, vary));
+            }
+
+            return getContentDisposition(fileId).thenCompose(contentDisposition -> CompletableFuture
+                    .supplyAsync(() -> fileStore.downloadEncoded(fileId), fileStoreExecutor)
+                    .thenApply(content -> Response
+                            .ok(stream(content), MediaType.APPLICATION_OCTET_STREAM)
+                            .header(HttpHeaders.CONTENT_ENCODING, contentEncoding.get())
+                            .header(HttpHeaders.VARY, vary)
+                            .header(HttpHeaders.CONTENT_DISPOSITION, contentDisposition)
+                            .header(HttpHeaders.ETAG, entityTag.orElse(null))
+                            .lastModified(validation.getLastModified())
+                            .header(HttpHeaders.CACHE_CONTROL, downloadCacheControl)
+                            .build()
+                    )
+            );
+        }
+
+        final Optional<String> entityTag = validation.getEntityTag(Optional.empty());
+        if (validation.isNotModified(entityTag)) {
+            return CompletableFuture.completedFuture(notModified(validation, entityTag, vary));
+        }
+
+        return getContentDisposition(fileId).thenCompose(contentDisposition -> fileStore
+                .downloadAsync(fileId, fileStoreExecutor)
+                .thenApply(content -> Response
+                        .ok(stream(content), MediaType.APPLICATION_OCTET_STREAM)
+                        .header(ACCEPT_RANGES, BYTES)
+                        .header(HttpHeaders.VARY, vary)
+                        .header(HttpHeaders.CONTENT_DISPOSITION, contentDisposition)
+                        .header(HttpHeaders.ETAG, entityTag.orElse(null))
+                        .lastModified(validation.getLastModified())
+                        .header(HttpHeaders.CACHE_CONTROL, downloadCacheControl)
+                        .build()
                 )
+        );
+    }
+
+    /**
+     * Builds the 304 Not Modified response of a download request whose client already holds the file.
+     *
+     * @param validation  The file version
+     * @param entityTag  The entity tag of the held representation
+     * @param vary  The value of the {@code Vary} response header, can be {@code null}
+     *
+     * @return a response without body that carries the validators and caching headers of the file
+     */
+    @NotNull
+    private Response notModified(
+            final @NotNull Validation validation,
+            final @NotNull Optional<String> entityTag,
+            final String vary
+    ) {
+        return Response
+                .notModified()
+                .header(HttpHeaders.ETAG, entityTag.orElse(null))
+                .lastModified(validation.getLastModified())
+                .header(HttpHeaders.CACHE_CONTROL, downloadCacheControl)
+                .header(HttpHeaders.VARY, vary)
                 .build();
     }
+
+    /**
+     * Stores files of a batch, one after another, until no file of the batch is left.
+     * <p>
+     * Several invocations share the same batch and each one takes the next file that nobody has taken yet. A failure
+     * makes all invocations stop taking files.
+     *
+     * @param files  The files of the batch
+     * @param fileIds  The IDs of the stored files, filled at the index of each file
+     * @param nextFile  The index of the next file to be taken
+     */
+    private void upload(
+            final @NotNull List<File> files,
+            final @NotNull String[] fileIds,
+            final @NotNull AtomicInteger nextFile
+    ) {
+        for (int index = nextFile.getAndIncrement(); index < files.size(); index = nextFile.getAndIncrement()) {
+            boolean stored = false;
+            try {
+                fileIds[index] = fileStore.upload(files.get(index));
+                stored = true;
+            } finally {
+                if (!stored) {
+                    nextFile.set(files.size());
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes the files stored for a request whose metadata could not be saved.
+     * <p>
+     * A file that cannot be deleted is logged and skipped, so that the request still fails with its original error.
+     *
+     * @param fileIds  The IDs of the stored files; {@code null} entries, for files that were not stored, are skipped
+     */
+    private void deleteStoredFiles(final @NotNull String... fileIds) {
+        for (final String fileId : fileIds) {
+            if (fileId == null) {
+                continue;
+            }
+            try {
+                fileStore.delete(fileId);
+            } catch (final IllegalStateException exception) {
+                LOG.warn("Unable to delete file '{}' of a failed upload", fileId, exception);
+            }
+        }
+    }
+
+    /**
+     * Opens a file for writing into an archive.
+     *
+     * @param fileId  The ID of the file
+     * @param format  The archive format, which tells whether the file size has to be looked up
+     *
+     * @return the opened file, named after its original file name
+     */
+    @NotNull
+    private ArchiveStreamingOutput.Entry openArchiveEntry(
+            final @NotNull String fileId,
+            final @NotNull ArchiveFormat format
+    ) {
+        return new ArchiveStreamingOutput.Entry(
+                getFileName(fileId),
+                format.isEntrySizeRequired() ? fileStore.getSize(fileId) : OptionalLong.empty(),
+                fileStore.download(fileId)
+        );
+    }
+
+    /**
+     * Wraps a file content stream into a response entity that is written with
+     * {@link InputStream#transferTo(OutputStream)} and closed afterwards.
+     *
+     * @param fileContent  The file content
+     *
+     * @return a streaming response entity
+     */
+    @NotNull
+    private static StreamingOutput stream(final @NotNull InputStream fileContent) {
+        return new FileContentOutput(fileContent);
+    }
+
+    /**
+     * Looks up the {@code Content-Disposition} response header value of a file, which carries its original file name.
+     * <p>
+     * The metadata lookup is composed rather than waited for, so that a meta store whose lookups complete on their own
+     * does not hold a file store executor thread.
+     *
+     * @param fileId  The ID of the file
+     *
+     * @return a future of a header value such as {@code attachment; filename = book.pdf}, completed exceptionally with
+     * an {@link IllegalStateException} if the file has no metadata
+     */
+    @NotNull
+    private CompletableFuture<String> getContentDisposition(final @NotNull String fileId) {
+        return metaStore.findMetaDataAsync(fileId)
+                .thenApply(metaData -> String.format("attachment; filename = %s", getFileName(fileId, metaData)));
+    }
+
+    /**
+     * Returns the original name of a file, as kept in its metadata.
+     *
+     * @param fileId  The ID of the file
+     *
+     * @return a file name such as {@code book.pdf}
+     *
+     * @throws IllegalStateException if the file has no metadata
+     */
+    @NotNull
+    private String getFileName(final @NotNull String fileId) {
+        return getFileName(fileId, metaStore.findMetaData(fileId));
+    }
+
+    /**
+     * Returns the original name of a file out of its metadata.
+     *
+     * @param fileId  The ID of the file
+     * @param metaData  The metadata of the file, if any
+     *
+     * @return a file name such as {@code book.pdf}
+     *
+     * @throws IllegalStateException if the file has no metadata
+     */
+    @NotNull
+    private static String getFileName(final @NotNull String fileId, final @NotNull Optional<MetaData> metaData) {
+        return metaData.map(MetaData::getFileName).orElseThrow(() -> {
+            LOG.error(ErrorMessageFormat.META_DATA_NOT_FOUND.logFormat(fileId));
+            return new IllegalStateException(ErrorMessageFormat.META_DATA_NOT_FOUND.format(fileId));
+        });
+    }
+
+    /**
+     * What a download request needs to know to validate the copy of a file that its client holds, along with the
+     * file size used to serve byte ranges.
+     */
+    @Immutable
+    @ThreadSafe
+    private static final class Validation {
+
+        private final Optional<FileVersion> version;
+        private final String ifNoneMatch;
+        private final OptionalLong size;
+
+        /**
+         * Constructor.
+         *
+         * @param version  The version of the file, if known
+         * @param ifNoneMatch  The value of the {@code If-None-Match} request header, can be {@code null}
+         * @param size  The size of the file, if known
+         */
+        private Validation(
+                final @NotNull Optional<FileVersion> version,
+                final String ifNoneMatch,
+                final @NotNull OptionalLong size
+        ) {
+            this.version = version;
+            this.ifNoneMatch = ifNoneMatch;
+            this.size = size;
+        }
+
+        /**
+         * Returns the strong entity tag of a representation of the file.
+         *
+         * @param contentEncoding  The content coding of the representation, or empty for the decoded file
+         *
+         * @return a quoted entity tag or an empty value if the file version is unknown
+         */
+        @NotNull
+        private Optional<String> getEntityTag(final @NotNull Optional<String> contentEncoding) {
+            return version.map(fileVersion -> EntityTags.strong(
+                    contentEncoding.map(coding -> fileVersion.getETag() + "-" + coding).orElse(fileVersion.getETag())
+            ));
+        }
+
+        /**
+         * Returns whether the client already holds a representation of the file.
+         *
+         * @param entityTag  The entity tag of the representation, if any
+         *
+         * @return {@code true} if the request can be answered with a 304 Not Modified
+         */
+        private boolean isNotModified(final @NotNull Optional<String> entityTag) {
+            return entityTag.isPresent() && EntityTags.matches(ifNoneMatch, entityTag.get());
+        }
+
+        /**
+         * Returns when the file was stored.
+         *
+         * @return the time of storage or {@code null}, which omits the {@code Last-Modified} header
+         */
+        private Date getLastModified() {
+            return version.flatMap(FileVersion::getLastModified).map(Date::from).orElse(null);
+        }
+    }
+
+    /**
+     * A response entity that writes out a file content stream and then closes it.
+     * <p>
+     * The entity is {@link Closeable} so that the stream is released when the response is never written, e.g. when the
+     * response writer executor is saturated.
+     */
+    private static final class FileContentOutput implements StreamingOutput, Closeable {
+
+        private final InputStream fileContent;
+
+        /**
+         * Constructor.
+         *
+         * @param fileContent  The file content
+         */
+        private FileContentOutput(final @NotNull InputStream fileContent) {
+            this.fileContent = fileContent;
+        }
+
+        @Override
+        public void write(final OutputStream output) throws IOException {
+            try (InputStream content = fileContent) {
+                content.transferTo(output);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            fileContent.close();
+        }
+    }
 }
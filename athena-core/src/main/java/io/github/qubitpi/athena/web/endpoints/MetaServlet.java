@@ -15,27 +15,42 @@
  */
 package io.github.qubitpi.athena.web.endpoints;
 
+import io.github.qubitpi.athena.config.SystemConfig;
+import io.github.qubitpi.athena.config.SystemConfigFactory;
 import io.github.qubitpi.athena.metastore.MetaStore;
+import io.github.qubitpi.athena.web.graphql.GraphQLPostRequest;
 import io.github.qubitpi.athena.web.graphql.JsonDocumentParser;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import io.github.qubitpi.athena.config.ErrorMessageFormat;
+import graphql.ExecutionResult;
+import graphql.language.Definition;
+import graphql.language.OperationDefinition;
 import jakarta.validation.constraints.NotNull;
 import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.GET;
+import jakarta.ws.rs.HeaderParam;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.container.AsyncResponse;
+import jakarta.ws.rs.container.Suspended;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import net.jcip.annotations.Immutable;
 import net.jcip.annotations.ThreadSafe;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
@@ -46,6 +61,10 @@ import jakarta.inject.Singleton;
  * This is the resource that serves GraphQL over HTTP. See
  * <a href="https://graphql.org/learn/serving-over-http/">GraphQL documentation</a> for specifications on serving
  * GraphQL over HTTP.
+ * <p>
+ * Requests are executed through the {@link MetaStore#executeAsync(String) asynchronous} meta store API and completed
+ * once their results are ready, so that a slow metadata database does not hold servlet threads. The results are
+ * serialized by {@link ExecutionResultWriter}.
  */
 @Singleton
 @Immutable
@@ -56,11 +75,22 @@ public class MetaServlet {
 
     private static final Logger LOG = LoggerFactory.getLogger(MetaServlet.class);
 
+    private static final SystemConfig SYSTEM_CONFIG = SystemConfigFactory.getInstance();
+
+    private static final String GET_MAX_AGE_KEY = "metadata_get_max_age_seconds";
+    private static final long GET_MAX_AGE_DEFAULT = 60L;
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+    private static final String NO_STORE = "no-store";
+
     private final MetaStore metaStore;
     private final JsonDocumentParser jsonDocumentParser;
+    private final String getCacheControl;
 
     /**
      * DI constructor.
+     * <p>
+     * How long, in seconds, caches may keep the result of a GET is read from the
+     * {@code metadata_get_max_age_seconds} config property.
      *
      * @param metaStore  A delegating layer that handles all REST operations.
      * @param jsonDocumentParser  An object for extracting metadata request info from POST request body, such as file
@@ -72,6 +102,14 @@ public class MetaServlet {
     public MetaServlet(final @NotNull MetaStore metaStore, final @NotNull JsonDocumentParser jsonDocumentParser) {
         this.metaStore = Objects.requireNonNull(metaStore);
         this.jsonDocumentParser = Objects.requireNonNull(jsonDocumentParser, "jsonDocumentParser");
+        this.getCacheControl = String.format(
+                "public, max-age=%d",
+                Math.max(
+                        0,
+                        SYSTEM_CONFIG.getLongProperty(SYSTEM_CONFIG.getPackageVariableName(GET_MAX_AGE_KEY))
+                                .orElse(GET_MAX_AGE_DEFAULT)
+                )
+        );
     }
 
     /**
@@ -80,64 +118,186 @@ public class MetaServlet {
      * Note that in the context of Athena, {@code variables} and {@code operationName} path params are not supported
      * here. Please check out
      * <a href="https://graphql.org/learn/serving-over-http/#get-request">GraphQL documentation</a> for more details.
+     * <p>
+     * A GET of a query is cacheable: a result without errors carries a strong {@code ETag}, the hash of its JSON body,
+     * and may be cached for {@code metadata_get_max_age_seconds}. The result is serialized once; the hash is taken of
+     * the serialized body, which is then sent as is. A request whose {@code If-None-Match} header matches the
+     * {@code ETag} of the result is answered with a 304 Not Modified without a body. Only the meta store is queried to
+     * tell, never the file store.
+     * <p>
+     * A document that defines anything else than queries, e.g. a mutation, is executed as well, but its result is
+     * marked as not storable so that no cache ever replays it. Which operations a document defines is read from its
+     * parsed form, which the {@link JsonDocumentParser} caches by query text.
      *
      * @param query  A native GraphQL query operation definition, such as "query={me{name}}"
-     *
-     * @return native GraphQL query result
+     * @param ifNoneMatch  The value of the {@code If-None-Match} request header, can be {@code null}
+     * @param asyncResponse  The suspended response, resumed with the native GraphQL query result
      *
      * @throws NullPointerException if {@code query} is {@code null}
      */
     @GET
-    @NotNull
-    public Response get(final @NotNull @QueryParam("query") String query) {
-        return Response
-                .status(Response.Status.OK)
-                .entity(metaStore.executeNative(Objects.requireNonNull(query)))
-                .build();
+    public void get(
+            final @NotNull @QueryParam("query") String query,
+            @HeaderParam(HttpHeaders.IF_NONE_MATCH) final String ifNoneMatch,
+            final @NotNull @Suspended AsyncResponse asyncResponse
+    ) {
+        final boolean readOnly = isReadOnly(Objects.requireNonNull(query));
+
+        metaStore.executeAsync(query)
+                .thenApply(result -> {
+                    if (!readOnly) {
+                        return Response.ok(result).header(HttpHeaders.CACHE_CONTROL, NO_STORE).build();
+                    }
+                    return result.getErrors().isEmpty() ? cacheable(result, ifNoneMatch) : ok(result);
+                })
+                .whenComplete((response, error) -> AsyncResponses.resume(asyncResponse, response, error));
     }
 
     /**
      * Query metadata via GraphQL POST.
      * <p>
-     * Note that in the context of Athena, {@code variables} and {@code operationName} fields are optional and will not
-     * be processed. Please check out
-     * <a href="https://graphql.org/learn/serving-over-http/#get-request">GraphQL documentation</a> for more details.
+     * The request body is parsed once. A plain lookup of a single file is served as a
+     * {@link MetaStore#getMetaDataAsync(String, List) metadata lookup}; any other query, e.g. one with aliases, several
+     * fields or fragments, is executed as is, together with its {@code variables} and {@code operationName}. Please
+     * check out <a href="https://graphql.org/learn/serving-over-http/#post-request">GraphQL documentation</a> for more
+     * details.
      *
      * @param graphQLDocument  A native GraphQL document as a JSON-encoded body of the following form:
      * <pre>
      * {@code
      * {
-     *     "query": "..."
+     *     "query": "...",
+     *     "variables": { ... },
+     *     "operationName": "..."
      * }
      * }
      * </pre>
-     *
-     * @return native GraphQL query result
+     * @param asyncResponse  The suspended response, resumed with the native GraphQL query result
      *
      * @throws NullPointerException if {@code graphQLDocument} is {@code null}
-     * @throws IllegalArgumentException if no metadata fields are found in {@code graphQLDocument}
+     * @throws IllegalArgumentException if {@code graphQLDocument} is not a valid JSON, has no query or its query is not
+     * valid GraphQL
      */
     @POST
     @Consumes(MediaType.APPLICATION_JSON)
-    public Response post(final @NotNull String graphQLDocument) {
-        Objects.requireNonNull(graphQLDocument);
-
-        final List<String> requestedMetadataFields = jsonDocumentParser.getFields(graphQLDocument);
-        if (requestedMetadataFields.isEmpty()) {
-            LOG.error(ErrorMessageFormat.INVALID_GRAPHQL_REQUEST.logFormat("No metadata field found", graphQLDocument));
-            throw new IllegalArgumentException(
-                    ErrorMessageFormat.INVALID_GRAPHQL_REQUEST.format("no metadata field was found", graphQLDocument)
-            );
-        }
+    public void post(final @NotNull String graphQLDocument, final @NotNull @Suspended AsyncResponse asyncResponse) {
+        final GraphQLPostRequest request = jsonDocumentParser.parse(Objects.requireNonNull(graphQLDocument));
 
-        return Response
-                .status(Response.Status.OK)
-                .entity(
-                        metaStore.getMetaData(
-                                jsonDocumentParser.getFileId(graphQLDocument),
-                                requestedMetadataFields
-                        )
-                )
+        final CompletableFuture<ExecutionResult> result = request.getFileId().isPresent()
+                ? metaStore.getMetaDataAsync(request.getFileId().get(), request.getFields())
+                : metaStore.executeAsync(
+                        request.getQuery(),
+                        request.getVariables(),
+                        request.getOperationName().orElse(null)
+                );
+
+        result.thenApply(MetaServlet::ok)
+                .whenComplete((response, error) -> AsyncResponses.resume(asyncResponse, response, error));
+    }
+
+    /**
+     * Wraps a GraphQL result into a 200 OK response with validators and caching headers, or into a 304 Not Modified
+     * response if the client already holds the result.
+     *
+     * @param result  The native GraphQL query result
+     * @param ifNoneMatch  The value of the {@code If-None-Match} request header, can be {@code null}
+     *
+     * @return a new response
+     *
+     * @throws IllegalStateException if the result cannot be serialized
+     */
+    @NotNull
+    private Response cacheable(final @NotNull ExecutionResult result, final String ifNoneMatch) {
+        final byte[] body = serialize(result);
+        final String entityTag = EntityTags.strong(hash(body));
+        final Response.ResponseBuilder response = EntityTags.matches(ifNoneMatch, entityTag)
+                ? Response.notModified()
+                : Response.ok(body);
+
+        return response
+                .header(HttpHeaders.ETAG, entityTag)
+                .header(HttpHeaders.CACHE_CONTROL, getCacheControl)
                 .build();
     }
+
+    /**
+     * Returns whether a GraphQL document only defines queries, whose results may be cached.
+     * <p>
+     * A document that cannot be parsed is not read-only; its execution fails with errors anyway.
+     *
+     * @param query  The GraphQL document
+     *
+     * @return {@code true} if every operation of the document is a query
+     */
+    private boolean isReadOnly(final @NotNull String query) {
+        final List<Definition> definitions;
+        try {
+            definitions = jsonDocumentParser.parseQuery(query).getDefinitions();
+        } catch (final IllegalArgumentException exception) {
+            return false;
+        }
+
+        return definitions.stream()
+                .filter(definition -> definition instanceof OperationDefinition)
+                .allMatch(operation ->
+                        ((OperationDefinition) operation).getOperation() == OperationDefinition.Operation.QUERY
+                );
+    }
+
+    /**
+     * Serializes a GraphQL result into the JSON body of a response.
+     *
+     * @param result  The native GraphQL query result
+     *
+     * @return the UTF-8 JSON body
+     *
+     * @throws IllegalStateException if the result cannot be serialized
+     */
+    @NotNull
+    private static byte[] serialize(final @NotNull ExecutionResult result) {
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try {
+            ExecutionResultWriter.write(result, body);
+        } catch (final IOException exception) {
+            final String message = String.format("Failed to serialize GraphQL result: %s", exception.getMessage());
+            LOG.error(message, exception);
+            throw new IllegalStateException(message, exception);
+        }
+        return body.toByteArray();
+    }
+
+    /**
+     * Returns the URL-safe Base64 SHA-256 hash of a response body.
+     *
+     * @param body  The response body
+     *
+     * @return an opaque tag of the response body
+     *
+     * @throws IllegalStateException if the JVM does not support SHA-256
+     */
+    @NotNull
+    private static String hash(final @NotNull byte[] body) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (final NoSuchAlgorithmException exception) {
+            final String message = String.format("%s is not supported", DIGEST_ALGORITHM);
+            LOG.error(message, exception);
+            throw new IllegalStateException(message, exception);
+        }
+
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(digest.digest(body));
+    }
+
+    /**
+     * Wraps a GraphQL result into a 200 OK response.
+     *
+     * @param result  The native GraphQL query result
+     *
+     * @return a new response
+     */
+    @NotNull
+    private static Response ok(final @NotNull ExecutionResult result) {
+        return Response.status(Response.Status.OK).entity(result).build();
+    }
 }
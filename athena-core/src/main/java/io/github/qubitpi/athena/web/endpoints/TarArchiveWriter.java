@@ -0,0 +1,235 @@
+/*
+ * Copyright 2024 Jiaqi Liu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.qubitpi.athena.web.endpoints;
+
+import jakarta.validation.constraints.NotNull;
+import net.jcip.annotations.NotThreadSafe;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.OptionalLong;
+
+/**
+ * An {@link ArchiveWriter} of POSIX tar archives.
+ * <p>
+ * Each entry is a ustar header block followed by the entry content padded to whole blocks. Names longer than the ustar
+ * name field and sizes beyond its 8 GiB limit are carried by a preceding pax extended header.
+ * <p>
+ * A tar header holds the size of its entry, so an entry of unknown size is first spooled to a temporary file, never to
+ * memory. The underlying stream is never closed by this writer.
+ */
+@NotThreadSafe
+final class TarArchiveWriter implements ArchiveWriter {
+
+    private static final int BLOCK_SIZE = 512;
+    private static final int NAME_LENGTH = 100;
+    private static final long MAX_USTAR_SIZE = 077777777777L;
+
+    private static final int MODE_OFFSET = 100;
+    private static final int UID_OFFSET = 108;
+    private static final int GID_OFFSET = 116;
+    private static final int SIZE_OFFSET = 124;
+    private static final int MTIME_OFFSET = 136;
+    private static final int CHECKSUM_OFFSET = 148;
+    private static final int CHECKSUM_LENGTH = 8;
+    private static final int TYPE_FLAG_OFFSET = 156;
+    private static final int MAGIC_OFFSET = 257;
+
+    private static final byte REGULAR_FILE = '0';
+    private static final byte PAX_EXTENDED_HEADER = 'x';
+    private static final byte[] PAX_HEADER_NAME = "PaxHeader".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] USTAR_MAGIC = "ustar\00000".getBytes(StandardCharsets.US_ASCII);
+
+    private final OutputStream output;
+    private final long modificationTime;
+
+    /**
+     * Constructor.
+     *
+     * @param output  The stream the archive is written to
+     *
+     * @throws NullPointerException if {@code output} is {@code null}
+     */
+    TarArchiveWriter(final @NotNull OutputStream output) {
+        this.output = Objects.requireNonNull(output);
+        this.modificationTime = System.currentTimeMillis() / 1000;
+    }
+
+    @Override
+    public void putEntry(
+            final @NotNull String name,
+            final @NotNull OptionalLong size,
+            final @NotNull InputStream content
+    ) throws IOException {
+        Objects.requireNonNull(name);
+        Objects.requireNonNull(content);
+
+        if (size.isPresent()) {
+            putEntry(name, size.getAsLong(), content);
+            return;
+        }
+
+        final Path spool = Files.createTempFile("athena-archive-", ".tmp");
+        try {
+            Files.copy(content, spool, StandardCopyOption.REPLACE_EXISTING);
+            try (InputStream spooled = Files.newInputStream(spool)) {
+                putEntry(name, Files.size(spool), spooled);
+            }
+        } finally {
+            Files.deleteIfExists(spool);
+        }
+    }
+
+    @Override
+    public void finish() throws IOException {
+        output.write(new byte[2 * BLOCK_SIZE]);
+        output.flush();
+    }
+
+    /**
+     * Writes an entry of known size.
+     *
+     * @param name  The name of the entry
+     * @param size  The size of the entry in bytes
+     * @param content  The entry content
+     *
+     * @throws IOException if the content is shorter than {@code size} or the entry cannot be written
+     */
+    private void putEntry(final @NotNull String name, final long size, final @NotNull InputStream content)
+            throws IOException {
+        final byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        final StringBuilder paxRecords = new StringBuilder();
+        if (nameBytes.length > NAME_LENGTH) {
+            paxRecords.append(paxRecord("path", name));
+        }
+        if (size > MAX_USTAR_SIZE) {
+            paxRecords.append(paxRecord("size", Long.toString(size)));
+        }
+
+        if (paxRecords.length() > 0) {
+            final byte[] records = paxRecords.toString().getBytes(StandardCharsets.UTF_8);
+            writeHeader(PAX_HEADER_NAME, records.length, PAX_EXTENDED_HEADER);
+            copy(new ByteArrayInputStream(records), records.length);
+        }
+
+        writeHeader(Arrays.copyOf(nameBytes, Math.min(nameBytes.length, NAME_LENGTH)), Math.min(size, MAX_USTAR_SIZE),
+                REGULAR_FILE);
+        if (copy(content, size) < size) {
+            throw new IOException(String.format("Entry '%s' ended before its announced size of %d bytes", name, size));
+        }
+    }
+
+    /**
+     * Writes a ustar header block.
+     *
+     * @param name  The entry name, at most 100 bytes
+     * @param size  The entry size, at most {@link #MAX_USTAR_SIZE}
+     * @param typeFlag  The entry type
+     *
+     * @throws IOException if the header cannot be written
+     */
+    private void writeHeader(final @NotNull byte[] name, final long size, final byte typeFlag) throws IOException {
+        final byte[] header = new byte[BLOCK_SIZE];
+
+        System.arraycopy(name, 0, header, 0, name.length);
+        writeOctal(header, MODE_OFFSET, 8, 0644);
+        writeOctal(header, UID_OFFSET, 8, 0);
+        writeOctal(header, GID_OFFSET, 8, 0);
+        writeOctal(header, SIZE_OFFSET, 12, size);
+        writeOctal(header, MTIME_OFFSET, 12, modificationTime);
+        header[TYPE_FLAG_OFFSET] = typeFlag;
+        System.arraycopy(USTAR_MAGIC, 0, header, MAGIC_OFFSET, USTAR_MAGIC.length);
+
+        Arrays.fill(header, CHECKSUM_OFFSET, CHECKSUM_OFFSET + CHECKSUM_LENGTH, (byte) ' ');
+        long checksum = 0;
+        for (final byte headerByte : header) {
+            checksum += headerByte & 0xFF;
+        }
+        writeOctal(header, CHECKSUM_OFFSET, CHECKSUM_LENGTH - 1, checksum);
+
+        output.write(header);
+    }
+
+    /**
+     * Copies at most a specified number of bytes of a stream into the archive and pads them to whole blocks.
+     *
+     * @param content  The stream to copy
+     * @param size  The number of bytes to copy
+     *
+     * @return the number of bytes copied, which is less than {@code size} only if {@code content} ended earlier
+     *
+     * @throws IOException if the content cannot be read or written
+     */
+    private long copy(final @NotNull InputStream content, final long size) throws IOException {
+        final byte[] buffer = new byte[8 * 1024];
+        long copied = 0;
+        int read = 0;
+        while (read >= 0 && copied < size) {
+            read = content.read(buffer, 0, (int) Math.min(buffer.length, size - copied));
+            if (read > 0) {
+                output.write(buffer, 0, read);
+                copied += read;
+            }
+        }
+
+        final int padding = (int) ((BLOCK_SIZE - copied % BLOCK_SIZE) % BLOCK_SIZE);
+        output.write(new byte[padding]);
+
+        return copied;
+    }
+
+    /**
+     * Formats a pax extended header record, which is prefixed by its own length in bytes.
+     *
+     * @param key  The record keyword
+     * @param value  The record value
+     *
+     * @return a record such as {@code 30 path=some/very/long/name\n}
+     */
+    @NotNull
+    private static String paxRecord(final @NotNull String key, final @NotNull String value) {
+        final int length = (" " + key + "=" + value + "\n").getBytes(StandardCharsets.UTF_8).length;
+
+        int recordLength = length + Integer.toString(length).length();
+        if (Integer.toString(recordLength).length() > Integer.toString(length).length()) {
+            recordLength++;
+        }
+
+        return recordLength + " " + key + "=" + value + "\n";
+    }
+
+    /**
+     * Writes a NUL-terminated, zero-padded octal number into a header field.
+     *
+     * @param header  The header block
+     * @param offset  The position of the field
+     * @param length  The length of the field, including the terminating NUL
+     * @param value  The number to write
+     */
+    private static void writeOctal(final @NotNull byte[] header, final int offset, final int length, final long value) {
+        final String octal = String.format("%0" + (length - 1) + "o", value);
+        System.arraycopy(octal.getBytes(StandardCharsets.US_ASCII), 0, header, offset, length - 1);
+        header[offset + length - 1] = 0;
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2024 Jiaqi Liu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.qubitpi.athena.web.endpoints;
+
+import jakarta.validation.constraints.NotNull;
+import net.jcip.annotations.NotThreadSafe;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Objects;
+import java.util.OptionalLong;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * An {@link ArchiveWriter} of ZIP archives.
+ * <p>
+ * Entries are deflated while they are written; their sizes and checksums go into data descriptors after their content,
+ * so an entry never has to be read twice. The underlying stream is never closed by this writer.
+ */
+@NotThreadSafe
+final class ZipArchiveWriter implements ArchiveWriter {
+
+    private final ZipOutputStream zip;
+
+    /**
+     * Constructor.
+     *
+     * @param output  The stream the archive is written to
+     *
+     * @throws NullPointerException if {@code output} is {@code null}
+     */
+    ZipArchiveWriter(final @NotNull OutputStream output) {
+        this.zip = new ZipOutputStream(Objects.requireNonNull(output));
+    }
+
+    @Override
+    public void putEntry(
+            final @NotNull String name,
+            final @NotNull OptionalLong size,
+            final @NotNull InputStream content
+    ) throws IOException {
+        zip.putNextEntry(new ZipEntry(Objects.requireNonNull(name)));
+        content.transferTo(zip);
+        zip.closeEntry();
+    }
+
+    @Override
+    public void finish() throws IOException {
+        zip.finish();
+        zip.flush();
+    }
+}
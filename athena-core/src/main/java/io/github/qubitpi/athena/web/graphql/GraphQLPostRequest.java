@@ -0,0 +1,149 @@
+/*
+ * Copyright 2024 Jiaqi Liu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.qubitpi.athena.web.graphql;
+
+import graphql.language.Document;
+import jakarta.validation.constraints.NotNull;
+import net.jcip.annotations.Immutable;
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * A GraphQL request sent as the JSON body of a POST, in its parsed form.
+ * <p>
+ * Besides the {@code query}, {@code variables} and {@code operationName} of the body, a request carries the parsed
+ * {@link Document} of its query. When the query is a plain lookup of a single file, i.e. a single {@code metaData}
+ * field selecting some metadata fields without aliases, arguments or fragments, the request also tells the ID of the
+ * file and the requested metadata fields, so that the lookup can be served without executing the query as is.
+ */
+@Immutable
+@ThreadSafe
+public final class GraphQLPostRequest {
+
+    private final String query;
+    private final Map<String, Object> variables;
+    private final String operationName;
+    private final Document document;
+    private final String fileId;
+    private final List<String> fields;
+
+    /**
+     * Constructor.
+     *
+     * @param query  The GraphQL query text
+     * @param variables  The values of the variables declared by {@code query}, keyed by variable name
+     * @param operationName  The name of the operation to execute, can be {@code null}
+     * @param document  The parsed form of {@code query}
+     * @param fileId  The ID of the file looked up, {@code null} if the query is not a plain single-file lookup
+     * @param fields  The metadata fields looked up, in the order they are selected; empty if the query is not a plain
+     * single-file lookup
+     *
+     * @throws NullPointerException if {@code query}, {@code variables}, {@code document} or {@code fields} is
+     * {@code null}
+     */
+    public GraphQLPostRequest(
+            final @NotNull String query,
+            final @NotNull Map<String, Object> variables,
+            final String operationName,
+            final @NotNull Document document,
+            final String fileId,
+            final @NotNull List<String> fields
+    ) {
+        this.query = Objects.requireNonNull(query);
+        this.variables = Collections.unmodifiableMap(new LinkedHashMap<>(Objects.requireNonNull(variables)));
+        this.operationName = operationName;
+        this.document = Objects.requireNonNull(document);
+        this.fileId = fileId;
+        this.fields = List.copyOf(Objects.requireNonNull(fields));
+    }
+
+    /**
+     * Returns the GraphQL query text.
+     *
+     * @return the {@code query} of the request body
+     */
+    @NotNull
+    public String getQuery() {
+        return query;
+    }
+
+    /**
+     * Returns the values of the variables declared by the query.
+     *
+     * @return an immutable map of variable values keyed by variable name, empty if the body has no {@code variables}
+     */
+    @NotNull
+    public Map<String, Object> getVariables() {
+        return variables;
+    }
+
+    /**
+     * Returns the name of the operation to execute.
+     *
+     * @return the {@code operationName} of the request body or an empty {@link Optional} if the body has none
+     */
+    @NotNull
+    public Optional<String> getOperationName() {
+        return Optional.ofNullable(operationName);
+    }
+
+    /**
+     * Returns the parsed form of the query.
+     *
+     * @return a GraphQL document
+     */
+    @NotNull
+    public Document getDocument() {
+        return document;
+    }
+
+    /**
+     * Returns the ID of the file looked up by a plain single-file lookup.
+     *
+     * @return the file ID or an empty {@link Optional} if the query is not a plain single-file lookup
+     */
+    @NotNull
+    public Optional<String> getFileId() {
+        return Optional.ofNullable(fileId);
+    }
+
+    /**
+     * Returns the metadata fields looked up by a plain single-file lookup.
+     *
+     * @return an immutable list of metadata field names in the order they are selected, empty if the query is not a
+     * plain single-file lookup
+     */
+    @NotNull
+    public List<String> getFields() {
+        return fields;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "GraphQLPostRequest{query='%s', variables=%s, operationName='%s'}",
+                query,
+                variables,
+                operationName
+        );
+    }
+}
@@ -15,34 +15,113 @@
  */
 package io.github.qubitpi.athena.web.graphql;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.qubitpi.athena.config.SystemConfig;
+import io.github.qubitpi.athena.config.SystemConfigFactory;
 import io.github.qubitpi.athena.metadata.MetaData;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import io.github.qubitpi.athena.config.ErrorMessageFormat;
+import graphql.language.Argument;
+import graphql.language.Definition;
+import graphql.language.Document;
+import graphql.language.Field;
+import graphql.language.OperationDefinition;
+import graphql.language.Selection;
+import graphql.language.SelectionSet;
+import graphql.language.StringValue;
+import graphql.language.Value;
+import graphql.language.VariableReference;
+import graphql.parser.InvalidSyntaxException;
+import graphql.parser.Parser;
 import jakarta.validation.constraints.NotNull;
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
 
-import java.util.Arrays;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 
 /**
  * {@link JacksonParser} parses GraphQL query using Jackson internally.
+ * <p>
+ * A request body is read in a single pass with a streaming Jackson parser that only materializes the {@code query},
+ * {@code variables} and {@code operationName} entries and skips any other. The query is then parsed by the GraphQL
+ * {@link Parser}. Parsed queries are kept by their text in a bounded cache, so that the same query sent again, with
+ * the same or other variables, or as the {@link #parseQuery(String) bare query} of a GET request, is not parsed
+ * again. The cache size is configured by {@value #DOCUMENT_CACHE_MAX_ENTRIES_KEY}, the same setting that bounds the
+ * document cache of the GraphQL meta store.
  */
+@ThreadSafe
 public class JacksonParser implements JsonDocumentParser {
 
+    /**
+     * The config key of the max number of parsed queries kept in cache.
+     */
+    public static final String DOCUMENT_CACHE_MAX_ENTRIES_KEY = "graphql_document_cache_max_entries";
+
+    /**
+     * The max number of parsed queries kept in cache when {@value #DOCUMENT_CACHE_MAX_ENTRIES_KEY} is not set.
+     */
+    public static final int DEFAULT_DOCUMENT_CACHE_MAX_ENTRIES = 512;
+
     private static final Logger LOG = LoggerFactory.getLogger(JacksonParser.class);
+    private static final SystemConfig SYSTEM_CONFIG = SystemConfigFactory.getInstance();
 
     private static final String QUERY = "query";
-    private static final String DOUBLE_QUOTE = "\"";
+    private static final String VARIABLES = "variables";
+    private static final String OPERATION_NAME = "operationName";
+    private static final String META_DATA = "metaData";
+    private static final String FILE_ID = "fileId";
+
+    private static final Set<String> METADATA_FIELDS = Set.of(MetaData.FILE_NAME, MetaData.FILE_TYPE);
+
+    private static final ObjectMapper JSON_MAPPER = ObjectMappers.getJsonMapper();
+    private static final TypeReference<Map<String, Object>> VARIABLES_TYPE = new TypeReference<>() { };
 
-    private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+    private static final JsonDocumentParser INSTANCE = new JacksonParser(
+            SYSTEM_CONFIG.getIntProperty(SYSTEM_CONFIG.getPackageVariableName(DOCUMENT_CACHE_MAX_ENTRIES_KEY))
+                    .orElse(DEFAULT_DOCUMENT_CACHE_MAX_ENTRIES)
+    );
 
-    private static final JsonDocumentParser INSTANCE = new JacksonParser();
+    private final int maxEntries;
+
+    @GuardedBy("this")
+    private final Map<String, Document> documents;
+
+    /**
+     * Constructor.
+     *
+     * @param maxEntries  The max number of parsed queries kept in cache
+     *
+     * @throws IllegalArgumentException if {@code maxEntries} is not positive
+     */
+    JacksonParser(final int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException(
+                    String.format("Document cache size must be positive, but was %d", maxEntries)
+            );
+        }
+
+        this.maxEntries = maxEntries;
+        this.documents = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Document> eldest) {
+                return size() > JacksonParser.this.maxEntries;
+            }
+        };
+    }
 
     /**
      * Returns a fully initialized {@link JsonDocumentParser} of this implementation.
@@ -55,75 +134,223 @@ public class JacksonParser implements JsonDocumentParser {
     }
 
     @Override
-    public String getFileId(final String graphQLDocument) {
-        final String query = getQuery(graphQLDocument);
-        return query.substring(query.indexOf(DOUBLE_QUOTE) + 1, query.lastIndexOf(DOUBLE_QUOTE));
-    }
+    public GraphQLPostRequest parse(final String graphQLDocument) {
+        Objects.requireNonNull(graphQLDocument);
 
-    @Override
-    public List<String> getFields(final String graphQLDocument) {
-        final String query = getQuery(graphQLDocument);
-        if (query.contains(MetaData.FILE_NAME) && query.contains(MetaData.FILE_TYPE)) {
-            return query.indexOf(MetaData.FILE_NAME) < query.indexOf(MetaData.FILE_TYPE)
-                    ? Arrays.asList(MetaData.FILE_NAME, MetaData.FILE_TYPE)
-                    : Arrays.asList(MetaData.FILE_TYPE, MetaData.FILE_NAME);
-        }
+        String query = null;
+        Map<String, Object> variables = Collections.emptyMap();
+        String operationName = null;
 
-        if (query.contains(MetaData.FILE_NAME)) {
-            return Collections.singletonList(MetaData.FILE_NAME);
+        try (JsonParser parser = JSON_MAPPER.getFactory().createParser(graphQLDocument)) {
+            if (parser.nextToken() == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    final String name = parser.getCurrentName();
+                    final JsonToken value = parser.nextToken();
+                    if (QUERY.equals(name) && value == JsonToken.VALUE_STRING) {
+                        query = parser.getText();
+                    } else if (VARIABLES.equals(name) && value == JsonToken.START_OBJECT) {
+                        variables = JSON_MAPPER.readValue(parser, VARIABLES_TYPE);
+                    } else if (OPERATION_NAME.equals(name) && value == JsonToken.VALUE_STRING) {
+                        operationName = parser.getText();
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            }
+        } catch (final IOException exception) {
+            LOG.error(ErrorMessageFormat.JSON_DESERIALIZATION_ERROR.logFormat(graphQLDocument));
+            throw new IllegalArgumentException(
+                    ErrorMessageFormat.JSON_DESERIALIZATION_ERROR.format(graphQLDocument),
+                    exception
+            );
         }
 
-        if (query.contains(MetaData.FILE_TYPE)) {
-            return Collections.singletonList(MetaData.FILE_TYPE);
+        if (query == null) {
+            LOG.error(ErrorMessageFormat.INVALID_GRAPHQL_REQUEST.logFormat("No 'query' field", graphQLDocument));
+            throw new IllegalArgumentException(
+                    ErrorMessageFormat.INVALID_GRAPHQL_REQUEST.format(
+                            "payload is missing 'query' field",
+                            graphQLDocument
+                    )
+            );
         }
 
-        return Collections.emptyList();
+        final Document document = getDocument(query, graphQLDocument);
+        final Field lookup = getSingleFileLookup(document, operationName);
+        final List<String> fields = lookup == null ? Collections.emptyList() : getFields(lookup.getSelectionSet());
+        final String fileId = fields.isEmpty() ? null : getFileId(lookup, variables);
+
+        return new GraphQLPostRequest(
+                query,
+                variables,
+                operationName,
+                document,
+                fileId,
+                fileId == null ? Collections.emptyList() : fields
+        );
+    }
+
+    @Override
+    public Document parseQuery(final String query) {
+        return getDocument(Objects.requireNonNull(query), query);
     }
 
     /**
-     * Given the JSON document wrapping a GraphQL query string, this method extracts the query field.
-     * <p>
-     * For example, if the document is
-     * <pre>
-     * {@code
-     * {
-     *     "query":"{\n  metaData(fileId:\"2\") {\n    fileName\nfileType  }\n}",
-     * }
-     * }
-     * </pre>
-     * Then a string of "{@code {\n  metaData(fileId:\"2\") {\n    fileName\nfileType  }\n}}" will be returned.
-     *
-     * @param graphQLDocument  The provided JSON document which cannot be {@code null}, otherwise the behavior of this
-     * method is undefined
-     *
-     * @return a native GraphQL query string
-     *
-     * @throws IllegalArgumentException if {@code graphQLDocument} is not a valid JSON or the {@code graphQLDocument}
-     * doesn't contain "query" field.
+     * Returns the number of parsed queries currently kept in cache.
+     *
+     * @return a number between 0 and the max number of parsed queries
+     */
+    public synchronized int size() {
+        return documents.size();
+    }
+
+    /**
+     * Returns the parsed form of a GraphQL query, parsing it only if it is not cached yet.
+     *
+     * @param query  The GraphQL query text
+     * @param graphQLDocument  The JSON document the query comes from, for error reporting
+     *
+     * @return the parsed query
+     *
+     * @throws IllegalArgumentException if {@code query} is not a valid GraphQL document
      */
     @NotNull
-    private static String getQuery(final @NotNull String graphQLDocument) {
-        final JsonNode jsonDocument;
+    private Document getDocument(final @NotNull String query, final @NotNull String graphQLDocument) {
+        final Document cached = getCachedDocument(query);
+        if (cached != null) {
+            return cached;
+        }
+
+        // parse outside the lock so that a large query does not hold up the others
+        final Document parsed;
         try {
-            jsonDocument = JSON_MAPPER.readTree(graphQLDocument);
-        } catch (final JsonProcessingException exception) {
-            LOG.error(ErrorMessageFormat.JSON_DESERIALIZATION_ERROR.logFormat(graphQLDocument));
+            parsed = new Parser().parseDocument(query);
+        } catch (final InvalidSyntaxException exception) {
+            LOG.error(ErrorMessageFormat.INVALID_GRAPHQL_REQUEST.logFormat(exception.getMessage(), graphQLDocument));
             throw new IllegalArgumentException(
-                    ErrorMessageFormat.JSON_DESERIALIZATION_ERROR.format(graphQLDocument),
+                    ErrorMessageFormat.INVALID_GRAPHQL_REQUEST.format("query is not valid GraphQL", graphQLDocument),
                     exception
             );
         }
 
-        if (!jsonDocument.has(QUERY)) {
-            LOG.error(ErrorMessageFormat.INVALID_GRAPHQL_REQUEST.logFormat("No 'query' field", graphQLDocument));
-            throw new IllegalArgumentException(
-                    ErrorMessageFormat.INVALID_GRAPHQL_REQUEST.format(
-                            "payload is missing 'query' field",
-                            graphQLDocument
-                    )
-            );
+        cacheDocument(query, parsed);
+        return parsed;
+    }
+
+    /**
+     * Returns the cached parsed form of a GraphQL query.
+     *
+     * @param query  The GraphQL query text
+     *
+     * @return the parsed query or {@code null} if it is not cached
+     */
+    private synchronized Document getCachedDocument(final @NotNull String query) {
+        return documents.get(query);
+    }
+
+    /**
+     * Caches the parsed form of a GraphQL query, evicting the least recently used one if the cache is full.
+     *
+     * @param query  The GraphQL query text
+     * @param document  The parsed query
+     */
+    private synchronized void cacheDocument(final @NotNull String query, final @NotNull Document document) {
+        documents.put(query, document);
+    }
+
+    /**
+     * Returns the {@code metaData} field of a plain single-file lookup.
+     * <p>
+     * A lookup is plain if the document only defines the executed operation, which is a query that selects, without
+     * alias or directive, a single {@code metaData} field. The selection of that field is checked by
+     * {@link #getFields(SelectionSet)}.
+     *
+     * @param document  The parsed query
+     * @param operationName  The name of the operation to execute, can be {@code null}
+     *
+     * @return the {@code metaData} field or {@code null} if the document is not a plain single-file lookup
+     */
+    private static Field getSingleFileLookup(final @NotNull Document document, final String operationName) {
+        final List<Definition> definitions = document.getDefinitions();
+        if (definitions.size() != 1 || !(definitions.get(0) instanceof OperationDefinition)) {
+            return null;
         }
 
-        return jsonDocument.get(QUERY).asText();
+        final OperationDefinition operation = (OperationDefinition) definitions.get(0);
+        if (operation.getOperation() != OperationDefinition.Operation.QUERY
+                || !operation.getDirectives().isEmpty()
+                || (operationName != null && !operationName.equals(operation.getName()))) {
+            return null;
+        }
+
+        final List<Selection> selections = operation.getSelectionSet().getSelections();
+        if (selections.size() != 1 || !(selections.get(0) instanceof Field)) {
+            return null;
+        }
+
+        final Field field = (Field) selections.get(0);
+        if (!META_DATA.equals(field.getName())
+                || field.getAlias() != null
+                || !field.getDirectives().isEmpty()
+                || field.getSelectionSet() == null) {
+            return null;
+        }
+
+        return field;
+    }
+
+    /**
+     * Returns the ID of the file looked up by a {@code metaData} field.
+     *
+     * @param field  The {@code metaData} field
+     * @param variables  The values of the variables of the request
+     *
+     * @return the file ID given as a string literal or as a variable, or {@code null} if it is given in any other way
+     */
+    private static String getFileId(final @NotNull Field field, final @NotNull Map<String, Object> variables) {
+        final List<Argument> arguments = field.getArguments();
+        if (arguments.size() != 1 || !FILE_ID.equals(arguments.get(0).getName())) {
+            return null;
+        }
+
+        final Value<?> value = arguments.get(0).getValue();
+        if (value instanceof StringValue) {
+            return ((StringValue) value).getValue();
+        }
+        if (value instanceof VariableReference) {
+            final Object fileId = variables.get(((VariableReference) value).getName());
+            return fileId instanceof String ? (String) fileId : null;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the metadata fields selected by a {@code metaData} field.
+     *
+     * @param selectionSet  The selection of the {@code metaData} field
+     *
+     * @return the metadata field names in the order they are selected, or an empty list if anything else than a plain
+     * metadata field is selected
+     */
+    @NotNull
+    private static List<String> getFields(final @NotNull SelectionSet selectionSet) {
+        final List<String> fields = new ArrayList<>();
+        for (final Selection selection : selectionSet.getSelections()) {
+            if (!(selection instanceof Field)) {
+                return Collections.emptyList();
+            }
+
+            final Field field = (Field) selection;
+            if (!METADATA_FIELDS.contains(field.getName())
+                    || field.getAlias() != null
+                    || !field.getArguments().isEmpty()
+                    || !field.getDirectives().isEmpty()
+                    || field.getSelectionSet() != null) {
+                return Collections.emptyList();
+            }
+
+            fields.add(field.getName());
+        }
+        return fields;
     }
 }
@@ -17,6 +17,8 @@ package io.github.qubitpi.athena.web.graphql;
 
 import io.github.qubitpi.athena.web.endpoints.MetaServlet;
 
+import io.github.qubitpi.athena.config.ErrorMessageFormat;
+import graphql.language.Document;
 import jakarta.validation.constraints.NotNull;
 
 import java.util.Collections;
@@ -33,14 +35,46 @@ import java.util.List;
  * <pre>
  * {@code
  * {
- *     "query":"{\n  metaData(fileId:\"...\") {\n    fileName\nfileType  }\n}"
+ *     "query":"{\n  metaData(fileId:\"...\") {\n    fileName\nfileType  }\n}",
+ *     "variables": { ... },
+ *     "operationName": "..."
  * }
  * }
  * </pre>
- * Note that the selection {@code fileName\nfileType} can be any combination of file metadata object attributes
+ * where {@code variables} and {@code operationName} are optional. Note that the selection {@code fileName\nfileType}
+ * can be any combination of file metadata object attributes
+ * <p>
+ * A body is parsed once into a {@link GraphQLPostRequest}, from which everything else is read.
  */
 public interface JsonDocumentParser {
 
+    /**
+     * Parses the JSON document wrapping a GraphQL query string into a structured request.
+     *
+     * @param graphQLDocument  The provided JSON document
+     *
+     * @return the request carried by the document
+     *
+     * @throws NullPointerException if {@code graphQLDocument} is {@code null}
+     * @throws IllegalArgumentException if {@code graphQLDocument} is not a valid JSON, has no "query" field or its
+     * query is not a valid GraphQL document
+     */
+    @NotNull
+    GraphQLPostRequest parse(@NotNull String graphQLDocument);
+
+    /**
+     * Parses a bare GraphQL query string, such as the {@code query} parameter of a GET request.
+     *
+     * @param query  The provided GraphQL query string
+     *
+     * @return the parsed query
+     *
+     * @throws NullPointerException if {@code query} is {@code null}
+     * @throws IllegalArgumentException if {@code query} is not a valid GraphQL document
+     */
+    @NotNull
+    Document parseQuery(@NotNull String query);
+
     /**
      * Given the JSON document wrapping a GraphQL query string, this method extracts the query argument, which is a
      * file ID.
@@ -57,12 +91,18 @@ public interface JsonDocumentParser {
      *
      * @param graphQLDocument  The provided JSON document
      *
-     * @return an ordered list of requested metadata fields
+     * @return the ID of the file whose metadata is requested
      *
      * @throws NullPointerException if {@code graphQLDocument} is {@code null}
+     * @throws IllegalArgumentException if {@code graphQLDocument} cannot be {@link #parse(String) parsed} or is not a
+     * plain lookup of a single file
      */
     @NotNull
-    String getFileId(@NotNull String graphQLDocument);
+    default String getFileId(@NotNull String graphQLDocument) {
+        return parse(graphQLDocument).getFileId().orElseThrow(() -> new IllegalArgumentException(
+                ErrorMessageFormat.INVALID_GRAPHQL_REQUEST.format("no file ID was found", graphQLDocument)
+        ));
+    }
 
     /**
      * Given the JSON document wrapping a GraphQL query string, this method extracts the query field and then the
@@ -89,15 +129,18 @@ public interface JsonDocumentParser {
      * </pre>
      * then the returned list becomes ["fileType", "fileNAME"]
      * <p>
-     * If no fields are found, this method returns an {@link Collections#emptyList() empty list}
+     * If the document is not a plain lookup of a single file, this method returns an
+     * {@link Collections#emptyList() empty list}
      *
-     * @param graphQLDocument  The provided JSON document which cannot be {@code null}, otherwise the behavior of this
-     * method is undefined
+     * @param graphQLDocument  The provided JSON document
      *
      * @return an ordered list of requested metadata fields
      *
      * @throws NullPointerException if {@code graphQLDocument} is {@code null}
+     * @throws IllegalArgumentException if {@code graphQLDocument} cannot be {@link #parse(String) parsed}
      */
     @NotNull
-    List<String> getFields(@NotNull String graphQLDocument);
+    default List<String> getFields(@NotNull String graphQLDocument) {
+        return parse(graphQLDocument).getFields();
+    }
 }
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2024 Jiaqi Liu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.qubitpi.athena.web.graphql;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import jakarta.validation.constraints.NotNull;
+import net.jcip.annotations.Immutable;
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * {@link ObjectMappers} holds the Jackson {@link ObjectMapper} shared by the GraphQL web layer.
+ * <p>
+ * An {@link ObjectMapper} caches the serializers and deserializers it has looked up, so creating one per request
+ * throws that work away. The shared instance is configured once here and never reconfigured afterwards, which makes it
+ * safe to use from many threads at the same time.
+ * <p>
+ * The shared instance neither closes nor flushes the streams it writes to after each value. The container owns the
+ * response stream and flushes it once the whole entity is written.
+ */
+@Immutable
+@ThreadSafe
+public final class ObjectMappers {
+
+    private static final ObjectMapper JSON_MAPPER = new ObjectMapper()
+            .disable(SerializationFeature.FAIL_ON_EMPTY_BEANS)
+            .disable(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+    /**
+     * Constructor.
+     * <p>
+     * Suppress default constructor for noninstantiability.
+     *
+     * @throws AssertionError when called
+     */
+    private ObjectMappers() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Returns the shared JSON mapper.
+     *
+     * @return the same instance all the time
+     */
+    @NotNull
+    public static ObjectMapper getJsonMapper() {
+        return JSON_MAPPER;
+    }
+}
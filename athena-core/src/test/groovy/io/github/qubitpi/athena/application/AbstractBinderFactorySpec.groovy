@@ -19,6 +19,9 @@ package io.github.qubitpi.athena.application
 import io.github.qubitpi.athena.web.graphql.JacksonParser
 import io.github.qubitpi.athena.web.graphql.JsonDocumentParser
 
+import io.github.qubitpi.athena.config.SystemConfig
+import io.github.qubitpi.athena.config.SystemConfigFactory
+
 import org.glassfish.hk2.api.DynamicConfiguration
 import org.glassfish.hk2.utilities.Binder
 
@@ -27,11 +30,23 @@ import io.github.qubitpi.athena.file.identifier.FileIdGenerator
 import io.github.qubitpi.athena.file.identifier.FileNameAndUploadedTimeBasedIdGenerator
 import io.github.qubitpi.athena.filestore.FileStore
 import io.github.qubitpi.athena.filestore.TestFileStore
+import io.github.qubitpi.athena.filestore.cache.CachingFileStore
+import io.github.qubitpi.athena.filestore.compression.CompressingFileStore
+import io.github.qubitpi.athena.filestore.compression.EncodingIndex
+import io.github.qubitpi.athena.filestore.compression.TestEncodingIndex
+import io.github.qubitpi.athena.filestore.dedup.ContentIndex
+import io.github.qubitpi.athena.filestore.dedup.DeduplicatingFileStore
+import io.github.qubitpi.athena.filestore.dedup.TestContentIndex
 import io.github.qubitpi.athena.metastore.MetaStore
 import io.github.qubitpi.athena.metastore.TestMetaStore
+import io.github.qubitpi.athena.metastore.cache.CachingMetaStore
+import io.github.qubitpi.athena.metastore.writebehind.WriteBehindMetaStore
 import spock.lang.Shared
 import spock.lang.Specification
 
+import java.nio.file.Files
+import java.util.concurrent.Executor
+
 class AbstractBinderFactorySpec extends Specification {
 
     @Shared
@@ -88,6 +103,24 @@ class AbstractBinderFactorySpec extends Specification {
                 _
         )
 
+        and: "file store executor is injected"
+        1 * dynamicConfiguration.bind(
+                {
+                    it.advertisedContracts.contains(Executor.canonicalName)
+                    it.name == AbstractBinderFactory.FILE_STORE_EXECUTOR
+                },
+                _
+        )
+
+        and: "response writer executor is injected"
+        1 * dynamicConfiguration.bind(
+                {
+                    it.advertisedContracts.contains(Executor.canonicalName)
+                    it.name == AbstractBinderFactory.RESPONSE_WRITER_EXECUTOR
+                },
+                _
+        )
+
         and: "GraphQL resource for reading meta data is injected"
         1 * dynamicConfiguration.bind(
                 {
@@ -117,4 +150,246 @@ class AbstractBinderFactorySpec extends Specification {
         then: "The afterBinding hook was called"
         binderFactory.afterBindingHookWasCalled
     }
+
+    def "File store is decorated with a cache when a cache directory is configured"() {
+        given: "a cache directory is configured"
+        SystemConfig systemConfig = SystemConfigFactory.getInstance()
+        String cacheDirKey = systemConfig.getPackageVariableName("file_store_cache_dir")
+        systemConfig.setProperty(cacheDirKey, Files.createTempDirectory("athena-file-store-cache").toString())
+
+        and: "an mocked HK2 Descriptor binder "
+        DynamicConfiguration dynamicConfiguration = Mock(DynamicConfiguration)
+
+        when:
+        binderFactory.buildBinder().bind(dynamicConfiguration)
+
+        then: "the configured file store is bound as the cache delegate"
+        1 * dynamicConfiguration.bind(
+                {
+                    it.advertisedContracts.contains(FileStore.canonicalName) &&
+                            it.implementation.contains(TestFileStore.canonicalName) &&
+                            it.name == CachingFileStore.DELEGATE
+                },
+                _
+        )
+
+        and: "the cache takes precedence over its delegate"
+        1 * dynamicConfiguration.bind(
+                {
+                    it.advertisedContracts.contains(FileStore.canonicalName) &&
+                            it.implementation.contains(CachingFileStore.canonicalName) &&
+                            it.ranking > 0
+                },
+                _
+        )
+
+        cleanup:
+        systemConfig.clearProperty(cacheDirKey)
+    }
+
+    def "Deduplication decorates the cache, which decorates the configured file store"() {
+        given: "a cache directory is configured"
+        SystemConfig systemConfig = SystemConfigFactory.getInstance()
+        String cacheDirKey = systemConfig.getPackageVariableName("file_store_cache_dir")
+        systemConfig.setProperty(cacheDirKey, Files.createTempDirectory("athena-file-store-cache").toString())
+
+        and: "a shared content index is provided"
+        binderFactory = new TestBinderFactory() {
+            @Override
+            protected Class<? extends ContentIndex> buildContentIndex() {
+                TestContentIndex
+            }
+        }
+
+        and: "an mocked HK2 Descriptor binder "
+        DynamicConfiguration dynamicConfiguration = Mock(DynamicConfiguration)
+
+        when:
+        binderFactory.buildBinder().bind(dynamicConfiguration)
+
+        then: "the configured file store is decorated by the cache"
+        1 * dynamicConfiguration.bind(
+                {
+                    it.implementation.contains(TestFileStore.canonicalName) &&
+                            it.name == CachingFileStore.DELEGATE
+                },
+                _
+        )
+
+        and: "the cache is decorated by deduplication"
+        1 * dynamicConfiguration.bind(
+                {
+                    it.implementation.contains(CachingFileStore.canonicalName) &&
+                            it.name == DeduplicatingFileStore.DELEGATE
+                },
+                _
+        )
+
+        and: "the content index is injected"
+        1 * dynamicConfiguration.bind(
+                {
+                    it.advertisedContracts.contains(ContentIndex.canonicalName) &&
+                            it.implementation.contains(TestContentIndex.canonicalName)
+                },
+                _
+        )
+
+        and: "deduplication takes precedence over both"
+        1 * dynamicConfiguration.bind(
+                {
+                    it.advertisedContracts.contains(FileStore.canonicalName) &&
+                            it.implementation.contains(DeduplicatingFileStore.canonicalName) &&
+                            it.ranking > 1
+                },
+                _
+        )
+
+        cleanup:
+        systemConfig.clearProperty(cacheDirKey)
+    }
+
+    def "File store is decorated with compression when compressed file types are configured"() {
+        given: "compressed file types are configured"
+        SystemConfig systemConfig = SystemConfigFactory.getInstance()
+        String compressedTypesKey = systemConfig.getPackageVariableName("file_store_compressed_types")
+        systemConfig.setProperty(compressedTypesKey, "txt, PDF")
+
+        and: "a shared encoding index is provided"
+        binderFactory = new TestBinderFactory() {
+            @Override
+            protected Class<? extends EncodingIndex> buildEncodingIndex() {
+                TestEncodingIndex
+            }
+        }
+
+        and: "an mocked HK2 Descriptor binder "
+        DynamicConfiguration dynamicConfiguration = Mock(DynamicConfiguration)
+
+        when:
+        binderFactory.buildBinder().bind(dynamicConfiguration)
+
+        then: "the configured file store is decorated by compression"
+        1 * dynamicConfiguration.bind(
+                {
+                    it.implementation.contains(TestFileStore.canonicalName) &&
+                            it.name == CompressingFileStore.DELEGATE
+                },
+                _
+        )
+
+        and: "the encoding index is injected"
+        1 * dynamicConfiguration.bind(
+                {
+                    it.advertisedContracts.contains(EncodingIndex.canonicalName) &&
+                            it.implementation.contains(TestEncodingIndex.canonicalName)
+                },
+                _
+        )
+
+        cleanup:
+        systemConfig.clearProperty(compressedTypesKey)
+    }
+
+    def "Compression cannot be configured without an encoding index"() {
+        given: "compressed file types are configured"
+        SystemConfig systemConfig = SystemConfigFactory.getInstance()
+        String compressedTypesKey = systemConfig.getPackageVariableName("file_store_compressed_types")
+        systemConfig.setProperty(compressedTypesKey, "TXT")
+
+        when:
+        binderFactory.buildBinder().bind(Mock(DynamicConfiguration))
+
+        then:
+        thrown(IllegalStateException)
+
+        cleanup:
+        systemConfig.clearProperty(compressedTypesKey)
+    }
+
+    def "Meta store is decorated with a cache when a cache size is configured"() {
+        given: "a meta store cache size is configured"
+        SystemConfig systemConfig = SystemConfigFactory.getInstance()
+        String cacheSizeKey = systemConfig.getPackageVariableName("meta_store_cache_max_entries")
+        systemConfig.setProperty(cacheSizeKey, "100")
+
+        and: "an mocked HK2 Descriptor binder "
+        DynamicConfiguration dynamicConfiguration = Mock(DynamicConfiguration)
+
+        when:
+        binderFactory.buildBinder().bind(dynamicConfiguration)
+
+        then: "the configured meta store is bound as the cache delegate"
+        1 * dynamicConfiguration.bind(
+                {
+                    it.advertisedContracts.contains(MetaStore.canonicalName) &&
+                            it.implementation.contains(TestMetaStore.canonicalName) &&
+                            it.name == CachingMetaStore.DELEGATE
+                },
+                _
+        )
+
+        and: "the cache takes precedence over its delegate"
+        1 * dynamicConfiguration.bind(
+                {
+                    it.advertisedContracts.contains(MetaStore.canonicalName) &&
+                            it.implementation.contains(CachingMetaStore.canonicalName) &&
+                            it.ranking > 0
+                },
+                _
+        )
+
+        cleanup:
+        systemConfig.clearProperty(cacheSizeKey)
+    }
+
+    def "Meta store saves go through write-behind, underneath the cache, when both are configured"() {
+        given:
+        SystemConfig systemConfig = SystemConfigFactory.getInstance()
+        String cacheSizeKey = systemConfig.getPackageVariableName("meta_store_cache_max_entries")
+        String writeBehindKey = systemConfig.getPackageVariableName("meta_store_write_behind_enabled")
+        systemConfig.setProperty(cacheSizeKey, "100")
+        systemConfig.setProperty(writeBehindKey, "true")
+
+        and: "an mocked HK2 Descriptor binder "
+        DynamicConfiguration dynamicConfiguration = Mock(DynamicConfiguration)
+
+        when:
+        binderFactory.buildBinder().bind(dynamicConfiguration)
+
+        then: "the configured meta store is the write-behind delegate"
+        1 * dynamicConfiguration.bind(
+                {
+                    it.advertisedContracts.contains(MetaStore.canonicalName) &&
+                            it.implementation.contains(TestMetaStore.canonicalName) &&
+                            it.name == WriteBehindMetaStore.DELEGATE &&
+                            it.ranking == 0
+                },
+                _
+        )
+
+        and: "write-behind is the cache delegate"
+        1 * dynamicConfiguration.bind(
+                {
+                    it.advertisedContracts.contains(MetaStore.canonicalName) &&
+                            it.implementation.contains(WriteBehindMetaStore.canonicalName) &&
+                            it.name == CachingMetaStore.DELEGATE &&
+                            it.ranking == 1
+                },
+                _
+        )
+
+        and: "the cache takes precedence over both"
+        1 * dynamicConfiguration.bind(
+                {
+                    it.advertisedContracts.contains(MetaStore.canonicalName) &&
+                            it.implementation.contains(CachingMetaStore.canonicalName) &&
+                            it.ranking == 2
+                },
+                _
+        )
+
+        cleanup:
+        systemConfig.clearProperty(cacheSizeKey)
+        systemConfig.clearProperty(writeBehindKey)
+    }
 }
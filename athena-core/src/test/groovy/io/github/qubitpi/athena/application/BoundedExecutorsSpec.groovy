@@ -0,0 +1,62 @@
+/*
+ * Copyright 2024 Jiaqi Liu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.qubitpi.athena.application
+
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.RejectedExecutionException
+import java.util.concurrent.TimeUnit
+
+class BoundedExecutorsSpec extends Specification {
+
+    def "Tasks beyond the pool and queue capacity are rejected"() {
+        given: "a pool of 1 thread and 1 queue slot"
+        ExecutorService executor = BoundedExecutors.newBoundedExecutor("test", 1, 1)
+        CountDownLatch release = new CountDownLatch(1)
+
+        and: "the thread and the queue slot are both taken"
+        executor.execute { release.await() }
+        executor.execute { release.await() }
+
+        when: "one more task is submitted"
+        executor.execute { }
+
+        then:
+        thrown(RejectedExecutionException)
+
+        cleanup:
+        release.countDown()
+        executor.shutdown()
+        executor.awaitTermination(5, TimeUnit.SECONDS)
+    }
+
+    def "Pool threads are named daemon threads"() {
+        given:
+        ExecutorService executor = BoundedExecutors.newBoundedExecutor("test", 1, 1)
+
+        when:
+        Thread thread = executor.submit({ Thread.currentThread() } as java.util.concurrent.Callable<Thread>).get()
+
+        then:
+        thread.daemon
+        thread.name == "test-1"
+
+        cleanup:
+        executor.shutdown()
+    }
+}
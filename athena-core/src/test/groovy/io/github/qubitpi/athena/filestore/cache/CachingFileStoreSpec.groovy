@@ -0,0 +1,311 @@
+/*
+ * Copyright 2024 Jiaqi Liu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.qubitpi.athena.filestore.cache
+
+import io.github.qubitpi.athena.filestore.FileChannelInputStream
+import io.github.qubitpi.athena.filestore.FileStore
+
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import java.nio.file.Files
+import java.nio.file.Path
+import java.util.OptionalLong
+
+class CachingFileStoreSpec extends Specification {
+
+    static final String FILE_ID = "a/b+c=="
+    static final byte[] CONTENT = (0..<10_000).collect { (byte) (it % 127) } as byte[]
+
+    @TempDir
+    Path cacheDirectory
+
+    def "Repeated downloads are served from local disk"() {
+        given:
+        FileStore origin = Mock(FileStore) {
+            getSize(_ as String) >> OptionalLong.of(CONTENT.length)
+        }
+        CachingFileStore fileStore = new CachingFileStore(origin, cacheDirectory, 1_000_000)
+
+        when: "a file is downloaded twice"
+        byte[] first = fileStore.download(FILE_ID).bytes
+        byte[] second = fileStore.download(FILE_ID).bytes
+
+        then: "the origin is only hit once"
+        1 * origin.download(FILE_ID) >> new ByteArrayInputStream(CONTENT)
+        first == CONTENT
+        second == CONTENT
+
+        and: "the file is accounted for in the cache"
+        fileStore.isCached(FILE_ID)
+        fileStore.getCachedBytes() == CONTENT.length
+        fileStore.getSize(FILE_ID).getAsLong() == CONTENT.length
+    }
+
+    def "Partially read download is not cached"() {
+        given:
+        FileStore origin = Mock(FileStore) {
+            getSize(_ as String) >> OptionalLong.of(CONTENT.length)
+            download(FILE_ID) >> { new ByteArrayInputStream(CONTENT) }
+        }
+        CachingFileStore fileStore = new CachingFileStore(origin, cacheDirectory, 1_000_000)
+
+        when: "a download is closed half way"
+        InputStream download = fileStore.download(FILE_ID)
+        download.readNBytes(100)
+        download.close()
+
+        then: "nothing is left in the cache"
+        !fileStore.isCached(FILE_ID)
+        Files.list(cacheDirectory).count() == 0
+    }
+
+    def "Least recently used files are evicted once the cache is full"() {
+        given: "a cache that holds 2 files"
+        FileStore origin = Mock(FileStore) {
+            getSize(_ as String) >> OptionalLong.of(CONTENT.length)
+            download(_ as String) >> { new ByteArrayInputStream(CONTENT) }
+        }
+        CachingFileStore fileStore = new CachingFileStore(origin, cacheDirectory, CONTENT.length * 2)
+
+        when: "3 files are downloaded, the first one being used again before the third one"
+        fileStore.download("1").bytes
+        fileStore.download("2").bytes
+        fileStore.download("1").bytes
+        fileStore.download("3").bytes
+
+        then: "the least recently used file is evicted"
+        fileStore.isCached("1")
+        !fileStore.isCached("2")
+        fileStore.isCached("3")
+        fileStore.getCachedBytes() == CONTENT.length * 2
+        Files.list(cacheDirectory).count() == 2
+    }
+
+    def "Files larger than the cache are not cached"() {
+        given:
+        FileStore origin = Mock(FileStore) {
+            getSize(_ as String) >> OptionalLong.of(CONTENT.length)
+            download(FILE_ID) >> { new ByteArrayInputStream(CONTENT) }
+        }
+        CachingFileStore fileStore = new CachingFileStore(origin, cacheDirectory, CONTENT.length - 1)
+
+        expect:
+        fileStore.download(FILE_ID).bytes == CONTENT
+        !fileStore.isCached(FILE_ID)
+        Files.list(cacheDirectory).count() == 0
+    }
+
+    def "Byte ranges of cached files are served from local disk"() {
+        given:
+        FileStore origin = Mock(FileStore) {
+            getSize(_ as String) >> OptionalLong.of(CONTENT.length)
+        }
+        CachingFileStore fileStore = new CachingFileStore(origin, cacheDirectory, 1_000_000)
+
+        when:
+        fileStore.download(FILE_ID).bytes
+        byte[] range = fileStore.download(FILE_ID, 100, 50).bytes
+
+        then:
+        1 * origin.download(FILE_ID) >> new ByteArrayInputStream(CONTENT)
+        0 * origin.download(FILE_ID, _, _)
+        range == Arrays.copyOfRange(CONTENT, 100, 150)
+    }
+
+    def "Cached files are served as zero-copy file channel streams"() {
+        given:
+        FileStore origin = Mock(FileStore) {
+            getSize(_ as String) >> OptionalLong.of(CONTENT.length)
+            download(FILE_ID) >> { new ByteArrayInputStream(CONTENT) }
+        }
+        CachingFileStore fileStore = new CachingFileStore(origin, cacheDirectory, 1_000_000)
+        fileStore.download(FILE_ID).bytes
+
+        when:
+        InputStream whole = fileStore.download(FILE_ID)
+        InputStream range = fileStore.download(FILE_ID, 100, 50)
+
+        then:
+        whole instanceof FileChannelInputStream
+        range instanceof FileChannelInputStream
+
+        and:
+        ByteArrayOutputStream output = new ByteArrayOutputStream()
+        whole.transferTo(output) == CONTENT.length
+        output.toByteArray() == CONTENT
+        range.bytes == Arrays.copyOfRange(CONTENT, 100, 150)
+
+        cleanup:
+        whole?.close()
+        range?.close()
+    }
+
+    def "A download of a file being fetched is served by the origin without waiting"() {
+        given:
+        FileStore origin = Mock(FileStore) {
+            getSize(_ as String) >> OptionalLong.of(CONTENT.length)
+        }
+        CachingFileStore fileStore = new CachingFileStore(origin, cacheDirectory, 1_000_000)
+
+        when: "a second download starts while the first one is fetching the file"
+        InputStream first = fileStore.download(FILE_ID)
+        byte[] second = fileStore.download(FILE_ID).bytes
+
+        and: "the first download is read to its end"
+        byte[] fetched = first.bytes
+
+        then: "both downloads hit the origin, and the file is cached once"
+        2 * origin.download(FILE_ID) >> { new ByteArrayInputStream(CONTENT) }
+        second == CONTENT
+        fetched == CONTENT
+        fileStore.isCached(FILE_ID)
+        Files.list(cacheDirectory).count() == 1
+    }
+
+    def "An abandoned fetch releases its reserved space"() {
+        given: "a cache with room for one file"
+        FileStore origin = Mock(FileStore) {
+            getSize(_ as String) >> OptionalLong.of(CONTENT.length)
+            download(FILE_ID) >> { new ByteArrayInputStream(CONTENT) }
+        }
+        CachingFileStore fileStore = new CachingFileStore(origin, cacheDirectory, CONTENT.length)
+
+        when: "the download fetching the file is closed half way and the file is downloaded again"
+        InputStream first = fileStore.download(FILE_ID)
+        first.readNBytes(100)
+        first.close()
+        byte[] second = fileStore.download(FILE_ID).bytes
+
+        then: "the second download fills the cache"
+        second == CONTENT
+        fileStore.isCached(FILE_ID)
+        fileStore.getCachedBytes() == CONTENT.length
+    }
+
+    def "Files whose size the origin cannot tell are served uncached"() {
+        given:
+        FileStore origin = Mock(FileStore) {
+            getSize(FILE_ID) >> OptionalLong.empty()
+            download(FILE_ID) >> { new ByteArrayInputStream(CONTENT) }
+        }
+        CachingFileStore fileStore = new CachingFileStore(origin, cacheDirectory, 1_000_000)
+
+        expect:
+        fileStore.download(FILE_ID).bytes == CONTENT
+        !fileStore.isCached(FILE_ID)
+        Files.list(cacheDirectory).count() == 0
+    }
+
+    def "Byte ranges of uncached files are served by the origin without filling the cache"() {
+        given:
+        FileStore origin = Mock(FileStore) {
+            getSize(_ as String) >> OptionalLong.of(CONTENT.length)
+        }
+        CachingFileStore fileStore = new CachingFileStore(origin, cacheDirectory, 1_000_000)
+
+        when:
+        byte[] range = fileStore.download(FILE_ID, 100, 50).bytes
+
+        then:
+        1 * origin.download(FILE_ID, 100, 50) >> new ByteArrayInputStream(Arrays.copyOfRange(CONTENT, 100, 150))
+        0 * origin.download(FILE_ID)
+        range == Arrays.copyOfRange(CONTENT, 100, 150)
+        !fileStore.isCached(FILE_ID)
+    }
+
+    def "Concurrent fetches never take more disk space than the cache capacity"() {
+        given: "a cache with room for one and a half files"
+        FileStore origin = Mock(FileStore) {
+            getSize(_ as String) >> OptionalLong.of(CONTENT.length)
+            download(_ as String) >> { new ByteArrayInputStream(CONTENT) }
+        }
+        CachingFileStore fileStore = new CachingFileStore(origin, cacheDirectory, CONTENT.length * 3 / 2 as long)
+
+        when: "two files are fetched at the same time"
+        InputStream first = fileStore.download("1")
+        InputStream second = fileStore.download("2")
+        byte[] firstHalf = first.readNBytes(CONTENT.length / 2 as int)
+        byte[] secondHalf = second.readNBytes(CONTENT.length / 2 as int)
+
+        then: "the second fetch finds no room to reserve and never writes to the cache directory"
+        cacheDirectory.toFile().listFiles()*.length().sum() <= CONTENT.length * 3 / 2
+
+        when:
+        byte[] firstRest = first.bytes
+        byte[] secondRest = second.bytes
+
+        then: "both downloads are complete, but the cache only has room for one of them"
+        firstHalf == Arrays.copyOfRange(CONTENT, 0, firstHalf.length)
+        firstRest == Arrays.copyOfRange(CONTENT, firstHalf.length, CONTENT.length)
+        secondHalf == Arrays.copyOfRange(CONTENT, 0, secondHalf.length)
+        secondRest == Arrays.copyOfRange(CONTENT, secondHalf.length, CONTENT.length)
+        fileStore.isCached("1") ^ fileStore.isCached("2")
+        fileStore.getCachedBytes() == CONTENT.length
+        Files.list(cacheDirectory).count() == 1
+    }
+
+    def "A file deleted while being fetched is not cached"() {
+        given:
+        FileStore origin = Mock(FileStore) {
+            getSize(_ as String) >> OptionalLong.of(CONTENT.length)
+            download(FILE_ID) >> { new ByteArrayInputStream(CONTENT) }
+        }
+        CachingFileStore fileStore = new CachingFileStore(origin, cacheDirectory, 1_000_000)
+
+        when:
+        InputStream download = fileStore.download(FILE_ID)
+        fileStore.delete(FILE_ID)
+        download.bytes
+
+        then:
+        !fileStore.isCached(FILE_ID)
+        Files.list(cacheDirectory).count() == 0
+    }
+
+    def "Cached files survive a restart"() {
+        given: "a file is cached"
+        FileStore origin = Mock(FileStore) {
+            getSize(_ as String) >> OptionalLong.of(CONTENT.length)
+        }
+        CachingFileStore fileStore = new CachingFileStore(origin, cacheDirectory, 1_000_000)
+
+        when:
+        fileStore.download(FILE_ID).bytes
+        CachingFileStore restarted = new CachingFileStore(origin, cacheDirectory, 1_000_000)
+
+        then: "a new cache created on the same directory serves the file without hitting the origin"
+        1 * origin.download(FILE_ID) >> new ByteArrayInputStream(CONTENT)
+        restarted.isCached(FILE_ID)
+        restarted.getCachedBytes() == CONTENT.length
+        restarted.download(FILE_ID).bytes == CONTENT
+    }
+
+    def "Uploads go to the origin"() {
+        given:
+        FileStore origin = Mock(FileStore) {
+            getSize(_ as String) >> OptionalLong.of(CONTENT.length)
+        }
+        io.github.qubitpi.athena.file.File file = Mock(io.github.qubitpi.athena.file.File)
+
+        when:
+        String fileId = new CachingFileStore(origin, cacheDirectory, 1_000_000).upload(file)
+
+        then:
+        1 * origin.upload(file) >> FILE_ID
+        fileId == FILE_ID
+    }
+}
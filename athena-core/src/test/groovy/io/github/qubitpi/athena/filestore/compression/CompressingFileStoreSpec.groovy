@@ -0,0 +1,183 @@
+/*
+ * Copyright 2024 Jiaqi Liu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.qubitpi.athena.filestore.compression
+
+import io.github.qubitpi.athena.file.File
+import io.github.qubitpi.athena.filestore.FileStore
+import io.github.qubitpi.athena.filestore.FileVersion
+import io.github.qubitpi.athena.metadata.FileType
+import io.github.qubitpi.athena.metadata.MetaData
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.util.zip.GZIPInputStream
+import java.util.zip.InflaterInputStream
+
+class CompressingFileStoreSpec extends Specification {
+
+    static final byte[] CONTENT = ("It is a truth universally acknowledged, that a single man in possession of a good " +
+            "fortune, must be in want of a wife. ").multiply(1000).bytes
+
+    Map<String, byte[]> stored
+    FileStore origin
+    EncodingIndex encodingIndex
+
+    def setup() {
+        stored = [:]
+        origin = Mock(FileStore) {
+            upload(_ as File) >> { File file ->
+                stored["stored"] = file.fileContent.bytes
+                "stored"
+            }
+            download("stored") >> { new ByteArrayInputStream(stored["stored"]) }
+            download("legacy") >> { new ByteArrayInputStream(CONTENT) }
+            getSize("legacy") >> OptionalLong.of(CONTENT.length)
+            getVersion("stored") >> { Optional.of(new FileVersion("tag", null, OptionalLong.of(stored["stored"].length))) }
+            getVersion("legacy") >> Optional.of(new FileVersion("legacy-tag", null, OptionalLong.of(CONTENT.length)))
+            getContentEncoding(_) >> Optional.empty()
+        }
+        encodingIndex = new TestEncodingIndex()
+    }
+
+    @Unroll
+    def "#codec compressed files are stored compressed and downloaded decompressed"() {
+        given:
+        CompressingFileStore fileStore = new CompressingFileStore(origin, encodingIndex, [(FileType.TXT): codec])
+
+        when:
+        String fileId = fileStore.upload(newFile(FileType.TXT))
+
+        then: "the file ID is that of the decorated store and the encoding is recorded aside"
+        fileId == "stored"
+        encodingIndex.getEncoding(fileId).get().contentCoding == codec.contentCoding
+        encodingIndex.getEncoding(fileId).get().size == CONTENT.length
+
+        and: "the stored bytes are a standard stream of the codec"
+        stored["stored"].length < CONTENT.length / 10
+        decoder(new ByteArrayInputStream(stored["stored"])).bytes == CONTENT
+
+        and: "downloads are decompressed, encoded downloads are not"
+        fileStore.download(fileId).bytes == CONTENT
+        fileStore.downloadEncoded(fileId).bytes == stored["stored"]
+        fileStore.getContentEncoding(fileId) == Optional.of(codec.contentCoding)
+
+        and: "byte ranges are cut out of the decompressed content, whose size is known"
+        fileStore.download(fileId, 10, 20).bytes == Arrays.copyOfRange(CONTENT, 10, 30)
+        fileStore.getSize(fileId) == OptionalLong.of(CONTENT.length)
+        fileStore.getVersion(fileId).get().ETag == "tag"
+        fileStore.getVersion(fileId).get().size == OptionalLong.of(CONTENT.length)
+
+        where:
+        codec                    | decoder
+        CompressionCodec.GZIP    | { InputStream in -> new GZIPInputStream(in) }
+        CompressionCodec.DEFLATE | { InputStream in -> new InflaterInputStream(in) }
+    }
+
+    def "Files of types that are not opted in pass through untouched"() {
+        given:
+        CompressingFileStore fileStore = new CompressingFileStore(
+                origin,
+                encodingIndex,
+                [(FileType.TXT): CompressionCodec.GZIP]
+        )
+
+        when:
+        String fileId = fileStore.upload(newFile(FileType.PDF))
+
+        then:
+        fileId == "stored"
+        stored["stored"] == CONTENT
+        encodingIndex.getEncoding(fileId) == Optional.empty()
+        fileStore.getContentEncoding(fileId) == Optional.empty()
+    }
+
+    def "Nothing is compressed by default"() {
+        expect:
+        !CompressingFileStore.isConfigured()
+        new CompressingFileStore(origin, encodingIndex).upload(newFile(FileType.TXT)) == "stored"
+        stored["stored"] == CONTENT
+    }
+
+    def "Files stored without compression are served by the decorated store"() {
+        given:
+        CompressingFileStore fileStore = new CompressingFileStore(origin, encodingIndex)
+
+        expect:
+        fileStore.download("legacy").bytes == CONTENT
+        fileStore.getSize("legacy") == OptionalLong.of(CONTENT.length)
+        fileStore.getVersion("legacy").get().size == OptionalLong.of(CONTENT.length)
+        fileStore.getContentEncoding("legacy") == Optional.empty()
+    }
+
+    def "Deleting a compressed file forgets its encoding"() {
+        given:
+        CompressingFileStore fileStore = new CompressingFileStore(
+                origin,
+                encodingIndex,
+                [(FileType.TXT): CompressionCodec.GZIP]
+        )
+        String fileId = fileStore.upload(newFile(FileType.TXT))
+
+        when:
+        boolean deleted = fileStore.delete(fileId)
+
+        then:
+        1 * origin.delete(fileId) >> true
+        deleted
+        encodingIndex.getEncoding(fileId) == Optional.empty()
+    }
+
+    def "A compressed file whose encoding cannot be recorded is deleted"() {
+        given:
+        EncodingIndex failingIndex = Mock(EncodingIndex) {
+            addEncoding(_, _) >> { throw new IllegalStateException() }
+        }
+        CompressingFileStore fileStore = new CompressingFileStore(
+                origin,
+                failingIndex,
+                [(FileType.TXT): CompressionCodec.GZIP]
+        )
+
+        when:
+        fileStore.upload(newFile(FileType.TXT))
+
+        then:
+        thrown(IllegalStateException)
+        1 * origin.delete("stored")
+    }
+
+    def "Empty content round-trips"() {
+        given:
+        CompressingFileStore fileStore = new CompressingFileStore(
+                origin,
+                encodingIndex,
+                [(FileType.TXT): CompressionCodec.GZIP]
+        )
+
+        when:
+        String fileId = fileStore.upload(new File(new MetaData("empty.txt", FileType.TXT), InputStream.nullInputStream()))
+
+        then:
+        fileStore.download(fileId).bytes.length == 0
+        fileStore.getSize(fileId) == OptionalLong.of(0)
+    }
+
+    @SuppressWarnings("GroovyAccessibility")
+    static File newFile(FileType fileType) {
+        new File(new MetaData("file", fileType), new ByteArrayInputStream(CONTENT))
+    }
+}
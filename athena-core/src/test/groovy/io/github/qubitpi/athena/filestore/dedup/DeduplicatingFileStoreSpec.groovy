@@ -0,0 +1,193 @@
+/*
+ * Copyright 2024 Jiaqi Liu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.qubitpi.athena.filestore.dedup
+
+import io.github.qubitpi.athena.file.File
+import io.github.qubitpi.athena.file.identifier.FileIdGenerator
+import io.github.qubitpi.athena.filestore.FileStore
+import io.github.qubitpi.athena.metadata.FileType
+import io.github.qubitpi.athena.metadata.MetaData
+
+import spock.lang.Specification
+
+class DeduplicatingFileStoreSpec extends Specification {
+
+    static final byte[] CONTENT = "Identical book content".bytes
+    static final String DIGEST = "sha256-" + CONTENT.digest("SHA-256")
+
+    FileStore origin
+    ContentIndex contentIndex
+    DeduplicatingFileStore fileStore
+
+    def setup() {
+        origin = Mock(FileStore)
+        contentIndex = new TestContentIndex()
+        fileStore = new DeduplicatingFileStore(
+                origin,
+                Mock(FileIdGenerator) { apply(_) >>> ["file1", "file2", "file3"] },
+                contentIndex
+        )
+    }
+
+    def "Identical content is stored once under distinct file IDs"() {
+        when: "the same content is uploaded twice"
+        String first = fileStore.upload(newFile(CONTENT))
+        String second = fileStore.upload(newFile(CONTENT))
+
+        then: "both uploads are streamed to the origin, and the second one is deleted as a duplicate"
+        2 * origin.upload({ it.fileContent.bytes == CONTENT }) >>> ["blob", "duplicateBlob"]
+        1 * origin.delete("duplicateBlob") >> true
+        0 * origin.delete("blob")
+        first == "file1"
+        second == "file2"
+
+        and: "both file IDs refer to the first blob"
+        contentIndex.getBlobId(first) == Optional.of("blob")
+        contentIndex.getBlobId(second) == Optional.of("blob")
+        contentIndex.getReferenceCount(DIGEST) == 2
+    }
+
+    def "Distinct content is stored as distinct blobs"() {
+        when:
+        fileStore.upload(newFile(CONTENT))
+        fileStore.upload(newFile("Another book".bytes))
+
+        then:
+        2 * origin.upload({ readFully(it) }) >>> ["blob1", "blob2"]
+        contentIndex.getBlobId("file1") == Optional.of("blob1")
+        contentIndex.getBlobId("file2") == Optional.of("blob2")
+    }
+
+    def "Downloads are resolved to the shared blob"() {
+        given:
+        origin.upload({ readFully(it) }) >>> ["blob", "duplicateBlob"]
+        fileStore.upload(newFile(CONTENT))
+        fileStore.upload(newFile(CONTENT))
+
+        when:
+        fileStore.download("file2")
+        fileStore.download("file2", 3, 5)
+        fileStore.getSize("file2")
+
+        then:
+        1 * origin.download("blob")
+        1 * origin.download("blob", 3, 5)
+        1 * origin.getSize("blob")
+    }
+
+    def "A blob is deleted once the last file ID referring to it is deleted"() {
+        given: "two file IDs sharing one blob"
+        origin.upload({ readFully(it) }) >>> ["blob", "duplicateBlob"]
+        fileStore.upload(newFile(CONTENT))
+        fileStore.upload(newFile(CONTENT))
+
+        when: "the first file is deleted"
+        boolean firstDeleted = fileStore.delete("file1")
+
+        then: "the blob is kept for the second one"
+        firstDeleted
+        0 * origin.delete(_)
+        contentIndex.getBlobId("file1") == Optional.empty()
+        contentIndex.getReferenceCount(DIGEST) == 1
+
+        when: "the second file is deleted"
+        boolean secondDeleted = fileStore.delete("file2")
+
+        then: "the blob is reclaimed"
+        secondDeleted
+        1 * origin.delete("blob") >> true
+        contentIndex.getReferenceCount(DIGEST) == 0
+
+        when: "the same content is uploaded again"
+        fileStore.upload(newFile(CONTENT))
+
+        then: "it is stored as a new blob"
+        1 * origin.upload({ readFully(it) }) >> "newBlob"
+        contentIndex.getBlobId("file3") == Optional.of("newBlob")
+    }
+
+    def "A blob uploaded concurrently with an identical one is deleted"() {
+        given: "an index in which an identical blob gets registered while the upload is in flight"
+        ContentIndex racingIndex = Mock(ContentIndex) {
+            addBlob("file1", DIGEST, "duplicateBlob") >> "blob"
+        }
+        fileStore = new DeduplicatingFileStore(
+                origin,
+                Mock(FileIdGenerator) { apply(_) >> "file1" },
+                racingIndex
+        )
+
+        when:
+        String fileId = fileStore.upload(newFile(CONTENT))
+
+        then: "the file refers to the blob registered first and the duplicate is removed"
+        fileId == "file1"
+        1 * origin.upload({ readFully(it) }) >> "duplicateBlob"
+        1 * origin.delete("duplicateBlob") >> true
+    }
+
+    def "Files stored without deduplication stay downloadable"() {
+        when:
+        fileStore.download("legacyFileId")
+
+        then:
+        1 * origin.download("legacyFileId")
+
+        when:
+        fileStore.delete("legacyFileId")
+
+        then:
+        1 * origin.delete("legacyFileId")
+    }
+
+    def "Failed upload is not indexed"() {
+        when:
+        fileStore.upload(newFile(CONTENT))
+
+        then:
+        1 * origin.upload(_) >> { throw new IllegalStateException() }
+        thrown(IllegalStateException)
+        contentIndex.getReferenceCount(DIGEST) == 0
+    }
+
+    def "A blob that cannot be indexed is deleted"() {
+        given:
+        fileStore = new DeduplicatingFileStore(
+                origin,
+                Mock(FileIdGenerator) { apply(_) >> "file1" },
+                Mock(ContentIndex) { addBlob(_, _, _) >> { throw new IllegalStateException() } }
+        )
+
+        when:
+        fileStore.upload(newFile(CONTENT))
+
+        then:
+        1 * origin.upload({ readFully(it) }) >> "blob"
+        1 * origin.delete("blob") >> true
+        thrown(IllegalStateException)
+    }
+
+    /**
+     * Reads an uploaded file to its end, as any origin store does.
+     */
+    static boolean readFully(File file) {
+        file.fileContent.bytes != null
+    }
+
+    static File newFile(byte[] content) {
+        new File(new MetaData("book.pdf", FileType.PDF), new ByteArrayInputStream(content))
+    }
+}
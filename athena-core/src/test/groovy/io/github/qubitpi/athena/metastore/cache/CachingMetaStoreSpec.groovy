@@ -0,0 +1,251 @@
+/*
+ * Copyright 2024 Jiaqi Liu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.qubitpi.athena.metastore.cache
+
+import io.github.qubitpi.athena.metadata.FileType
+import io.github.qubitpi.athena.metadata.MetaData
+import io.github.qubitpi.athena.metastore.MetaStore
+
+import graphql.ExecutionResult
+import graphql.ExecutionResultImpl
+import graphql.GraphqlErrorBuilder
+import spock.lang.Specification
+
+import java.time.Duration
+import java.util.concurrent.CompletableFuture
+import java.util.function.LongSupplier
+
+class CachingMetaStoreSpec extends Specification {
+
+    static final String FILE_ID = "1"
+    static final List<String> ALL_FIELDS = [MetaData.FILE_NAME, MetaData.FILE_TYPE]
+
+    MetaStore origin = Mock(MetaStore)
+    long now = 0
+    LongSupplier clock = { now } as LongSupplier
+
+    def "Repeated lookups are answered from the cache"() {
+        given:
+        CachingMetaStore metaStore = new CachingMetaStore(origin, 10, Duration.ofMinutes(5), clock)
+
+        when: "the same metadata is looked up twice"
+        ExecutionResult first = metaStore.getMetaData(FILE_ID, ALL_FIELDS)
+        ExecutionResult second = metaStore.getMetaData(FILE_ID, [MetaData.FILE_NAME])
+
+        then: "the origin is only hit once"
+        1 * origin.getMetaData(FILE_ID, ALL_FIELDS) >> result(fileName: "book.txt", fileType: "TXT")
+        first.toSpecification() == [data: [metaData: [fileName: "book.txt", fileType: "TXT"]]]
+        second.toSpecification() == [data: [metaData: [fileName: "book.txt"]]]
+
+        and:
+        metaStore.stats.hitCount == 1
+        metaStore.stats.missCount == 1
+        metaStore.stats.size == 1
+    }
+
+    def "Asynchronous lookups share entries with synchronous lookups"() {
+        given:
+        CachingMetaStore metaStore = new CachingMetaStore(origin, 10, Duration.ofMinutes(5), clock)
+        CompletableFuture<ExecutionResult> pending = new CompletableFuture<>()
+
+        when: "a lookup is passed on asynchronously"
+        CompletableFuture<ExecutionResult> first = metaStore.getMetaDataAsync(FILE_ID, ALL_FIELDS)
+
+        then: "nothing is cached before the origin answers"
+        1 * origin.getMetaDataAsync(FILE_ID, ALL_FIELDS) >> pending
+        !first.done
+        metaStore.stats.size == 0
+
+        when: "the origin answers and the metadata is looked up again"
+        pending.complete(result(fileName: "book.txt", fileType: "TXT"))
+        CompletableFuture<ExecutionResult> second = metaStore.getMetaDataAsync(FILE_ID, [MetaData.FILE_NAME])
+        ExecutionResult third = metaStore.getMetaData(FILE_ID, [MetaData.FILE_TYPE])
+
+        then: "both later lookups are answered from the cache"
+        0 * origin._
+        first.join().toSpecification() == [data: [metaData: [fileName: "book.txt", fileType: "TXT"]]]
+        second.done
+        second.join().toSpecification() == [data: [metaData: [fileName: "book.txt"]]]
+        third.toSpecification() == [data: [metaData: [fileType: "TXT"]]]
+        metaStore.stats.hitCount == 2
+    }
+
+    @SuppressWarnings("GroovyAccessibility")
+    def "Typed lookups share entries with GraphQL lookups"() {
+        given:
+        CachingMetaStore metaStore = new CachingMetaStore(origin, 10, Duration.ofMinutes(5), clock)
+
+        when: "a file is looked up through GraphQL and then as a typed object"
+        metaStore.getMetaData(FILE_ID, ALL_FIELDS)
+        Optional<MetaData> metaData = metaStore.findMetaData(FILE_ID)
+
+        then: "the typed lookup is answered from the cache"
+        1 * origin.getMetaData(FILE_ID, ALL_FIELDS) >> result(fileName: "book.txt", fileType: "TXT")
+        0 * origin.findMetaData(_)
+        metaData.get().fileName == "book.txt"
+        metaData.get().fileType == FileType.TXT
+
+        when: "another file is looked up as a typed object twice"
+        metaStore.findMetaData("2")
+        metaStore.findMetaData("2")
+
+        then: "only the first typed lookup is passed on"
+        1 * origin.findMetaData("2") >> Optional.of(new MetaData("other.pdf", FileType.PDF))
+    }
+
+    @SuppressWarnings("GroovyAccessibility")
+    def "Bulk lookups only pass on the files that are not cached"() {
+        given: "a cache holding the metadata of file 1"
+        CachingMetaStore metaStore = new CachingMetaStore(origin, 10, Duration.ofMinutes(5), clock)
+        origin.findMetaData(FILE_ID) >> Optional.of(new MetaData("book.txt", FileType.TXT))
+        metaStore.findMetaData(FILE_ID)
+
+        when:
+        Map<String, MetaData> found = metaStore.findAllMetaData(["2", FILE_ID, "3"])
+
+        then:
+        1 * origin.findAllMetaData(["2", "3"] as LinkedHashSet) >> ["2": new MetaData("other.pdf", FileType.PDF)]
+        found.keySet() as List == ["2", FILE_ID]
+        found[FILE_ID].fileName == "book.txt"
+
+        and: "the fetched files are cached as well"
+        metaStore.findAllMetaData(["2"])["2"].fileName == "other.pdf"
+        0 * origin.findAllMetaData(_)
+    }
+
+    @SuppressWarnings("GroovyAccessibility")
+    def "Asynchronous typed lookups and saves are composed with the decorated store and share the cache"() {
+        given:
+        CachingMetaStore metaStore = new CachingMetaStore(origin, 10, Duration.ofMinutes(5), clock)
+        CompletableFuture<Void> pendingSave = new CompletableFuture<>()
+
+        when: "a file is saved asynchronously"
+        CompletableFuture<Void> saved = metaStore.saveMetaDataAsync(FILE_ID, new MetaData("book.txt", FileType.TXT))
+
+        then: "the save completes with the decorated store"
+        1 * origin.saveMetaDataAsync(FILE_ID, _) >> pendingSave
+        !saved.done
+
+        when:
+        pendingSave.complete(null)
+
+        then: "the saved file is then answered from the cache"
+        saved.done
+        metaStore.findMetaDataAsync(FILE_ID).join().get().fileName == "book.txt"
+        0 * origin.findMetaDataAsync(_)
+
+        when: "other files are looked up asynchronously"
+        Map<String, MetaData> found = metaStore.findAllMetaDataAsync(["2", FILE_ID]).join()
+
+        then: "only the uncached file is passed on"
+        1 * origin.findAllMetaDataAsync(["2"] as LinkedHashSet) >> CompletableFuture.completedFuture(
+                ["2": new MetaData("other.pdf", FileType.PDF)]
+        )
+        found.keySet() as List == ["2", FILE_ID]
+    }
+
+    def "Lookup of fields that are not cached yet is passed on and merged into the cache"() {
+        given:
+        CachingMetaStore metaStore = new CachingMetaStore(origin, 10, Duration.ofMinutes(5), clock)
+        origin.getMetaData(FILE_ID, [MetaData.FILE_NAME]) >> result(fileName: "book.txt")
+        metaStore.getMetaData(FILE_ID, [MetaData.FILE_NAME])
+
+        when:
+        metaStore.getMetaData(FILE_ID, ALL_FIELDS)
+        ExecutionResult cached = metaStore.getMetaData(FILE_ID, [MetaData.FILE_TYPE, MetaData.FILE_NAME])
+
+        then:
+        1 * origin.getMetaData(FILE_ID, ALL_FIELDS) >> result(fileName: "book.txt", fileType: "TXT")
+        cached.toSpecification() == [data: [metaData: [fileType: "TXT", fileName: "book.txt"]]]
+    }
+
+    def "Entries expire after their time to live"() {
+        given:
+        CachingMetaStore metaStore = new CachingMetaStore(origin, 10, Duration.ofNanos(100), clock)
+
+        when: "the metadata is looked up again once its entry has expired"
+        metaStore.getMetaData(FILE_ID, ALL_FIELDS)
+        now = 100
+        metaStore.getMetaData(FILE_ID, ALL_FIELDS)
+
+        then:
+        2 * origin.getMetaData(FILE_ID, ALL_FIELDS) >> result(fileName: "book.txt", fileType: "TXT")
+        metaStore.stats.evictionCount == 1
+    }
+
+    def "Least recently used entries are evicted once the cache is full"() {
+        given: "a cache that holds 2 entries"
+        CachingMetaStore metaStore = new CachingMetaStore(origin, 2, Duration.ofMinutes(5), clock)
+        origin.getMetaData(_ as String, ALL_FIELDS) >> { String fileId, List<String> fields ->
+            result(fileName: "${fileId}.txt", fileType: "TXT")
+        }
+
+        when: "3 files are looked up, the first one being used again before the third one"
+        metaStore.getMetaData("1", ALL_FIELDS)
+        metaStore.getMetaData("2", ALL_FIELDS)
+        metaStore.getMetaData("1", ALL_FIELDS)
+        metaStore.getMetaData("3", ALL_FIELDS)
+
+        then: "the second one is evicted"
+        metaStore.stats.evictionCount == 1
+        metaStore.stats.size == 2
+
+        when:
+        metaStore.getMetaData("1", ALL_FIELDS)
+        metaStore.getMetaData("2", ALL_FIELDS)
+
+        then:
+        metaStore.stats.hitCount == 2
+        metaStore.stats.missCount == 4
+    }
+
+    def "Failed lookups are not cached"() {
+        given:
+        CachingMetaStore metaStore = new CachingMetaStore(origin, 10, Duration.ofMinutes(5), clock)
+
+        when:
+        metaStore.getMetaData(FILE_ID, ALL_FIELDS)
+        metaStore.getMetaData(FILE_ID, ALL_FIELDS)
+
+        then:
+        2 * origin.getMetaData(FILE_ID, ALL_FIELDS) >> ExecutionResultImpl.newExecutionResult()
+                .addError(GraphqlErrorBuilder.newError().message("boom").build())
+                .build()
+        metaStore.stats.size == 0
+    }
+
+    @SuppressWarnings("GroovyAccessibility")
+    def "Saved metadata is written through and cached"() {
+        given:
+        Map<String, MetaData> metaDataByFileId = [(FILE_ID): new MetaData("new.pdf", FileType.PDF)]
+        CachingMetaStore metaStore = new CachingMetaStore(origin, 10, Duration.ofMinutes(5), clock)
+        origin.getMetaData(FILE_ID, ALL_FIELDS) >> result(fileName: "old.txt", fileType: "TXT")
+        metaStore.getMetaData(FILE_ID, ALL_FIELDS)
+
+        when: "the metadata of the file is saved"
+        metaStore.saveMetaData(metaDataByFileId)
+        ExecutionResult cached = metaStore.getMetaData(FILE_ID, ALL_FIELDS)
+
+        then: "the save goes to the origin and the saved metadata is served from the cache"
+        1 * origin.saveMetaData(metaDataByFileId)
+        0 * origin.getMetaData(_, _)
+        cached.toSpecification() == [data: [metaData: [fileName: "new.pdf", fileType: "PDF"]]]
+    }
+
+    static ExecutionResult result(Map<String, Object> fields) {
+        return ExecutionResultImpl.newExecutionResult().data([metaData: fields]).build()
+    }
+}
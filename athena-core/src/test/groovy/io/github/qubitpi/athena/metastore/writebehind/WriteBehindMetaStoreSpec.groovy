@@ -0,0 +1,134 @@
+/*
+ * Copyright 2024 Jiaqi Liu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.qubitpi.athena.metastore.writebehind
+
+import io.github.qubitpi.athena.metadata.FileType
+import io.github.qubitpi.athena.metadata.MetaData
+import io.github.qubitpi.athena.metastore.MetaStore
+
+import spock.lang.Specification
+import spock.lang.Timeout
+
+import java.time.Duration
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionException
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+
+@Timeout(30)
+class WriteBehindMetaStoreSpec extends Specification {
+
+    MetaStore origin = Mock(MetaStore)
+    ExecutorService clients = Executors.newFixedThreadPool(8)
+
+    def cleanup() {
+        clients.shutdownNow()
+    }
+
+    @SuppressWarnings("GroovyAccessibility")
+    def "Concurrent saves are written in batches, and each save returns only once its batch is written"() {
+        given: "a writer that waits long enough for all saves to join one batch"
+        List<Map<String, MetaData>> batches = new CopyOnWriteArrayList<>()
+        origin.saveMetaData(_ as Map) >> { Map<String, MetaData> batch -> batches.add(new LinkedHashMap<>(batch)) }
+        WriteBehindMetaStore metaStore = new WriteBehindMetaStore(origin, 100, Duration.ofSeconds(1), 100)
+
+        when: "8 files are saved concurrently"
+        CountDownLatch start = new CountDownLatch(1)
+        List<CompletableFuture<Void>> saves = (1..8).collect { index ->
+            CompletableFuture.runAsync({
+                start.await()
+                metaStore.saveMetaData("file" + index, new MetaData("book${index}.txt", FileType.TXT))
+            }, clients)
+        }
+        start.countDown()
+        CompletableFuture.allOf(saves as CompletableFuture[]).join()
+
+        then: "every save is written, in fewer round trips than saves"
+        batches.collectMany { it.keySet() } as Set == (1..8).collect { "file" + it } as Set
+        batches.size() < 8
+
+        and: "single saves never reach the origin one at a time"
+        0 * origin.saveMetaData(_ as String, _)
+
+        cleanup:
+        metaStore.close()
+    }
+
+    @SuppressWarnings("GroovyAccessibility")
+    def "Batches are capped at the max batch size"() {
+        given:
+        List<Integer> batchSizes = new CopyOnWriteArrayList<>()
+        origin.saveMetaData(_ as Map) >> { Map<String, MetaData> batch -> batchSizes.add(batch.size()) }
+        WriteBehindMetaStore metaStore = new WriteBehindMetaStore(origin, 2, Duration.ofMillis(50), 100)
+
+        when:
+        metaStore.saveMetaData((1..5).collectEntries { ["file" + it, new MetaData("book.txt", FileType.TXT)] })
+
+        then:
+        batchSizes.sum() == 5
+        batchSizes.every { it <= 2 }
+
+        cleanup:
+        metaStore.close()
+    }
+
+    @SuppressWarnings("GroovyAccessibility")
+    def "A failed batch fails every save in it"() {
+        given:
+        origin.saveMetaData(_ as Map) >> { throw new IllegalStateException("database is down") }
+        WriteBehindMetaStore metaStore = new WriteBehindMetaStore(origin, 10, Duration.ZERO, 10)
+
+        when:
+        metaStore.saveMetaData("file", new MetaData("book.txt", FileType.TXT))
+
+        then:
+        CompletionException exception = thrown()
+        exception.cause instanceof IllegalStateException
+        exception.cause.message == "database is down"
+
+        cleanup:
+        metaStore.close()
+    }
+
+    @SuppressWarnings("GroovyAccessibility")
+    def "Closing the store stops taking saves"() {
+        given:
+        WriteBehindMetaStore metaStore = new WriteBehindMetaStore(origin, 10, Duration.ZERO, 10)
+        metaStore.close()
+
+        when:
+        metaStore.saveMetaData("file", new MetaData("book.txt", FileType.TXT))
+
+        then:
+        thrown(IllegalStateException)
+    }
+
+    def "Lookups are passed on unchanged"() {
+        given:
+        WriteBehindMetaStore metaStore = new WriteBehindMetaStore(origin, 10, Duration.ZERO, 10)
+
+        when:
+        metaStore.findMetaData("file")
+
+        then:
+        1 * origin.findMetaData("file") >> Optional.empty()
+
+        cleanup:
+        metaStore.close()
+    }
+}
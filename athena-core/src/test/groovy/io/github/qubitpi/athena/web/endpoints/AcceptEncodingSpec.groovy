@@ -0,0 +1,45 @@
+/*
+ * Copyright 2024 Jiaqi Liu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.qubitpi.athena.web.endpoints
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class AcceptEncodingSpec extends Specification {
+
+    @Unroll
+    def "'#header' #description gzip"() {
+        expect:
+        AcceptEncoding.accepts(header, "gzip") == accepted
+
+        where:
+        header                    || accepted
+        null                      || false
+        ""                        || false
+        "gzip"                    || true
+        "GZIP"                    || true
+        "deflate, gzip;q=0.5"     || true
+        "deflate"                 || false
+        "gzip;q=0"                || false
+        "*"                       || true
+        "*;q=0"                   || false
+        "gzip;q=0, *"             || false
+        "identity, *;q=0.1"       || true
+        "gzip;q=abc"              || false
+
+        description = accepted ? "accepts" : "does not accept"
+    }
+}
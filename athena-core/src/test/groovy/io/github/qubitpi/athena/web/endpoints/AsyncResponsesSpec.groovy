@@ -0,0 +1,81 @@
+/*
+ * Copyright 2024 Jiaqi Liu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.qubitpi.athena.web.endpoints
+
+import jakarta.ws.rs.container.AsyncResponse
+import jakarta.ws.rs.core.Response
+import spock.lang.Specification
+
+import java.util.concurrent.CompletionException
+import java.util.concurrent.Executor
+import java.util.concurrent.RejectedExecutionException
+
+class AsyncResponsesSpec extends Specification {
+
+    AsyncResponse asyncResponse = Mock(AsyncResponse)
+
+    def "A rejection by a later stage is answered with 503 rather than 500"() {
+        when:
+        AsyncResponses.resume(asyncResponse, null, new CompletionException(new RejectedExecutionException()))
+
+        then:
+        1 * asyncResponse.resume({ Response response -> response.status == 503 } as Response)
+    }
+
+    def "Other failures are unwrapped before they are mapped"() {
+        given:
+        IllegalStateException failure = new IllegalStateException()
+
+        when:
+        AsyncResponses.resume(asyncResponse, null, new CompletionException(failure))
+
+        then:
+        1 * asyncResponse.resume(failure)
+    }
+
+    def "A successful response is written out on the writer executor"() {
+        given:
+        Response response = Response.ok().build()
+        List<Runnable> tasks = []
+        Executor writer = { Runnable task -> tasks.add(task) } as Executor
+
+        when:
+        AsyncResponses.resume(asyncResponse, response, null, writer)
+
+        then:
+        0 * asyncResponse.resume(_)
+        tasks.size() == 1
+
+        when:
+        tasks[0].run()
+
+        then:
+        1 * asyncResponse.resume(response)
+    }
+
+    def "A response rejected by a saturated writer executor is answered with 503 and its entity is closed"() {
+        given:
+        Closeable entity = Mock(Closeable)
+        Executor writer = { Runnable task -> throw new RejectedExecutionException() } as Executor
+
+        when:
+        AsyncResponses.resume(asyncResponse, Response.ok(entity).build(), null, writer)
+
+        then:
+        1 * entity.close()
+        1 * asyncResponse.resume({ Response response -> response.status == 503 } as Response)
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2024 Jiaqi Liu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.qubitpi.athena.web.endpoints
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class ByteRangeSpec extends Specification {
+
+    static final long SIZE = 1000
+
+    @Unroll
+    def "'#header' selects #length bytes from position #offset"() {
+        when:
+        ByteRange byteRange = ByteRange.parse(header).get()
+
+        then:
+        byteRange.isSatisfiable(SIZE)
+        byteRange.getOffset(SIZE) == offset
+        byteRange.getLength(SIZE) == length
+        byteRange.toContentRange(SIZE) == contentRange
+
+        where:
+        header           || offset | length | contentRange
+        "bytes=0-499"    || 0      | 500    | "bytes 0-499/1000"
+        "bytes=500-"     || 500    | 500    | "bytes 500-999/1000"
+        "bytes=-200"     || 800    | 200    | "bytes 800-999/1000"
+        "bytes=-5000"    || 0      | 1000   | "bytes 0-999/1000"
+        "bytes=900-5000" || 900    | 100    | "bytes 900-999/1000"
+        " bytes = 1-1 "  || 1      | 1      | "bytes 1-1/1000"
+    }
+
+    @Unroll
+    def "'#header' is not satisfiable"() {
+        expect:
+        !ByteRange.parse(header).get().isSatisfiable(SIZE)
+
+        where:
+        header << ["bytes=1000-", "bytes=1000-2000", "bytes=-0"]
+    }
+
+    @Unroll
+    def "'#header' is ignored"() {
+        expect:
+        !ByteRange.parse(header).isPresent()
+
+        where:
+        header << [null, "", "bytes=", "bytes=-", "bytes=5-1", "bytes=0-1,5-6", "items=0-1", "bytes=99999999999999999999-"]
+    }
+
+    def "Unsatisfied content range carries the file size"() {
+        expect:
+        ByteRange.toUnsatisfiedContentRange(SIZE) == "bytes */1000"
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2024 Jiaqi Liu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.qubitpi.athena.web.endpoints
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class EntityTagsSpec extends Specification {
+
+    def "Opaque tags are quoted into strong entity tags"() {
+        expect:
+        EntityTags.strong("abc") == '"abc"'
+    }
+
+    @Unroll
+    def "'#header' #description \"abc\""() {
+        expect:
+        EntityTags.matches(header, '"abc"') == matched
+
+        where:
+        header                 || matched
+        null                   || false
+        ""                     || false
+        '"abc"'                || true
+        'W/"abc"'              || true
+        '"xyz", "abc"'         || true
+        '"xyz",W/"abc"'        || true
+        '"xyz"'                || false
+        '"ab"'                 || false
+        'abc'                  || false
+        '*'                    || true
+        ' * '                  || true
+
+        description = matched ? "matches" : "does not match"
+    }
+}
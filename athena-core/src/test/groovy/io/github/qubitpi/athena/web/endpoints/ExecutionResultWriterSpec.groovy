@@ -0,0 +1,112 @@
+/*
+ * Copyright 2024 Jiaqi Liu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.qubitpi.athena.web.endpoints
+
+import graphql.ExecutionResult
+import graphql.ExecutionResultImpl
+import graphql.GraphqlErrorBuilder
+import graphql.language.SourceLocation
+import groovy.json.JsonSlurper
+import jakarta.ws.rs.core.MediaType
+import spock.lang.Specification
+import spock.lang.Subject
+import spock.lang.Unroll
+
+import java.lang.annotation.Annotation
+
+class ExecutionResultWriterSpec extends Specification {
+
+    static final Annotation[] NO_ANNOTATIONS = []
+
+    @Subject
+    ExecutionResultWriter writer = new ExecutionResultWriter()
+
+    def "Only GraphQL results are written"() {
+        expect:
+        writer.isWriteable(ExecutionResultImpl, ExecutionResultImpl, NO_ANNOTATIONS, MediaType.APPLICATION_JSON_TYPE)
+        !writer.isWriteable(String, String, NO_ANNOTATIONS, MediaType.APPLICATION_JSON_TYPE)
+    }
+
+    @Unroll
+    def "A result #description is written in the response format of the specification"() {
+        expect:
+        new JsonSlurper().parseText(write(result)) == result.toSpecification()
+
+        where:
+        description                | result
+        "with data"                | ExecutionResultImpl.newExecutionResult()
+                .data([metaData: [fileName: "Harry Potter", fileType: "PDF"], metaDatas: [[fileName: "Moby Dick"]]])
+                .build()
+        "with null data"           | ExecutionResultImpl.newExecutionResult().data([metaData: null]).build()
+        "without data"             | new ExecutionResultImpl(
+                GraphqlErrorBuilder.newError().message("Invalid Syntax").location(new SourceLocation(1, 2)).build()
+        )
+        "with errors and data"     | ExecutionResultImpl.newExecutionResult()
+                .data([metaData: null])
+                .addError(
+                        GraphqlErrorBuilder.newError()
+                                .message("No meta data found")
+                                .location(new SourceLocation(1, 2))
+                                .path(["metaData"])
+                                .extensions([code: "NOT_FOUND"])
+                                .build()
+                )
+                .build()
+        "with extensions"          | ExecutionResultImpl.newExecutionResult()
+                .data([metaData: null])
+                .extensions([tracing: [duration: 5]])
+                .build()
+    }
+
+    def "Optional entries are left out"() {
+        expect:
+        write(ExecutionResultImpl.newExecutionResult().data([metaData: null]).build()) == '{"data":{"metaData":null}}'
+    }
+
+    def "The response stream is left open for the container to close"() {
+        given:
+        OutputStream entityStream = Mock(OutputStream)
+
+        when:
+        writer.writeTo(
+                ExecutionResultImpl.newExecutionResult().data([:]).build(),
+                ExecutionResultImpl,
+                ExecutionResultImpl,
+                NO_ANNOTATIONS,
+                MediaType.APPLICATION_JSON_TYPE,
+                null,
+                entityStream
+        )
+
+        then:
+        (1.._) * entityStream.write(_ as byte[], _, _)
+        0 * entityStream.close()
+    }
+
+    String write(ExecutionResult result) {
+        ByteArrayOutputStream entityStream = new ByteArrayOutputStream()
+        writer.writeTo(
+                result,
+                result.getClass(),
+                result.getClass(),
+                NO_ANNOTATIONS,
+                MediaType.APPLICATION_JSON_TYPE,
+                null,
+                entityStream
+        )
+        return entityStream.toString("UTF-8")
+    }
+}
@@ -16,6 +16,7 @@
 package io.github.qubitpi.athena.web.endpoints
 
 
+import org.glassfish.jersey.media.multipart.FormDataBodyPart
 import org.glassfish.jersey.media.multipart.FormDataContentDisposition
 import org.glassfish.jersey.media.multipart.FormDataMultiPart
 import org.glassfish.jersey.media.multipart.MultiPart
@@ -27,10 +28,16 @@ import io.github.qubitpi.athena.application.JerseyTestBinder
 import io.github.qubitpi.athena.metadata.FileType
 import io.github.qubitpi.athena.metadata.MetaData
 import jakarta.ws.rs.client.Entity
+import io.github.qubitpi.athena.filestore.TestFileStore
+import jakarta.ws.rs.core.HttpHeaders
+import jakarta.ws.rs.core.MediaType
+import jakarta.ws.rs.core.Response
 import spock.lang.Specification
 
 import java.nio.charset.StandardCharsets
 import java.util.function.BiFunction
+import java.util.zip.ZipEntry
+import java.util.zip.ZipInputStream
 
 class FileServletSpec extends Specification {
 
@@ -41,18 +48,29 @@ class FileServletSpec extends Specification {
     @SuppressWarnings("GroovyAccessibility")
     static final MetaData META_DATA = new MetaData(FILE_NAME, FILE_TYPE)
 
+    ApplicationState applicationState
     JerseyTestBinder jerseyTestBinder
 
+    /**
+     * Names of the files that the test file store fails to store.
+     */
+    Set<String> unstorableFileNames = []
+
     def setup() {
-        ApplicationState applicationState = new ApplicationState()
-        applicationState.fileIdGenerator = { FILE_ID }
+        applicationState = new ApplicationState()
+        applicationState.fileIdGenerator = {
+            if (it.metaData.fileName in unstorableFileNames) {
+                throw new IllegalStateException("${it.metaData.fileName} cannot be stored")
+            }
+            it.metaData.fileName.startsWith("pride-and-prejudice") ? FILE_ID : it.metaData.fileName
+        }
         applicationState.metadataByFileId = [(FILE_ID): META_DATA]
         applicationState.queryFormatter = new BiFunction<String, List<String>, String>() {
             @Override
             String apply(final String s, final List<String> strings) {
                 return """
                     query {
-                        metaData(fileId: "$FILE_ID") {
+                        metaData(fileId: "$s") {
                             $META_DATA.FILE_NAME
                             $META_DATA.FILE_TYPE
                         }
@@ -65,7 +83,7 @@ class FileServletSpec extends Specification {
             String apply(final String s, final MetaData metaData) {
                 return """
                     mutation createMetaData {
-                        createMetaData(fileId: "$FILE_ID", fileName: "$FILE_NAME", fileType: "$FILE_TYPE") {
+                        createMetaData(fileId: "$s", fileName: "$metaData.fileName", fileType: "$metaData.fileType") {
                             $META_DATA.FILE_NAME
                             $META_DATA.FILE_TYPE
                         }
@@ -106,4 +124,239 @@ class FileServletSpec extends Specification {
                 .getResourceAsStream("pride-and-prejudice-by-jane-austen.txt")
                 .getText(StandardCharsets.UTF_8.name()).contains(actual)
     }
+
+    def "A byte range of a file can be downloaded"() {
+        given: "a file has been uploaded"
+        FileDataBodyPart filePart = new FileDataBodyPart("file", new File("src/test/resources/pride-and-prejudice-by-jane-austen.txt"))
+        filePart.setContentDisposition(FormDataContentDisposition.name("file").fileName("pride-and-prejudice-by-jane-austen.txt").build())
+        MultiPart multipartEntity = new FormDataMultiPart().bodyPart(filePart)
+        jerseyTestBinder.makeRequest("/file/upload").post(Entity.entity(multipartEntity, multipartEntity.getMediaType()))
+
+        and: "the whole file as the server sees it"
+        byte[] file = jerseyTestBinder.makeRequest("/file/download", [fileId: FILE_ID]).get().readEntity(byte[].class)
+
+        when: "we ask for a byte range of that file"
+        Response response = jerseyTestBinder.makeRequest("/file/download", [fileId: FILE_ID])
+                .header("Range", range)
+                .get()
+
+        then: "only the requested bytes are sent back"
+        response.status == 206
+        response.getHeaderString("Accept-Ranges") == "bytes"
+        response.getHeaderString("Content-Range") == "bytes ${first(file.length)}-${last(file.length)}/$file.length"
+        response.readEntity(byte[].class) == Arrays.copyOfRange(file, first(file.length), last(file.length) + 1)
+
+        where:
+        range        | first                    | last
+        "bytes=0-9"  | { int size -> 0 }        | { int size -> 9 }
+        "bytes=100-" | { int size -> 100 }      | { int size -> size - 1 }
+        "bytes=-5"   | { int size -> size - 5 } | { int size -> size - 1 }
+    }
+
+    def "A downloaded file is immutable and is not sent again to a client that holds it"() {
+        given: "a file has been uploaded"
+        FileDataBodyPart filePart = new FileDataBodyPart("file", new File("src/test/resources/pride-and-prejudice-by-jane-austen.txt"))
+        filePart.setContentDisposition(FormDataContentDisposition.name("file").fileName("pride-and-prejudice-by-jane-austen.txt").build())
+        MultiPart multipartEntity = new FormDataMultiPart().bodyPart(filePart)
+        jerseyTestBinder.makeRequest("/file/upload").post(Entity.entity(multipartEntity, multipartEntity.getMediaType()))
+
+        when: "we download that file"
+        Response response = jerseyTestBinder.makeRequest("/file/download", [fileId: FILE_ID]).get()
+
+        then: "the file may be cached for good and its validators are not looked up"
+        response.status == 200
+        response.getHeaderString(HttpHeaders.CACHE_CONTROL) == "public, max-age=31536000, immutable"
+        response.getHeaderString(HttpHeaders.ETAG) == null
+
+        when: "we download a byte range of that file"
+        Response partial = jerseyTestBinder.makeRequest("/file/download", [fileId: FILE_ID])
+                .header("Range", "bytes=0-9")
+                .get()
+        String entityTag = partial.getHeaderString(HttpHeaders.ETAG)
+
+        then: "the range comes with validators"
+        partial.status == 206
+        entityTag ==~ /"[0-9a-f]+"/
+        partial.lastModified.toInstant() == TestFileStore.LAST_MODIFIED
+        partial.getHeaderString(HttpHeaders.CACHE_CONTROL) == "public, max-age=31536000, immutable"
+
+        when: "we download that file again with its ETag, with or without a range"
+        Response revalidated = jerseyTestBinder.makeRequest("/file/download", [fileId: FILE_ID])
+                .header(HttpHeaders.IF_NONE_MATCH, ifNoneMatch.replace("TAG", entityTag))
+                .header("Range", range)
+                .get()
+
+        then: "the file is not sent again"
+        revalidated.status == 304
+        revalidated.getHeaderString(HttpHeaders.ETAG) == entityTag
+        revalidated.getHeaderString(HttpHeaders.CACHE_CONTROL) == "public, max-age=31536000, immutable"
+        !revalidated.hasEntity()
+
+        when: "we download that file with an outdated ETag"
+        Response refetched = jerseyTestBinder.makeRequest("/file/download", [fileId: FILE_ID])
+                .header(HttpHeaders.IF_NONE_MATCH, '"outdated"')
+                .get()
+
+        then: "the file is sent again"
+        refetched.status == 200
+        refetched.getHeaderString(HttpHeaders.ETAG) == entityTag
+
+        where:
+        ifNoneMatch  | range
+        'TAG'        | null
+        'W/TAG'      | null
+        '"x", TAG'   | "bytes=0-9"
+        '*'          | "bytes=0-9"
+    }
+
+    def "Unsatisfiable byte range is rejected"() {
+        given: "a file has been uploaded"
+        FileDataBodyPart filePart = new FileDataBodyPart("file", new File("src/test/resources/pride-and-prejudice-by-jane-austen.txt"))
+        filePart.setContentDisposition(FormDataContentDisposition.name("file").fileName("pride-and-prejudice-by-jane-austen.txt").build())
+        MultiPart multipartEntity = new FormDataMultiPart().bodyPart(filePart)
+        jerseyTestBinder.makeRequest("/file/upload").post(Entity.entity(multipartEntity, multipartEntity.getMediaType()))
+
+        when: "we ask for a byte range beyond the end of that file"
+        Response response = jerseyTestBinder.makeRequest("/file/download", [fileId: FILE_ID])
+                .header("Range", "bytes=999999999-")
+                .get()
+
+        then:
+        response.status == 416
+        response.getHeaderString("Content-Range").startsWith("bytes */")
+    }
+
+    def "Many files can be uploaded in a single request"() {
+        given: "a multipart request carrying 3 files"
+        FormDataMultiPart multipartEntity = new FormDataMultiPart()
+        ["a.txt", "b.txt", "c.txt"].each { String fileName ->
+            FormDataBodyPart filePart = new FormDataBodyPart(
+                    FormDataContentDisposition.name("file").fileName(fileName).build(),
+                    new ByteArrayInputStream("content of $fileName".bytes),
+                    MediaType.APPLICATION_OCTET_STREAM_TYPE
+            )
+            multipartEntity.bodyPart(filePart)
+        }
+
+        when:
+        Response response = jerseyTestBinder.makeRequest("/file/upload/batch")
+                .post(Entity.entity(multipartEntity, multipartEntity.getMediaType()))
+
+        then: "the IDs of all files are returned in order"
+        response.status == 201
+        response.readEntity(String.class) == """{"fileIds":["a.txt","b.txt","c.txt"]}"""
+
+        and: "all files are stored"
+        jerseyTestBinder.makeRequest("/file/download", [fileId: "b.txt"]).get().readEntity(String.class) ==
+                "content of b.txt"
+
+        and: "the metadata of all files is saved"
+        applicationState.metadataByFileId.keySet().containsAll(["a.txt", "b.txt", "c.txt"])
+        applicationState.metadataByFileId["c.txt"].fileType == FileType.TXT
+    }
+
+    def "A batch that fails to store one of its files leaves none of them stored"() {
+        given: "a file store that fails to store one file of a batch of 3"
+        unstorableFileNames << "c.txt"
+        FormDataMultiPart multipartEntity = new FormDataMultiPart()
+        ["a.txt", "b.txt", "c.txt"].each { String fileName ->
+            multipartEntity.bodyPart(new FormDataBodyPart(
+                    FormDataContentDisposition.name("file").fileName(fileName).build(),
+                    new ByteArrayInputStream("content of $fileName".bytes),
+                    MediaType.APPLICATION_OCTET_STREAM_TYPE
+            ))
+        }
+
+        when:
+        Response response = jerseyTestBinder.makeRequest("/file/upload/batch")
+                .post(Entity.entity(multipartEntity, multipartEntity.getMediaType()))
+
+        then: "the request fails"
+        response.status == 500
+
+        and: "the files stored before the failure are deleted, and no metadata is saved"
+        applicationState.fileByFileId.isEmpty()
+        !applicationState.metadataByFileId.keySet().any { it in ["a.txt", "b.txt", "c.txt"] }
+    }
+
+    def "A batch whose files share a name is rejected before any file is stored"() {
+        given: "a multipart request carrying 2 different files with the same name"
+        FormDataMultiPart multipartEntity = new FormDataMultiPart()
+        ["first", "second"].each { String content ->
+            multipartEntity.bodyPart(new FormDataBodyPart(
+                    FormDataContentDisposition.name("file").fileName("same.txt").build(),
+                    new ByteArrayInputStream(content.bytes),
+                    MediaType.APPLICATION_OCTET_STREAM_TYPE
+            ))
+        }
+
+        when:
+        Response response = jerseyTestBinder.makeRequest("/file/upload/batch")
+                .post(Entity.entity(multipartEntity, multipartEntity.getMediaType()))
+
+        then: "the request is rejected"
+        response.status == 400
+
+        and: "nothing is stored"
+        !applicationState.metadataByFileId.containsKey("same.txt")
+        jerseyTestBinder.makeRequest("/file/download", [fileId: "same.txt"]).get().status != 200
+    }
+
+    def "Many files can be downloaded as a single #format archive"() {
+        given: "3 files have been uploaded"
+        FormDataMultiPart multipartEntity = new FormDataMultiPart()
+        ["a.txt", "b.txt", "c.txt"].each { String fileName ->
+            multipartEntity.bodyPart(new FormDataBodyPart(
+                    FormDataContentDisposition.name("file").fileName(fileName).build(),
+                    new ByteArrayInputStream("content of $fileName".bytes),
+                    MediaType.APPLICATION_OCTET_STREAM_TYPE
+            ))
+        }
+        jerseyTestBinder.makeRequest("/file/upload/batch")
+                .post(Entity.entity(multipartEntity, multipartEntity.getMediaType()))
+
+        when: "we download 2 of them, one twice, as an archive"
+        Response response = jerseyTestBinder.makeRequest(
+                "/file/download/archive",
+                [fileId: ["c.txt", "a.txt", "c.txt"], format: format]
+        ).get()
+
+        then: "the archive carries each requested file once, in order"
+        response.status == 200
+        response.mediaType.toString() == mediaType
+        response.getHeaderString("Content-Disposition") == "attachment; filename = files.$format"
+        entries(response.readEntity(InputStream.class)) == ["c.txt": "content of c.txt", "a.txt": "content of a.txt"]
+
+        where:
+        format | mediaType           | entries
+        "zip"  | "application/zip"   | { InputStream archive -> unzip(archive) }
+        "tar"  | "application/x-tar" | { InputStream archive -> untar(archive) }
+    }
+
+    def "Archive download requires at least one file ID"() {
+        expect:
+        jerseyTestBinder.makeRequest("/file/download/archive").get().status >= 400
+    }
+
+    static Map<String, String> unzip(InputStream archive) {
+        Map<String, String> entries = [:]
+        new ZipInputStream(archive).withCloseable { ZipInputStream zip ->
+            for (ZipEntry entry = zip.nextEntry; entry != null; entry = zip.nextEntry) {
+                entries[entry.name] = new String(zip.readAllBytes(), StandardCharsets.UTF_8)
+            }
+        }
+        return entries
+    }
+
+    static Map<String, String> untar(InputStream archive) {
+        byte[] bytes = archive.readAllBytes()
+        Map<String, String> entries = [:]
+        for (int offset = 0; bytes[offset] != 0; ) {
+            String name = new String(bytes, offset, 100, StandardCharsets.UTF_8).replace("\0", "")
+            int size = Integer.parseInt(new String(bytes, offset + 124, 11, StandardCharsets.US_ASCII), 8)
+            entries[name] = new String(bytes, offset + 512, size, StandardCharsets.UTF_8)
+            offset += 512 + ((size + 511).intdiv(512) as int) * 512
+        }
+        return entries
+    }
 }
@@ -16,7 +16,7 @@
 package io.github.qubitpi.athena.web.endpoints
 
 
-import io.github.qubitpi.athena.web.graphql.JsonDocumentParser
+import io.github.qubitpi.athena.web.graphql.JacksonParser
 import groovy.json.JsonSlurper
 import io.github.qubitpi.athena.application.ApplicationState
 import io.github.qubitpi.athena.application.JerseyTestBinder
@@ -24,9 +24,14 @@ import io.github.qubitpi.athena.metadata.FileType
 import io.github.qubitpi.athena.metadata.MetaData
 import io.github.qubitpi.athena.metastore.MetaStore
 import jakarta.ws.rs.client.Entity
+import jakarta.ws.rs.container.AsyncResponse
+import jakarta.ws.rs.core.HttpHeaders
 import jakarta.ws.rs.core.MediaType
+import jakarta.ws.rs.core.Response
 import spock.lang.Specification
 
+import java.security.MessageDigest
+import java.util.concurrent.CompletableFuture
 import java.util.function.BiFunction
 
 class MetaServletSpec extends Specification {
@@ -71,7 +76,7 @@ class MetaServletSpec extends Specification {
         }
 
         // Create the tet web container to test the resources
-        jerseyTestBinder = new JerseyTestBinder(true, applicationState, MetaServlet.class)
+        jerseyTestBinder = new JerseyTestBinder(true, applicationState, MetaServlet.class, ExecutionResultWriter.class)
     }
 
     def cleanup() {
@@ -90,6 +95,67 @@ class MetaServletSpec extends Specification {
         new JsonSlurper().parseText(actual) == new JsonSlurper().parseText(expectedMultiFieldMetadataResponse())
     }
 
+    def "A GET result carries a strong ETag and is not sent again to a client that holds it"() {
+        given:
+        Map<String, String> queryParams = [
+                query: URLEncoder.encode("""{metaData(fileId:"$FILE_ID"){fileName\nfileType}}""", "UTF-8")
+        ]
+
+        when: "metadata is queried via GraphQL GET"
+        Response response = jerseyTestBinder.makeRequest("/metadata/graphql", queryParams).get()
+        String entityTag = response.getHeaderString(HttpHeaders.ETAG)
+
+        then: "the result is cacheable for a short while"
+        response.status == 200
+        entityTag ==~ /"[A-Za-z0-9_-]+"/
+        response.getHeaderString(HttpHeaders.CACHE_CONTROL) == "public, max-age=60"
+
+        and: "the ETag is the hash of the streamed body"
+        byte[] body = response.readEntity(byte[].class)
+        entityTag == '"' + Base64.urlEncoder.withoutPadding().encodeToString(
+                MessageDigest.getInstance("SHA-256").digest(body)
+        ) + '"'
+        new JsonSlurper().parse(body) == new JsonSlurper().parseText(expectedMultiFieldMetadataResponse())
+
+        when: "the same query is sent again with the ETag"
+        Response revalidated = jerseyTestBinder.makeRequest("/metadata/graphql", queryParams)
+                .header(HttpHeaders.IF_NONE_MATCH, entityTag)
+                .get()
+
+        then: "the result is not sent again"
+        revalidated.status == 304
+        revalidated.getHeaderString(HttpHeaders.ETAG) == entityTag
+        !revalidated.hasEntity()
+
+        when: "the query is sent with an outdated ETag"
+        Response refetched = jerseyTestBinder.makeRequest("/metadata/graphql", queryParams)
+                .header(HttpHeaders.IF_NONE_MATCH, '"outdated"')
+                .get()
+
+        then: "the result is sent again"
+        refetched.status == 200
+        refetched.getHeaderString(HttpHeaders.ETAG) == entityTag
+    }
+
+    def "A mutation sent through GET is never cached"() {
+        when: "metadata is saved via GraphQL GET"
+        Response response = jerseyTestBinder.makeRequest(
+                "/metadata/graphql",
+                [
+                        query: URLEncoder.encode(
+                                """mutation{createMetaData(fileId:"3",fileName:"a.txt",fileType:"TXT"){fileName}}""",
+                                "UTF-8"
+                        )
+                ]
+        ).get()
+
+        then: "the result is neither validated nor storable"
+        response.status == 200
+        response.getHeaderString(HttpHeaders.ETAG) == null
+        response.getHeaderString(HttpHeaders.CACHE_CONTROL) == "no-store"
+        new JsonSlurper().parseText(response.readEntity(String.class)).data.createMetaData.fileName == "a.txt"
+    }
+
     def "File metadata can be accessed through GraphQL POST endpoint"() {
         when: "we get meta data via GraphQL POST"
         String actual = jerseyTestBinder.makeRequest("/metadata/graphql")
@@ -112,11 +178,8 @@ class MetaServletSpec extends Specification {
     }
 
     def "Reading file meta data through POST cannot have field list empty"() {
-        given: "a mocked endpoint"
-        MetaServlet metaServlet = new MetaServlet(
-                Mock(MetaStore),
-                Mock(JsonDocumentParser) { getFields(_ as String) >> [] }
-        )
+        given: "an endpoint"
+        MetaServlet metaServlet = new MetaServlet(Mock(MetaStore), JacksonParser.instance)
 
         and: "a POST payload that contains empty field list attribute"
         String graphQLDocument = """
@@ -127,27 +190,60 @@ class MetaServletSpec extends Specification {
                 """
 
         when: "the payload is sent to the endpoint"
-        metaServlet.post(graphQLDocument)
+        metaServlet.post(graphQLDocument, Mock(AsyncResponse))
 
         then: "a runtime error is thrown"
         Exception exception = thrown(IllegalArgumentException)
-        exception.message == "Athena could not process the request because no metadata field was found: '$graphQLDocument'"
+        exception.message == "Athena could not process the request because query is not valid GraphQL: '$graphQLDocument'"
+    }
+
+    def "A plain single-file lookup through POST is served as a metadata lookup"() {
+        given:
+        MetaStore metaStore = Mock(MetaStore)
+        MetaServlet metaServlet = new MetaServlet(metaStore, JacksonParser.instance)
+
+        when:
+        metaServlet.post(
+                '{"query": "query lookup($id: ID) { metaData(fileId: $id) { fileType fileName } }", ' +
+                        '"variables": {"id": "2"}, "operationName": "lookup"}',
+                Mock(AsyncResponse)
+        )
+
+        then:
+        1 * metaStore.getMetaDataAsync("2", [META_DATA.FILE_TYPE, META_DATA.FILE_NAME]) >> new CompletableFuture<>()
+        0 * metaStore.executeAsync(*_)
+    }
+
+    def "Any other query through POST is executed as is"() {
+        when: "metadata is queried with aliases via GraphQL POST"
+        Map<String, Object> actual = new JsonSlurper().parseText(
+                jerseyTestBinder.makeRequest("/metadata/graphql")
+                        .post(
+                                Entity.entity(
+                                        """
+                                        {
+                                            "query": "{ a: metaData(fileId: \\"$FILE_ID\\") { name: fileName } }"
+                                        }
+                                        """.toString(),
+                                        MediaType.APPLICATION_JSON
+                                )
+                        )
+                        .readEntity(String.class)
+        ) as Map<String, Object>
+
+        then: "the response is keyed by the aliases"
+        actual == [data: [a: [name: FILE_NAME]]]
     }
 
     def expectedMultiFieldMetadataResponse() {
         """
         {
-           "errors":[
-              
-           ],
            "data":{
               "metaData":{
                  "fileName":"pride-and-prejudice.txt",
                  "fileType":"TXT"
               }
-           },
-           "extensions":null,
-           "dataPresent":true
+           }
         }
         """
     }
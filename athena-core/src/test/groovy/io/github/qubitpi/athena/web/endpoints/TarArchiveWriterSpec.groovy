@@ -0,0 +1,96 @@
+/*
+ * Copyright 2024 Jiaqi Liu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.qubitpi.athena.web.endpoints
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.charset.StandardCharsets
+
+class TarArchiveWriterSpec extends Specification {
+
+    static final int BLOCK_SIZE = 512
+
+    @Unroll
+    def "An entry of #description size is written as a ustar header and padded content"() {
+        given:
+        ByteArrayOutputStream output = new ByteArrayOutputStream()
+        TarArchiveWriter writer = new TarArchiveWriter(output)
+
+        when:
+        writer.putEntry("book.txt", size, new ByteArrayInputStream("Call me Ishmael.".bytes))
+        writer.finish()
+        byte[] archive = output.toByteArray()
+
+        then: "the header, one block of content, and two end blocks are written"
+        archive.length == 4 * BLOCK_SIZE
+        field(archive, 0, 100) == "book.txt"
+        Long.parseLong(field(archive, 124, 12), 8) == 16
+        field(archive, 257, 6) == "ustar"
+
+        and: "the header checksum is valid"
+        Long.parseLong(field(archive, 148, 7), 8) == checksum(archive)
+
+        and:
+        new String(archive, BLOCK_SIZE, 16, StandardCharsets.UTF_8) == "Call me Ishmael."
+        archive[2 * BLOCK_SIZE..<4 * BLOCK_SIZE].every { it == 0 }
+
+        where:
+        description | size
+        "known"     | OptionalLong.of(16)
+        "unknown"   | OptionalLong.empty()
+    }
+
+    def "A name longer than the ustar name field is carried by a pax extended header"() {
+        given:
+        String name = "a" * 150 + ".txt"
+        ByteArrayOutputStream output = new ByteArrayOutputStream()
+
+        when:
+        new TarArchiveWriter(output).putEntry(name, OptionalLong.of(1), new ByteArrayInputStream("x".bytes))
+        byte[] archive = output.toByteArray()
+
+        then:
+        (archive[156] as char) == 'x' as char
+        String record = new String(archive, BLOCK_SIZE, Integer.parseInt(field(archive, 124, 12), 8), StandardCharsets.UTF_8)
+        record == "${record.length()} path=$name\n"
+
+        and: "the ustar header of the entry follows"
+        (archive[2 * BLOCK_SIZE + 156] as char) == '0' as char
+        archive[3 * BLOCK_SIZE] == ('x' as char) as byte
+    }
+
+    def "Content shorter than its announced size is an error"() {
+        when:
+        new TarArchiveWriter(new ByteArrayOutputStream())
+                .putEntry("book.txt", OptionalLong.of(100), new ByteArrayInputStream("short".bytes))
+
+        then:
+        thrown(IOException)
+    }
+
+    static String field(byte[] header, int offset, int length) {
+        return new String(header, offset, length, StandardCharsets.US_ASCII).replace("\0", "").trim()
+    }
+
+    static long checksum(byte[] header) {
+        long checksum = 0
+        for (int index = 0; index < BLOCK_SIZE; index++) {
+            checksum += index >= 148 && index < 156 ? (' ' as char) as int : header[index] & 0xFF
+        }
+        return checksum
+    }
+}
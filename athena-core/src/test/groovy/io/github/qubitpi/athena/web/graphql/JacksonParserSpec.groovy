@@ -24,26 +24,107 @@ class JacksonParserSpec extends JsonDocumentParserSpec {
         JacksonParser.instance
     }
 
-    @SuppressWarnings("GroovyAccessibility")
-    def "Query field, in happy path, can be extracted"() {
+    def "Query, variables and operation name, in happy path, can be extracted"() {
+        when:
+        GraphQLPostRequest request = jsonDocumentParser.parse(
+                '{"query": "{ metaData(fileId: \\"1\\") { fileName } }", "extensions": {"a": [1]}, ' +
+                        '"variables": {"id": "2", "ids": ["3"]}, "operationName": "lookup"}'
+        )
+
+        then:
+        request.query == '{ metaData(fileId: "1") { fileName } }'
+        request.variables == [id: "2", ids: ["3"]]
+        request.operationName == Optional.of("lookup")
+    }
+
+    def "Absent or null variables and operation name are taken as none"() {
+        when:
+        GraphQLPostRequest request = jsonDocumentParser.parse(
+                '{"query": "{ metaData(fileId: \\"1\\") { fileName } }", "variables": null, "operationName": null}'
+        )
+
+        then:
+        request.variables == [:]
+        request.operationName == Optional.empty()
+    }
+
+    def "File ID can be given as a variable"() {
+        expect:
+        jsonDocumentParser.getFileId(
+                '{"query": "query lookup($id: ID!) { metaData(fileId: $id) { fileType } }", "variables": {"id": "7"}}'
+        ) == "7"
+    }
+
+    @Unroll
+    def "#description is not a plain single-file lookup"() {
+        when:
+        GraphQLPostRequest request = jsonDocumentParser.parse(/{"query": "$query"}/)
+
+        then:
+        request.fileId == Optional.empty()
+        request.fields == []
+        request.document.definitions.size() > 0
+
+        where:
+        query                                                              | description
+        '{ a: metaData(fileId: \\"1\\") { fileName } }'                 | "An aliased field"
+        '{ metaData(fileId: \\"1\\") { name: fileName } }'              | "An aliased metadata field"
+        '{ metaData(fileId: \\"1\\") { fileName } b: metaData(fileId: \\"2\\") { fileName } }' | "Several fields"
+        '{ metaDatas(fileIds: [\\"1\\"]) { fileName } }'                | "Another field"
+        '{ metaData(fileId: \\"1\\") { ...f } } fragment f on MetaData { fileName }' | "A fragment"
+        'mutation { metaData(fileId: \\"1\\") { fileName } }'          | "A mutation"
+        '{ metaData(fileId: $id) { fileName } }'                           | "An unbound variable"
+    }
+
+    def "The same query is parsed once"() {
+        given:
+        JacksonParser parser = new JacksonParser(1)
+        String graphQLDocument = '{"query": "{ metaData(fileId: \\"1\\") { fileName } }", "variables": {"a": 1}}'
+
+        expect: "the same query with other variables is not parsed again"
+        parser.parse(graphQLDocument).document.is(parser.parse(graphQLDocument.replace("1}", "2}")).document)
+        parser.size() == 1
+
+        when: "another query is parsed"
+        parser.parse('{"query": "{ metaData(fileId: \\"2\\") { fileName } }"}')
+
+        then: "the least recently used one is evicted"
+        parser.size() == 1
+    }
+
+    def "A bare query shares the cache of the queries sent in request bodies"() {
+        given:
+        JacksonParser parser = new JacksonParser(1)
+        String query = '{ metaData(fileId: "1") { fileName } }'
+
         expect:
-        JacksonParser.getQuery('{"query": "GraphQL"}') == "GraphQL"
+        parser.parseQuery(query).is(parser.parse('{"query": "{ metaData(fileId: \\"1\\") { fileName } }"}').document)
+        parser.size() == 1
+    }
+
+    def "A bare query that is not valid GraphQL cannot be parsed"() {
+        when:
+        new JacksonParser(1).parseQuery("{ metaData(")
+
+        then:
+        thrown(IllegalArgumentException)
     }
 
     @Unroll
-    @SuppressWarnings("GroovyAccessibility")
-    def "Query field cannot be extracted in the case of #description"() {
-        when: "invalid JSON document is parsed"
-        JacksonParser.getQuery(graphQLDocument)
+    def "Request cannot be parsed in the case of #description"() {
+        when: "invalid document is parsed"
+        jsonDocumentParser.parse(graphQLDocument)
 
         then: "a runtime exception is thrown"
-        Exception actual = thrown(exception)
-        exceptionType.isAssignableFrom(actual.getClass())
-        actual.message == exceptionMessage
+        IllegalArgumentException actual = thrown()
+        actual.message == "Athena could not process the request because $reason: '$graphQLDocument'"
 
         where:
-        graphQLDocument | exceptionType    | exception                | exceptionMessage                                                                                                | description
-        "invalid JSON"  | RuntimeException | IllegalArgumentException | "Athena could not process the request because HTTP request body is not properly JSON-formatted: 'invalid JSON'" | "invalid JSON"
-        '{"foo": 123}'  | RuntimeException | IllegalArgumentException | "Athena could not process the request because payload is missing 'query' field: '{\"foo\": 123}'"               | "JSON not having 'query' field"
+        graphQLDocument                                      | reason                                                | description
+        "invalid JSON"                                       | "HTTP request body is not properly JSON-formatted"    | "invalid JSON"
+        '{"query": "{}", '                                   | "HTTP request body is not properly JSON-formatted"    | "truncated JSON"
+        '{"foo": 123}'                                       | "payload is missing 'query' field"                    | "JSON not having 'query' field"
+        '{"query": null}'                                    | "payload is missing 'query' field"                    | "a null query"
+        '{"query": "{ metaData(fileId: \\"1\\") { } }"}' | "query is not valid GraphQL"                          | "an empty selection"
     }
 }
@@ -46,7 +46,6 @@ abstract class JsonDocumentParserSpec extends Specification {
 
         where:
         requested           | expected
-        ""                  | []
         "fileName"          | [MetaData.FILE_NAME]
         "fileType"          | [MetaData.FILE_TYPE]
         "fileName fileType" | [MetaData.FILE_NAME, MetaData.FILE_TYPE]
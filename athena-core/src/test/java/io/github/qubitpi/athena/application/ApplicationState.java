@@ -27,6 +27,7 @@ import net.jcip.annotations.NotThreadSafe;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiFunction;
 
 /**
@@ -73,9 +74,10 @@ public class ApplicationState {
      * Initial {@link FileStore} test data during each test def (not per-spec)
      * <p>
      * This map is where {@link FileStore} is going to read test data from and write test
-     * data to and will be initialized in setup() method.
+     * data to and will be initialized in setup() method. Files are uploaded concurrently on the file store executor,
+     * hence a concurrent map.
      */
-    public Map<String, String> fileByFileId = new HashMap<>();
+    public Map<String, String> fileByFileId = new ConcurrentHashMap<>();
 
     /**
      * Used for stubbing {@link FileStore#upload(File)} method's internal behavior by
@@ -96,7 +98,7 @@ public class ApplicationState {
         metadataByFileId = new HashMap<>();
         queryFormatter = (fileId, fields) -> "";
         mutationFormatter = (fileId, metadata) -> "";
-        fileByFileId = new HashMap<>();
+        fileByFileId = new ConcurrentHashMap<>();
         fileIdGenerator = null;
     }
 }
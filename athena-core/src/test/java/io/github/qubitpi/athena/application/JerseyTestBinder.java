@@ -28,6 +28,7 @@ import jakarta.ws.rs.client.WebTarget;
 import jakarta.ws.rs.core.Application;
 
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Map;
 import java.util.Objects;
@@ -227,7 +228,7 @@ public class JerseyTestBinder {
      * If the request does not have any query parameters, please use {@link #makeRequest(String)} instead.
      *
      * @param target  The specified URL
-     * @param queryParams  The specified query parameters
+     * @param queryParams  The specified query parameters; a {@link Collection} value is sent as a repeated parameter
      *
      * @return a request builder which user can use to send different types of requests, such as HTTP HEAD and HTTP GET
      * methods.
@@ -238,9 +239,11 @@ public class JerseyTestBinder {
         // Set target of call
         WebTarget httpCall = harness.target(target);
 
-        // Add query params to call
+        // Add query params to call; a collection value is sent as a repeated query param
         for (final Map.Entry<String, Object> entry : queryParams.entrySet()) {
-            httpCall = httpCall.queryParam(entry.getKey(), entry.getValue());
+            httpCall = entry.getValue() instanceof Collection
+                    ? httpCall.queryParam(entry.getKey(), ((Collection<?>) entry.getValue()).toArray())
+                    : httpCall.queryParam(entry.getKey(), entry.getValue());
         }
 
         return httpCall.request();
@@ -29,8 +29,11 @@ import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.time.Instant;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.OptionalLong;
 import java.util.stream.Collectors;
 
 import jakarta.inject.Inject;
@@ -43,6 +46,11 @@ import jakarta.inject.Named;
 @NotThreadSafe
 public class TestFileStore implements FileStore {
 
+    /**
+     * When all test files were stored.
+     */
+    public static final Instant LAST_MODIFIED = Instant.parse("2024-01-01T00:00:00Z");
+
     /**
      * There is a reason of not having {@code Map<String, File>}.
      * <p>
@@ -94,4 +102,23 @@ public class TestFileStore implements FileStore {
     public InputStream download(final String fileId) {
         return new ByteArrayInputStream(fileByFileId.get(fileId).getBytes());
     }
+
+    @Override
+    public boolean delete(final String fileId) {
+        return fileByFileId.remove(fileId) != null;
+    }
+
+    @Override
+    public OptionalLong getSize(final String fileId) {
+        return OptionalLong.of(fileByFileId.get(fileId).getBytes().length);
+    }
+
+    @Override
+    public Optional<FileVersion> getVersion(final String fileId) {
+        return Optional.of(new FileVersion(
+                Integer.toHexString(fileByFileId.get(fileId).hashCode()),
+                LAST_MODIFIED,
+                getSize(fileId)
+        ));
+    }
 }
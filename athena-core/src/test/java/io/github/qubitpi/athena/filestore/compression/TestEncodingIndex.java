@@ -0,0 +1,49 @@
+/*
+ * Copyright 2024 Jiaqi Liu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.qubitpi.athena.filestore.compression;
+
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An in-memory {@link EncodingIndex} test stub.
+ */
+@ThreadSafe
+public class TestEncodingIndex implements EncodingIndex {
+
+    private final Map<String, FileEncoding> encodingByFileId = new ConcurrentHashMap<>();
+
+    @Override
+    public void addEncoding(final String fileId, final FileEncoding encoding) {
+        if (encodingByFileId.putIfAbsent(Objects.requireNonNull(fileId), Objects.requireNonNull(encoding)) != null) {
+            throw new IllegalArgumentException(String.format("File ID '%s' is already indexed", fileId));
+        }
+    }
+
+    @Override
+    public Optional<FileEncoding> getEncoding(final String fileId) {
+        return Optional.ofNullable(encodingByFileId.get(Objects.requireNonNull(fileId)));
+    }
+
+    @Override
+    public boolean removeEncoding(final String fileId) {
+        return encodingByFileId.remove(Objects.requireNonNull(fileId)) != null;
+    }
+}
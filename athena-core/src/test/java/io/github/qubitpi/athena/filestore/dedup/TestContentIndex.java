@@ -0,0 +1,101 @@
+/*
+ * Copyright 2024 Jiaqi Liu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.qubitpi.athena.filestore.dedup;
+
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * An in-memory {@link ContentIndex} test stub, which every method updates atomically by holding the index lock.
+ */
+@ThreadSafe
+public class TestContentIndex implements ContentIndex {
+
+    @GuardedBy("this")
+    private final Map<String, String> blobIdByDigest = new HashMap<>();
+
+    @GuardedBy("this")
+    private final Map<String, Long> referenceCountByDigest = new HashMap<>();
+
+    @GuardedBy("this")
+    private final Map<String, String> digestByFileId = new HashMap<>();
+
+    @Override
+    public synchronized Optional<String> addReference(final String fileId, final String digest) {
+        Objects.requireNonNull(fileId);
+        final String blobId = blobIdByDigest.get(Objects.requireNonNull(digest));
+        if (blobId == null) {
+            return Optional.empty();
+        }
+
+        map(fileId, digest);
+        return Optional.of(blobId);
+    }
+
+    @Override
+    public synchronized String addBlob(final String fileId, final String digest, final String blobId) {
+        Objects.requireNonNull(fileId);
+        blobIdByDigest.putIfAbsent(Objects.requireNonNull(digest), Objects.requireNonNull(blobId));
+        map(fileId, digest);
+        return blobIdByDigest.get(digest);
+    }
+
+    @Override
+    public synchronized Optional<String> removeReference(final String fileId) {
+        final String digest = digestByFileId.remove(Objects.requireNonNull(fileId));
+        if (digest == null) {
+            return Optional.empty();
+        }
+
+        if (referenceCountByDigest.merge(digest, -1L, Long::sum) > 0) {
+            return Optional.empty();
+        }
+
+        referenceCountByDigest.remove(digest);
+        return Optional.of(blobIdByDigest.remove(digest));
+    }
+
+    @Override
+    public synchronized Optional<String> getBlobId(final String fileId) {
+        return Optional.ofNullable(digestByFileId.get(Objects.requireNonNull(fileId))).map(blobIdByDigest::get);
+    }
+
+    @Override
+    public synchronized long getReferenceCount(final String digest) {
+        return referenceCountByDigest.getOrDefault(Objects.requireNonNull(digest), 0L);
+    }
+
+    /**
+     * Maps a file ID to a digest and counts the new reference.
+     *
+     * @param fileId  The new file ID
+     * @param digest  The digest of a registered blob
+     *
+     * @throws IllegalArgumentException if {@code fileId} is already mapped
+     */
+    @GuardedBy("this")
+    private void map(final String fileId, final String digest) {
+        if (digestByFileId.putIfAbsent(fileId, digest) != null) {
+            throw new IllegalArgumentException(String.format("File ID '%s' is already indexed", fileId));
+        }
+        referenceCountByDigest.merge(digest, 1L, Long::sum);
+    }
+}
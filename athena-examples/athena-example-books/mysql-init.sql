@@ -12,18 +12,6 @@
 -- See the License for the specific language governing permissions and
 -- limitations under the License.
 
+-- The tables and the sample books are created by the application when it starts, through the migrations of the
+-- athena-metastore-jdbc module and of this example
 CREATE DATABASE IF NOT EXISTS Athena;
-USE Athena;
-
-CREATE TABLE BOOK_META_DATA (
-    id        int NOT NULL AUTO_INCREMENT,
-    file_id   VARCHAR(255) NOT NULL,
-    file_name VARCHAR(255) NOT NULL,
-    file_type VARCHAR(8)   NOT NULL,
-    PRIMARY KEY (id)
-);
-
--- Predefined test data
-INSERT INTO BOOK_META_DATA (file_id, file_name, file_type) VALUES ('1', 'Harry Potter', 'PDF');
-INSERT INTO BOOK_META_DATA (file_id, file_name, file_type) VALUES ('2', 'Moby Dick', 'PDF');
-INSERT INTO BOOK_META_DATA (file_id, file_name, file_type) VALUES ('3', 'Interview with the vampire', 'PDF');
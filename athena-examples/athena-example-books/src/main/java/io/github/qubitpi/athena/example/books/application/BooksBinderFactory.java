@@ -16,6 +16,7 @@
 package io.github.qubitpi.athena.example.books.application;
 
 import static io.github.qubitpi.athena.config.ErrorMessageFormat.CONFIG_NOT_FOUND;
+import static io.github.qubitpi.athena.config.ErrorMessageFormat.DATABASE_MIGRATION_ERROR;
 
 import io.github.qubitpi.athena.application.AbstractBinderFactory;
 import io.github.qubitpi.athena.config.SystemConfig;
@@ -25,8 +26,13 @@ import io.github.qubitpi.athena.filestore.swift.SwiftFileStore;
 import io.github.qubitpi.athena.metadata.MetaData;
 import io.github.qubitpi.athena.metastore.MetaStore;
 import io.github.qubitpi.athena.metastore.graphql.GraphQLMetaStore;
+import io.github.qubitpi.athena.metastore.jdbc.JdbcMutationDataFetcher;
+import io.github.qubitpi.athena.metastore.jdbc.JdbcQueryDataFetcher;
+import io.github.qubitpi.athena.metastore.jdbc.MetaDataSchema;
 
 import org.apache.commons.dbcp2.BasicDataSource;
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.FlywayException;
 import org.glassfish.hk2.utilities.binding.AbstractBinder;
 import org.javaswift.joss.client.factory.AccountFactory;
 import org.javaswift.joss.client.factory.AuthenticationMethod;
@@ -38,11 +44,17 @@ import org.slf4j.LoggerFactory;
 import graphql.schema.DataFetcher;
 import jakarta.validation.constraints.NotNull;
 
+import java.sql.SQLException;
+
 import jakarta.inject.Provider;
 import javax.sql.DataSource;
 
 /**
  * Book specialization of the Abstract Binder Factory, applying Book app configuration objects.
+ * <p>
+ * The metadata database is brought up to date when the application starts: the schema migrations of the
+ * athena-metastore-jdbc module are applied first, then the sample books, which are recorded in their own
+ * {@value #SAMPLE_DATA_HISTORY_TABLE} table. Both are applied only once per database.
  */
 public class BooksBinderFactory extends AbstractBinderFactory {
 
@@ -63,6 +75,7 @@ public class BooksBinderFactory extends AbstractBinderFactory {
             final BasicDataSource basicDataSource = new BasicDataSource();
             basicDataSource.setDriverClassName("org.apache.derby.jdbc.EmbeddedDriver");
             basicDataSource.setUrl("jdbc:derby:memory:Athena;create=true");
+            basicDataSource.setPoolPreparedStatements(true);
             return basicDataSource;
         }
 
@@ -94,6 +107,8 @@ public class BooksBinderFactory extends AbstractBinderFactory {
             poolDataSource.setPassword(ROOT);
             poolDataSource.setUrl("jdbc:mysql://db:3306/Athena?autoReconnect=true&useSSL=false");
             poolDataSource.setDriverClassName("com.mysql.jdbc.Driver");
+            // keep the few distinct metadata statements prepared on each pooled connection
+            poolDataSource.setPoolPreparedStatements(true);
 
             return poolDataSource;
         }
@@ -109,6 +124,12 @@ public class BooksBinderFactory extends AbstractBinderFactory {
 
     private static final String DATA_SOURCE_PROVIDER_KEY = "data_source_provider";
 
+    /**
+     * The table in which the applied sample data migrations are recorded.
+     */
+    private static final String SAMPLE_DATA_HISTORY_TABLE = "athena_books_history";
+    private static final String SAMPLE_DATA_LOCATION = "classpath:db/books";
+
     private final String dataSourceProviderClass = SYSTEM_CONFIG.getStringProperty(
             SYSTEM_CONFIG.getPackageVariableName(DATA_SOURCE_PROVIDER_KEY)
     ).orElseThrow(() -> {
@@ -129,16 +150,18 @@ public class BooksBinderFactory extends AbstractBinderFactory {
 
     @Override
     protected DataFetcher<MetaData> buildQueryDataFetcher() {
-        return new SQLQueryDataFetcher(getDataSource());
+        return new JdbcQueryDataFetcher(getDataSource(), getMetaStoreExecutor());
     }
 
     @Override
     protected DataFetcher<MetaData> buildMutationDataFetcher() {
-        return new SQLMutationDataFetcher(getDataSource());
+        return new JdbcMutationDataFetcher(getDataSource(), getMetaStoreExecutor());
     }
 
     @Override
     protected void afterBinding(final AbstractBinder abstractBinder) {
+        migrateDatabase(getDataSource());
+
         final Account account = buildAccount();
 
         final Container container = account.getContainer(SwiftFileStore.DEFAULT_CONTAINER);
@@ -194,6 +217,32 @@ public class BooksBinderFactory extends AbstractBinderFactory {
         }
     }
 
+    /**
+     * Applies the metadata schema migrations and then the sample books that a database does not have yet.
+     *
+     * @param dataSource  The database holding the metadata
+     *
+     * @throws IllegalStateException if the database cannot be migrated
+     */
+    private static void migrateDatabase(final @NotNull DataSource dataSource) {
+        try {
+            MetaDataSchema.migrate(dataSource);
+
+            final Flyway sampleData = new Flyway();
+            sampleData.setDataSource(dataSource);
+            sampleData.setLocations(SAMPLE_DATA_LOCATION);
+            sampleData.setTable(SAMPLE_DATA_HISTORY_TABLE);
+            // the schema migrations have already run; the sample books have not
+            sampleData.setBaselineOnMigrate(true);
+            sampleData.setBaselineVersionAsString("0");
+            sampleData.setClassLoader(BooksBinderFactory.class.getClassLoader());
+            sampleData.migrate();
+        } catch (final SQLException | FlywayException exception) {
+            LOG.error(DATABASE_MIGRATION_ERROR.logFormat(exception.getMessage()), exception);
+            throw new IllegalStateException(DATABASE_MIGRATION_ERROR.format(), exception);
+        }
+    }
+
     /**
      * Creates an in-memory implementation of the OpenStackClient.
      *
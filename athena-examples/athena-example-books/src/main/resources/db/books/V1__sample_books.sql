@@ -0,0 +1,20 @@
+-- Copyright 2024 Jiaqi Liu
+--
+-- Licensed under the Apache License, Version 2.0 (the "License");
+-- you may not use this file except in compliance with the License.
+-- You may obtain a copy of the License at
+--
+--     http://www.apache.org/licenses/LICENSE-2.0
+--
+-- Unless required by applicable law or agreed to in writing, software
+-- distributed under the License is distributed on an "AS IS" BASIS,
+-- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+-- See the License for the specific language governing permissions and
+-- limitations under the License.
+
+-- The schema is created by the migrations of the athena-metastore-jdbc module
+
+-- Sample books, loaded once the schema is in place
+INSERT INTO ATHENA_META_DATA (file_id, file_name, file_type) VALUES ('1', 'Harry Potter', 'PDF');
+INSERT INTO ATHENA_META_DATA (file_id, file_name, file_type) VALUES ('2', 'Moby Dick', 'PDF');
+INSERT INTO ATHENA_META_DATA (file_id, file_name, file_type) VALUES ('3', 'Interview with the vampire', 'PDF');
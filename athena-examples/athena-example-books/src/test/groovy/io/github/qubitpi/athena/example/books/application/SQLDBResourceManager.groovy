@@ -18,43 +18,30 @@ package io.github.qubitpi.athena.example.books.application
 import org.flywaydb.core.Flyway
 
 /**
- * A SQL DB resource manager that maintains DB-related configs of integration tests. It also offers capability to load
- * testing data into a Derby testing DB.
+ * A SQL DB resource manager that maintains DB-related configs of integration tests. The schema and the sample books are
+ * loaded into the Derby testing DB by the application itself when it starts; this manager wipes them out between
+ * tests.
  */
 class SQLDBResourceManager {
 
-    private static final Flyway MIGRATOR = buildMigrator();
+    private static final Flyway CLEANER = buildCleaner()
 
     /**
-     * Migrates database schema to local testing database.
-     */
-    static void migrateDatabase() {
-        cleanupDatabase()
-        MIGRATOR.migrate()
-    }
-
-    /**
-     * Removes schema
+     * Removes schema and data, so that the next application start loads them again.
      */
     static void cleanupDatabase() {
-        MIGRATOR.clean()
+        CLEANER.clean()
     }
 
-
     /**
-     * Instantiate and returns an instance of Flyway migration instance that loads testing data into the local Derby
+     * Instantiate and returns an instance of Flyway that drops all objects of the local Derby.
      *
-     * @return the Flyway migration instance
+     * @return the Flyway instance
      */
     @SuppressWarnings('GroovyAccessibility')
-    private static Flyway buildMigrator() {
+    private static Flyway buildCleaner() {
         Flyway flyway = new Flyway()
-
         flyway.setDataSource(new BooksBinderFactory().dataSourceProvider.get())
-        flyway.setValidateOnMigrate(true)
-        flyway.setBaselineOnMigrate(true)
-        flyway.setLocations("filesystem:./src/test/resources/db/migration/V1__book_data")
-
         return flyway
     }
 }
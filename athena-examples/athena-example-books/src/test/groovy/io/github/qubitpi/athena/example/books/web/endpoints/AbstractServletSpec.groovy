@@ -47,7 +47,7 @@ abstract class AbstractServletSpec extends Specification {
     }
 
     def setup() {
-        SQLDBResourceManager.migrateDatabase()
+        SQLDBResourceManager.cleanupDatabase()
 
         SERVER = JettyServerFactory.newInstance(PORT, "/v1/*", new ResourceConfig())
         SERVER.start()
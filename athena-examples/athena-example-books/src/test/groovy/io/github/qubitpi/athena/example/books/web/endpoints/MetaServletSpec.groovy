@@ -54,20 +54,99 @@ class MetaServletSpec extends AbstractServletSpec {
                 .body("", equalTo(new JsonSlurper().parseText(expectedMultiFieldMetadataResponse())))
     }
 
+    def "Metadata can be queried through GraphQL POST with aliases, variables and an operation name"() {
+        expect:
+        RestAssured.given()
+                .contentType(ContentType.JSON)
+                .body(
+                        """
+                        {
+                            "query": "query books(\$a: ID!, \$b: ID!) { a: metaData(fileId: \$a) { name: fileName } b: metaData(fileId: \$b) { fileName } }",
+                            "variables": {"a": "1", "b": "3"},
+                            "operationName": "books"
+                        }
+                        """
+                )
+                .when()
+                .post("/metadata/graphql")
+                .then()
+                .statusCode(200)
+                .body("data.a.name", equalTo("Harry Potter"))
+                .body("data.b.fileName", equalTo("Interview with the vampire"))
+    }
+
+    def "Metadata of many files can be queried at once through aliases"() {
+        expect:
+        RestAssured.given()
+                .contentType(ContentType.JSON)
+                .queryParam("query", """{a: metaData(fileId:"1"){fileName} b: metaData(fileId:"3"){fileName}}""")
+                .when()
+                .get("/metadata/graphql")
+                .then()
+                .statusCode(200)
+                .body("data.a.fileName", equalTo("Harry Potter"))
+                .body("data.b.fileName", equalTo("Interview with the vampire"))
+    }
+
+    def "Metadata of a list of files can be queried with a single field"() {
+        expect:
+        RestAssured.given()
+                .contentType(ContentType.JSON)
+                .queryParam("query", """{metaDatas(fileIds:["3","1","unknown"]){fileName}}""")
+                .when()
+                .get("/metadata/graphql")
+                .then()
+                .statusCode(200)
+                .body(
+                        "data.metaDatas",
+                        equalTo([[fileName: "Interview with the vampire"], [fileName: "Harry Potter"], null])
+                )
+    }
+
+    def "Metadata of all files can be listed page by page"() {
+        given:
+        String query = '{listMetaData(first:2%s){edges{cursor fileId node{fileName}} pageInfo{hasNextPage endCursor}}}'
+
+        when: "the first page is listed"
+        Map<String, Object> firstPage = RestAssured.given()
+                .contentType(ContentType.JSON)
+                .queryParam("query", String.format(query, ""))
+                .when()
+                .get("/metadata/graphql")
+                .then()
+                .statusCode(200)
+                .extract()
+                .path("data.listMetaData")
+
+        and: "the page after it is listed"
+        Map<String, Object> secondPage = RestAssured.given()
+                .contentType(ContentType.JSON)
+                .queryParam("query", String.format(query, /,after:"${firstPage.pageInfo.endCursor}",fileType:"PDF"/))
+                .when()
+                .get("/metadata/graphql")
+                .then()
+                .statusCode(200)
+                .extract()
+                .path("data.listMetaData")
+
+        then: "each file is listed once, in the order of file IDs"
+        firstPage.edges*.fileId == ["1", "2"]
+        firstPage.edges*.node*.fileName == ["Harry Potter", "Moby Dick"]
+        firstPage.pageInfo.hasNextPage == true
+        secondPage.edges*.fileId == ["3"]
+        secondPage.edges*.node*.fileName == ["Interview with the vampire"]
+        secondPage.pageInfo.hasNextPage == false
+    }
+
     def expectedMultiFieldMetadataResponse() {
         """
         {
-           "errors":[
-              
-           ],
            "data":{
               "metaData":{
                  "fileName":"Harry Potter",
                  "fileType":"PDF"
               }
-           },
-           "extensions":null,
-           "dataPresent":true
+           }
         }
         """
     }
@@ -85,6 +85,7 @@ public final class JettyServerFactory {
 
         final ServletContainer servletContainer = new ServletContainer(resourceConfig);
         final ServletHolder servletHolder = new ServletHolder(servletContainer);
+        servletHolder.setAsyncSupported(true);
         final ServletContextHandler servletContextHandler = new ServletContextHandler(ServletContextHandler.SESSIONS);
         servletContextHandler.addServlet(servletHolder, pathSpec);
         server.setHandler(servletContextHandler);
@@ -0,0 +1,323 @@
+/*
+ * Copyright 2024 Jiaqi Liu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.qubitpi.athena.filestore.local;
+
+import static io.github.qubitpi.athena.config.ErrorMessageFormat.CONFIG_NOT_FOUND;
+import static io.github.qubitpi.athena.config.ErrorMessageFormat.FILE_ID_CONFLICT;
+import static io.github.qubitpi.athena.config.ErrorMessageFormat.FILE_NOT_FOUND;
+import static io.github.qubitpi.athena.config.ErrorMessageFormat.FILE_STORE_IO_ERROR;
+
+import io.github.qubitpi.athena.config.SystemConfig;
+import io.github.qubitpi.athena.config.SystemConfigFactory;
+import io.github.qubitpi.athena.file.File;
+import io.github.qubitpi.athena.file.identifier.FileIdGenerator;
+import io.github.qubitpi.athena.filestore.FileChannelInputStream;
+import io.github.qubitpi.athena.filestore.FileStore;
+import io.github.qubitpi.athena.filestore.FileVersion;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import jakarta.validation.constraints.NotNull;
+import jakarta.ws.rs.NotFoundException;
+import net.jcip.annotations.Immutable;
+import net.jcip.annotations.ThreadSafe;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLEncoder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.OptionalLong;
+
+/**
+ * A local-disk implementation of {@link FileStore}, which keeps each file as a regular file under a single root
+ * directory.
+ * <p>
+ * The root directory can be a local disk or an NFS mount. Uploads are written to a temporary file next to their final
+ * location and then atomically linked into place, so a concurrent download never observes a partially written file.
+ * Linking, unlike renaming, fails if a file already exists under the same file ID, so an upload whose generated ID
+ * collides with a stored file fails instead of overwriting it.
+ * <p>
+ * {@link #download(String)} returns a {@link FileChannelInputStream}, whose {@link InputStream#transferTo(
+ * java.io.OutputStream)} goes through {@link FileChannel#transferTo(long, long,
+ * java.nio.channels.WritableByteChannel)}.
+ * <p>
+ * A file ID under which no file is stored is answered with a {@link NotFoundException} on download, which the web
+ * layer turns into a 404 Not Found, and with an empty size and version, rather than with a storage error.
+ */
+@Singleton
+@Immutable
+@ThreadSafe
+public class LocalFileStore implements FileStore {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LocalFileStore.class);
+
+    private static final SystemConfig SYSTEM_CONFIG = SystemConfigFactory.getInstance();
+
+    /**
+     * The config key whose value is the directory under which all files are stored.
+     */
+    private static final String ROOT_DIR_KEY = "local_file_store_root_dir";
+
+    private static final String TEMP_FILE_PREFIX = ".upload-";
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+
+    private final Path rootDirectory;
+    private final FileIdGenerator fileIdGenerator;
+
+    /**
+     * DI constructor.
+     * <p>
+     * The root directory is read from the {@code local_file_store_root_dir} config property and is created if it does
+     * not exist yet.
+     *
+     * @param fileIdGenerator  An object that provides file unique identifiers
+     *
+     * @throws NullPointerException if {@code fileIdGenerator} is {@code null}
+     * @throws IllegalStateException if the root directory is not configured or cannot be created
+     */
+    @Inject
+    public LocalFileStore(final @NotNull FileIdGenerator fileIdGenerator) {
+        this(getConfiguredRootDirectory(), fileIdGenerator);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param rootDirectory  The directory under which all files are stored; it is created if it does not exist yet
+     * @param fileIdGenerator  An object that provides file unique identifiers
+     *
+     * @throws NullPointerException if any argument is {@code null}
+     * @throws IllegalStateException if the root directory cannot be created
+     */
+    public LocalFileStore(final @NotNull Path rootDirectory, final @NotNull FileIdGenerator fileIdGenerator) {
+        this.rootDirectory = Objects.requireNonNull(rootDirectory).toAbsolutePath().normalize();
+        this.fileIdGenerator = Objects.requireNonNull(fileIdGenerator);
+
+        try {
+            Files.createDirectories(this.rootDirectory);
+        } catch (final IOException exception) {
+            LOG.error(FILE_STORE_IO_ERROR.logFormat(this.rootDirectory, exception.getMessage()), exception);
+            throw new IllegalStateException(FILE_STORE_IO_ERROR.format(), exception);
+        }
+    }
+
+    /**
+     * Persists a file under a newly generated file ID.
+     *
+     * @param file  An object representing the file to be persisted
+     *
+     * @return the file ID that can be used later to retrieve that file in Athena
+     *
+     * @throws IllegalStateException if a file is already stored under the generated file ID, or the file cannot be
+     * written
+     */
+    @Override
+    public String upload(final File file) {
+        Objects.requireNonNull(file);
+        final String fileId = fileIdGenerator.apply(file);
+        final Path target = resolve(fileId);
+
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(rootDirectory, TEMP_FILE_PREFIX, TEMP_FILE_SUFFIX);
+            Files.copy(file.getFileContent(), temp, StandardCopyOption.REPLACE_EXISTING);
+            Files.createLink(target, temp);
+        } catch (final FileAlreadyExistsException exception) {
+            LOG.error(FILE_ID_CONFLICT.logFormat(fileId), exception);
+            throw new IllegalStateException(FILE_ID_CONFLICT.format(fileId), exception);
+        } catch (final IOException exception) {
+            LOG.error(FILE_STORE_IO_ERROR.logFormat(fileId, exception.getMessage()), exception);
+            throw new IllegalStateException(FILE_STORE_IO_ERROR.format(), exception);
+        } finally {
+            deleteQuietly(temp);
+        }
+
+        return fileId;
+    }
+
+    @Override
+    public InputStream download(final String fileId) {
+        return download(fileId, 0, Long.MAX_VALUE);
+    }
+
+    /**
+     * Retrieves a contiguous byte range of a file through a {@link FileChannelInputStream}.
+     *
+     * @param fileId  The provided file ID
+     * @param offset  The position of the first byte of the range
+     * @param length  The max number of bytes in the range
+     *
+     * @return a stream of the requested bytes
+     *
+     * @throws IllegalArgumentException if {@code offset} or {@code length} is negative
+     * @throws NotFoundException if no file is stored under {@code fileId}
+     * @throws IllegalStateException if the file cannot be opened
+     */
+    @Override
+    public InputStream download(final String fileId, final long offset, final long length) {
+        final Path file = resolve(Objects.requireNonNull(fileId));
+        if (offset < 0 || length < 0) {
+            final String message = String.format("Invalid byte range: offset=%d, length=%d", offset, length);
+            LOG.error(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        try {
+            final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+            channel.position(offset);
+            return new FileChannelInputStream(
+                    channel,
+                    length > Long.MAX_VALUE - offset ? Long.MAX_VALUE : offset + length
+            );
+        } catch (final NoSuchFileException exception) {
+            LOG.error(FILE_NOT_FOUND.logFormat(fileId), exception);
+            throw new NotFoundException(FILE_NOT_FOUND.format(fileId), exception);
+        } catch (final IOException exception) {
+            LOG.error(FILE_STORE_IO_ERROR.logFormat(fileId, exception.getMessage()), exception);
+            throw new IllegalStateException(FILE_STORE_IO_ERROR.format(), exception);
+        }
+    }
+
+    @Override
+    public OptionalLong getSize(final String fileId) {
+        final Path file = resolve(Objects.requireNonNull(fileId));
+
+        try {
+            return OptionalLong.of(Files.size(file));
+        } catch (final NoSuchFileException exception) {
+            return OptionalLong.empty();
+        } catch (final IOException exception) {
+            LOG.error(FILE_STORE_IO_ERROR.logFormat(fileId, exception.getMessage()), exception);
+            throw new IllegalStateException(FILE_STORE_IO_ERROR.format(), exception);
+        }
+    }
+
+    /**
+     * Returns the version of a file from its size and last modified time, which is how static file servers usually
+     * tag files; a stored file is never rewritten under the same file ID. The size is reported along with it.
+     *
+     * @param fileId  The provided file ID
+     *
+     * @return the file version or an empty value if no file is stored under {@code fileId}
+     *
+     * @throws IllegalStateException if the file attributes cannot be read
+     */
+    @Override
+    public Optional<FileVersion> getVersion(final String fileId) {
+        final Path file = resolve(Objects.requireNonNull(fileId));
+
+        try {
+            final BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            return Optional.of(new FileVersion(
+                    String.format("%x-%x", attributes.size(), attributes.lastModifiedTime().toMillis()),
+                    attributes.lastModifiedTime().toInstant(),
+                    OptionalLong.of(attributes.size())
+            ));
+        } catch (final NoSuchFileException exception) {
+            return Optional.empty();
+        } catch (final IOException exception) {
+            LOG.error(FILE_STORE_IO_ERROR.logFormat(fileId, exception.getMessage()), exception);
+            throw new IllegalStateException(FILE_STORE_IO_ERROR.format(), exception);
+        }
+    }
+
+    @Override
+    public boolean delete(final String fileId) {
+        final Path file = resolve(Objects.requireNonNull(fileId));
+
+        try {
+            return Files.deleteIfExists(file);
+        } catch (final IOException exception) {
+            LOG.error(FILE_STORE_IO_ERROR.logFormat(fileId, exception.getMessage()), exception);
+            throw new IllegalStateException(FILE_STORE_IO_ERROR.format(), exception);
+        }
+    }
+
+    /**
+     * Returns the path of the file identified by a specified file ID.
+     * <p>
+     * File IDs may contain characters such as {@code '/'} which are not allowed in a file name, so the ID is
+     * URL-encoded into a single path segment directly under the root directory.
+     *
+     * @param fileId  The provided file ID
+     *
+     * @return a path under the root directory
+     *
+     * @throws IllegalArgumentException if the file ID does not map to a file under the root directory
+     */
+    @NotNull
+    private Path resolve(final @NotNull String fileId) {
+        final String fileName = URLEncoder.encode(fileId, StandardCharsets.UTF_8);
+        final Path file = rootDirectory.resolve(fileName).normalize();
+
+        if (fileName.isEmpty() || !rootDirectory.equals(file.getParent())) {
+            final String message = String.format("'%s' is not a valid file ID", fileId);
+            LOG.error(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        return file;
+    }
+
+    /**
+     * Deletes a file if it exists, swallowing any failure.
+     *
+     * @param file  The file to delete, can be {@code null}
+     */
+    private static void deleteQuietly(final Path file) {
+        if (file == null) {
+            return;
+        }
+
+        try {
+            Files.deleteIfExists(file);
+        } catch (final IOException exception) {
+            LOG.warn("Unable to delete temporary file '{}'", file, exception);
+        }
+    }
+
+    /**
+     * Reads the root directory of this store from the {@code local_file_store_root_dir} config property.
+     *
+     * @return the configured root directory
+     *
+     * @throws IllegalStateException if the config property is not set
+     */
+    @NotNull
+    private static Path getConfiguredRootDirectory() {
+        return Paths.get(
+                SYSTEM_CONFIG.getStringProperty(SYSTEM_CONFIG.getPackageVariableName(ROOT_DIR_KEY))
+                        .orElseThrow(() -> {
+                            LOG.error(CONFIG_NOT_FOUND.logFormat(ROOT_DIR_KEY));
+                            return new IllegalStateException(CONFIG_NOT_FOUND.format());
+                        })
+        );
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2024 Jiaqi Liu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.qubitpi.athena.filestore.local
+
+import io.github.qubitpi.athena.file.File
+import io.github.qubitpi.athena.file.identifier.FileIdGenerator
+import io.github.qubitpi.athena.filestore.FileVersion
+import io.github.qubitpi.athena.metadata.FileType
+import io.github.qubitpi.athena.metadata.MetaData
+
+import jakarta.ws.rs.NotFoundException
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.channels.WritableByteChannel
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardOpenOption
+
+class LocalFileStoreSpec extends Specification {
+
+    static final String FILE_ID = "ab/c+d=="
+    static final byte[] CONTENT = (0..<100_000).collect { (byte) (it % 251) } as byte[]
+
+    @TempDir
+    Path rootDirectory
+
+    @SuppressWarnings("GroovyAccessibility")
+    def "File can be uploaded and downloaded in its intact form"() {
+        given:
+        LocalFileStore fileStore = new LocalFileStore(rootDirectory, Mock(FileIdGenerator) { apply(_) >> FILE_ID })
+
+        when: "a file is uploaded"
+        String fileId = fileStore.upload(new File(new MetaData("video.mp4", FileType.MP4), new ByteArrayInputStream(CONTENT)))
+
+        then: "the file is stored as a single entry under the root directory"
+        fileId == FILE_ID
+        Files.list(rootDirectory).collect { it.fileName.toString() } == ["ab%2Fc%2Bd%3D%3D"]
+
+        and: "the file can be downloaded later"
+        fileStore.download(fileId).bytes == CONTENT
+    }
+
+    @SuppressWarnings("GroovyAccessibility")
+    def "Download can be transferred to a stream sink"() {
+        given:
+        LocalFileStore fileStore = new LocalFileStore(rootDirectory, Mock(FileIdGenerator) { apply(_) >> FILE_ID })
+        fileStore.upload(new File(new MetaData("book.pdf", FileType.PDF), new ByteArrayInputStream(CONTENT)))
+        ByteArrayOutputStream sink = new ByteArrayOutputStream()
+
+        when: "a few bytes are skipped before the transfer"
+        InputStream download = fileStore.download(FILE_ID)
+        download.skip(10)
+        long transferred = download.transferTo(sink)
+        download.close()
+
+        then:
+        transferred == CONTENT.length - 10
+        sink.toByteArray() == Arrays.copyOfRange(CONTENT, 10, CONTENT.length)
+    }
+
+    @SuppressWarnings("GroovyAccessibility")
+    def "Download can be transferred to a channel sink"() {
+        given:
+        LocalFileStore fileStore = new LocalFileStore(rootDirectory, Mock(FileIdGenerator) { apply(_) >> FILE_ID })
+        fileStore.upload(new File(new MetaData("book.pdf", FileType.PDF), new ByteArrayInputStream(CONTENT)))
+        Path target = rootDirectory.resolve("target.bin")
+        FileChannel targetChannel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE)
+
+        when:
+        InputStream download = fileStore.download(FILE_ID)
+        long transferred = download.transferTo(new ChannelOutputStream(targetChannel))
+        download.close()
+        targetChannel.close()
+
+        then:
+        transferred == CONTENT.length
+        Files.readAllBytes(target) == CONTENT
+    }
+
+    @SuppressWarnings("GroovyAccessibility")
+    def "A byte range of a file can be downloaded"() {
+        given:
+        LocalFileStore fileStore = new LocalFileStore(rootDirectory, Mock(FileIdGenerator) { apply(_) >> FILE_ID })
+        fileStore.upload(new File(new MetaData("video.mp4", FileType.MP4), new ByteArrayInputStream(CONTENT)))
+
+        expect:
+        fileStore.getSize(FILE_ID).getAsLong() == CONTENT.length
+        fileStore.download(FILE_ID, offset, length).bytes == Arrays.copyOfRange(CONTENT, from, to)
+
+        and: "ranged streams can be transferred as well"
+        ByteArrayOutputStream sink = new ByteArrayOutputStream()
+        fileStore.download(FILE_ID, offset, length).transferTo(sink) == to - from
+        sink.toByteArray() == Arrays.copyOfRange(CONTENT, from, to)
+
+        where:
+        offset | length         || from   | to
+        0      | 10             || 0      | 10
+        99_990 | 100            || 99_990 | 100_000
+        50_000 | 0              || 50_000 | 50_000
+        0      | Long.MAX_VALUE || 0      | 100_000
+    }
+
+    @SuppressWarnings("GroovyAccessibility")
+    def "File version is told from the file size and modification time, and tells the file size"() {
+        given:
+        LocalFileStore fileStore = new LocalFileStore(rootDirectory, Mock(FileIdGenerator) { apply(_) >> FILE_ID })
+        fileStore.upload(new File(new MetaData("book.pdf", FileType.PDF), new ByteArrayInputStream(CONTENT)))
+        Path file = rootDirectory.resolve("ab%2Fc%2Bd%3D%3D")
+
+        when:
+        FileVersion version = fileStore.getVersion(FILE_ID).get()
+
+        then:
+        version.ETag == "${Long.toHexString(CONTENT.length)}-${Long.toHexString(Files.getLastModifiedTime(file).toMillis())}"
+        version.lastModified.get() == Files.getLastModifiedTime(file).toInstant()
+        version.size.asLong == CONTENT.length
+    }
+
+    @SuppressWarnings("GroovyAccessibility")
+    def "An upload whose file ID is already taken fails without overwriting the stored file"() {
+        given:
+        LocalFileStore fileStore = new LocalFileStore(rootDirectory, Mock(FileIdGenerator) { apply(_) >> FILE_ID })
+        fileStore.upload(new File(new MetaData("book.pdf", FileType.PDF), new ByteArrayInputStream(CONTENT)))
+
+        when:
+        fileStore.upload(new File(new MetaData("other.pdf", FileType.PDF), new ByteArrayInputStream([1, 2, 3] as byte[])))
+
+        then:
+        thrown(IllegalStateException)
+        fileStore.download(FILE_ID).bytes == CONTENT
+
+        and: "no temporary file is left behind"
+        Files.list(rootDirectory).collect { it.fileName.toString() } == ["ab%2Fc%2Bd%3D%3D"]
+    }
+
+    def "Invalid file ID is rejected"() {
+        given:
+        LocalFileStore fileStore = new LocalFileStore(rootDirectory, Mock(FileIdGenerator))
+
+        when:
+        fileStore.download(fileId)
+
+        then:
+        thrown(IllegalArgumentException)
+
+        where:
+        fileId << ["", ".", ".."]
+    }
+
+    def "Downloading a non-existing file is answered with a not found error"() {
+        when:
+        new LocalFileStore(rootDirectory, Mock(FileIdGenerator)).download("nonExistingFileId")
+
+        then:
+        thrown(NotFoundException)
+    }
+
+    def "A non-existing file has neither size nor version"() {
+        given:
+        LocalFileStore fileStore = new LocalFileStore(rootDirectory, Mock(FileIdGenerator))
+
+        expect:
+        !fileStore.getSize("nonExistingFileId").present
+        !fileStore.getVersion("nonExistingFileId").present
+    }
+
+    /**
+     * An {@link OutputStream} that is also a {@link WritableByteChannel}, like the response output of some servlet
+     * containers.
+     */
+    static class ChannelOutputStream extends OutputStream implements WritableByteChannel {
+
+        final FileChannel channel
+
+        ChannelOutputStream(FileChannel channel) {
+            this.channel = channel
+        }
+
+        @Override
+        void write(int b) {
+            channel.write(ByteBuffer.wrap([(byte) b] as byte[]))
+        }
+
+        @Override
+        int write(ByteBuffer src) {
+            channel.write(src)
+        }
+
+        @Override
+        boolean isOpen() {
+            channel.isOpen()
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2024 Jiaqi Liu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.qubitpi.athena.filestore.swift;
+
+import org.javaswift.joss.headers.object.range.AbstractRange;
+
+import net.jcip.annotations.Immutable;
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * A {@code Range} request header selecting the bytes between two positions, both inclusive.
+ * <p>
+ * JOSS ships a {@link org.javaswift.joss.headers.object.range.MidPartRange} as well, but it only takes {@code int}
+ * positions and therefore cannot address bytes beyond 2 GB in large objects.
+ */
+@Immutable
+@ThreadSafe
+final class InclusiveRange extends AbstractRange {
+
+    /**
+     * Constructor.
+     *
+     * @param first  The position of the first byte
+     * @param last  The position of the last byte
+     */
+    InclusiveRange(final long first, final long last) {
+        super(first, last);
+    }
+
+    @Override
+    public long getFrom(final int byteArrayLength) {
+        return offset;
+    }
+
+    @Override
+    public long getTo(final int byteArrayLength) {
+        return Math.min(length + 1, byteArrayLength);
+    }
+}
@@ -15,39 +15,159 @@
  */
 package io.github.qubitpi.athena.filestore.swift;
 
+import static io.github.qubitpi.athena.config.ErrorMessageFormat.FILE_STORE_IO_ERROR;
+
+import io.github.qubitpi.athena.config.SystemConfig;
+import io.github.qubitpi.athena.config.SystemConfigFactory;
 import io.github.qubitpi.athena.file.File;
 import io.github.qubitpi.athena.file.identifier.FileIdGenerator;
 import io.github.qubitpi.athena.filestore.FileStore;
+import io.github.qubitpi.athena.filestore.FileVersion;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
 
+import org.javaswift.joss.exception.CommandException;
+import org.javaswift.joss.instructions.DownloadInstructions;
+import org.javaswift.joss.instructions.UploadInstructions;
 import org.javaswift.joss.model.Account;
 import org.javaswift.joss.model.Container;
+import org.javaswift.joss.model.StoredObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import jakarta.validation.constraints.NotNull;
 import net.jcip.annotations.NotThreadSafe;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
 
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 
 /**
  * An OpenStack Swift implementation of {@link FileStore}.
+ * <p>
+ * By default, each file is sent to Swift as a single object. When a segment size is configured via
+ * {@code swift_segment_size}, files larger than one segment are instead split into fixed-size segments which are
+ * uploaded concurrently into {@link #SEGMENT_CONTAINER} and then tied together by a manifest object stored under the
+ * file ID. Swift serves the manifest as the concatenation of its segments, so {@link #download(String)} is unchanged.
+ * <p>
+ * Such manifest is a Static Large Object, which lists every segment with its size and MD5 hash. Swift checks the listed
+ * segments when the manifest is written and serves the file from the manifest alone, so, unlike a Dynamic Large Object,
+ * a file is never read through an eventually consistent container listing and cannot come out truncated. Each segment
+ * is also uploaded with its MD5 hash, which Swift checks. A file no larger than one segment is kept as a plain object.
+ * <p>
+ * Ranged downloads are delegated to Swift through a {@code Range} request header, so only the requested bytes are
+ * transferred.
+ * <p>
+ * All files go to {@link #DEFAULT_CONTAINER} unless a number of container shards is configured via
+ * {@code swift_container_shards}. Files are then spread over that many containers, named
+ * {@code default-container_<shard>}, by a hash of their file ID, so that no single container database becomes a write
+ * hotspot. Shard containers, as well as their segment containers, are created lazily on first upload. The number of
+ * shards determines where every file lives and must therefore not change once files have been stored.
  */
 @Singleton
 @NotThreadSafe
 public class SwiftFileStore implements FileStore {
 
     /**
-     * The container name where all files are going to be stored in.
+     * The container name where all files are going to be stored in, unless container sharding is enabled.
      */
     public static final String DEFAULT_CONTAINER = "default-container";
 
+    /**
+     * The container name where segments of segmented files are stored in, unless container sharding is enabled.
+     */
+    public static final String SEGMENT_CONTAINER = DEFAULT_CONTAINER + "_segments";
+
+    private static final Logger LOG = LoggerFactory.getLogger(SwiftFileStore.class);
+
+    private static final SystemConfig SYSTEM_CONFIG = SystemConfigFactory.getInstance();
+
+    private static final String SEGMENT_SIZE_KEY = "swift_segment_size";
+    private static final String SEGMENT_UPLOAD_THREADS_KEY = "swift_segment_upload_threads";
+    private static final String CONTAINER_SHARDS_KEY = "swift_container_shards";
+
+    /**
+     * Segmentation is disabled unless a segment size is configured.
+     */
+    private static final long SEGMENT_SIZE_DEFAULT = 0;
+    private static final int SEGMENT_UPLOAD_THREADS_DEFAULT = 4;
+
+    /**
+     * Sharding is disabled, i.e. all files go to {@link #DEFAULT_CONTAINER}, unless a number of shards is configured.
+     */
+    private static final int CONTAINER_SHARDS_DEFAULT = 1;
+
+    /**
+     * The largest segment this store can buffer, i.e. the largest Java array size.
+     */
+    private static final long MAX_SEGMENT_SIZE = Integer.MAX_VALUE - 8;
+
+    private static final String SEGMENT_NAME_FORMAT = "%s/%08d";
+    private static final String SHARD_CONTAINER_FORMAT = DEFAULT_CONTAINER + "_%d";
+    private static final String SEGMENT_CONTAINER_SUFFIX = "_segments";
+    private static final int SEGMENT_LISTING_PAGE_SIZE = 1000;
+
+    private static final String AUTH_TOKEN_HEADER = "X-Auth-Token";
+    private static final int HTTP_UNAUTHORIZED = 401;
+
+    private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+
+    private static final AtomicInteger UPLOADER_THREAD_COUNT = new AtomicInteger();
+
     private final Account account;
     private final FileIdGenerator fileIdGenerator;
+    private final int segmentSize;
+    private final int segmentUploadThreads;
+    private final ExecutorService segmentUploader;
+    private final int containerShards;
+
+    /**
+     * The client sending Static Large Object manifests, which JOSS cannot write.
+     */
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+
+    /**
+     * The containers known to exist, which are therefore not checked again before an upload.
+     */
+    private final Set<String> readyContainers = ConcurrentHashMap.newKeySet();
 
     /**
      * DI constructor.
+     * <p>
+     * Segmented upload is configured through the {@code swift_segment_size} (in bytes, {@code 0} disables
+     * segmentation) and {@code swift_segment_upload_threads} config properties. Container sharding is configured
+     * through the {@code swift_container_shards} config property.
      *
      * @param account  A Swift client allowing access to the various containers underneath it. Note that you need to
      * call {@link Account#getContainer(String)} to work on Containers and then pass the {@link Account} into this
@@ -61,8 +181,84 @@ public class SwiftFileStore implements FileStore {
      */
     @Inject
     public SwiftFileStore(final @NotNull Account account, final @NotNull FileIdGenerator fileIdGenerator) {
+        this(
+                account,
+                fileIdGenerator,
+                SYSTEM_CONFIG.getLongProperty(SYSTEM_CONFIG.getPackageVariableName(SEGMENT_SIZE_KEY))
+                        .orElse(SEGMENT_SIZE_DEFAULT),
+                SYSTEM_CONFIG.getIntProperty(SYSTEM_CONFIG.getPackageVariableName(SEGMENT_UPLOAD_THREADS_KEY))
+                        .orElse(SEGMENT_UPLOAD_THREADS_DEFAULT),
+                SYSTEM_CONFIG.getIntProperty(SYSTEM_CONFIG.getPackageVariableName(CONTAINER_SHARDS_KEY))
+                        .orElse(CONTAINER_SHARDS_DEFAULT)
+        );
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param account  A Swift client allowing access to the various containers underneath it
+     * @param fileIdGenerator  An object that provides file unique identifiers
+     * @param segmentSize  The size, in bytes, of each segment of a segmented upload; {@code 0} disables segmentation
+     * @param segmentUploadThreads  The max number of segments of a single file that are buffered and uploaded
+     * concurrently
+     *
+     * @throws NullPointerException if {@code account} or {@code fileIdGenerator} is {@code null}
+     * @throws IllegalArgumentException if {@code segmentSize} is negative or too large to be buffered, or if
+     * {@code segmentUploadThreads} is not positive
+     */
+    public SwiftFileStore(
+            final @NotNull Account account,
+            final @NotNull FileIdGenerator fileIdGenerator,
+            final long segmentSize,
+            final int segmentUploadThreads
+    ) {
+        this(account, fileIdGenerator, segmentSize, segmentUploadThreads, CONTAINER_SHARDS_DEFAULT);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param account  A Swift client allowing access to the various containers underneath it
+     * @param fileIdGenerator  An object that provides file unique identifiers
+     * @param segmentSize  The size, in bytes, of each segment of a segmented upload; {@code 0} disables segmentation
+     * @param segmentUploadThreads  The max number of segments of a single file that are buffered and uploaded
+     * concurrently
+     * @param containerShards  The number of containers files are spread over; {@code 1} stores all files in
+     * {@link #DEFAULT_CONTAINER}
+     *
+     * @throws NullPointerException if {@code account} or {@code fileIdGenerator} is {@code null}
+     * @throws IllegalArgumentException if {@code segmentSize} is negative or too large to be buffered, or if
+     * {@code segmentUploadThreads} or {@code containerShards} is not positive
+     */
+    public SwiftFileStore(
+            final @NotNull Account account,
+            final @NotNull FileIdGenerator fileIdGenerator,
+            final long segmentSize,
+            final int segmentUploadThreads,
+            final int containerShards
+    ) {
+        if (segmentSize < 0 || segmentSize > MAX_SEGMENT_SIZE) {
+            final String message = String.format("Invalid Swift segment size: %d", segmentSize);
+            LOG.error(message);
+            throw new IllegalArgumentException(message);
+        }
+        if (segmentUploadThreads < 1) {
+            final String message = String.format("Invalid Swift segment upload threads: %d", segmentUploadThreads);
+            LOG.error(message);
+            throw new IllegalArgumentException(message);
+        }
+        if (containerShards < 1) {
+            final String message = String.format("Invalid Swift container shards: %d", containerShards);
+            LOG.error(message);
+            throw new IllegalArgumentException(message);
+        }
+
         this.account = Objects.requireNonNull(account);
         this.fileIdGenerator = Objects.requireNonNull(fileIdGenerator);
+        this.segmentSize = (int) segmentSize;
+        this.segmentUploadThreads = segmentUploadThreads;
+        this.segmentUploader = segmentSize == 0 ? null : buildSegmentUploader(segmentUploadThreads);
+        this.containerShards = containerShards;
     }
 
     @Override
@@ -70,10 +266,18 @@ public class SwiftFileStore implements FileStore {
         Objects.requireNonNull(file);
         final String fileId = fileIdGenerator.apply(file);
 
-        account
-                .getContainer(DEFAULT_CONTAINER)
-                .getObject(fileId)
-                .uploadObject(file.getFileContent());
+        if (containerShards > 1) {
+            prepareContainer(getContainerName(fileId));
+        }
+
+        if (segmentUploader == null) {
+            account
+                    .getContainer(getContainerName(fileId))
+                    .getObject(fileId)
+                    .uploadObject(file.getFileContent());
+        } else {
+            uploadSegmented(fileId, file.getFileContent());
+        }
 
         return fileId;
     }
@@ -81,8 +285,521 @@ public class SwiftFileStore implements FileStore {
     @Override
     public InputStream download(final String fileId) {
         return account
-                .getContainer(DEFAULT_CONTAINER)
-                .getObject(Objects.requireNonNull(fileId))
+                .getContainer(getContainerName(Objects.requireNonNull(fileId)))
+                .getObject(fileId)
                 .downloadObjectAsInputStream();
     }
+
+    @Override
+    public InputStream download(final String fileId, final long offset, final long length) {
+        Objects.requireNonNull(fileId);
+        if (offset < 0 || length < 0) {
+            final String message = String.format("Invalid byte range: offset=%d, length=%d", offset, length);
+            LOG.error(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (length == 0) {
+            return InputStream.nullInputStream();
+        }
+
+        return account
+                .getContainer(getContainerName(fileId))
+                .getObject(fileId)
+                .downloadObjectAsInputStream(
+                        new DownloadInstructions().setRange(new InclusiveRange(offset, offset + length - 1))
+                );
+    }
+
+    @Override
+    public OptionalLong getSize(final String fileId) {
+        return OptionalLong.of(
+                account
+                        .getContainer(getContainerName(Objects.requireNonNull(fileId)))
+                        .getObject(fileId)
+                        .getContentLength()
+        );
+    }
+
+    /**
+     * Returns the version of a file from the ETag and last modified time that Swift keeps for its object.
+     * <p>
+     * The ETag of a plain object is the MD5 hash of its content; that of a segmented file is computed from its
+     * segments. Both are read, together with the object size, with a single HEAD request.
+     *
+     * @param fileId  The provided file ID
+     *
+     * @return the file version
+     */
+    @Override
+    public Optional<FileVersion> getVersion(final String fileId) {
+        final StoredObject object = account
+                .getContainer(getContainerName(Objects.requireNonNull(fileId)))
+                .getObject(fileId);
+
+        return Optional.of(new FileVersion(
+                object.getEtag().replace("\"", ""),
+                object.getLastModifiedAsDate() == null ? null : object.getLastModifiedAsDate().toInstant(),
+                OptionalLong.of(object.getContentLength())
+        ));
+    }
+
+    /**
+     * Deletes the object of a file and, for a segmented file, all of its segments.
+     *
+     * @param fileId  The provided file ID
+     *
+     * @return {@code true} if the file was removed, or {@code false} if it did not exist
+     */
+    @Override
+    public boolean delete(final String fileId) {
+        final String containerName = getContainerName(Objects.requireNonNull(fileId));
+        final StoredObject object = account.getContainer(containerName).getObject(fileId);
+        if (!object.exists()) {
+            return false;
+        }
+        object.delete();
+
+        final Container segmentContainer = account.getContainer(containerName + SEGMENT_CONTAINER_SUFFIX);
+        if (!segmentContainer.exists()) {
+            return true;
+        }
+
+        String marker = null;
+        Collection<StoredObject> segments;
+        do {
+            segments = segmentContainer.list(fileId + "/", marker, SEGMENT_LISTING_PAGE_SIZE);
+            for (final StoredObject segment : segments) {
+                segment.delete();
+                marker = segment.getName();
+            }
+        } while (segments.size() == SEGMENT_LISTING_PAGE_SIZE);
+
+        return true;
+    }
+
+    /**
+     * Returns the name of the container holding a file.
+     *
+     * @param fileId  The ID of the file
+     *
+     * @return {@link #DEFAULT_CONTAINER} if sharding is disabled, or the shard container the file ID hashes to
+     *
+     * @throws NullPointerException if {@code fileId} is {@code null}
+     */
+    @NotNull
+    public String getContainerName(final @NotNull String fileId) {
+        if (containerShards == 1) {
+            return DEFAULT_CONTAINER;
+        }
+
+        final CRC32 hash = new CRC32();
+        hash.update(Objects.requireNonNull(fileId).getBytes(StandardCharsets.UTF_8));
+        return String.format(SHARD_CONTAINER_FORMAT, hash.getValue() % containerShards);
+    }
+
+    /**
+     * Splits a file into segments, uploads the segments concurrently, and then writes the Static Large Object manifest
+     * that represents the whole file.
+     * <p>
+     * At most {@code segmentUploadThreads} segments of this file are held in memory at any time, plus one segment read
+     * ahead to tell whether the file goes on. A file that fits in a single segment, including one exactly a segment
+     * long, is uploaded as a plain object.
+     * <p>
+     * The manifest lists every segment with its size and MD5 hash. Swift checks each listed segment directly when the
+     * manifest is written and rejects the manifest if any does not match, and it serves the file from the manifest
+     * itself rather than from a container listing, so an acknowledged file is always read in full.
+     *
+     * @param fileId  The ID of the file being uploaded
+     * @param content  The file content
+     *
+     * @throws IllegalStateException if reading the content, uploading any segment, or writing the manifest fails
+     */
+    private void uploadSegmented(final @NotNull String fileId, final @NotNull InputStream content) {
+        final String containerName = getContainerName(fileId);
+        final String segmentContainerName = containerName + SEGMENT_CONTAINER_SUFFIX;
+        final Semaphore bufferPermits = new Semaphore(segmentUploadThreads);
+        final AtomicBoolean failed = new AtomicBoolean(false);
+        final List<Future<Segment>> segmentUploads = new ArrayList<>();
+        final List<Segment> segments = new ArrayList<>();
+
+        try {
+            bufferPermits.acquire();
+            byte[] segment = readSegment(content);
+            byte[] next = readNextSegment(content, segment, bufferPermits);
+
+            if (next.length == 0) {
+                account.getContainer(containerName).getObject(fileId).uploadObject(segment);
+                return;
+            }
+
+            prepareContainer(segmentContainerName);
+            int index = 0;
+            while (segment.length > 0 && !failed.get()) {
+                final String segmentName = segmentName(fileId, index++);
+                segmentUploads.add(submitSegment(segmentContainerName, segmentName, segment, bufferPermits, failed));
+                segment = next;
+                next = readNextSegment(content, segment, bufferPermits);
+            }
+
+            for (final Future<Segment> segmentUpload : segmentUploads) {
+                segments.add(segmentUpload.get());
+            }
+        } catch (final InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            abortSegmentedUpload(segmentContainerName, fileId, segmentUploads, exception);
+        } catch (final ExecutionException | IOException exception) {
+            abortSegmentedUpload(segmentContainerName, fileId, segmentUploads, exception);
+        }
+
+        if (failed.get()) {
+            abortSegmentedUpload(segmentContainerName, fileId, segmentUploads, null);
+        }
+
+        try {
+            putManifest(
+                    account.getContainer(containerName).getObject(fileId),
+                    toManifest(segmentContainerName, segments)
+            );
+        } catch (final InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            abortSegmentedUpload(segmentContainerName, fileId, segmentUploads, exception);
+        } catch (final IOException exception) {
+            abortSegmentedUpload(segmentContainerName, fileId, segmentUploads, exception);
+        }
+    }
+
+    /**
+     * Writes a Static Large Object manifest with a {@code PUT ?multipart-manifest=put} request.
+     * <p>
+     * JOSS has no support for Static Large Objects, so the request is sent directly to the object URL with the auth
+     * token of the account. An expired token is renewed once.
+     *
+     * @param manifest  The object that becomes the manifest, i.e. the whole file
+     * @param body  The JSON manifest listing the segments, in order
+     *
+     * @throws IOException if the request fails or Swift rejects the manifest, e.g. because a segment does not match
+     * @throws InterruptedException if interrupted while waiting for the response
+     */
+    protected void putManifest(final @NotNull StoredObject manifest, final @NotNull String body)
+            throws IOException, InterruptedException {
+        HttpResponse<String> response = sendManifest(manifest, body, account.getAccess().getToken());
+        if (response.statusCode() == HTTP_UNAUTHORIZED) {
+            response = sendManifest(manifest, body, account.authenticate().getToken());
+        }
+
+        if (response.statusCode() / 100 != 2) {
+            throw new IOException(String.format(
+                    "Swift rejected the manifest with status %d: %s",
+                    response.statusCode(),
+                    response.body()
+            ));
+        }
+    }
+
+    /**
+     * Sends a Static Large Object manifest.
+     *
+     * @param manifest  The object that becomes the manifest
+     * @param body  The JSON manifest
+     * @param token  The auth token of the account
+     *
+     * @return the Swift response
+     *
+     * @throws IOException if the request fails
+     * @throws InterruptedException if interrupted while waiting for the response
+     */
+    @NotNull
+    private HttpResponse<String> sendManifest(
+            final @NotNull StoredObject manifest,
+            final @NotNull String body,
+            final @NotNull String token
+    ) throws IOException, InterruptedException {
+        return httpClient.send(
+                HttpRequest.newBuilder(URI.create(manifest.getURL() + "?multipart-manifest=put"))
+                        .header(AUTH_TOKEN_HEADER, token)
+                        .PUT(HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8))
+                        .build(),
+                HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8)
+        );
+    }
+
+    /**
+     * Returns the Static Large Object manifest of uploaded segments.
+     *
+     * @param segmentContainerName  The container holding the segments
+     * @param segments  The uploaded segments, in segment order
+     *
+     * @return a JSON array with the path, size, and MD5 hash of each segment
+     *
+     * @throws IOException if the manifest cannot be serialized
+     */
+    @NotNull
+    private static String toManifest(final @NotNull String segmentContainerName, final @NotNull List<Segment> segments)
+            throws IOException {
+        final List<Map<String, Object>> entries = new ArrayList<>(segments.size());
+        for (final Segment segment : segments) {
+            final Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("path", "/" + segmentContainerName + "/" + segment.getName());
+            entry.put("etag", segment.getEtag());
+            entry.put("size_bytes", segment.getSize());
+            entries.add(entry);
+        }
+        return JSON_MAPPER.writeValueAsString(entries);
+    }
+
+    /**
+     * Uploads a single segment on the segment uploader pool, releasing its buffer permit once done.
+     * <p>
+     * The segment is sent with its MD5 hash, so that Swift rejects it if it gets corrupted on its way.
+     *
+     * @param segmentContainerName  The container receiving the segment
+     * @param segmentName  The object name of the segment
+     * @param segment  The segment content
+     * @param bufferPermits  The permits bounding the number of buffered segments of the current file
+     * @param failed  A flag that is raised if the segment upload fails
+     *
+     * @return the pending segment upload, which tells the name, size, and hash of the uploaded segment
+     */
+    @NotNull
+    private Future<Segment> submitSegment(
+            final @NotNull String segmentContainerName,
+            final @NotNull String segmentName,
+            final @NotNull byte[] segment,
+            final @NotNull Semaphore bufferPermits,
+            final @NotNull AtomicBoolean failed
+    ) {
+        return segmentUploader.submit(() -> {
+            boolean uploaded = false;
+            try {
+                final String etag = md5(segment);
+                account
+                        .getContainer(segmentContainerName)
+                        .getObject(segmentName)
+                        .uploadObject(new UploadInstructions(segment).setMd5(etag));
+                uploaded = true;
+                return new Segment(segmentName, segment.length, etag);
+            } finally {
+                if (!uploaded) {
+                    failed.set(true);
+                }
+                bufferPermits.release();
+            }
+        });
+    }
+
+    /**
+     * Cancels pending segment uploads, deletes the segments that were already uploaded, and reports the failure.
+     *
+     * @param segmentContainerName  The container receiving the segments of the file
+     * @param fileId  The ID of the file being uploaded
+     * @param segmentUploads  All submitted segment uploads of the file, in segment order
+     * @param cause  The cause of the failure, can be {@code null}
+     *
+     * @throws IllegalStateException always
+     */
+    private void abortSegmentedUpload(
+            final @NotNull String segmentContainerName,
+            final @NotNull String fileId,
+            final @NotNull List<Future<Segment>> segmentUploads,
+            final Exception cause
+    ) {
+        segmentUploads.forEach(segmentUpload -> segmentUpload.cancel(true));
+
+        for (int index = 0; index < segmentUploads.size(); index++) {
+            try {
+                account.getContainer(segmentContainerName).getObject(segmentName(fileId, index)).delete();
+            } catch (final CommandException exception) {
+                LOG.warn("Unable to delete segment {} of file '{}'", index, fileId, exception);
+            }
+        }
+
+        final String reason = cause == null ? "segment upload failed" : cause.getMessage();
+        LOG.error(FILE_STORE_IO_ERROR.logFormat(fileId, reason), cause);
+        throw new IllegalStateException(FILE_STORE_IO_ERROR.format(), cause);
+    }
+
+    /**
+     * Reads the next segment out of a file content stream.
+     *
+     * @param content  The file content
+     *
+     * @return a full segment, or a shorter array if the end of the stream has been reached
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @NotNull
+    private byte[] readSegment(final @NotNull InputStream content) throws IOException {
+        final byte[] segment = new byte[segmentSize];
+        final int length = content.readNBytes(segment, 0, segmentSize);
+        return length == segmentSize ? segment : Arrays.copyOf(segment, length);
+    }
+
+    /**
+     * Reads the segment following a full one, so that a file is known to go on before its first segment is sent.
+     * <p>
+     * A buffer permit is acquired for the read segment unless the file has ended.
+     *
+     * @param content  The file content
+     * @param previous  The segment read last
+     * @param bufferPermits  The permits bounding the number of buffered segments of the current file
+     *
+     * @return the next segment, or an empty array if the file has ended
+     *
+     * @throws IOException if an I/O error occurs
+     * @throws InterruptedException if interrupted while waiting for a buffer permit
+     */
+    @NotNull
+    private byte[] readNextSegment(
+            final @NotNull InputStream content,
+            final @NotNull byte[] previous,
+            final @NotNull Semaphore bufferPermits
+    ) throws IOException, InterruptedException {
+        if (previous.length < segmentSize) {
+            return new byte[0];
+        }
+
+        bufferPermits.acquire();
+        final byte[] next = readSegment(content);
+        if (next.length == 0) {
+            bufferPermits.release();
+        }
+        return next;
+    }
+
+    /**
+     * Returns the MD5 hash of a segment, the way Swift reports it as the ETag of an object.
+     *
+     * @param segment  The segment content
+     *
+     * @return the lower-case hex MD5 hash of the segment
+     *
+     * @throws IllegalStateException if the JVM does not support MD5
+     */
+    @NotNull
+    private static String md5(final @NotNull byte[] segment) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("MD5").digest(segment));
+        } catch (final NoSuchAlgorithmException exception) {
+            throw new IllegalStateException("MD5 is not supported by this JVM", exception);
+        }
+    }
+
+    /**
+     * Creates a container if it does not exist yet, the same way {@link #DEFAULT_CONTAINER} is set up at startup.
+     * <p>
+     * Each container is checked at most once per store instance; concurrent first uploads may both check it, which is
+     * harmless because creating an existing container is a no-op in Swift.
+     *
+     * @param containerName  The name of the container
+     */
+    private void prepareContainer(final @NotNull String containerName) {
+        if (readyContainers.contains(containerName)) {
+            return;
+        }
+
+        final Container container = account.getContainer(containerName);
+        if (!container.exists()) {
+            container.create();
+            container.makePublic();
+        }
+        readyContainers.add(containerName);
+    }
+
+    /**
+     * Returns the object name of a segment.
+     * <p>
+     * Segment indices are zero-padded so that Swift concatenates the segments in the order they were uploaded.
+     *
+     * @param fileId  The ID of the file being uploaded
+     * @param index  The index of the segment in the file
+     *
+     * @return a segment name prefixed by the file ID
+     */
+    @NotNull
+    private static String segmentName(final @NotNull String fileId, final int index) {
+        return String.format(SEGMENT_NAME_FORMAT, fileId, index);
+    }
+
+    /**
+     * Creates the bounded pool on which segments are uploaded.
+     * <p>
+     * Idle threads time out, so a store that does not see any large uploads does not keep threads around.
+     *
+     * @param threads  The max number of concurrent segment uploads across all files
+     *
+     * @return a new thread pool made of daemon threads
+     */
+    @NotNull
+    private static ExecutorService buildSegmentUploader(final int threads) {
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                threads,
+                threads,
+                1,
+                TimeUnit.MINUTES,
+                new LinkedBlockingQueue<>(),
+                runnable -> {
+                    final Thread thread = new Thread(
+                            runnable,
+                            "swift-segment-uploader-" + UPLOADER_THREAD_COUNT.incrementAndGet()
+                    );
+                    thread.setDaemon(true);
+                    return thread;
+                }
+        );
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * An uploaded segment, as it is listed in a Static Large Object manifest.
+     */
+    private static final class Segment {
+
+        private final String name;
+        private final long size;
+        private final String etag;
+
+        /**
+         * Constructor.
+         *
+         * @param name  The object name of the segment
+         * @param size  The size of the segment, in bytes
+         * @param etag  The lower-case hex MD5 hash of the segment
+         */
+        private Segment(final @NotNull String name, final long size, final @NotNull String etag) {
+            this.name = name;
+            this.size = size;
+            this.etag = etag;
+        }
+
+        /**
+         * Returns the object name of the segment.
+         *
+         * @return the segment name
+         */
+        @NotNull
+        private String getName() {
+            return name;
+        }
+
+        /**
+         * Returns the size of the segment.
+         *
+         * @return the number of bytes in the segment
+         */
+        private long getSize() {
+            return size;
+        }
+
+        /**
+         * Returns the MD5 hash of the segment.
+         *
+         * @return the lower-case hex MD5 hash
+         */
+        @NotNull
+        private String getEtag() {
+            return etag;
+        }
+    }
 }
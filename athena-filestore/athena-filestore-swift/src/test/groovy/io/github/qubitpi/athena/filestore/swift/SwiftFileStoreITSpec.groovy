@@ -23,9 +23,13 @@ import io.github.qubitpi.athena.metadata.MetaData
 
 import org.javaswift.joss.client.factory.AccountFactory
 import org.javaswift.joss.client.factory.AuthenticationMethod
+import org.javaswift.joss.headers.object.ObjectManifest
+import org.javaswift.joss.instructions.UploadInstructions
 import org.javaswift.joss.model.Account
 import org.javaswift.joss.model.Container
+import org.javaswift.joss.model.StoredObject
 
+import groovy.json.JsonSlurper
 import jakarta.validation.constraints.NotNull
 import spock.lang.Specification
 import spock.lang.Subject
@@ -40,8 +44,10 @@ class SwiftFileStoreITSpec extends Specification {
     @Subject
     FileStore fileStore
 
+    Account account
+
     def setup() {
-        Account account = buildAccount()
+        account = buildAccount()
 
         final Container container = account.getContainer(SwiftFileStore.DEFAULT_CONTAINER)
 
@@ -68,6 +74,80 @@ class SwiftFileStoreITSpec extends Specification {
                 getClass().getClassLoader().getResourceAsStream(FILENAME).getText(StandardCharsets.UTF_8.name())
     }
 
+    @SuppressWarnings("GroovyAccessibility")
+    def "File larger than a segment is uploaded in segments and downloaded in its intact form"() {
+        given: "a store that splits files into 1 KB segments"
+        fileStore = buildSegmentedFileStore(1)
+        String expected = getClass().getClassLoader().getResourceAsStream(FILENAME).getText(StandardCharsets.UTF_8.name())
+
+        when: "a file is uploaded"
+        fileStore.upload(
+                new File(
+                        new MetaData(FILENAME, FileType.TXT),
+                        getClass().getClassLoader().getResourceAsStream(FILENAME)
+                )
+        )
+
+        then: "the file is stored as multiple segments"
+        account.getContainer(SwiftFileStore.SEGMENT_CONTAINER).list().size() ==
+                Math.ceil(expected.getBytes(StandardCharsets.UTF_8).length / 1024) as int
+
+        and: "the file can be downloaded later"
+        fileStore.download(FILE_ID).getText(StandardCharsets.UTF_8.name()) == expected
+    }
+
+    @SuppressWarnings("GroovyAccessibility")
+    def "A byte range of a file can be downloaded"() {
+        given:
+        byte[] expected = getClass().getClassLoader().getResourceAsStream(FILENAME).bytes
+        fileStore.upload(
+                new File(
+                        new MetaData(FILENAME, FileType.TXT),
+                        getClass().getClassLoader().getResourceAsStream(FILENAME)
+                )
+        )
+
+        expect:
+        fileStore.download(FILE_ID, 1000, 2500).bytes == Arrays.copyOfRange(expected, 1000, 3500)
+    }
+
+    def "File size is read from object metadata"() {
+        when: "a file is uploaded"
+        fileStore.upload(
+                new File(
+                        new MetaData(FILENAME, FileType.TXT),
+                        getClass().getClassLoader().getResourceAsStream(FILENAME)
+                )
+        )
+
+        then:
+        fileStore.getSize(FILE_ID).getAsLong() == getClass().getClassLoader().getResourceAsStream(FILENAME).bytes.length
+    }
+
+    @SuppressWarnings("GroovyAccessibility")
+    def "Files can be uploaded in segments to sharded containers and downloaded in their intact form"() {
+        given: "a store that shards files over 3 containers and splits them into 1 KB segments"
+        SwiftFileStore shardedFileStore = buildSegmentedFileStore(3)
+        String expected = getClass().getClassLoader().getResourceAsStream(FILENAME).getText(StandardCharsets.UTF_8.name())
+
+        when: "a file is uploaded"
+        shardedFileStore.upload(
+                new File(
+                        new MetaData(FILENAME, FileType.TXT),
+                        getClass().getClassLoader().getResourceAsStream(FILENAME)
+                )
+        )
+
+        then: "the file and its segments live in its shard"
+        String shard = shardedFileStore.getContainerName(FILE_ID)
+        shard != SwiftFileStore.DEFAULT_CONTAINER
+        account.getContainer(shard).getObject(FILE_ID).exists()
+        !account.getContainer("${shard}_segments").list().isEmpty()
+
+        and: "the file can be downloaded later"
+        shardedFileStore.download(FILE_ID).getText(StandardCharsets.UTF_8.name()) == expected
+    }
+
     @NotNull
     Account buildAccount() {
         new AccountFactory()
@@ -79,6 +159,32 @@ class SwiftFileStoreITSpec extends Specification {
                 .createAccount()
     }
 
+    /**
+     * Returns a store that splits files into 1 KB segments.
+     * <p>
+     * The JOSS mock cannot serve Static Large Objects, so the manifest is replayed as a Dynamic Large Object over the
+     * same segments, which the mock does serve.
+     *
+     * @param containerShards  The number of containers files are spread over
+     *
+     * @return a segmenting store
+     */
+    @NotNull
+    SwiftFileStore buildSegmentedFileStore(int containerShards) {
+        new SwiftFileStore(account, buildFileIdGenerator(), 1024, 3, containerShards) {
+            @Override
+            protected void putManifest(StoredObject manifest, String body) {
+                List<Map<String, Object>> entries = new JsonSlurper().parseText(body) as List<Map<String, Object>>
+                String firstPath = entries[0].path as String
+                manifest.uploadObject(
+                        new UploadInstructions(new byte[0]).setObjectManifest(
+                                new ObjectManifest(firstPath.substring(1, firstPath.lastIndexOf("/") + 1))
+                        )
+                )
+            }
+        }
+    }
+
     @NotNull
     FileIdGenerator buildFileIdGenerator() {
         new FileIdGenerator() {
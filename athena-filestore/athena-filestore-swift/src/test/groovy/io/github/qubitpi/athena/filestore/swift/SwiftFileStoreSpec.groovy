@@ -17,13 +17,19 @@ package io.github.qubitpi.athena.filestore.swift
 
 import io.github.qubitpi.athena.file.File
 import io.github.qubitpi.athena.file.identifier.FileIdGenerator
+import io.github.qubitpi.athena.metadata.FileType
+import io.github.qubitpi.athena.metadata.MetaData
 
+import org.javaswift.joss.instructions.UploadInstructions
 import org.javaswift.joss.model.Account
 import org.javaswift.joss.model.Container
 import org.javaswift.joss.model.StoredObject
 
+import groovy.json.JsonSlurper
 import spock.lang.Specification
 
+import java.security.MessageDigest
+
 class SwiftFileStoreSpec extends Specification {
 
     static final FILE_ID = "fileId123"
@@ -44,4 +50,204 @@ class SwiftFileStoreSpec extends Specification {
         then:
         noExceptionThrown()
     }
+
+    def "File that fits in a single segment is uploaded as a plain object"() {
+        when:
+        new SwiftFileStore(
+                Mock(Account) {
+                    1 * getContainer(SwiftFileStore.DEFAULT_CONTAINER) >> Mock(Container) {
+                        1 * getObject(FILE_ID) >> Mock(StoredObject) {
+                            1 * uploadObject([1, 2, 3] as byte[])
+                        }
+                    }
+                    0 * getContainer(SwiftFileStore.SEGMENT_CONTAINER)
+                },
+                Mock(FileIdGenerator) { apply(_ as File) >> FILE_ID },
+                1024,
+                2
+        ).upload(Mock(File) {getFileContent() >> new ByteArrayInputStream([1, 2, 3] as byte[])})
+
+        then:
+        noExceptionThrown()
+    }
+
+    def "Failed segment upload aborts the file upload"() {
+        given:
+        StoredObject failingSegment = Mock(StoredObject) {
+            uploadObject(_ as UploadInstructions) >> { throw new IllegalStateException("boom") }
+        }
+
+        when:
+        new SwiftFileStore(
+                Mock(Account) {
+                    getContainer(SwiftFileStore.SEGMENT_CONTAINER) >> Mock(Container) {
+                        exists() >> true
+                        getObject(_ as String) >> failingSegment
+                    }
+                    0 * getContainer(SwiftFileStore.DEFAULT_CONTAINER)
+                },
+                Mock(FileIdGenerator) { apply(_ as File) >> FILE_ID },
+                2,
+                2
+        ).upload(Mock(File) {getFileContent() >> new ByteArrayInputStream([1, 2, 3, 4, 5] as byte[])})
+
+        then:
+        thrown(IllegalStateException)
+    }
+
+    def "File exactly one segment long is uploaded as a plain object"() {
+        when:
+        new SwiftFileStore(
+                Mock(Account) {
+                    1 * getContainer(SwiftFileStore.DEFAULT_CONTAINER) >> Mock(Container) {
+                        1 * getObject(FILE_ID) >> Mock(StoredObject) {
+                            1 * uploadObject([1, 2] as byte[])
+                        }
+                    }
+                    0 * getContainer(SwiftFileStore.SEGMENT_CONTAINER)
+                },
+                Mock(FileIdGenerator) { apply(_ as File) >> FILE_ID },
+                2,
+                2
+        ).upload(Mock(File) {getFileContent() >> new ByteArrayInputStream([1, 2] as byte[])})
+
+        then:
+        noExceptionThrown()
+    }
+
+    def "Segmented file is acknowledged with a static manifest of its segments"() {
+        given: "segments that record the hash they are sent with"
+        Map<String, String> md5ByName = [:]
+        StoredObject manifest = Mock(StoredObject)
+        List<String> manifestBodies = []
+
+        when:
+        new SwiftFileStore(
+                Mock(Account) {
+                    getContainer(SwiftFileStore.SEGMENT_CONTAINER) >> Mock(Container) {
+                        exists() >> true
+                        getObject(_ as String) >> { String name ->
+                            Mock(StoredObject) {
+                                uploadObject(_ as UploadInstructions) >> { UploadInstructions instructions ->
+                                    md5ByName[name] = instructions.md5
+                                }
+                            }
+                        }
+                    }
+                    getContainer(SwiftFileStore.DEFAULT_CONTAINER) >> Mock(Container) {
+                        getObject(FILE_ID) >> manifest
+                    }
+                },
+                Mock(FileIdGenerator) { apply(_ as File) >> FILE_ID },
+                2,
+                2
+        ) {
+            @Override
+            protected void putManifest(StoredObject object, String body) {
+                assert object.is(manifest)
+                manifestBodies << body
+            }
+        }.upload(Mock(File) {getFileContent() >> new ByteArrayInputStream([1, 2, 3] as byte[])})
+
+        then: "no manifest is written through JOSS"
+        0 * manifest.uploadObject(_)
+
+        and: "the manifest lists each segment, in order, with its size and hash"
+        manifestBodies.size() == 1
+        new JsonSlurper().parseText(manifestBodies[0]) == [
+                [path: "/${SwiftFileStore.SEGMENT_CONTAINER}/$FILE_ID/00000000", etag: md5([1, 2] as byte[]), size_bytes: 2],
+                [path: "/${SwiftFileStore.SEGMENT_CONTAINER}/$FILE_ID/00000001", etag: md5([3] as byte[]), size_bytes: 1]
+        ]
+
+        and: "each segment was sent with its MD5 hash"
+        md5ByName == [(FILE_ID + "/00000000"): md5([1, 2] as byte[]), (FILE_ID + "/00000001"): md5([3] as byte[])]
+    }
+
+    def "Segmented file whose manifest is rejected is rolled back"() {
+        given:
+        StoredObject segment = Mock(StoredObject)
+
+        when:
+        new SwiftFileStore(
+                Mock(Account) {
+                    getContainer(SwiftFileStore.SEGMENT_CONTAINER) >> Mock(Container) {
+                        exists() >> true
+                        getObject(_ as String) >> segment
+                    }
+                    getContainer(SwiftFileStore.DEFAULT_CONTAINER) >> Mock(Container) {
+                        getObject(FILE_ID) >> Mock(StoredObject)
+                    }
+                },
+                Mock(FileIdGenerator) { apply(_ as File) >> FILE_ID },
+                2,
+                2
+        ) {
+            @Override
+            protected void putManifest(StoredObject object, String body) {
+                throw new IOException("Swift rejected the manifest with status 400")
+            }
+        }.upload(Mock(File) {getFileContent() >> new ByteArrayInputStream([1, 2, 3] as byte[])})
+
+        then: "the segments are deleted"
+        thrown(IllegalStateException)
+        2 * segment.delete()
+    }
+
+    def "Invalid segmentation settings are rejected"() {
+        when:
+        new SwiftFileStore(Mock(Account), Mock(FileIdGenerator), segmentSize, threads)
+
+        then:
+        thrown(IllegalArgumentException)
+
+        where:
+        segmentSize       | threads
+        -1                | 1
+        Integer.MAX_VALUE | 1
+        1024              | 0
+    }
+
+    def "Sharded files are spread over lazily created containers"() {
+        given:
+        Map<String, Container> containers = [:]
+        Account account = Mock(Account) {
+            getContainer(_ as String) >> { String name ->
+                containers.computeIfAbsent(name) {
+                    Mock(Container) {
+                        1 * exists() >> false
+                        1 * create()
+                        1 * makePublic()
+                        getObject(_ as String) >> Mock(StoredObject)
+                    }
+                }
+            }
+        }
+        SwiftFileStore fileStore = new SwiftFileStore(account, { File file -> file.metaData.fileName } as FileIdGenerator, 0, 1, 4)
+
+        when: "many files are uploaded"
+        (0..<100).each { fileStore.upload(new File(new MetaData("file-$it", FileType.TXT), InputStream.nullInputStream())) }
+
+        then: "every shard container is created once and receives files"
+        containers.keySet() == (0..<4).collect { "${SwiftFileStore.DEFAULT_CONTAINER}_$it".toString() } as Set
+
+        and: "a file is always found in the same shard"
+        fileStore.getContainerName("file-1") == fileStore.getContainerName("file-1")
+    }
+
+    def "Unsharded store keeps using the default container"() {
+        expect:
+        new SwiftFileStore(Mock(Account), Mock(FileIdGenerator)).getContainerName(FILE_ID) == SwiftFileStore.DEFAULT_CONTAINER
+    }
+
+    def "Invalid number of container shards is rejected"() {
+        when:
+        new SwiftFileStore(Mock(Account), Mock(FileIdGenerator), 0, 1, 0)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    static String md5(byte[] content) {
+        MessageDigest.getInstance("MD5").digest(content).encodeHex().toString()
+    }
 }
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2024 Jiaqi Liu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.qubitpi.athena.metastore.graphql;
+
+import io.github.qubitpi.athena.metadata.MetaData;
+
+import graphql.schema.DataFetcher;
+import jakarta.validation.constraints.NotNull;
+
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * A mutation {@link DataFetcher} that can also save the metadata of many files at once.
+ * <p>
+ * When the mutation data fetcher given to {@link GraphQLFactory} implements this interface, {@link GraphQLMetaStore}
+ * saves metadata by calling {@link #saveMetaData(Map)} directly, so that all records of a save are written in a single
+ * round trip and transaction, e.g. as one JDBC batch, instead of one {@code createMetaData} field at a time.
+ * {@link #get(graphql.schema.DataFetchingEnvironment)} still serves {@code createMetaData} fields sent by clients.
+ */
+public interface BatchMutationDataFetcher extends DataFetcher<MetaData> {
+
+    /**
+     * Saves the metadata of many files at once.
+     * <p>
+     * The records are saved atomically: the returned stage completes normally only once all of them are durably
+     * stored, and exceptionally, with none of them stored, if any of them cannot be.
+     *
+     * @param metaDataByFileId  The metadata objects to be saved, keyed by file ID
+     *
+     * @return a stage completed once the records are durably stored
+     *
+     * @throws NullPointerException if {@code metaDataByFileId} is {@code null}
+     */
+    @NotNull
+    CompletionStage<Void> saveMetaData(@NotNull Map<String, MetaData> metaDataByFileId);
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2024 Jiaqi Liu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.qubitpi.athena.metastore.graphql;
+
+import io.github.qubitpi.athena.metadata.MetaData;
+
+import graphql.schema.DataFetcher;
+import jakarta.validation.constraints.NotNull;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * A query {@link DataFetcher} that can also fetch the metadata of many files at once.
+ * <p>
+ * When the query data fetcher given to {@link GraphQLFactory} implements this interface, all {@code metaData(fileId)}
+ * fields resolved in a single GraphQL execution, such as aliased fields of one query, are collected and passed to
+ * {@link #getMetaData(Set)} in one batch, so that a database is hit once per execution instead of once per field.
+ * {@link #get(graphql.schema.DataFetchingEnvironment)} is still used for executions that run without batching.
+ */
+public interface BatchQueryDataFetcher extends DataFetcher<MetaData> {
+
+    /**
+     * Fetches the metadata of many files at once.
+     * <p>
+     * The implementation reports failures, including checked ones such as {@link java.sql.SQLException}, by completing
+     * the returned stage exceptionally.
+     *
+     * @param fileIds  The IDs of the files
+     *
+     * @return a stage completed with the metadata of the requested files that exist, keyed by file ID; files without
+     * metadata are left out
+     *
+     * @throws NullPointerException if {@code fileIds} is {@code null}
+     */
+    @NotNull
+    CompletionStage<Map<String, MetaData>> getMetaData(@NotNull Set<String> fileIds);
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2024 Jiaqi Liu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.qubitpi.athena.metastore.graphql;
+
+import graphql.ExecutionInput;
+import graphql.execution.preparsed.PreparsedDocumentEntry;
+import graphql.execution.preparsed.PreparsedDocumentProvider;
+import jakarta.validation.constraints.NotNull;
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * A {@link PreparsedDocumentProvider} that keeps the parsed and validated form of the most recently used GraphQL
+ * documents, so that executing the same document again skips both parsing and validation.
+ * <p>
+ * Documents are keyed by their text, which is why request-specific values should be passed as variables instead of
+ * being written into the documents. Documents that fail parsing or validation are cached as well, since they would
+ * fail the same way every time. Documents that an instrumentation aborts during validation, such as over-budget
+ * queries, are not cached, so that they are checked again on every execution.
+ * <p>
+ * The cache is bounded; once it is full, the least recently used document is evicted.
+ */
+@ThreadSafe
+public class CachingPreparsedDocumentProvider implements PreparsedDocumentProvider {
+
+    private final int maxEntries;
+
+    @GuardedBy("this")
+    private final Map<String, PreparsedDocumentEntry> cache;
+
+    /**
+     * Constructor.
+     *
+     * @param maxEntries  The max number of documents kept in cache
+     *
+     * @throws IllegalArgumentException if {@code maxEntries} is not positive
+     */
+    public CachingPreparsedDocumentProvider(final int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException(
+                    String.format("Document cache size must be positive, but was %d", maxEntries)
+            );
+        }
+
+        this.maxEntries = maxEntries;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, PreparsedDocumentEntry> eldest) {
+                return size() > CachingPreparsedDocumentProvider.this.maxEntries;
+            }
+        };
+    }
+
+    @Override
+    public PreparsedDocumentEntry getDocument(
+            final @NotNull ExecutionInput executionInput,
+            final @NotNull Function<ExecutionInput, PreparsedDocumentEntry> parseAndValidateFunction
+    ) {
+        final String document = Objects.requireNonNull(executionInput).getQuery();
+
+        final PreparsedDocumentEntry cached = get(document);
+        if (cached != null) {
+            return cached;
+        }
+
+        // parse outside the lock so that a slow document does not hold up the others; concurrent misses on the same
+        // document just parse it more than once
+        final PreparsedDocumentEntry parsed = Objects.requireNonNull(parseAndValidateFunction).apply(executionInput);
+        put(document, parsed);
+        return parsed;
+    }
+
+    /**
+     * Returns the number of documents currently kept in cache.
+     *
+     * @return a number between 0 and the max number of documents
+     */
+    public synchronized int size() {
+        return cache.size();
+    }
+
+    /**
+     * Returns the cached form of a document.
+     *
+     * @param document  The document text
+     *
+     * @return the parsed and validated document or {@code null} if it is not cached
+     */
+    private synchronized PreparsedDocumentEntry get(final @NotNull String document) {
+        return cache.get(document);
+    }
+
+    /**
+     * Caches the parsed and validated form of a document, evicting the least recently used one if the cache is full.
+     *
+     * @param document  The document text
+     * @param entry  The parsed and validated document
+     */
+    private synchronized void put(final @NotNull String document, final @NotNull PreparsedDocumentEntry entry) {
+        cache.put(document, entry);
+    }
+}
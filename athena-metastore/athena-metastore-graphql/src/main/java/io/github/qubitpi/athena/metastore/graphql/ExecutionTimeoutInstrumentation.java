@@ -0,0 +1,144 @@
+/*
+ * Copyright 2024 Jiaqi Liu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.qubitpi.athena.metastore.graphql;
+
+import static io.github.qubitpi.athena.config.ErrorMessageFormat.GRAPHQL_EXECUTION_TIMEOUT;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import graphql.execution.instrumentation.InstrumentationState;
+import graphql.execution.instrumentation.SimpleInstrumentation;
+import graphql.execution.instrumentation.parameters.InstrumentationFieldFetchParameters;
+import graphql.schema.DataFetcher;
+import jakarta.validation.constraints.NotNull;
+import net.jcip.annotations.Immutable;
+import net.jcip.annotations.ThreadSafe;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * An {@link graphql.execution.instrumentation.Instrumentation} that bounds the time a GraphQL execution may take.
+ * <p>
+ * Each execution gets a deadline when it starts. Fields whose data fetchers would start after the deadline fail
+ * without being fetched, and data fetchers returning futures fail once the deadline passes, so that a slow metadata
+ * database cannot hold an execution, nor the request waiting for it, indefinitely. Fields that are already fetching
+ * synchronously are not interrupted.
+ */
+@Immutable
+@ThreadSafe
+public class ExecutionTimeoutInstrumentation extends SimpleInstrumentation {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ExecutionTimeoutInstrumentation.class);
+
+    private final Duration timeout;
+    private final LongSupplier nanoClock;
+
+    /**
+     * Constructor.
+     *
+     * @param timeout  The max time an execution may take
+     *
+     * @throws NullPointerException if {@code timeout} is {@code null}
+     * @throws IllegalArgumentException if {@code timeout} is not positive
+     */
+    public ExecutionTimeoutInstrumentation(final @NotNull Duration timeout) {
+        this(timeout, System::nanoTime);
+    }
+
+    /**
+     * Constructor that reads time from a given clock.
+     *
+     * @param timeout  The max time an execution may take
+     * @param nanoClock  A source of nanosecond time, as returned by {@link System#nanoTime()}
+     *
+     * @throws NullPointerException if any argument is {@code null}
+     * @throws IllegalArgumentException if {@code timeout} is not positive
+     */
+    ExecutionTimeoutInstrumentation(final @NotNull Duration timeout, final @NotNull LongSupplier nanoClock) {
+        if (Objects.requireNonNull(timeout).isNegative() || timeout.isZero()) {
+            throw new IllegalArgumentException(
+                    String.format("Execution timeout must be positive, but was %s", timeout)
+            );
+        }
+
+        this.timeout = timeout;
+        this.nanoClock = Objects.requireNonNull(nanoClock);
+    }
+
+    @Override
+    public InstrumentationState createState() {
+        return new Deadline(nanoClock.getAsLong() + timeout.toNanos());
+    }
+
+    @Override
+    public DataFetcher<?> instrumentDataFetcher(
+            final DataFetcher<?> dataFetcher,
+            final InstrumentationFieldFetchParameters parameters
+    ) {
+        final Deadline deadline = parameters.getInstrumentationState();
+        return environment -> {
+            final long remainingNanos = deadline.getDeadlineNanos() - nanoClock.getAsLong();
+            if (remainingNanos <= 0) {
+                LOG.warn(
+                        GRAPHQL_EXECUTION_TIMEOUT.logFormat(
+                                timeout.toMillis(),
+                                environment.getExecutionStepInfo().getPath()
+                        )
+                );
+                throw new IllegalStateException(GRAPHQL_EXECUTION_TIMEOUT.format(timeout.toMillis()));
+            }
+
+            final Object value = dataFetcher.get(environment);
+            if (value instanceof CompletableFuture) {
+                // a copy, so that a future shared with other fields, such as a DataLoader's, is left untouched
+                return ((CompletableFuture<?>) value).copy().orTimeout(remainingNanos, TimeUnit.NANOSECONDS);
+            }
+            return value;
+        };
+    }
+
+    /**
+     * The point in time by which an execution has to complete.
+     */
+    @Immutable
+    private static final class Deadline implements InstrumentationState {
+
+        private final long deadlineNanos;
+
+        /**
+         * Constructor.
+         *
+         * @param deadlineNanos  The deadline, in the time of the clock of the instrumentation
+         */
+        private Deadline(final long deadlineNanos) {
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        /**
+         * Returns the deadline.
+         *
+         * @return the deadline, in the time of the clock of the instrumentation
+         */
+        private long getDeadlineNanos() {
+            return deadlineNanos;
+        }
+    }
+}
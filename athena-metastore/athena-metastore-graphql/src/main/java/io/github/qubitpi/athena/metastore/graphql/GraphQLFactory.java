@@ -16,14 +16,29 @@
 package io.github.qubitpi.athena.metastore.graphql;
 
 import static graphql.schema.idl.TypeRuntimeWiring.newTypeWiring;
+import static io.github.qubitpi.athena.config.ErrorMessageFormat.INVALID_LOOKUP_REQUEST;
+import static io.github.qubitpi.athena.config.ErrorMessageFormat.INVALID_PAGE_REQUEST;
+import static io.github.qubitpi.athena.config.ErrorMessageFormat.META_DATA_NOT_FOUND;
 
+import io.github.qubitpi.athena.config.SystemConfig;
+import io.github.qubitpi.athena.config.SystemConfigFactory;
+import io.github.qubitpi.athena.metadata.FileType;
 import io.github.qubitpi.athena.metadata.MetaData;
+import io.github.qubitpi.athena.web.graphql.JacksonParser;
 
+import org.dataloader.DataLoader;
+import org.dataloader.DataLoaderOptions;
+import org.dataloader.DataLoaderRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import graphql.GraphQL;
+import graphql.analysis.MaxQueryComplexityInstrumentation;
+import graphql.analysis.MaxQueryDepthInstrumentation;
+import graphql.execution.instrumentation.ChainedInstrumentation;
+import graphql.execution.instrumentation.Instrumentation;
 import graphql.schema.DataFetcher;
+import graphql.schema.DataFetchingEnvironmentImpl;
 import graphql.schema.GraphQLSchema;
 import graphql.schema.idl.RuntimeWiring;
 import graphql.schema.idl.SchemaGenerator;
@@ -33,22 +48,113 @@ import jakarta.validation.constraints.NotNull;
 import net.jcip.annotations.Immutable;
 import net.jcip.annotations.ThreadSafe;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.Scanner;
+import java.util.stream.Collectors;
 
 import jakarta.inject.Singleton;
 
 /**
  * {@link GraphQLFactory} initializes {@link GraphQL native GraphQL API}.
+ * <p>
+ * Besides the {@code metaData(fileId)} field, the query type offers {@code metaDatas(fileIds)}, which returns the
+ * metadata of many files in a single field, and {@code listMetaData(first, after, fileType)}, which lists the metadata
+ * of all files as a Relay-style connection if the query data fetcher is a {@link PagingQueryDataFetcher}. Its cursors
+ * are opaque encodings of file IDs, so that the next page starts right after the file ID of the cursor.
+ * <p>
+ * If the query data fetcher is a {@link BatchQueryDataFetcher}, {@code metaData} fields are resolved through a
+ * {@link DataLoader}, which batches all lookups of an execution into a single
+ * {@link BatchQueryDataFetcher#getMetaData(java.util.Set) fetch}. Such executions must carry a
+ * {@link #newDataLoaderRegistry() registry of their own}; executions without it resolve each field on its own.
+ * <p>
+ * Parsed and validated documents are {@link CachingPreparsedDocumentProvider cached}, so that executing a document
+ * again only costs its execution. The cache size is configured by
+ * {@value JacksonParser#DOCUMENT_CACHE_MAX_ENTRIES_KEY}, the same setting that bounds the query cache of
+ * {@link JacksonParser}.
+ * <p>
+ * Client queries are held to a budget. Documents nested deeper than {@value #MAX_QUERY_DEPTH_KEY} or made of more
+ * fields than {@value #MAX_QUERY_COMPLEXITY_KEY} are rejected during validation, before any data fetcher runs; as
+ * rejected documents are not cached, they are rejected on every execution. Executions running longer than
+ * {@value #EXECUTION_TIMEOUT_MILLIS_KEY} are cut short by an {@link ExecutionTimeoutInstrumentation}. As the
+ * complexity of a {@code metaDatas} field does not depend on the length of its list, a field listing more than
+ * {@value #MAX_FILE_IDS_KEY} file IDs fails before any metadata is fetched. A non-positive value turns the
+ * corresponding limit off.
  */
 @Singleton
 @Immutable
 @ThreadSafe
 public class GraphQLFactory {
 
+    /**
+     * The name of the {@link DataLoader} that batches {@code metaData} lookups.
+     */
+    public static final String META_DATA_LOADER = "metaData";
+
+    /**
+     * The config key of the max depth of a query.
+     */
+    public static final String MAX_QUERY_DEPTH_KEY = "graphql_max_query_depth";
+
+    /**
+     * The config key of the max complexity of a query, i.e. the max number of fields it selects.
+     */
+    public static final String MAX_QUERY_COMPLEXITY_KEY = "graphql_max_query_complexity";
+
+    /**
+     * The config key of the max time, in milliseconds, an execution may take.
+     */
+    public static final String EXECUTION_TIMEOUT_MILLIS_KEY = "graphql_execution_timeout_millis";
+
+    /**
+     * The config key of the max number of file IDs a single {@code metaDatas} field may list.
+     */
+    public static final String MAX_FILE_IDS_KEY = "graphql_max_file_ids";
+
     private static final Logger LOG = LoggerFactory.getLogger(GraphQLFactory.class);
+    private static final SystemConfig SYSTEM_CONFIG = SystemConfigFactory.getInstance();
+
+    /**
+     * Deep enough for the introspection query of GraphiQL, whose type references are nested about a dozen times.
+     */
+    private static final int DEFAULT_MAX_QUERY_DEPTH = 15;
+    private static final int DEFAULT_MAX_QUERY_COMPLEXITY = 500;
+    private static final long DEFAULT_EXECUTION_TIMEOUT_MILLIS = 10_000;
+
+    /**
+     * As many file IDs as fit in a single batch.
+     */
+    private static final int DEFAULT_MAX_FILE_IDS = 500;
+
+    private static final String FILE_ID = "fileId";
+    private static final String FILE_IDS = "fileIds";
+    private static final String FIRST = "first";
+    private static final String AFTER = "after";
+    private static final String FILE_TYPE = "fileType";
+
+    private static final String LISTING_NOT_SUPPORTED = "the metadata store cannot list files";
+
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+
+    /**
+     * The max number of file IDs in a single batch, which keeps batched SQL {@code IN} lists within common database
+     * limits.
+     */
+    private static final int MAX_BATCH_SIZE = 500;
 
     private final GraphQL api;
+    private final DataFetcher<MetaData> queryDataFetcher;
+    private final DataFetcher<MetaData> mutationDataFetcher;
 
     /**
      * Constructor.
@@ -66,6 +172,8 @@ public class GraphQLFactory {
                 Objects.requireNonNull(queryDataFetcher),
                 Objects.requireNonNull(mutationDataFetcher)
         );
+        this.queryDataFetcher = queryDataFetcher;
+        this.mutationDataFetcher = mutationDataFetcher;
     }
 
     /**
@@ -108,6 +216,51 @@ public class GraphQLFactory {
         return api;
     }
 
+    /**
+     * Returns the query data fetcher if it can fetch metadata by file ID, outside any GraphQL execution.
+     *
+     * @return the query data fetcher, or an empty value if it is not a {@link BatchQueryDataFetcher}
+     */
+    @NotNull
+    public Optional<BatchQueryDataFetcher> getBatchQueryDataFetcher() {
+        return queryDataFetcher instanceof BatchQueryDataFetcher
+                ? Optional.of((BatchQueryDataFetcher) queryDataFetcher)
+                : Optional.empty();
+    }
+
+    /**
+     * Returns the mutation data fetcher if it can save metadata of many files at once, outside any GraphQL execution.
+     *
+     * @return the mutation data fetcher, or an empty value if it is not a {@link BatchMutationDataFetcher}
+     */
+    @NotNull
+    public Optional<BatchMutationDataFetcher> getBatchMutationDataFetcher() {
+        return mutationDataFetcher instanceof BatchMutationDataFetcher
+                ? Optional.of((BatchMutationDataFetcher) mutationDataFetcher)
+                : Optional.empty();
+    }
+
+    /**
+     * Creates the {@link DataLoader} registry of a single execution.
+     * <p>
+     * A {@link DataLoader} caches what it loads, so a registry must not be shared between executions.
+     *
+     * @return a new registry holding the {@link #META_DATA_LOADER}, or an empty value if the query data fetcher is not
+     * a {@link BatchQueryDataFetcher}
+     */
+    @NotNull
+    public Optional<DataLoaderRegistry> newDataLoaderRegistry() {
+        return getBatchQueryDataFetcher().map(batchQueryDataFetcher ->
+                new DataLoaderRegistry().register(
+                        META_DATA_LOADER,
+                        DataLoader.newMappedDataLoader(
+                                batchQueryDataFetcher::getMetaData,
+                                DataLoaderOptions.newOptions().setMaxBatchSize(MAX_BATCH_SIZE)
+                        )
+                )
+        );
+    }
+
     /**
      * Initializes and returns an instance of {@link GraphQL native GraphQL API}.
      *
@@ -123,7 +276,47 @@ public class GraphQLFactory {
     ) {
         final String schemaString = getGraphQLSchemaResourceAsString("schema.graphqls");
         final GraphQLSchema graphQLSchema = buildSchema(schemaString, queryDataFetcher, mutationDataFetcher);
-        return GraphQL.newGraphQL(graphQLSchema).build();
+        return GraphQL.newGraphQL(graphQLSchema)
+                .preparsedDocumentProvider(
+                        new CachingPreparsedDocumentProvider(
+                                SYSTEM_CONFIG.getIntProperty(
+                                        SYSTEM_CONFIG.getPackageVariableName(
+                                                JacksonParser.DOCUMENT_CACHE_MAX_ENTRIES_KEY
+                                        )
+                                ).orElse(JacksonParser.DEFAULT_DOCUMENT_CACHE_MAX_ENTRIES)
+                        )
+                )
+                .instrumentation(new ChainedInstrumentation(buildInstrumentations()))
+                .build();
+    }
+
+    /**
+     * Initializes the instrumentations that keep client queries within the configured limits.
+     *
+     * @return a new list of instrumentations, empty if all limits are turned off
+     */
+    @NotNull
+    private static List<Instrumentation> buildInstrumentations() {
+        final int maxDepth = SYSTEM_CONFIG.getIntProperty(SYSTEM_CONFIG.getPackageVariableName(MAX_QUERY_DEPTH_KEY))
+                .orElse(DEFAULT_MAX_QUERY_DEPTH);
+        final int maxComplexity = SYSTEM_CONFIG.getIntProperty(
+                SYSTEM_CONFIG.getPackageVariableName(MAX_QUERY_COMPLEXITY_KEY)
+        ).orElse(DEFAULT_MAX_QUERY_COMPLEXITY);
+        final long timeoutMillis = SYSTEM_CONFIG.getLongProperty(
+                SYSTEM_CONFIG.getPackageVariableName(EXECUTION_TIMEOUT_MILLIS_KEY)
+        ).orElse(DEFAULT_EXECUTION_TIMEOUT_MILLIS);
+
+        final List<Instrumentation> instrumentations = new ArrayList<>();
+        if (maxDepth > 0) {
+            instrumentations.add(new MaxQueryDepthInstrumentation(maxDepth));
+        }
+        if (maxComplexity > 0) {
+            instrumentations.add(new MaxQueryComplexityInstrumentation(maxComplexity));
+        }
+        if (timeoutMillis > 0) {
+            instrumentations.add(new ExecutionTimeoutInstrumentation(Duration.ofMillis(timeoutMillis)));
+        }
+        return instrumentations;
     }
 
     /**
@@ -161,8 +354,234 @@ public class GraphQLFactory {
             final @NotNull DataFetcher<MetaData> mutationDataFetcher
     ) {
         return RuntimeWiring.newRuntimeWiring()
-                .type(newTypeWiring("Query").dataFetcher("metaData", queryDataFetcher))
+                .type(
+                        newTypeWiring("Query")
+                                .dataFetcher(
+                                        "metaData",
+                                        queryDataFetcher instanceof BatchQueryDataFetcher
+                                                ? batching((BatchQueryDataFetcher) queryDataFetcher)
+                                                : queryDataFetcher
+                                )
+                                .dataFetcher(
+                                        "metaDatas",
+                                        listing(
+                                                queryDataFetcher,
+                                                SYSTEM_CONFIG.getIntProperty(
+                                                        SYSTEM_CONFIG.getPackageVariableName(MAX_FILE_IDS_KEY)
+                                                ).orElse(DEFAULT_MAX_FILE_IDS)
+                                        )
+                                )
+                                .dataFetcher("listMetaData", paging(queryDataFetcher))
+                )
                 .type(newTypeWiring("Mutation").dataFetcher("createMetaData", mutationDataFetcher))
                 .build();
     }
+
+    /**
+     * Wraps a batch-capable query data fetcher so that it resolves {@code metaData} fields through the
+     * {@link #META_DATA_LOADER} of the execution, if it has one.
+     * <p>
+     * As with a single fetch, a file without metadata fails its field.
+     *
+     * @param queryDataFetcher  An application defined logic for retrieving file metadata from various databases
+     *
+     * @return a data fetcher returning a future of the metadata of a file
+     */
+    @NotNull
+    private static DataFetcher<?> batching(final @NotNull BatchQueryDataFetcher queryDataFetcher) {
+        return environment -> {
+            final String fileId = environment.getArgument(FILE_ID);
+            final DataLoader<String, MetaData> dataLoader = environment.getDataLoader(META_DATA_LOADER);
+            if (fileId == null || dataLoader == null) {
+                return queryDataFetcher.get(environment);
+            }
+
+            return dataLoader.load(fileId).thenApply(metaData -> {
+                if (metaData == null) {
+                    LOG.error(META_DATA_NOT_FOUND.logFormat(fileId));
+                    throw new IllegalStateException(META_DATA_NOT_FOUND.format(fileId));
+                }
+                return metaData;
+            });
+        };
+    }
+
+    /**
+     * Makes the data fetcher of {@code metaDatas} fields, which look up the metadata of a list of files at once.
+     * <p>
+     * The list is fetched through the {@link #META_DATA_LOADER} of the execution if it has one, so that it is batched
+     * together with the other lookups of the execution, or else with a single
+     * {@link BatchQueryDataFetcher#getMetaData(java.util.Set) batch fetch}. Files without metadata are {@code null} in
+     * the list. A query data fetcher that cannot batch is called once per file instead.
+     * <p>
+     * A list longer than {@code maxFileIds} fails the field without fetching anything.
+     *
+     * @param queryDataFetcher  An application defined logic for retrieving file metadata from various databases
+     * @param maxFileIds  The max number of file IDs in the list; a non-positive value allows any number
+     *
+     * @return a data fetcher returning the metadata of the requested files, in the order of their IDs
+     */
+    @NotNull
+    private static DataFetcher<?> listing(final @NotNull DataFetcher<MetaData> queryDataFetcher, final int maxFileIds) {
+        return environment -> {
+            final List<String> fileIds = environment.getArgument(FILE_IDS);
+            if (maxFileIds > 0 && fileIds.size() > maxFileIds) {
+                final String reason = String.format("'%s' must not list more than %d file IDs", FILE_IDS, maxFileIds);
+                LOG.error(INVALID_LOOKUP_REQUEST.logFormat(reason));
+                throw new IllegalArgumentException(INVALID_LOOKUP_REQUEST.format(reason));
+            }
+
+            final DataLoader<String, MetaData> dataLoader = environment.getDataLoader(META_DATA_LOADER);
+            if (dataLoader != null) {
+                return dataLoader.loadMany(fileIds);
+            }
+
+            if (queryDataFetcher instanceof BatchQueryDataFetcher) {
+                return ((BatchQueryDataFetcher) queryDataFetcher)
+                        .getMetaData(new LinkedHashSet<>(fileIds))
+                        .thenApply(metaDataByFileId -> fileIds.stream()
+                                .map(metaDataByFileId::get)
+                                .collect(Collectors.toList())
+                        );
+            }
+
+            final List<MetaData> metaDatas = new ArrayList<>(fileIds.size());
+            for (final String fileId : fileIds) {
+                metaDatas.add(
+                        queryDataFetcher.get(
+                                DataFetchingEnvironmentImpl.newDataFetchingEnvironment(environment)
+                                        .arguments(Collections.singletonMap(FILE_ID, fileId))
+                                        .build()
+                        )
+                );
+            }
+            return metaDatas;
+        };
+    }
+
+    /**
+     * Makes the data fetcher of {@code listMetaData} fields, which list the metadata of all files one page at a time.
+     * <p>
+     * One more file than requested is listed so that the connection can tell whether there is a next page.
+     *
+     * @param queryDataFetcher  An application defined logic for retrieving file metadata from various databases
+     *
+     * @return a data fetcher returning a future of a connection made of {@code edges} and {@code pageInfo}
+     */
+    @NotNull
+    private static DataFetcher<?> paging(final @NotNull DataFetcher<MetaData> queryDataFetcher) {
+        return environment -> {
+            if (!(queryDataFetcher instanceof PagingQueryDataFetcher)) {
+                LOG.error(INVALID_PAGE_REQUEST.logFormat(LISTING_NOT_SUPPORTED));
+                throw new IllegalStateException(INVALID_PAGE_REQUEST.format(LISTING_NOT_SUPPORTED));
+            }
+
+            final Integer requestedFirst = environment.getArgument(FIRST);
+            final int first = requestedFirst == null ? DEFAULT_PAGE_SIZE : requestedFirst;
+            if (first <= 0 || first > MAX_PAGE_SIZE) {
+                final String reason = String.format("'%s' must be between 1 and %d", FIRST, MAX_PAGE_SIZE);
+                LOG.error(INVALID_PAGE_REQUEST.logFormat(reason));
+                throw new IllegalArgumentException(INVALID_PAGE_REQUEST.format(reason));
+            }
+
+            final String after = environment.getArgument(AFTER);
+            final String fileType = environment.getArgument(FILE_TYPE);
+
+            return ((PagingQueryDataFetcher) queryDataFetcher)
+                    .listMetaData(
+                            after == null ? null : decodeCursor(after),
+                            fileType == null ? null : parseFileType(fileType),
+                            first + 1
+                    )
+                    .thenApply(metaDataByFileId -> toConnection(metaDataByFileId, first));
+        };
+    }
+
+    /**
+     * Turns a page of listed files into a Relay-style connection.
+     *
+     * @param metaDataByFileId  The listed files, in the order of their IDs
+     * @param first  The number of requested files; any file after them is only a sign of a next page
+     *
+     * @return a map made of {@code edges} and {@code pageInfo}
+     */
+    @NotNull
+    private static Map<String, Object> toConnection(
+            final @NotNull Map<String, MetaData> metaDataByFileId,
+            final int first
+    ) {
+        final List<Map<String, Object>> edges = new ArrayList<>(Math.min(first, metaDataByFileId.size()));
+        for (final Map.Entry<String, MetaData> entry : metaDataByFileId.entrySet()) {
+            if (edges.size() == first) {
+                break;
+            }
+
+            final Map<String, Object> edge = new LinkedHashMap<>();
+            edge.put("cursor", encodeCursor(entry.getKey()));
+            edge.put(FILE_ID, entry.getKey());
+            edge.put("node", entry.getValue());
+            edges.add(edge);
+        }
+
+        final Map<String, Object> pageInfo = new LinkedHashMap<>();
+        pageInfo.put("hasNextPage", metaDataByFileId.size() > first);
+        pageInfo.put("endCursor", edges.isEmpty() ? null : edges.get(edges.size() - 1).get("cursor"));
+
+        final Map<String, Object> connection = new LinkedHashMap<>();
+        connection.put("edges", edges);
+        connection.put("pageInfo", pageInfo);
+        return connection;
+    }
+
+    /**
+     * Encodes a file ID into an opaque cursor.
+     *
+     * @param fileId  The ID of a file
+     *
+     * @return a URL-safe cursor
+     */
+    @NotNull
+    private static String encodeCursor(final @NotNull String fileId) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(fileId.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes the file ID of a cursor returned by {@link #encodeCursor(String)}.
+     *
+     * @param cursor  A cursor sent back by a client
+     *
+     * @return the file ID after which the next page starts
+     *
+     * @throws IllegalArgumentException if {@code cursor} is not a cursor
+     */
+    @NotNull
+    private static String decodeCursor(final @NotNull String cursor) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (final IllegalArgumentException exception) {
+            final String reason = String.format("'%s' is not a valid cursor", cursor);
+            LOG.error(INVALID_PAGE_REQUEST.logFormat(reason));
+            throw new IllegalArgumentException(INVALID_PAGE_REQUEST.format(reason), exception);
+        }
+    }
+
+    /**
+     * Parses the file type by which a listing is filtered.
+     *
+     * @param fileType  The name of a {@link FileType}
+     *
+     * @return the file type
+     *
+     * @throws IllegalArgumentException if {@code fileType} is not the name of a file type
+     */
+    @NotNull
+    private static FileType parseFileType(final @NotNull String fileType) {
+        try {
+            return FileType.valueOf(fileType);
+        } catch (final IllegalArgumentException exception) {
+            final String reason = String.format("'%s' is not a file type", fileType);
+            LOG.error(INVALID_PAGE_REQUEST.logFormat(reason));
+            throw new IllegalArgumentException(INVALID_PAGE_REQUEST.format(reason), exception);
+        }
+    }
 }
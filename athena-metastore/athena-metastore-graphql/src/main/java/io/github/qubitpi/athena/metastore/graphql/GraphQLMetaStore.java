@@ -21,7 +21,9 @@ import io.github.qubitpi.athena.metadata.MetaData;
 import io.github.qubitpi.athena.metastore.MetaStore;
 import io.github.qubitpi.athena.metastore.graphql.query.GraphQLQueryProvider;
 import io.github.qubitpi.athena.metastore.graphql.query.GraphQLQueryProviderFactory;
+import io.github.qubitpi.athena.metastore.graphql.query.GraphQLRequest;
 
+import org.dataloader.DataLoaderRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -32,8 +34,16 @@ import graphql.schema.DataFetcher;
 import jakarta.validation.constraints.NotNull;
 import net.jcip.annotations.NotThreadSafe;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 
 import jakarta.inject.Inject;
 import jakarta.inject.Named;
@@ -52,6 +62,9 @@ public class GraphQLMetaStore implements MetaStore {
 
     private final GraphQL graphQL;
     private final GraphQLQueryProvider graphQLQueryProvider;
+    private final Supplier<Optional<DataLoaderRegistry>> dataLoaderRegistries;
+    private final Optional<BatchQueryDataFetcher> batchQueryDataFetcher;
+    private final Optional<BatchMutationDataFetcher> batchMutationDataFetcher;
 
     /**
      * DI constructor.
@@ -70,12 +83,38 @@ public class GraphQLMetaStore implements MetaStore {
                 new GraphQLFactory(
                         Objects.requireNonNull(queryDataFetcher),
                         Objects.requireNonNull(mutationDataFetcher)
-                )
-                        .getApi(),
+                ),
                 GraphQLQueryProviderFactory.getInstance()
         );
     }
 
+    /**
+     * Constructor.
+     * <p>
+     * Every execution is given a {@link GraphQLFactory#newDataLoaderRegistry() DataLoader registry} of its own, so that
+     * the metadata lookups of one execution are batched when the factory supports it. A batch-capable query data
+     * fetcher also serves {@link #findMetaData(String) typed lookups} directly, and a batch-capable mutation data
+     * fetcher saves metadata directly.
+     *
+     * @param graphQLFactory  The factory of the native GraphQL API
+     * @param graphQLQueryProvider  An abstraction layer that returns native GraphQL query given a set of file metadata
+     * domain spec
+     *
+     * @throws NullPointerException if {@code graphQLFactory} or {@code graphQLQueryProvider} is {@code null}
+     */
+    private GraphQLMetaStore(
+            @NotNull final GraphQLFactory graphQLFactory,
+            @NotNull final GraphQLQueryProvider graphQLQueryProvider
+    ) {
+        this(
+                graphQLFactory.getApi(),
+                graphQLQueryProvider,
+                graphQLFactory::newDataLoaderRegistry,
+                graphQLFactory.getBatchQueryDataFetcher(),
+                graphQLFactory.getBatchMutationDataFetcher()
+        );
+    }
+
     /**
      * All-args constructor.
      *
@@ -86,13 +125,41 @@ public class GraphQLMetaStore implements MetaStore {
      * @throws NullPointerException if {@code graphQL} or {@code graphQLQueryProvider} is {@code null}
      */
     private GraphQLMetaStore(@NotNull final GraphQL graphQL, @NotNull final GraphQLQueryProvider graphQLQueryProvider) {
+        this(graphQL, graphQLQueryProvider, Optional::empty, Optional.empty(), Optional.empty());
+    }
+
+    /**
+     * All-args constructor.
+     *
+     * @param graphQL  The native GraphQL API
+     * @param graphQLQueryProvider  An abstraction layer that returns native GraphQL query given a set of file metadata
+     * domain spec
+     * @param dataLoaderRegistries  A factory of the DataLoader registry of each execution, which supplies an empty
+     * value if lookups are not batched
+     * @param batchQueryDataFetcher  The query data fetcher that serves typed lookups without a GraphQL execution, or an
+     * empty value if typed lookups go through GraphQL
+     * @param batchMutationDataFetcher  The mutation data fetcher that saves metadata without a GraphQL execution, or an
+     * empty value if saves go through GraphQL
+     *
+     * @throws NullPointerException if any argument is {@code null}
+     */
+    private GraphQLMetaStore(
+            @NotNull final GraphQL graphQL,
+            @NotNull final GraphQLQueryProvider graphQLQueryProvider,
+            @NotNull final Supplier<Optional<DataLoaderRegistry>> dataLoaderRegistries,
+            @NotNull final Optional<BatchQueryDataFetcher> batchQueryDataFetcher,
+            @NotNull final Optional<BatchMutationDataFetcher> batchMutationDataFetcher
+    ) {
         this.graphQL = Objects.requireNonNull(graphQL);
         this.graphQLQueryProvider = Objects.requireNonNull(graphQLQueryProvider);
+        this.dataLoaderRegistries = Objects.requireNonNull(dataLoaderRegistries);
+        this.batchQueryDataFetcher = Objects.requireNonNull(batchQueryDataFetcher);
+        this.batchMutationDataFetcher = Objects.requireNonNull(batchMutationDataFetcher);
     }
 
     @Override
     public ExecutionResult executeNative(final String query) {
-        return graphQL.execute(Objects.requireNonNull(query));
+        return execute(Objects.requireNonNull(query));
     }
 
     @Override
@@ -104,20 +171,210 @@ public class GraphQLMetaStore implements MetaStore {
             throw new IllegalArgumentException(EMPTY_LIST.format());
         }
 
+        return execute(graphQLQueryProvider.query(fileId, metadataFields));
+    }
+
+    @Override
+    public CompletableFuture<ExecutionResult> executeAsync(final String query) {
+        Objects.requireNonNull(query);
+
+        final ExecutionInput.Builder executionInput = ExecutionInput.newExecutionInput().query(query);
+        dataLoaderRegistries.get().ifPresent(executionInput::dataLoaderRegistry);
+
+        return graphQL.executeAsync(executionInput.build());
+    }
+
+    @Override
+    public CompletableFuture<ExecutionResult> executeAsync(
+            final String query,
+            final Map<String, Object> variables,
+            final String operationName
+    ) {
+        final ExecutionInput.Builder executionInput = ExecutionInput.newExecutionInput()
+                .query(Objects.requireNonNull(query))
+                .variables(Objects.requireNonNull(variables))
+                .operationName(operationName);
+        dataLoaderRegistries.get().ifPresent(executionInput::dataLoaderRegistry);
+
+        return graphQL.executeAsync(executionInput.build());
+    }
+
+    @Override
+    public CompletableFuture<ExecutionResult> getMetaDataAsync(
+            final String fileId,
+            final List<String> metadataFields
+    ) {
+        if (fileId == null || metadataFields == null) {
+            return CompletableFuture.failedFuture(new NullPointerException());
+        }
+        if (metadataFields.isEmpty()) {
+            LOG.error(EMPTY_LIST.logFormat());
+            return CompletableFuture.failedFuture(new IllegalArgumentException(EMPTY_LIST.format()));
+        }
+
+        // data fetchers returning futures complete the result without holding on to the calling thread
+        return graphQL.executeAsync(newExecutionInput(graphQLQueryProvider.query(fileId, metadataFields)));
+    }
+
+    @Override
+    public Optional<MetaData> findMetaData(final String fileId) {
+        Objects.requireNonNull(fileId);
+
+        return batchQueryDataFetcher.isEmpty()
+                ? MetaStore.super.findMetaData(fileId)
+                : findMetaDataAsync(fileId).join();
+    }
+
+    @Override
+    public CompletableFuture<Optional<MetaData>> findMetaDataAsync(final String fileId) {
+        if (fileId == null) {
+            return CompletableFuture.failedFuture(new NullPointerException());
+        }
+        if (batchQueryDataFetcher.isEmpty()) {
+            return MetaStore.super.findMetaDataAsync(fileId);
+        }
+
+        // no document to build, parse, or execute, and no result map to unpack
+        return batchQueryDataFetcher.get()
+                .getMetaData(Collections.singleton(fileId))
+                .toCompletableFuture()
+                .thenApply(fetched -> Optional.ofNullable(fetched.get(fileId)));
+    }
+
+    @Override
+    public Map<String, MetaData> findAllMetaData(final Collection<String> fileIds) {
+        Objects.requireNonNull(fileIds);
+
+        return batchQueryDataFetcher.isEmpty() || fileIds.isEmpty()
+                ? MetaStore.super.findAllMetaData(fileIds)
+                : findAllMetaDataAsync(fileIds).join();
+    }
+
+    @Override
+    public CompletableFuture<Map<String, MetaData>> findAllMetaDataAsync(final Collection<String> fileIds) {
+        if (fileIds == null) {
+            return CompletableFuture.failedFuture(new NullPointerException());
+        }
+        if (batchQueryDataFetcher.isEmpty() || fileIds.isEmpty()) {
+            return MetaStore.super.findAllMetaDataAsync(fileIds);
+        }
+
+        return batchQueryDataFetcher.get()
+                .getMetaData(new LinkedHashSet<>(fileIds))
+                .toCompletableFuture()
+                .thenApply(fetched -> {
+                    final Map<String, MetaData> metaDataByFileId = new LinkedHashMap<>();
+                    for (final String fileId : fileIds) {
+                        final MetaData metaData = fetched.get(fileId);
+                        if (metaData != null) {
+                            metaDataByFileId.put(fileId, metaData);
+                        }
+                    }
+                    return metaDataByFileId;
+                });
+    }
+
+    @Override
+    public void saveMetaData(final String fileId, final MetaData metaData) {
+        Objects.requireNonNull(fileId);
+        Objects.requireNonNull(metaData);
+
+        if (batchMutationDataFetcher.isPresent()) {
+            saveMetaDataAsync(fileId, metaData).join();
+            return;
+        }
+
+        execute(graphQLQueryProvider.mutation(fileId, metaData));
+    }
+
+    @Override
+    public CompletableFuture<Void> saveMetaDataAsync(final String fileId, final MetaData metaData) {
+        if (fileId == null || metaData == null) {
+            return CompletableFuture.failedFuture(new NullPointerException());
+        }
+
+        return batchMutationDataFetcher.isPresent()
+                ? batchMutationDataFetcher.get()
+                        .saveMetaData(Collections.singletonMap(fileId, metaData))
+                        .toCompletableFuture()
+                : MetaStore.super.saveMetaDataAsync(fileId, metaData);
+    }
+
+    @Override
+    public void saveMetaData(final Map<String, MetaData> metaDataByFileId) {
+        if (Objects.requireNonNull(metaDataByFileId).isEmpty()) {
+            return;
+        }
+
+        if (batchMutationDataFetcher.isPresent()) {
+            saveMetaDataAsync(metaDataByFileId).join();
+            return;
+        }
+
+        // a single mutation made of one aliased field per file, so that all records are written in one request
+        execute(graphQLQueryProvider.mutation(metaDataByFileId));
+    }
+
+    @Override
+    public CompletableFuture<Void> saveMetaDataAsync(final Map<String, MetaData> metaDataByFileId) {
+        if (metaDataByFileId == null) {
+            return CompletableFuture.failedFuture(new NullPointerException());
+        }
+
+        return batchMutationDataFetcher.isPresent() && !metaDataByFileId.isEmpty()
+                ? batchMutationDataFetcher.get().saveMetaData(metaDataByFileId).toCompletableFuture()
+                : MetaStore.super.saveMetaDataAsync(metaDataByFileId);
+    }
+
+    /**
+     * Executes a GraphQL document, with a DataLoader registry of its own if lookups are batched.
+     *
+     * @param document  The query or mutation
+     *
+     * @return the execution result
+     */
+    @NotNull
+    private ExecutionResult execute(final @NotNull String document) {
+        final Optional<DataLoaderRegistry> dataLoaderRegistry = dataLoaderRegistries.get();
+        if (dataLoaderRegistry.isEmpty()) {
+            return graphQL.execute(document);
+        }
+
         return graphQL.execute(
                 ExecutionInput.newExecutionInput()
-                        .query(graphQLQueryProvider.query(fileId, metadataFields))
+                        .query(document)
+                        .dataLoaderRegistry(dataLoaderRegistry.get())
                         .build()
         );
     }
 
-    @Override
-    public void saveMetaData(final String fileId, final MetaData metaData) {
-        graphQL.execute(
-                graphQLQueryProvider.mutation(
-                        Objects.requireNonNull(fileId),
-                        Objects.requireNonNull(metaData)
-                )
-        );
+    /**
+     * Executes a parameterized GraphQL request, with a DataLoader registry of its own if lookups are batched.
+     *
+     * @param request  The query or mutation document together with its variables
+     *
+     * @return the execution result
+     */
+    @NotNull
+    private ExecutionResult execute(final @NotNull GraphQLRequest request) {
+        return graphQL.execute(newExecutionInput(request));
+    }
+
+    /**
+     * Creates the input of a parameterized GraphQL request, with a DataLoader registry of its own if lookups are
+     * batched.
+     *
+     * @param request  The query or mutation document together with its variables
+     *
+     * @return the execution input
+     */
+    @NotNull
+    private ExecutionInput newExecutionInput(final @NotNull GraphQLRequest request) {
+        final ExecutionInput.Builder executionInput = ExecutionInput.newExecutionInput()
+                .query(request.getDocument())
+                .variables(request.getVariables());
+        dataLoaderRegistries.get().ifPresent(executionInput::dataLoaderRegistry);
+
+        return executionInput.build();
     }
 }
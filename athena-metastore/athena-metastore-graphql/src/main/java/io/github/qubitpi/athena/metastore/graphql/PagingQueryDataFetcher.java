@@ -0,0 +1,52 @@
+/*
+ * Copyright 2024 Jiaqi Liu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.qubitpi.athena.metastore.graphql;
+
+import io.github.qubitpi.athena.metadata.FileType;
+import io.github.qubitpi.athena.metadata.MetaData;
+
+import graphql.schema.DataFetcher;
+import jakarta.validation.constraints.NotNull;
+
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * A query {@link DataFetcher} that can also list the metadata of all files, one page at a time.
+ * <p>
+ * When the query data fetcher given to {@link GraphQLFactory} implements this interface, the
+ * {@code listMetaData(first, after, fileType)} field is resolved through {@link #listMetaData(String, FileType, int)}.
+ * Pages are keyed by file ID rather than by position, so that an implementation can seek to the start of any page
+ * through an index instead of skipping all files before it.
+ */
+public interface PagingQueryDataFetcher extends DataFetcher<MetaData> {
+
+    /**
+     * Lists the metadata of the files whose IDs come after a given file ID.
+     * <p>
+     * The implementation reports failures, including checked ones such as {@link java.sql.SQLException}, by completing
+     * the returned stage exceptionally.
+     *
+     * @param afterFileId  The ID of the last file of the previous page, or {@code null} to list from the first file
+     * @param fileType  The type of the files to list, or {@code null} to list files of any type
+     * @param limit  The max number of files to list, positive
+     *
+     * @return a stage completed with the metadata of at most {@code limit} files, keyed by file ID and iterated in
+     * ascending order of file IDs
+     */
+    @NotNull
+    CompletionStage<Map<String, MetaData>> listMetaData(String afterFileId, FileType fileType, int limit);
+}
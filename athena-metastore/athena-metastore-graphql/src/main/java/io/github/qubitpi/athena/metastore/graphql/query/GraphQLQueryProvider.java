@@ -20,53 +20,58 @@ import io.github.qubitpi.athena.metadata.MetaData;
 import jakarta.validation.constraints.NotNull;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * {@link GraphQLQueryProvider} is an abstraction layer that constructs GraphQL queries on file metadata.
  * <p>
+ * Request-specific values, such as file IDs and metadata, are passed as variables of the returned
+ * {@link GraphQLRequest requests} rather than written into their documents, so that documents are reused across
+ * requests and parsed only once.
+ * <p>
  * Implementation must be package-scoped and let {@link GraphQLQueryProviderFactory} as the broker for their instance
  * provision
  */
 public interface GraphQLQueryProvider {
 
     /**
-     * Constructs and returns a GraphQL file metadata Query document given the specified file ID associated with the
+     * Constructs and returns a GraphQL file metadata Query request given the specified file ID associated with the
      * requested metadata and the metadata fields.
      * <p>
-     * For example, if file ID is "df32wsv3rr3ed", and the requested metadata fields are ["fileType", "fileName"], this
-     * method will return a string of
+     * The file ID is passed as a variable, so that the document only depends on the requested fields. For example, if
+     * the requested metadata fields are ["fileType", "fileName"], this method will return a document of
      * <pre>
      * {@code
-     * query {
-     *     metaData(fileId: "df32wsv3rr3ed") {
+     * query metaData($fileId: ID) {
+     *     metaData(fileId: $fileId) {
      *         fileType
      *         fileName
      *     }
      * }
      * }
      * </pre>
+     * with the file ID as the value of {@code fileId}.
      *
      * @param fileId  The file ID associated with the requested metadata info
      * @param metadataFields  The requested metadata fields
      *
-     * @return a GraphQL query
+     * @return a GraphQL query request
      *
      * @throws NullPointerException if {@code fileId} or {@code metadataFields} is {@code null}
      * @throws IllegalArgumentException if {@code metadataFields} list is empty
      */
     @NotNull
-    String query(@NotNull String fileId, @NotNull List<String> metadataFields);
+    GraphQLRequest query(@NotNull String fileId, @NotNull List<String> metadataFields);
 
     /**
-     * Constructs and returns a GraphQL file metadata Mutation document given a {@link MetaData} object to be saved and
+     * Constructs and returns a GraphQL file metadata Mutation request given a {@link MetaData} object to be saved and
      * a specified file ID associated with the metadata.
      * <p>
-     * For example, if file ID is "df32wsv3rr3ed", and the metadata to be saved is
-     * <code>{"fileType": "PDF", "fileName": "Pride and Prejudice"}</code>, then this method will return a string of
+     * The file ID and the metadata are passed as variables, so that the document is the same for all files:
      * <pre>
      * {@code
-     * mutation createMetaData {
-     *     createMetaData(fileId: "df32wsv3rr3ed", fileName: "Pride and Prejudice", fileType: "PDF") {
+     * mutation createMetaData($fileId: ID, $fileName: String, $fileType: String) {
+     *     createMetaData(fileId: $fileId, fileName: $fileName, fileType: $fileType) {
      *         fileName,
      *         fileType
      *     }
@@ -77,10 +82,41 @@ public interface GraphQLQueryProvider {
      * @param fileId  The file ID associated with the requested metadata info
      * @param metaData  An object that contains all information about the new metadata to be saved
      *
-     * @return a GraphQL query that creates a new {@link MetaData} object in database
+     * @return a GraphQL mutation request that creates a new {@link MetaData} object in database
      *
      * @throws NullPointerException if {@code fileId} or {@code metaData} is {@code null}
      */
     @NotNull
-    String mutation(@NotNull String fileId, @NotNull MetaData metaData);
+    GraphQLRequest mutation(@NotNull String fileId, @NotNull MetaData metaData);
+
+    /**
+     * Constructs and returns a single GraphQL Mutation request that saves many {@link MetaData} objects at once.
+     * <p>
+     * Each record is written by its own aliased {@code createMetaData} field, whose arguments are variables suffixed by
+     * the index of the record, so that all of them are saved in a single request and the document only depends on the
+     * number of records. For example, given 2 files, this method will return a document of
+     * <pre>
+     * {@code
+     * mutation createMetaData($fileId0: ID, $fileName0: String, $fileType0: String, $fileId1: ID, ...) {
+     *     file0: createMetaData(fileId: $fileId0, fileName: $fileName0, fileType: $fileType0) {
+     *         fileName,
+     *         fileType
+     *     }
+     *     file1: createMetaData(fileId: $fileId1, fileName: $fileName1, fileType: $fileType1) {
+     *         fileName,
+     *         fileType
+     *     }
+     * }
+     * }
+     * </pre>
+     *
+     * @param metaDataByFileId  The metadata objects to be saved, keyed by the IDs of their files
+     *
+     * @return a GraphQL mutation request that creates all the {@link MetaData} objects in database
+     *
+     * @throws NullPointerException if {@code metaDataByFileId} is {@code null}
+     * @throws IllegalArgumentException if {@code metaDataByFileId} is empty
+     */
+    @NotNull
+    GraphQLRequest mutation(@NotNull Map<String, MetaData> metaDataByFileId);
 }
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2024 Jiaqi Liu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.qubitpi.athena.metastore.graphql.query;
+
+import jakarta.validation.constraints.NotNull;
+import net.jcip.annotations.Immutable;
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A GraphQL document together with the values of the variables it declares.
+ * <p>
+ * The values are kept out of the document, so that requests of the same shape share the same document, which can then
+ * be parsed and validated once and served from a cache afterwards.
+ */
+@Immutable
+@ThreadSafe
+public final class GraphQLRequest {
+
+    private final String document;
+    private final Map<String, Object> variables;
+
+    /**
+     * Constructor.
+     *
+     * @param document  The GraphQL document
+     * @param variables  The values of the variables declared by {@code document}, keyed by variable name
+     *
+     * @throws NullPointerException if any argument is {@code null}
+     */
+    public GraphQLRequest(final @NotNull String document, final @NotNull Map<String, Object> variables) {
+        this.document = Objects.requireNonNull(document);
+        this.variables = Collections.unmodifiableMap(new LinkedHashMap<>(Objects.requireNonNull(variables)));
+    }
+
+    /**
+     * Returns the GraphQL document.
+     *
+     * @return a query or mutation document, free of any request-specific value
+     */
+    @NotNull
+    public String getDocument() {
+        return document;
+    }
+
+    /**
+     * Returns the values of the variables declared by the document.
+     *
+     * @return an immutable map of variable values keyed by variable name
+     */
+    @NotNull
+    public Map<String, Object> getVariables() {
+        return variables;
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof GraphQLRequest)) {
+            return false;
+        }
+
+        final GraphQLRequest that = (GraphQLRequest) other;
+        return document.equals(that.document) && variables.equals(that.variables);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(document, variables);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("GraphQLRequest{document='%s', variables=%s}", document, variables);
+    }
+}
@@ -27,7 +27,11 @@ import jakarta.validation.constraints.NotNull;
 import net.jcip.annotations.Immutable;
 import net.jcip.annotations.ThreadSafe;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 import jakarta.inject.Singleton;
@@ -35,7 +39,8 @@ import jakarta.inject.Singleton;
 /**
  * The default implementation of {@link GraphQLQueryProvider}.
  * <p>
- * The implementation constructs query simply by filling a String format with dynamic metadata parameters
+ * The implementation constructs query documents by filling String formats with the requested metadata fields, or the
+ * number of records of a batched mutation; all other values are passed as variables.
  */
 @Singleton
 @Immutable
@@ -44,8 +49,16 @@ class TemplateBasedGraphQLQueryProvider implements GraphQLQueryProvider {
 
     private static final Logger LOG = LoggerFactory.getLogger(TemplateBasedGraphQLQueryProvider.class);
 
+    private static final String FILE_ID = "fileId";
+    private static final String FILE_NAME = "fileName";
+    private static final String FILE_TYPE = "fileType";
+    private static final String BATCH_MUTATION_VARIABLES_FORMAT =
+            "$fileId%1$d: ID, $fileName%1$d: String, $fileType%1$d: String";
+
     private static final String QUERY_TEMPLATE_RESOURCE_FILE = "query.graphql";
     private static final String MUTATION_TEMPLATE_RESOURCE_FILE = "mutation.graphql";
+    private static final String BATCH_MUTATION_TEMPLATE_RESOURCE_FILE = "batch-mutation.graphql";
+    private static final String BATCH_MUTATION_FIELD_TEMPLATE_RESOURCE_FILE = "batch-mutation-field.graphql";
     private static final String QUERY_FORMAT = GraphQLFactory.getGraphQLSchemaResourceAsString(
             QUERY_TEMPLATE_RESOURCE_FILE
     );
@@ -53,6 +66,13 @@ class TemplateBasedGraphQLQueryProvider implements GraphQLQueryProvider {
             MUTATION_TEMPLATE_RESOURCE_FILE
     );
 
+    private static final String BATCH_MUTATION_FORMAT = GraphQLFactory.getGraphQLSchemaResourceAsString(
+            BATCH_MUTATION_TEMPLATE_RESOURCE_FILE
+    );
+    private static final String BATCH_MUTATION_FIELD_FORMAT = GraphQLFactory.getGraphQLSchemaResourceAsString(
+            BATCH_MUTATION_FIELD_TEMPLATE_RESOURCE_FILE
+    );
+
     private static final GraphQLQueryProvider INSTANCE = new TemplateBasedGraphQLQueryProvider();
 
     /**
@@ -73,7 +93,7 @@ class TemplateBasedGraphQLQueryProvider implements GraphQLQueryProvider {
     }
 
     @Override
-    public String query(final String fileId, final List<String> metadataFields) {
+    public GraphQLRequest query(final String fileId, final List<String> metadataFields) {
         Objects.requireNonNull(fileId);
         Objects.requireNonNull(metadataFields);
 
@@ -82,14 +102,52 @@ class TemplateBasedGraphQLQueryProvider implements GraphQLQueryProvider {
             throw new IllegalArgumentException(EMPTY_LIST.format());
         }
 
-        return String.format(QUERY_FORMAT, fileId, String.join("\n        ", metadataFields));
+        return new GraphQLRequest(
+                String.format(QUERY_FORMAT, String.join("\n        ", metadataFields)),
+                Collections.singletonMap(FILE_ID, fileId)
+        );
     }
 
     @Override
-    public String mutation(final String fileId, final MetaData metaData) {
+    public GraphQLRequest mutation(final String fileId, final MetaData metaData) {
         Objects.requireNonNull(fileId);
         Objects.requireNonNull(metaData);
 
-        return String.format(MUTATION_FORMAT, fileId, metaData.getFileName(), metaData.getFileType());
+        final Map<String, Object> variables = new LinkedHashMap<>();
+        variables.put(FILE_ID, fileId);
+        variables.put(FILE_NAME, metaData.getFileName());
+        variables.put(FILE_TYPE, metaData.getFileType().toString());
+
+        return new GraphQLRequest(MUTATION_FORMAT, variables);
+    }
+
+    @Override
+    public GraphQLRequest mutation(final Map<String, MetaData> metaDataByFileId) {
+        Objects.requireNonNull(metaDataByFileId);
+
+        if (metaDataByFileId.isEmpty()) {
+            LOG.error(EMPTY_LIST.logFormat());
+            throw new IllegalArgumentException(EMPTY_LIST.format());
+        }
+
+        final List<String> variableDefinitions = new ArrayList<>();
+        final StringBuilder fields = new StringBuilder();
+        final Map<String, Object> variables = new LinkedHashMap<>();
+        int index = 0;
+        for (final Map.Entry<String, MetaData> entry : metaDataByFileId.entrySet()) {
+            variableDefinitions.add(String.format(BATCH_MUTATION_VARIABLES_FORMAT, index));
+            fields.append(String.format(BATCH_MUTATION_FIELD_FORMAT, index));
+
+            variables.put(FILE_ID + index, entry.getKey());
+            variables.put(FILE_NAME + index, entry.getValue().getFileName());
+            variables.put(FILE_TYPE + index, entry.getValue().getFileType().toString());
+
+            index++;
+        }
+
+        return new GraphQLRequest(
+                String.format(BATCH_MUTATION_FORMAT, String.join(", ", variableDefinitions), fields),
+                variables
+        );
     }
 }
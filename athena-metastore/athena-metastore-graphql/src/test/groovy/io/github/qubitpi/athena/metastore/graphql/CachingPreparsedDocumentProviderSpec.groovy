@@ -0,0 +1,78 @@
+/*
+ * Copyright 2024 Jiaqi Liu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.qubitpi.athena.metastore.graphql
+
+import graphql.ExecutionInput
+import graphql.execution.preparsed.PreparsedDocumentEntry
+import graphql.language.Document
+import spock.lang.Specification
+
+import java.util.function.Function
+
+class CachingPreparsedDocumentProviderSpec extends Specification {
+
+    def "A document is parsed and validated only once"() {
+        given:
+        CachingPreparsedDocumentProvider provider = new CachingPreparsedDocumentProvider(2)
+        Function<ExecutionInput, PreparsedDocumentEntry> parser = Mock(Function)
+        PreparsedDocumentEntry entry = new PreparsedDocumentEntry(Document.newDocument().build())
+
+        when: "the same document is executed twice with different variables"
+        PreparsedDocumentEntry first = provider.getDocument(input("query", [fileId: "1"]), parser)
+        PreparsedDocumentEntry second = provider.getDocument(input("query", [fileId: "2"]), parser)
+
+        then: "it is parsed on the first execution only"
+        1 * parser.apply(_) >> entry
+        first.is(entry)
+        second.is(entry)
+    }
+
+    def "The least recently used document is evicted once the cache is full"() {
+        given:
+        CachingPreparsedDocumentProvider provider = new CachingPreparsedDocumentProvider(2)
+        Function<ExecutionInput, PreparsedDocumentEntry> parser = { new PreparsedDocumentEntry(Document.newDocument().build()) }
+        Function<ExecutionInput, PreparsedDocumentEntry> failingParser = { throw new AssertionError("parsed again") }
+
+        when: "'a' is used more recently than 'b' when 'c' comes in"
+        provider.getDocument(input("a"), parser)
+        provider.getDocument(input("b"), parser)
+        provider.getDocument(input("a"), failingParser)
+        provider.getDocument(input("c"), parser)
+
+        then: "'b' is evicted"
+        provider.size() == 2
+        provider.getDocument(input("a"), failingParser)
+        provider.getDocument(input("c"), failingParser)
+
+        when:
+        provider.getDocument(input("b"), failingParser)
+
+        then:
+        thrown(AssertionError)
+    }
+
+    def "Cache size must be positive"() {
+        when:
+        new CachingPreparsedDocumentProvider(0)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    ExecutionInput input(String document, Map<String, Object> variables = [:]) {
+        ExecutionInput.newExecutionInput().query(document).variables(variables).build()
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2024 Jiaqi Liu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.qubitpi.athena.metastore.graphql
+
+import graphql.ExecutionInput
+import graphql.ExecutionResult
+import graphql.GraphQL
+import graphql.schema.DataFetcher
+import graphql.schema.idl.RuntimeWiring
+import graphql.schema.idl.SchemaGenerator
+import graphql.schema.idl.SchemaParser
+import spock.lang.Specification
+
+import java.time.Duration
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.TimeUnit
+import java.util.function.LongSupplier
+
+class ExecutionTimeoutInstrumentationSpec extends Specification {
+
+    long now = 0
+    LongSupplier nanoClock = { now } as LongSupplier
+
+    def "Fields are not fetched once the execution has run out of time"() {
+        given: "a first field that takes 2 seconds and a timeout of 1 second"
+        DataFetcher<String> slow = { now += TimeUnit.SECONDS.toNanos(2); "slow" } as DataFetcher
+        DataFetcher<String> next = Mock(DataFetcher)
+        GraphQL graphQL = newGraphQL(slow, next, new ExecutionTimeoutInstrumentation(Duration.ofSeconds(1), nanoClock))
+
+        when:
+        ExecutionResult result = graphQL.execute("{ first second }")
+
+        then: "the second field fails without being fetched"
+        0 * next.get(_)
+        result.data == [first: "slow", second: null]
+        result.errors.size() == 1
+        result.errors[0].message.contains("ran longer than 1000 ms")
+    }
+
+    def "Fields fetched asynchronously fail once the execution runs out of time"() {
+        given: "a field whose future never completes and a timeout of 50 milliseconds"
+        DataFetcher<CompletableFuture<String>> pending = { new CompletableFuture<String>() } as DataFetcher
+        DataFetcher<String> fast = { "fast" } as DataFetcher
+        GraphQL graphQL = newGraphQL(pending, fast, new ExecutionTimeoutInstrumentation(Duration.ofMillis(50)))
+
+        when:
+        ExecutionResult result = graphQL.executeAsync(ExecutionInput.newExecutionInput("{ first second }")).get(5, TimeUnit.SECONDS)
+
+        then:
+        result.data == [first: null, second: "fast"]
+        result.errors.size() == 1
+    }
+
+    def "Timeout must be positive"() {
+        when:
+        new ExecutionTimeoutInstrumentation(Duration.ZERO)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    /**
+     * Builds a GraphQL API with 2 string fields, {@code first} and {@code second}.
+     */
+    static GraphQL newGraphQL(
+            DataFetcher<?> first,
+            DataFetcher<?> second,
+            ExecutionTimeoutInstrumentation instrumentation
+    ) {
+        RuntimeWiring wiring = RuntimeWiring.newRuntimeWiring()
+                .type("Query", { it.dataFetcher("first", first).dataFetcher("second", second) })
+                .build()
+        return GraphQL.newGraphQL(
+                new SchemaGenerator().makeExecutableSchema(
+                        new SchemaParser().parse("type Query { first: String second: String }"),
+                        wiring
+                )
+        )
+                .instrumentation(instrumentation)
+                .build()
+    }
+}
@@ -17,13 +17,19 @@ package io.github.qubitpi.athena.metastore.graphql
 
 
 import io.github.qubitpi.athena.metastore.graphql.query.GraphQLQueryProvider
+import io.github.qubitpi.athena.metastore.graphql.query.GraphQLRequest
 
 import graphql.ExecutionInput
+import graphql.ExecutionResult
 import graphql.GraphQL
+import graphql.schema.DataFetcher
 import io.github.qubitpi.athena.metadata.FileType
 import io.github.qubitpi.athena.metadata.MetaData
 import spock.lang.Specification
 
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionException
+
 class GraphQLMetaStoreSpec extends Specification {
 
     static final String FILE_ID = "fileId123"
@@ -65,8 +71,9 @@ class GraphQLMetaStoreSpec extends Specification {
 
         and: "a mocked GraphQL query maker that constructs valid query on certain input"
         GraphQLQueryProvider graphQLQueryProvider = Mock(GraphQLQueryProvider) {
-            query(FILE_ID, ["fileType", "fileName"]) >> GraphQLFactory.getGraphQLSchemaResourceAsString(
-                    EXPECTED_QUERY_FILE
+            query(FILE_ID, ["fileType", "fileName"]) >> new GraphQLRequest(
+                    GraphQLFactory.getGraphQLSchemaResourceAsString(EXPECTED_QUERY_FILE),
+                    [fileId: FILE_ID]
             )
         }
 
@@ -76,8 +83,11 @@ class GraphQLMetaStoreSpec extends Specification {
         when: "a query is sent to the GraphQL client using the requested query parameters"
         metaStore.getMetaData(FILE_ID, ["fileType", "fileName"])
 
-        then: "the query is constructed and processed by the client"
-        1 * graphQL.execute(_ as ExecutionInput)
+        then: "the query is constructed and processed by the client with the file ID as a variable"
+        1 * graphQL.execute({ ExecutionInput it ->
+            it.query == GraphQLFactory.getGraphQLSchemaResourceAsString(EXPECTED_QUERY_FILE) &&
+                    it.variables == [fileId: FILE_ID]
+        })
     }
 
     @SuppressWarnings("GroovyAccessibility")
@@ -129,8 +139,9 @@ class GraphQLMetaStoreSpec extends Specification {
 
         and: "a mocked GraphQL query maker that constructs valid query on certain input"
         GraphQLQueryProvider graphQLQueryProvider = Mock(GraphQLQueryProvider) {
-            mutation(FILE_ID, metaData) >> GraphQLFactory.getGraphQLSchemaResourceAsString(
-                    EXPECTED_MUTATION_FILE
+            mutation(FILE_ID, metaData) >> new GraphQLRequest(
+                    GraphQLFactory.getGraphQLSchemaResourceAsString(EXPECTED_MUTATION_FILE),
+                    [fileId: FILE_ID, fileName: FILE_NAME, fileType: "PDF"]
             )
         }
 
@@ -140,10 +151,11 @@ class GraphQLMetaStoreSpec extends Specification {
         when: "a query is sent to the GraphQL client using the requested query parameters"
         metaStore.saveMetaData(FILE_ID, metaData)
 
-        then: "the query is constructed and processed by the client"
-        1 * graphQL.execute({ it == GraphQLFactory.getGraphQLSchemaResourceAsString(
-                EXPECTED_MUTATION_FILE) }
-        )
+        then: "the mutation is constructed and processed by the client with the metadata as variables"
+        1 * graphQL.execute({ ExecutionInput it ->
+            it.query == GraphQLFactory.getGraphQLSchemaResourceAsString(EXPECTED_MUTATION_FILE) &&
+                    it.variables == [fileId: FILE_ID, fileName: FILE_NAME, fileType: "PDF"]
+        })
     }
 
     @SuppressWarnings("GroovyAccessibility")
@@ -169,4 +181,411 @@ class GraphQLMetaStoreSpec extends Specification {
         then: "runtime error is thrown"
         thrown(NullPointerException)
     }
+
+    @SuppressWarnings("GroovyAccessibility")
+    def "Metadata of many files is saved with a single GraphQL request"() {
+        given: "a mutation data fetcher behind a real GraphQL API"
+        DataFetcher<MetaData> mutationDataFetcher = Mock(DataFetcher)
+        GraphQLMetaStore metaStore = new GraphQLMetaStore(Mock(DataFetcher), mutationDataFetcher)
+
+        when: "the metadata of 3 files is saved at once"
+        metaStore.saveMetaData([
+                a: new MetaData("a.txt", FileType.TXT),
+                b: new MetaData("b.pdf", FileType.PDF),
+                c: new MetaData("c.mp4", FileType.MP4)
+        ])
+
+        then: "every record reaches the data fetcher"
+        1 * mutationDataFetcher.get({ it.getArgument("fileId") == "a" && it.getArgument("fileType") == "TXT" })
+        1 * mutationDataFetcher.get({ it.getArgument("fileId") == "b" && it.getArgument("fileName") == "b.pdf" })
+        1 * mutationDataFetcher.get({ it.getArgument("fileId") == "c" })
+    }
+
+    def "Saving an empty batch of metadata is a no-op"() {
+        given:
+        GraphQL graphQL = Mock(GraphQL)
+
+        when:
+        new GraphQLMetaStore(graphQL, Mock(GraphQLQueryProvider)).saveMetaData([:])
+
+        then:
+        0 * graphQL.execute(_)
+    }
+
+    @SuppressWarnings("GroovyAccessibility")
+    def "Metadata lookups of a single execution are fetched in one batch"() {
+        given: "a batch-capable query data fetcher behind a real GraphQL API"
+        BatchQueryDataFetcher queryDataFetcher = Mock(BatchQueryDataFetcher)
+        GraphQLMetaStore metaStore = new GraphQLMetaStore(queryDataFetcher, Mock(DataFetcher))
+
+        when: "a query looks up 3 files through aliases"
+        ExecutionResult result = metaStore.executeNative("""
+                query {
+                    a: metaData(fileId: "1") { fileName }
+                    b: metaData(fileId: "2") { fileName fileType }
+                    c: metaData(fileId: "3") { fileName }
+                }
+        """)
+
+        then: "all of them are fetched at once"
+        1 * queryDataFetcher.getMetaData(["1", "2", "3"] as Set) >> CompletableFuture.completedFuture([
+                "1": new MetaData("a.txt", FileType.TXT),
+                "2": new MetaData("b.pdf", FileType.PDF)
+        ])
+        0 * queryDataFetcher.get(_)
+
+        and: "a file without metadata fails its own field only"
+        result.data == [a: [fileName: "a.txt"], b: [fileName: "b.pdf", fileType: "PDF"], c: null]
+        result.errors.size() == 1
+        result.errors[0].message.contains("No meta data found for file ID '3'")
+    }
+
+    @SuppressWarnings("GroovyAccessibility")
+    def "File names are passed to the data fetcher verbatim, whatever characters they contain"() {
+        given: "a mutation data fetcher behind a real GraphQL API"
+        DataFetcher<MetaData> mutationDataFetcher = Mock(DataFetcher)
+        GraphQLMetaStore metaStore = new GraphQLMetaStore(Mock(DataFetcher), mutationDataFetcher)
+
+        when: "a file whose name would break a GraphQL string literal is saved"
+        metaStore.saveMetaData(FILE_ID, new MetaData('say "hi"\\.txt', FileType.TXT))
+
+        then: "the name reaches the data fetcher unchanged"
+        1 * mutationDataFetcher.get({ it.getArgument("fileName") == 'say "hi"\\.txt' })
+    }
+
+    @SuppressWarnings("GroovyAccessibility")
+    def "Typed metadata lookup reads a batch-capable data fetcher directly"() {
+        given: "a batch-capable query data fetcher behind a real GraphQL API"
+        BatchQueryDataFetcher queryDataFetcher = Mock(BatchQueryDataFetcher)
+        GraphQLMetaStore metaStore = new GraphQLMetaStore(queryDataFetcher, Mock(DataFetcher))
+
+        when:
+        Optional<MetaData> found = metaStore.findMetaData("1")
+        Optional<MetaData> missing = metaStore.findMetaData("2")
+
+        then: "no GraphQL field is resolved"
+        1 * queryDataFetcher.getMetaData(["1"] as Set) >> CompletableFuture.completedFuture([
+                "1": new MetaData("a.txt", FileType.TXT)
+        ])
+        1 * queryDataFetcher.getMetaData(["2"] as Set) >> CompletableFuture.completedFuture([:])
+        0 * queryDataFetcher.get(_)
+
+        and:
+        found.get().fileName == "a.txt"
+        missing.isEmpty()
+    }
+
+    @SuppressWarnings("GroovyAccessibility")
+    def "Typed metadata lookup goes through GraphQL if the data fetcher cannot be read directly"() {
+        given: "a plain query data fetcher behind a real GraphQL API"
+        DataFetcher<MetaData> queryDataFetcher = Mock(DataFetcher)
+        GraphQLMetaStore metaStore = new GraphQLMetaStore(queryDataFetcher, Mock(DataFetcher))
+
+        when:
+        Optional<MetaData> found = metaStore.findMetaData(FILE_ID)
+        Optional<MetaData> missing = metaStore.findMetaData("unknown")
+
+        then:
+        1 * queryDataFetcher.get({ it.getArgument("fileId") == FILE_ID }) >> new MetaData(FILE_NAME, FileType.PDF)
+        1 * queryDataFetcher.get({ it.getArgument("fileId") == "unknown" }) >> null
+
+        and:
+        found.get().fileName == FILE_NAME
+        found.get().fileType == FileType.PDF
+        missing.isEmpty()
+    }
+
+    @SuppressWarnings("GroovyAccessibility")
+    def "Metadata of a list of files is fetched in one batch and returned in order"() {
+        given: "a batch-capable query data fetcher behind a real GraphQL API"
+        BatchQueryDataFetcher queryDataFetcher = Mock(BatchQueryDataFetcher)
+        GraphQLMetaStore metaStore = new GraphQLMetaStore(queryDataFetcher, Mock(DataFetcher))
+
+        when:
+        ExecutionResult result = metaStore.executeNative('{ metaDatas(fileIds: ["2", "3", "1"]) { fileName } }')
+
+        then:
+        1 * queryDataFetcher.getMetaData(["2", "3", "1"] as Set) >> CompletableFuture.completedFuture([
+                "1": new MetaData("a.txt", FileType.TXT),
+                "2": new MetaData("b.pdf", FileType.PDF)
+        ])
+        0 * queryDataFetcher.get(_)
+
+        and: "files without metadata are null"
+        result.errors.isEmpty()
+        result.data == [metaDatas: [[fileName: "b.pdf"], null, [fileName: "a.txt"]]]
+    }
+
+    @SuppressWarnings("GroovyAccessibility")
+    def "A list of too many files fails without fetching any metadata"() {
+        given: "a batch-capable query data fetcher behind a real GraphQL API"
+        BatchQueryDataFetcher queryDataFetcher = Mock(BatchQueryDataFetcher)
+        GraphQLMetaStore metaStore = new GraphQLMetaStore(queryDataFetcher, Mock(DataFetcher))
+        String fileIds = (0..500).collect { "\"$it\"" }.join(", ")
+
+        when: "one more file than the default max is listed"
+        ExecutionResult result = metaStore.executeNative("{ metaDatas(fileIds: [$fileIds]) { fileName } }")
+
+        then:
+        0 * queryDataFetcher.getMetaData(_)
+        0 * queryDataFetcher.get(_)
+        result.errors.size() == 1
+        result.errors[0].message.contains("must not list more than 500 file IDs")
+    }
+
+    @SuppressWarnings("GroovyAccessibility")
+    def "Metadata of a list of files is fetched one file at a time if the data fetcher cannot batch"() {
+        given: "a plain query data fetcher behind a real GraphQL API"
+        DataFetcher<MetaData> queryDataFetcher = Mock(DataFetcher)
+        GraphQLMetaStore metaStore = new GraphQLMetaStore(queryDataFetcher, Mock(DataFetcher))
+
+        when:
+        ExecutionResult result = metaStore.executeNative('{ metaDatas(fileIds: ["1", "2"]) { fileType } }')
+
+        then:
+        1 * queryDataFetcher.get({ it.getArgument("fileId") == "1" }) >> new MetaData("a.txt", FileType.TXT)
+        1 * queryDataFetcher.get({ it.getArgument("fileId") == "2" }) >> new MetaData("b.pdf", FileType.PDF)
+        result.data == [metaDatas: [[fileType: "TXT"], [fileType: "PDF"]]]
+    }
+
+    @SuppressWarnings("GroovyAccessibility")
+    def "Typed bulk lookup reads a batch-capable data fetcher once"() {
+        given:
+        BatchQueryDataFetcher queryDataFetcher = Mock(BatchQueryDataFetcher)
+        GraphQLMetaStore metaStore = new GraphQLMetaStore(queryDataFetcher, Mock(DataFetcher))
+
+        when:
+        Map<String, MetaData> found = metaStore.findAllMetaData(["2", "3", "1"])
+
+        then:
+        1 * queryDataFetcher.getMetaData(["2", "3", "1"] as Set) >> CompletableFuture.completedFuture([
+                "1": new MetaData("a.txt", FileType.TXT),
+                "2": new MetaData("b.pdf", FileType.PDF)
+        ])
+        found.keySet() as List == ["2", "1"]
+        found["1"].fileName == "a.txt"
+    }
+
+    @SuppressWarnings("GroovyAccessibility")
+    def "Metadata is saved through a batch-capable mutation data fetcher directly"() {
+        given:
+        BatchMutationDataFetcher mutationDataFetcher = Mock(BatchMutationDataFetcher)
+        GraphQLMetaStore metaStore = new GraphQLMetaStore(Mock(DataFetcher), mutationDataFetcher)
+        Map<String, MetaData> metaDataByFileId = [
+                a: new MetaData("a.txt", FileType.TXT),
+                b: new MetaData("b.pdf", FileType.PDF)
+        ]
+
+        when:
+        metaStore.saveMetaData(metaDataByFileId)
+
+        then: "all records are handed over at once, without resolving any GraphQL field"
+        1 * mutationDataFetcher.saveMetaData(metaDataByFileId) >> CompletableFuture.completedFuture(null)
+        0 * mutationDataFetcher.get(_)
+    }
+
+    @SuppressWarnings("GroovyAccessibility")
+    def "Asynchronous lookups complete once the data fetcher does, without blocking the caller"() {
+        given: "a batch-capable query data fetcher whose answer is still pending"
+        BatchQueryDataFetcher queryDataFetcher = Mock(BatchQueryDataFetcher)
+        GraphQLMetaStore metaStore = new GraphQLMetaStore(queryDataFetcher, Mock(DataFetcher))
+        CompletableFuture<Map<String, MetaData>> pending = new CompletableFuture<>()
+
+        when: "metadata is looked up asynchronously"
+        CompletableFuture<ExecutionResult> result = metaStore.getMetaDataAsync(
+                FILE_ID,
+                [MetaData.FILE_NAME, MetaData.FILE_TYPE]
+        )
+
+        then: "the lookup returns before the metadata is fetched"
+        1 * queryDataFetcher.getMetaData([FILE_ID] as Set) >> pending
+        !result.done
+
+        when: "the data fetcher answers"
+        pending.complete([(FILE_ID): new MetaData(FILE_NAME, FileType.PDF)])
+
+        then: "the result is complete"
+        result.done
+        result.join().data == [metaData: [fileName: FILE_NAME, fileType: "PDF"]]
+        result.join().errors.isEmpty()
+    }
+
+    @SuppressWarnings("GroovyAccessibility")
+    def "Asynchronous lookup of an empty field list fails its future instead of throwing"() {
+        given:
+        GraphQLMetaStore metaStore = new GraphQLMetaStore(Mock(DataFetcher), Mock(DataFetcher))
+
+        when:
+        CompletableFuture<ExecutionResult> result = metaStore.getMetaDataAsync(FILE_ID, [])
+
+        then:
+        result.completedExceptionally
+
+        when:
+        result.join()
+
+        then:
+        CompletionException exception = thrown()
+        exception.cause instanceof IllegalArgumentException
+    }
+
+    @SuppressWarnings("GroovyAccessibility")
+    def "Typed asynchronous lookups and saves complete with the batch-capable data fetchers, without blocking the caller"() {
+        given: "batch-capable data fetchers whose answers are still pending"
+        BatchQueryDataFetcher queryDataFetcher = Mock(BatchQueryDataFetcher)
+        BatchMutationDataFetcher mutationDataFetcher = Mock(BatchMutationDataFetcher)
+        GraphQLMetaStore metaStore = new GraphQLMetaStore(queryDataFetcher, mutationDataFetcher)
+        CompletableFuture<Map<String, MetaData>> pendingLookup = new CompletableFuture<>()
+        CompletableFuture<Map<String, MetaData>> pendingBulkLookup = new CompletableFuture<>()
+        CompletableFuture<Void> pendingSave = new CompletableFuture<>()
+
+        when:
+        CompletableFuture<Optional<MetaData>> found = metaStore.findMetaDataAsync("1")
+        CompletableFuture<Map<String, MetaData>> foundAll = metaStore.findAllMetaDataAsync(["2", "1"])
+        CompletableFuture<Void> saved = metaStore.saveMetaDataAsync("3", new MetaData("c.txt", FileType.TXT))
+
+        then: "all calls return before the data fetchers answer"
+        1 * queryDataFetcher.getMetaData(["1"] as Set) >> pendingLookup
+        1 * queryDataFetcher.getMetaData(["2", "1"] as Set) >> pendingBulkLookup
+        1 * mutationDataFetcher.saveMetaData({ it["3"].fileName == "c.txt" }) >> pendingSave
+        !found.done
+        !foundAll.done
+        !saved.done
+
+        when: "the data fetchers answer"
+        pendingLookup.complete(["1": new MetaData("a.txt", FileType.TXT)])
+        pendingBulkLookup.complete(["1": new MetaData("a.txt", FileType.TXT)])
+        pendingSave.complete(null)
+
+        then:
+        found.join().get().fileName == "a.txt"
+        foundAll.join().keySet() as List == ["1"]
+        saved.done
+    }
+
+    @SuppressWarnings("GroovyAccessibility")
+    def "Native queries can be executed with variables and an operation name"() {
+        given: "a batch-capable query data fetcher"
+        BatchQueryDataFetcher queryDataFetcher = Mock(BatchQueryDataFetcher)
+        GraphQLMetaStore metaStore = new GraphQLMetaStore(queryDataFetcher, Mock(DataFetcher))
+
+        when: "the second of two operations is executed with the file ID as a variable"
+        ExecutionResult result = metaStore.executeAsync(
+                """
+                query first { metaData(fileId: "unused") { fileType } }
+                query second(\$id: ID!) { book: metaData(fileId: \$id) { name: fileName } }
+                """,
+                [id: FILE_ID],
+                "second"
+        ).join()
+
+        then: "only that operation runs, with the variable bound"
+        1 * queryDataFetcher.getMetaData([FILE_ID] as Set) >> CompletableFuture.completedFuture(
+                [(FILE_ID): new MetaData(FILE_NAME, FileType.PDF)]
+        )
+        result.errors.isEmpty()
+        result.data == [book: [name: FILE_NAME]]
+    }
+
+    def "Queries nested too deeply are rejected before any data fetcher runs"() {
+        given:
+        DataFetcher<MetaData> queryDataFetcher = Mock(DataFetcher)
+        GraphQLMetaStore metaStore = new GraphQLMetaStore(queryDataFetcher, Mock(DataFetcher))
+
+        when: "an introspection query nests type references 20 times"
+        ExecutionResult result = metaStore.executeNative(
+                "{ metaData(fileId: \"1\") { fileName } __schema { types { fields { type { " +
+                        "ofType { " * 20 + "name" + " }" * 20 + " } } } } }"
+        )
+
+        then:
+        0 * queryDataFetcher.get(_)
+        result.data == null
+        result.errors.size() == 1
+        result.errors[0].message.contains("maximum query depth exceeded")
+    }
+
+    def "Queries selecting too many fields are rejected before any data fetcher runs"() {
+        given:
+        DataFetcher<MetaData> queryDataFetcher = Mock(DataFetcher)
+        GraphQLMetaStore metaStore = new GraphQLMetaStore(queryDataFetcher, Mock(DataFetcher))
+
+        when: "a query looks up 300 files through aliases"
+        ExecutionResult result = metaStore.executeNative(
+                "{ " + (1..300).collect { "f$it: metaData(fileId: \"$it\") { fileName }" }.join(" ") + " }"
+        )
+
+        then:
+        0 * queryDataFetcher.get(_)
+        result.data == null
+        result.errors.size() == 1
+        result.errors[0].message.contains("maximum query complexity exceeded")
+    }
+
+    @SuppressWarnings("GroovyAccessibility")
+    def "Metadata of all files is listed one page at a time, each page starting after the cursor of the previous one"() {
+        given: "a paging query data fetcher behind a real GraphQL API"
+        PagingQueryDataFetcher queryDataFetcher = Mock(PagingQueryDataFetcher)
+        GraphQLMetaStore metaStore = new GraphQLMetaStore(queryDataFetcher, Mock(DataFetcher))
+        String query = '{ listMetaData(first: 2%s) { edges { cursor fileId node { fileName } } pageInfo { hasNextPage endCursor } } }'
+
+        when: "the first page is listed"
+        Map<String, Object> firstPage = metaStore.executeNative(String.format(query, "")).data.listMetaData
+
+        then: "one more file than requested is asked for, to tell whether there is a next page"
+        1 * queryDataFetcher.listMetaData(null, null, 3) >> CompletableFuture.completedFuture([
+                a: new MetaData("a.txt", FileType.TXT),
+                b: new MetaData("b.pdf", FileType.PDF),
+                c: new MetaData("c.pdf", FileType.PDF)
+        ])
+        firstPage.edges*.fileId == ["a", "b"]
+        firstPage.edges*.node*.fileName == ["a.txt", "b.pdf"]
+        firstPage.pageInfo.hasNextPage == true
+        firstPage.pageInfo.endCursor == firstPage.edges[1].cursor
+
+        when: "the next page of PDF files is listed"
+        Map<String, Object> secondPage = metaStore.executeNative(
+                String.format(query, /, after: "${firstPage.pageInfo.endCursor}", fileType: "PDF"/)
+        ).data.listMetaData
+
+        then: "it starts right after the last file of the first page"
+        1 * queryDataFetcher.listMetaData("b", FileType.PDF, 3) >> CompletableFuture.completedFuture([
+                c: new MetaData("c.pdf", FileType.PDF)
+        ])
+        secondPage.edges*.fileId == ["c"]
+        secondPage.pageInfo == [hasNextPage: false, endCursor: secondPage.edges[0].cursor]
+    }
+
+    def "Metadata listing is rejected if #reason"() {
+        given:
+        PagingQueryDataFetcher queryDataFetcher = Mock(PagingQueryDataFetcher)
+        GraphQLMetaStore metaStore = new GraphQLMetaStore(queryDataFetcher, Mock(DataFetcher))
+
+        when:
+        ExecutionResult result = metaStore.executeNative("{ listMetaData($arguments) { edges { fileId } } }")
+
+        then:
+        0 * queryDataFetcher.listMetaData(_, _, _)
+        result.errors.size() == 1
+        result.errors[0].message.contains(message)
+
+        where:
+        reason                         | arguments               || message
+        "the page is empty"            | 'first: 0'              || "'first' must be between 1 and 100"
+        "the page is too large"        | 'first: 101'            || "'first' must be between 1 and 100"
+        "the cursor is invalid"        | 'after: "not a cursor"' || "'not a cursor' is not a valid cursor"
+        "the file type does not exist" | 'fileType: "DOC"'       || "'DOC' is not a file type"
+    }
+
+    def "Metadata listing is rejected if the data fetcher cannot list files"() {
+        given:
+        GraphQLMetaStore metaStore = new GraphQLMetaStore(Mock(BatchQueryDataFetcher), Mock(DataFetcher))
+
+        when:
+        ExecutionResult result = metaStore.executeNative("{ listMetaData { edges { fileId } } }")
+
+        then:
+        result.errors.size() == 1
+        result.errors[0].message.contains("the metadata store cannot list files")
+    }
 }
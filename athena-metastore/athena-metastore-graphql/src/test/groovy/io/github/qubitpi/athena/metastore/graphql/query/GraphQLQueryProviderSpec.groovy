@@ -30,6 +30,7 @@ abstract class GraphQLQueryProviderSpec extends Specification {
     static final String FILE_NAME = "pride-and-prejudice.pdf"
     static final String EXPECTED_QUERY_FILE = "expected-query.graphql"
     static final String EXPECTED_MUTATION_FILE = "expected-mutation.graphql";
+    static final String EXPECTED_BATCH_MUTATION_FILE = "expected-batch-mutation.graphql"
 
     @Shared
     @Subject
@@ -42,10 +43,19 @@ abstract class GraphQLQueryProviderSpec extends Specification {
      */
     abstract GraphQLQueryProvider getTestProvider()
 
-    def "Given a file ID and a list of metadata fields, a GraphQL file metadata Query document string is provided"() {
+    def "Given a file ID and a list of metadata fields, a GraphQL file metadata Query request is provided"() {
+        when:
+        GraphQLRequest request = graphQLQueryProvider.query(FILE_ID, ["fileType", "fileName"])
+
+        then: "the file ID is passed as a variable"
+        request.document == GraphQLFactory.getGraphQLSchemaResourceAsString(EXPECTED_QUERY_FILE)
+        request.variables == [fileId: FILE_ID]
+    }
+
+    def "Query documents of different files are the same"() {
         expect:
-        graphQLQueryProvider.query(FILE_ID, ["fileType", "fileName"]) ==
-                GraphQLFactory.getGraphQLSchemaResourceAsString(EXPECTED_QUERY_FILE)
+        graphQLQueryProvider.query(FILE_ID, ["fileName"]).document ==
+                graphQLQueryProvider.query("fileId456", ["fileName"]).document
     }
 
     def "File ID cannot be null for making the Query document"() {
@@ -72,16 +82,19 @@ abstract class GraphQLQueryProviderSpec extends Specification {
         thrown(IllegalArgumentException)
     }
 
-    def "Given a file ID and a metadata info, a GraphQL file metadata Mutation document string is provided"() {
+    def "Given a file ID and a metadata info, a GraphQL file metadata Mutation request is provided"() {
         given: "a meta data info"
         MetaData metaData = Mock(MetaData) {
             getFileName() >> FILE_NAME
             getFileType() >> FileType.PDF
         }
 
-        expect:
-        graphQLQueryProvider.mutation(FILE_ID, metaData) ==
-                GraphQLFactory.getGraphQLSchemaResourceAsString(EXPECTED_MUTATION_FILE)
+        when:
+        GraphQLRequest request = graphQLQueryProvider.mutation(FILE_ID, metaData)
+
+        then: "the file ID and the metadata are passed as variables"
+        request.document == GraphQLFactory.getGraphQLSchemaResourceAsString(EXPECTED_MUTATION_FILE)
+        request.variables == [fileId: FILE_ID, fileName: FILE_NAME, fileType: "PDF"]
     }
 
     def "File ID cannot be null for making the Mutation document"() {
@@ -99,4 +112,30 @@ abstract class GraphQLQueryProviderSpec extends Specification {
         then: "runtime error is thrown"
         thrown(NullPointerException)
     }
+
+    @SuppressWarnings("GroovyAccessibility")
+    def "Given many file IDs and their metadata, a single GraphQL Mutation request is provided"() {
+        given: "the metadata of 2 files, in order"
+        Map<String, MetaData> metaDataByFileId = new LinkedHashMap<>()
+        metaDataByFileId.put(FILE_ID, new MetaData(FILE_NAME, FileType.PDF))
+        metaDataByFileId.put("fileId456", new MetaData("emma.txt", FileType.TXT))
+
+        when:
+        GraphQLRequest request = graphQLQueryProvider.mutation(metaDataByFileId)
+
+        then: "every record is passed through variables suffixed by its index"
+        request.document == GraphQLFactory.getGraphQLSchemaResourceAsString(EXPECTED_BATCH_MUTATION_FILE)
+        request.variables == [
+                fileId0: FILE_ID, fileName0: FILE_NAME, fileType0: "PDF",
+                fileId1: "fileId456", fileName1: "emma.txt", fileType1: "TXT"
+        ]
+    }
+
+    def "Metadata map cannot be empty for making the batched Mutation document"() {
+        when:
+        graphQLQueryProvider.mutation([:])
+
+        then:
+        thrown(IllegalArgumentException)
+    }
 }
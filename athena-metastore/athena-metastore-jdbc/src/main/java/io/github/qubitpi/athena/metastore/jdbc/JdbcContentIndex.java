@@ -0,0 +1,375 @@
+/*
+ * Copyright 2024 Jiaqi Liu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.qubitpi.athena.metastore.jdbc;
+
+import static io.github.qubitpi.athena.config.ErrorMessageFormat.CONTENT_INDEX_ERROR;
+
+import io.github.qubitpi.athena.filestore.dedup.ContentIndex;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.validation.constraints.NotNull;
+import net.jcip.annotations.ThreadSafe;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Objects;
+import java.util.Optional;
+
+import jakarta.inject.Inject;
+import javax.sql.DataSource;
+
+/**
+ * {@link JdbcContentIndex} keeps the index of a deduplicating file store in the {@code ATHENA_CONTENT_BLOB} and
+ * {@code ATHENA_CONTENT_REFERENCE} tables of {@link MetaDataSchema}, next to the file metadata.
+ * <p>
+ * The database is shared by all application instances, so a file uploaded through one instance resolves through all
+ * others. Each update maps or unmaps a file ID and adjusts the reference count of its blob in one transaction; the
+ * count is changed with a single {@code UPDATE}, whose row lock serializes concurrent changes to the same blob.
+ * Transactions that the database aborts to break a deadlock are retried.
+ */
+@ThreadSafe
+public class JdbcContentIndex implements ContentIndex {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JdbcContentIndex.class);
+
+    private static final String INSERT_BLOB =
+            "INSERT INTO ATHENA_CONTENT_BLOB (digest, blob_id, reference_count) VALUES (?, ?, 1)";
+    private static final String INCREMENT_REFERENCE_COUNT =
+            "UPDATE ATHENA_CONTENT_BLOB SET reference_count = reference_count + 1 WHERE digest = ?";
+    private static final String DECREMENT_REFERENCE_COUNT =
+            "UPDATE ATHENA_CONTENT_BLOB SET reference_count = reference_count - 1 WHERE digest = ?";
+    private static final String SELECT_BLOB_ID = "SELECT blob_id FROM ATHENA_CONTENT_BLOB WHERE digest = ?";
+    private static final String SELECT_REFERENCE_COUNT =
+            "SELECT reference_count FROM ATHENA_CONTENT_BLOB WHERE digest = ?";
+    private static final String DELETE_BLOB = "DELETE FROM ATHENA_CONTENT_BLOB WHERE digest = ?";
+    private static final String INSERT_REFERENCE =
+            "INSERT INTO ATHENA_CONTENT_REFERENCE (file_id, digest) VALUES (?, ?)";
+    private static final String SELECT_DIGEST = "SELECT digest FROM ATHENA_CONTENT_REFERENCE WHERE file_id = ?";
+    private static final String DELETE_REFERENCE = "DELETE FROM ATHENA_CONTENT_REFERENCE WHERE file_id = ?";
+    private static final String SELECT_BLOB_ID_BY_FILE_ID = "SELECT b.blob_id FROM ATHENA_CONTENT_REFERENCE r "
+            + "JOIN ATHENA_CONTENT_BLOB b ON b.digest = r.digest WHERE r.file_id = ?";
+
+    /**
+     * The SQLSTATE class of integrity constraint violations, such as a duplicate primary key.
+     */
+    private static final String INTEGRITY_CONSTRAINT_VIOLATION = "23";
+
+    /**
+     * The SQLSTATE of a transaction rolled back by the database, e.g. to break a deadlock.
+     */
+    private static final String TRANSACTION_ROLLBACK = "40001";
+
+    private static final int MAX_TRANSACTION_ATTEMPTS = 3;
+
+    private final DataSource dataSource;
+
+    /**
+     * Constructor.
+     * <p>
+     * The schema must have been {@link MetaDataSchema#migrate(DataSource) migrated}.
+     *
+     * @param dataSource  a client object against the SQL database holding the metadata
+     *
+     * @throws NullPointerException if {@code dataSource} is {@code null}
+     */
+    @Inject
+    public JdbcContentIndex(final @NotNull DataSource dataSource) {
+        this.dataSource = Objects.requireNonNull(dataSource);
+    }
+
+    @Override
+    public Optional<String> addReference(final String fileId, final String digest) {
+        Objects.requireNonNull(fileId);
+        Objects.requireNonNull(digest);
+
+        return inTransaction(fileId, connection -> {
+            if (update(connection, INCREMENT_REFERENCE_COUNT, digest) == 0) {
+                return Optional.empty();
+            }
+
+            final Optional<String> blobId = selectString(connection, SELECT_BLOB_ID, digest);
+            update(connection, INSERT_REFERENCE, fileId, digest);
+            return blobId;
+        });
+    }
+
+    @Override
+    public String addBlob(final String fileId, final String digest, final String blobId) {
+        Objects.requireNonNull(fileId);
+        Objects.requireNonNull(digest);
+        Objects.requireNonNull(blobId);
+
+        return inTransaction(fileId, connection -> {
+            String indexedBlobId = null;
+            while (indexedBlobId == null) {
+                if (update(connection, INCREMENT_REFERENCE_COUNT, digest) > 0) {
+                    indexedBlobId = selectString(connection, SELECT_BLOB_ID, digest).orElse(null);
+                } else if (insertBlob(connection, digest, blobId)) {
+                    indexedBlobId = blobId;
+                }
+            }
+
+            update(connection, INSERT_REFERENCE, fileId, digest);
+            return indexedBlobId;
+        });
+    }
+
+    @Override
+    public Optional<String> removeReference(final String fileId) {
+        Objects.requireNonNull(fileId);
+
+        return inTransaction(fileId, connection -> {
+            final Optional<String> digest = selectString(connection, SELECT_DIGEST, fileId);
+            if (digest.isEmpty() || update(connection, DELETE_REFERENCE, fileId) == 0) {
+                return Optional.empty();
+            }
+
+            update(connection, DECREMENT_REFERENCE_COUNT, digest.get());
+            if (selectLong(connection, SELECT_REFERENCE_COUNT, digest.get()) > 0) {
+                return Optional.empty();
+            }
+
+            final Optional<String> blobId = selectString(connection, SELECT_BLOB_ID, digest.get());
+            update(connection, DELETE_BLOB, digest.get());
+            return blobId;
+        });
+    }
+
+    @Override
+    public Optional<String> getBlobId(final String fileId) {
+        Objects.requireNonNull(fileId);
+
+        try (Connection connection = dataSource.getConnection()) {
+            return selectString(connection, SELECT_BLOB_ID_BY_FILE_ID, fileId);
+        } catch (final SQLException exception) {
+            LOG.error(CONTENT_INDEX_ERROR.logFormat(fileId, exception.getMessage()), exception);
+            throw new IllegalStateException(CONTENT_INDEX_ERROR.format(), exception);
+        }
+    }
+
+    @Override
+    public long getReferenceCount(final String digest) {
+        Objects.requireNonNull(digest);
+
+        try (Connection connection = dataSource.getConnection()) {
+            return selectLong(connection, SELECT_REFERENCE_COUNT, digest);
+        } catch (final SQLException exception) {
+            LOG.error(CONTENT_INDEX_ERROR.logFormat(digest, exception.getMessage()), exception);
+            throw new IllegalStateException(CONTENT_INDEX_ERROR.format(), exception);
+        }
+    }
+
+    /**
+     * Runs a unit of work in a single transaction, which is rolled back if any statement fails and retried if the
+     * database rolled it back to break a deadlock.
+     *
+     * @param fileId  The ID of the file the work is about, for error reporting
+     * @param work  The statements to run
+     * @param <T>  The type of the result
+     *
+     * @return the result of the work
+     *
+     * @throws IllegalArgumentException if the work maps a file ID that is already mapped
+     * @throws IllegalStateException if the transaction fails
+     */
+    private <T> T inTransaction(final @NotNull String fileId, final @NotNull Transaction<T> work) {
+        for (int attempt = 1; ; attempt++) {
+            try (Connection connection = dataSource.getConnection()) {
+                final boolean autoCommit = connection.getAutoCommit();
+                connection.setAutoCommit(false);
+                try {
+                    final T result = work.run(connection);
+                    connection.commit();
+                    return result;
+                } catch (final SQLException exception) {
+                    connection.rollback();
+                    throw exception;
+                } finally {
+                    connection.setAutoCommit(autoCommit);
+                }
+            } catch (final SQLException exception) {
+                if (TRANSACTION_ROLLBACK.equals(exception.getSQLState()) && attempt < MAX_TRANSACTION_ATTEMPTS) {
+                    LOG.debug("Retrying the content index transaction of file '{}'", fileId, exception);
+                    continue;
+                }
+                if (isIntegrityConstraintViolation(exception)) {
+                    final String message = String.format("File ID '%s' is already indexed", fileId);
+                    LOG.error(message, exception);
+                    throw new IllegalArgumentException(message, exception);
+                }
+
+                LOG.error(CONTENT_INDEX_ERROR.logFormat(fileId, exception.getMessage()), exception);
+                throw new IllegalStateException(CONTENT_INDEX_ERROR.format(), exception);
+            }
+        }
+    }
+
+    /**
+     * Registers a blob with a reference count of one, unless a blob is already registered for its digest.
+     *
+     * @param connection  The connection of the current transaction
+     * @param digest  The content digest
+     * @param blobId  The ID of the blob holding the content
+     *
+     * @return {@code true} if the blob has been registered, or {@code false} if one had been registered concurrently
+     *
+     * @throws SQLException if the statement fails for another reason
+     */
+    private static boolean insertBlob(
+            final @NotNull Connection connection,
+            final @NotNull String digest,
+            final @NotNull String blobId
+    ) throws SQLException {
+        try {
+            update(connection, INSERT_BLOB, digest, blobId);
+            return true;
+        } catch (final SQLException exception) {
+            if (isIntegrityConstraintViolation(exception)) {
+                return false;
+            }
+            throw exception;
+        }
+    }
+
+    /**
+     * Runs a data manipulation statement.
+     *
+     * @param connection  An open connection
+     * @param sql  The statement
+     * @param parameters  The string parameters of the statement, in order
+     *
+     * @return the number of affected rows
+     *
+     * @throws SQLException if the statement fails
+     */
+    private static int update(
+            final @NotNull Connection connection,
+            final @NotNull String sql,
+            final String... parameters
+    ) throws SQLException {
+        try (PreparedStatement statement = prepare(connection, sql, parameters)) {
+            return statement.executeUpdate();
+        }
+    }
+
+    /**
+     * Runs a query selecting a single string column of at most one row.
+     *
+     * @param connection  An open connection
+     * @param sql  The query
+     * @param parameter  The only parameter of the query
+     *
+     * @return the selected value or an empty value if no row matches
+     *
+     * @throws SQLException if the query fails
+     */
+    @NotNull
+    private static Optional<String> selectString(
+            final @NotNull Connection connection,
+            final @NotNull String sql,
+            final @NotNull String parameter
+    ) throws SQLException {
+        try (
+                PreparedStatement statement = prepare(connection, sql, parameter);
+                ResultSet resultSet = statement.executeQuery()
+        ) {
+            return resultSet.next() ? Optional.of(resultSet.getString(1)) : Optional.empty();
+        }
+    }
+
+    /**
+     * Runs a query selecting a single numeric column of at most one row.
+     *
+     * @param connection  An open connection
+     * @param sql  The query
+     * @param parameter  The only parameter of the query
+     *
+     * @return the selected value or {@code 0} if no row matches
+     *
+     * @throws SQLException if the query fails
+     */
+    private static long selectLong(
+            final @NotNull Connection connection,
+            final @NotNull String sql,
+            final @NotNull String parameter
+    ) throws SQLException {
+        try (
+                PreparedStatement statement = prepare(connection, sql, parameter);
+                ResultSet resultSet = statement.executeQuery()
+        ) {
+            return resultSet.next() ? resultSet.getLong(1) : 0;
+        }
+    }
+
+    /**
+     * Prepares a statement and binds its string parameters.
+     *
+     * @param connection  An open connection
+     * @param sql  The statement
+     * @param parameters  The string parameters of the statement, in order
+     *
+     * @return the prepared statement, which the caller closes
+     *
+     * @throws SQLException if the statement cannot be prepared
+     */
+    @NotNull
+    private static PreparedStatement prepare(
+            final @NotNull Connection connection,
+            final @NotNull String sql,
+            final String... parameters
+    ) throws SQLException {
+        final PreparedStatement statement = connection.prepareStatement(sql);
+        for (int index = 0; index < parameters.length; index++) {
+            statement.setString(index + 1, parameters[index]);
+        }
+        return statement;
+    }
+
+    /**
+     * Returns whether a statement failed on a constraint, such as a duplicate primary key.
+     *
+     * @param exception  The failure
+     *
+     * @return {@code true} if the SQLSTATE of the failure is of the integrity constraint violation class
+     */
+    private static boolean isIntegrityConstraintViolation(final @NotNull SQLException exception) {
+        return exception.getSQLState() != null && exception.getSQLState().startsWith(INTEGRITY_CONSTRAINT_VIOLATION);
+    }
+
+    /**
+     * A unit of work that runs in a single transaction.
+     *
+     * @param <T>  The type of the result
+     */
+    @FunctionalInterface
+    private interface Transaction<T> {
+
+        /**
+         * Runs the statements of the transaction.
+         *
+         * @param connection  The connection of the transaction, with auto-commit disabled
+         *
+         * @return the result of the work
+         *
+         * @throws SQLException if any statement fails
+         */
+        T run(@NotNull Connection connection) throws SQLException;
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2024 Jiaqi Liu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.qubitpi.athena.metastore.jdbc;
+
+import static io.github.qubitpi.athena.config.ErrorMessageFormat.ENCODING_INDEX_ERROR;
+
+import io.github.qubitpi.athena.filestore.compression.EncodingIndex;
+import io.github.qubitpi.athena.filestore.compression.FileEncoding;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.validation.constraints.NotNull;
+import net.jcip.annotations.ThreadSafe;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Objects;
+import java.util.Optional;
+
+import jakarta.inject.Inject;
+import javax.sql.DataSource;
+
+/**
+ * {@link JdbcEncodingIndex} keeps the index of a compressing file store in the {@code ATHENA_FILE_ENCODING} table of
+ * {@link MetaDataSchema}, next to the file metadata.
+ * <p>
+ * The database is shared by all application instances, so a file compressed by one instance is decoded by all others.
+ * Each method runs a single statement.
+ */
+@ThreadSafe
+public class JdbcEncodingIndex implements EncodingIndex {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JdbcEncodingIndex.class);
+
+    private static final String INSERT_ENCODING =
+            "INSERT INTO ATHENA_FILE_ENCODING (file_id, content_coding, file_size) VALUES (?, ?, ?)";
+    private static final String SELECT_ENCODING =
+            "SELECT content_coding, file_size FROM ATHENA_FILE_ENCODING WHERE file_id = ?";
+    private static final String DELETE_ENCODING = "DELETE FROM ATHENA_FILE_ENCODING WHERE file_id = ?";
+
+    /**
+     * The SQLSTATE class of integrity constraint violations, such as a duplicate primary key.
+     */
+    private static final String INTEGRITY_CONSTRAINT_VIOLATION = "23";
+
+    private final DataSource dataSource;
+
+    /**
+     * Constructor.
+     * <p>
+     * The schema must have been {@link MetaDataSchema#migrate(DataSource) migrated}.
+     *
+     * @param dataSource  a client object against the SQL database holding the metadata
+     *
+     * @throws NullPointerException if {@code dataSource} is {@code null}
+     */
+    @Inject
+    public JdbcEncodingIndex(final @NotNull DataSource dataSource) {
+        this.dataSource = Objects.requireNonNull(dataSource);
+    }
+
+    @Override
+    public void addEncoding(final String fileId, final FileEncoding encoding) {
+        Objects.requireNonNull(fileId);
+        Objects.requireNonNull(encoding);
+
+        try (
+                Connection connection = dataSource.getConnection();
+                PreparedStatement statement = connection.prepareStatement(INSERT_ENCODING)
+        ) {
+            statement.setString(1, fileId);
+            statement.setString(2, encoding.getContentCoding());
+            statement.setLong(3, encoding.getSize());
+            statement.executeUpdate();
+        } catch (final SQLException exception) {
+            if (exception.getSQLState() != null
+                    && exception.getSQLState().startsWith(INTEGRITY_CONSTRAINT_VIOLATION)) {
+                final String message = String.format("File ID '%s' is already indexed", fileId);
+                LOG.error(message, exception);
+                throw new IllegalArgumentException(message, exception);
+            }
+
+            LOG.error(ENCODING_INDEX_ERROR.logFormat(fileId, exception.getMessage()), exception);
+            throw new IllegalStateException(ENCODING_INDEX_ERROR.format(), exception);
+        }
+    }
+
+    @Override
+    public Optional<FileEncoding> getEncoding(final String fileId) {
+        Objects.requireNonNull(fileId);
+
+        try (
+                Connection connection = dataSource.getConnection();
+                PreparedStatement statement = connection.prepareStatement(SELECT_ENCODING)
+        ) {
+            statement.setString(1, fileId);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next()
+                        ? Optional.of(new FileEncoding(resultSet.getString(1), resultSet.getLong(2)))
+                        : Optional.empty();
+            }
+        } catch (final SQLException exception) {
+            LOG.error(ENCODING_INDEX_ERROR.logFormat(fileId, exception.getMessage()), exception);
+            throw new IllegalStateException(ENCODING_INDEX_ERROR.format(), exception);
+        }
+    }
+
+    @Override
+    public boolean removeEncoding(final String fileId) {
+        Objects.requireNonNull(fileId);
+
+        try (
+                Connection connection = dataSource.getConnection();
+                PreparedStatement statement = connection.prepareStatement(DELETE_ENCODING)
+        ) {
+            statement.setString(1, fileId);
+            return statement.executeUpdate() > 0;
+        } catch (final SQLException exception) {
+            LOG.error(ENCODING_INDEX_ERROR.logFormat(fileId, exception.getMessage()), exception);
+            throw new IllegalStateException(ENCODING_INDEX_ERROR.format(), exception);
+        }
+    }
+}
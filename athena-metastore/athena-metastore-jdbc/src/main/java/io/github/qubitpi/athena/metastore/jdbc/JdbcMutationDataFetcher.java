@@ -0,0 +1,186 @@
+/*
+ * Copyright 2024 Jiaqi Liu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.qubitpi.athena.metastore.jdbc;
+
+import io.github.qubitpi.athena.metadata.MetaData;
+import io.github.qubitpi.athena.metastore.graphql.BatchMutationDataFetcher;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import graphql.schema.DataFetchingEnvironment;
+import jakarta.validation.constraints.NotNull;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.AbstractMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import jakarta.inject.Inject;
+import javax.sql.DataSource;
+
+/**
+ * {@link JdbcMutationDataFetcher} saves file meta data into the {@code ATHENA_META_DATA} table of
+ * {@link MetaDataSchema} via a {@link DataSource}.
+ * <p>
+ * Metadata is upserted in the {@link SqlDialect} of the database, which is told from the first connection, so that
+ * saving the metadata of a file again overwrites it. The metadata of many files is saved as a single JDBC batch in one
+ * transaction, on the executor given at construction.
+ */
+public class JdbcMutationDataFetcher implements BatchMutationDataFetcher {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JdbcMutationDataFetcher.class);
+
+    private static final String FILE_ID = "fileId";
+
+    private final DataSource dataSource;
+    private final Executor executor;
+
+    private volatile SqlDialect dialect;
+
+    /**
+     * Constructor that runs batch saves on the calling thread.
+     *
+     * @param dataSource  a client object against a SQL database to save meta data into
+     *
+     * @throws NullPointerException if {@code dataSource} is {@code null}
+     */
+    @Inject
+    public JdbcMutationDataFetcher(final DataSource dataSource) {
+        this(dataSource, Runnable::run);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param dataSource  a client object against a SQL database to save meta data into
+     * @param executor  The executor on which batch saves run
+     *
+     * @throws NullPointerException if any argument is {@code null}
+     */
+    public JdbcMutationDataFetcher(final DataSource dataSource, final Executor executor) {
+        this.dataSource = Objects.requireNonNull(dataSource);
+        this.executor = Objects.requireNonNull(executor);
+    }
+
+    @Override
+    public MetaData get(final DataFetchingEnvironment dataFetchingEnvironment) throws Exception {
+        final String fileId = dataFetchingEnvironment.getArgument(FILE_ID);
+        final String fileName = dataFetchingEnvironment.getArgument(MetaData.FILE_NAME);
+        final String fileType = dataFetchingEnvironment.getArgument(MetaData.FILE_TYPE);
+
+        try (Connection connection = dataSource.getConnection()) {
+            final SqlDialect sqlDialect = getDialect(connection);
+            try (PreparedStatement statement = connection.prepareStatement(sqlDialect.getUpsertStatement())) {
+                sqlDialect.bindUpsert(statement, fileId, fileName, fileType);
+                statement.executeUpdate();
+            }
+        }
+
+        return MetaData.of(
+                Stream.of(
+                        new AbstractMap.SimpleImmutableEntry<>(MetaData.FILE_NAME, fileName),
+                        new AbstractMap.SimpleImmutableEntry<>(MetaData.FILE_TYPE, fileType)
+                ).collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue))
+        );
+    }
+
+    @Override
+    public CompletionStage<Void> saveMetaData(final Map<String, MetaData> metaDataByFileId) {
+        if (Objects.requireNonNull(metaDataByFileId).isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        try {
+            return CompletableFuture.runAsync(
+                    () -> {
+                        try {
+                            save(metaDataByFileId);
+                        } catch (final SQLException exception) {
+                            LOG.error("Failed to save the metadata of files {}", metaDataByFileId.keySet(), exception);
+                            throw new CompletionException(exception);
+                        }
+                    },
+                    executor
+            );
+        } catch (final RejectedExecutionException exception) {
+            return CompletableFuture.failedFuture(exception);
+        }
+    }
+
+    /**
+     * Saves the metadata of a set of files as one JDBC batch in a single transaction, which is rolled back if any
+     * statement fails.
+     *
+     * @param metaDataByFileId  The metadata to save, keyed by file ID
+     *
+     * @throws SQLException if the batch fails
+     */
+    private void save(final Map<String, MetaData> metaDataByFileId) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            final SqlDialect sqlDialect = getDialect(connection);
+            final boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement(sqlDialect.getUpsertStatement())) {
+                for (final Map.Entry<String, MetaData> entry : metaDataByFileId.entrySet()) {
+                    sqlDialect.bindUpsert(
+                            statement,
+                            entry.getKey(),
+                            entry.getValue().getFileName(),
+                            entry.getValue().getFileType().name()
+                    );
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+                connection.commit();
+            } catch (final SQLException exception) {
+                connection.rollback();
+                throw exception;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    /**
+     * Returns the dialect of the metadata database, telling it from a connection the first time.
+     * <p>
+     * Concurrent first calls may tell the dialect more than once, which is harmless since they tell the same one.
+     *
+     * @param connection  An open connection to the metadata database
+     *
+     * @return the dialect in which statements are written
+     *
+     * @throws SQLException if the database cannot be told
+     * @throws IllegalStateException if the database is not supported
+     */
+    @NotNull
+    private SqlDialect getDialect(final @NotNull Connection connection) throws SQLException {
+        if (dialect == null) {
+            dialect = SqlDialect.of(connection);
+        }
+        return dialect;
+    }
+}
@@ -0,0 +1,320 @@
+/*
+ * Copyright 2024 Jiaqi Liu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.qubitpi.athena.metastore.jdbc;
+
+import static io.github.qubitpi.athena.config.ErrorMessageFormat.META_DATA_NOT_FOUND;
+
+import io.github.qubitpi.athena.metadata.FileType;
+import io.github.qubitpi.athena.metadata.MetaData;
+import io.github.qubitpi.athena.metastore.graphql.BatchQueryDataFetcher;
+import io.github.qubitpi.athena.metastore.graphql.PagingQueryDataFetcher;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import graphql.schema.DataFetchingEnvironment;
+import jakarta.validation.constraints.NotNull;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import jakarta.inject.Inject;
+import javax.sql.DataSource;
+
+/**
+ * {@link JdbcQueryDataFetcher} fetches file meta data from the {@code ATHENA_META_DATA} table of
+ * {@link MetaDataSchema} via a {@link DataSource}.
+ * <p>
+ * The metadata of many files is fetched with a single {@code WHERE file_id IN (...)} query on one connection. The query
+ * runs on the executor given at construction, so that the GraphQL execution waiting for it does not hold a request
+ * thread. The {@code IN} list is padded to the next power of two, repeating the last file ID, so that batches of any
+ * size are served by a handful of distinct statements that a pooling {@link DataSource} or the database can keep
+ * prepared.
+ * <p>
+ * Files are listed with keyset pagination: a page is a range scan of the index on {@code file_id}, or on
+ * {@code (file_type, file_id)} when filtered by type, that starts right after the last file of the previous page, so
+ * that any page costs as much as the first one. A whole page is read in one round trip.
+ */
+public class JdbcQueryDataFetcher implements BatchQueryDataFetcher, PagingQueryDataFetcher {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JdbcQueryDataFetcher.class);
+
+    private static final String FILE_ID = "fileId";
+    private static final String FILE_ID_COLUMN = "file_id";
+    private static final String FILE_NAME_COLUMN = "file_name";
+    private static final String FILE_TYPE_COLUMN = "file_type";
+    private static final String META_DATA_FETCH_QUERY_TEMPLATE
+            = "SELECT file_name, file_type FROM ATHENA_META_DATA WHERE file_id = ?";
+    private static final String META_DATA_BATCH_FETCH_QUERY_TEMPLATE
+            = "SELECT file_id, file_name, file_type FROM ATHENA_META_DATA WHERE file_id IN (%s)";
+
+    /**
+     * The largest padded {@code IN} list; larger batches are queried with as many parameters as file IDs.
+     */
+    private static final int MAX_PADDED_BATCH_SIZE = 512;
+
+    private static final String META_DATA_LIST_QUERY_TEMPLATE
+            = "SELECT file_id, file_name, file_type FROM ATHENA_META_DATA%s ORDER BY file_id";
+    private static final String AFTER_FILE_ID_CONDITION = "file_id > ?";
+    private static final String FILE_TYPE_CONDITION = "file_type = ?";
+
+    private final DataSource dataSource;
+    private final Executor executor;
+
+    /**
+     * Constructor that runs batch queries on the calling thread.
+     *
+     * @param dataSource  a client object against a SQL database to fetch meta data from
+     *
+     * @throws NullPointerException if {@code dataSource} is {@code null}
+     */
+    @Inject
+    public JdbcQueryDataFetcher(final @NotNull DataSource dataSource) {
+        this(dataSource, Runnable::run);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param dataSource  a client object against a SQL database to fetch meta data from
+     * @param executor  The executor on which batch queries run
+     *
+     * @throws NullPointerException if any argument is {@code null}
+     */
+    public JdbcQueryDataFetcher(final @NotNull DataSource dataSource, final @NotNull Executor executor) {
+        this.dataSource = Objects.requireNonNull(dataSource);
+        this.executor = Objects.requireNonNull(executor);
+    }
+
+    @Override
+    public MetaData get(final DataFetchingEnvironment dataFetchingEnvironment) throws Exception {
+        final String fileId = dataFetchingEnvironment.getArgument(FILE_ID);
+        final ResultSet resultSet;
+        try (
+                Connection connection = dataSource.getConnection();
+                PreparedStatement statement = connection.prepareStatement(META_DATA_FETCH_QUERY_TEMPLATE)
+        ) {
+            statement.setString(1, fileId);
+            resultSet = statement.executeQuery();
+
+            if (!resultSet.next()) {
+                resultSet.close();
+                LOG.error(META_DATA_NOT_FOUND.logFormat(fileId));
+                throw new IllegalStateException(META_DATA_NOT_FOUND.format(fileId));
+            }
+
+            final MetaData metaData = toMetaData(resultSet);
+
+            resultSet.close();
+
+            return metaData;
+        }
+    }
+
+    @Override
+    public CompletionStage<Map<String, MetaData>> getMetaData(final Set<String> fileIds) {
+        if (Objects.requireNonNull(fileIds).isEmpty()) {
+            return CompletableFuture.completedFuture(Collections.emptyMap());
+        }
+
+        try {
+            return CompletableFuture.supplyAsync(
+                    () -> {
+                        try {
+                            return fetch(fileIds);
+                        } catch (final SQLException exception) {
+                            LOG.error("Failed to fetch the metadata of files {}", fileIds, exception);
+                            throw new CompletionException(exception);
+                        }
+                    },
+                    executor
+            );
+        } catch (final RejectedExecutionException exception) {
+            return CompletableFuture.failedFuture(exception);
+        }
+    }
+
+    @Override
+    public CompletionStage<Map<String, MetaData>> listMetaData(
+            final String afterFileId,
+            final FileType fileType,
+            final int limit
+    ) {
+        try {
+            return CompletableFuture.supplyAsync(
+                    () -> {
+                        try {
+                            return list(afterFileId, fileType, limit);
+                        } catch (final SQLException exception) {
+                            LOG.error("Failed to list the metadata of files after '{}'", afterFileId, exception);
+                            throw new CompletionException(exception);
+                        }
+                    },
+                    executor
+            );
+        } catch (final RejectedExecutionException exception) {
+            return CompletableFuture.failedFuture(exception);
+        }
+    }
+
+    /**
+     * Fetches the metadata of a set of files with a single query.
+     *
+     * @param fileIds  The IDs of the files, not empty
+     *
+     * @return the metadata of each found file, keyed by file ID
+     *
+     * @throws SQLException if the query fails
+     */
+    @NotNull
+    private Map<String, MetaData> fetch(final @NotNull Set<String> fileIds) throws SQLException {
+        final int parameterCount = getPaddedBatchSize(fileIds.size());
+        final String query = String.format(
+                META_DATA_BATCH_FETCH_QUERY_TEMPLATE,
+                String.join(", ", Collections.nCopies(parameterCount, "?"))
+        );
+        try (
+                Connection connection = dataSource.getConnection();
+                PreparedStatement statement = connection.prepareStatement(query)
+        ) {
+            int parameterIndex = 1;
+            String lastFileId = null;
+            for (final String fileId : fileIds) {
+                statement.setString(parameterIndex++, fileId);
+                lastFileId = fileId;
+            }
+            while (parameterIndex <= parameterCount) {
+                statement.setString(parameterIndex++, lastFileId);
+            }
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                final Map<String, MetaData> metaDataByFileId = new HashMap<>();
+                while (resultSet.next()) {
+                    metaDataByFileId.put(resultSet.getString(FILE_ID_COLUMN), toMetaData(resultSet));
+                }
+                return metaDataByFileId;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of parameters of the {@code IN} list that looks up a batch of files.
+     *
+     * @param batchSize  The number of files in the batch, positive
+     *
+     * @return the smallest power of two that is not less than {@code batchSize}, or {@code batchSize} itself if it is
+     * larger than {@link #MAX_PADDED_BATCH_SIZE}
+     */
+    private static int getPaddedBatchSize(final int batchSize) {
+        if (batchSize > MAX_PADDED_BATCH_SIZE) {
+            return batchSize;
+        }
+        return batchSize == 1 ? 1 : Integer.highestOneBit(batchSize - 1) << 1;
+    }
+
+    /**
+     * Lists a page of metadata with a single query that seeks past the previous page instead of skipping it.
+     *
+     * @param afterFileId  The ID of the last file of the previous page, or {@code null} for the first page
+     * @param fileType  The type of the files to list, or {@code null} for any type
+     * @param limit  The max number of files to list
+     *
+     * @return the metadata of the listed files, in the order of their IDs
+     *
+     * @throws SQLException if the query fails
+     */
+    @NotNull
+    private Map<String, MetaData> list(final String afterFileId, final FileType fileType, final int limit)
+            throws SQLException {
+        final List<String> conditions = new ArrayList<>(2);
+        final List<String> parameters = new ArrayList<>(2);
+        if (afterFileId != null) {
+            conditions.add(AFTER_FILE_ID_CONDITION);
+            parameters.add(afterFileId);
+        }
+        if (fileType != null) {
+            conditions.add(FILE_TYPE_CONDITION);
+            parameters.add(fileType.name());
+        }
+
+        final String query = String.format(
+                META_DATA_LIST_QUERY_TEMPLATE,
+                conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions)
+        );
+        try (
+                Connection connection = dataSource.getConnection();
+                PreparedStatement statement = connection.prepareStatement(query)
+        ) {
+            for (int index = 0; index < parameters.size(); index++) {
+                statement.setString(index + 1, parameters.get(index));
+            }
+            // stop the scan at the end of the page and read the whole page in one round trip
+            statement.setMaxRows(limit);
+            statement.setFetchSize(limit);
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                final Map<String, MetaData> metaDataByFileId = new LinkedHashMap<>();
+                while (resultSet.next()) {
+                    metaDataByFileId.put(resultSet.getString(FILE_ID_COLUMN), toMetaData(resultSet));
+                }
+                return metaDataByFileId;
+            }
+        }
+    }
+
+    /**
+     * Reads the metadata in the current row of a result set.
+     *
+     * @param resultSet  A result set positioned on a row of {@code ATHENA_META_DATA}
+     *
+     * @return a new metadata object
+     *
+     * @throws SQLException if a column cannot be read
+     */
+    @NotNull
+    private static MetaData toMetaData(final @NotNull ResultSet resultSet) throws SQLException {
+        return MetaData.of(
+                Stream.of(
+                        new AbstractMap.SimpleImmutableEntry<>(
+                                MetaData.FILE_NAME,
+                                resultSet.getString(FILE_NAME_COLUMN)
+                        ),
+                        new AbstractMap.SimpleImmutableEntry<>(
+                                MetaData.FILE_TYPE,
+                                resultSet.getString(FILE_TYPE_COLUMN)
+                        )
+                ).collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue))
+        );
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2024 Jiaqi Liu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.qubitpi.athena.metastore.jdbc;
+
+import org.flywaydb.core.Flyway;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.validation.constraints.NotNull;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Objects;
+
+import javax.sql.DataSource;
+
+/**
+ * {@link MetaDataSchema} creates and upgrades the tables that {@link JdbcQueryDataFetcher},
+ * {@link JdbcMutationDataFetcher}, {@link JdbcContentIndex}, and {@link JdbcEncodingIndex} work on.
+ * <p>
+ * The schema is defined by versioned Flyway migrations, one set per {@link SqlDialect}. It consists of the
+ * {@code ATHENA_META_DATA} table, keyed by {@code file_id}, and an index on {@code (file_type, file_id)} for listings
+ * filtered by type, as well as the {@code ATHENA_CONTENT_BLOB} and {@code ATHENA_CONTENT_REFERENCE} tables of the
+ * content index and the {@code ATHENA_FILE_ENCODING} table of the encoding index. Applied migrations are recorded in
+ * their own {@value #HISTORY_TABLE} table, so that the schema can share a database with the migrations of an
+ * application.
+ */
+public final class MetaDataSchema {
+
+    /**
+     * The table in which applied schema migrations are recorded.
+     */
+    public static final String HISTORY_TABLE = "athena_schema_history";
+
+    private static final Logger LOG = LoggerFactory.getLogger(MetaDataSchema.class);
+
+    /**
+     * Constructor.
+     * <p>
+     * Suppress default constructor for noninstantiability.
+     *
+     * @throws AssertionError when called
+     */
+    private MetaDataSchema() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Applies the schema migrations that a database does not have yet.
+     *
+     * @param dataSource  The database holding the metadata
+     *
+     * @return the number of applied migrations
+     *
+     * @throws NullPointerException if {@code dataSource} is {@code null}
+     * @throws SQLException if the database cannot be told
+     * @throws IllegalStateException if the database is not supported
+     * @throws org.flywaydb.core.api.FlywayException if a migration fails
+     */
+    public static int migrate(final @NotNull DataSource dataSource) throws SQLException {
+        final SqlDialect dialect;
+        try (Connection connection = Objects.requireNonNull(dataSource).getConnection()) {
+            dialect = SqlDialect.of(connection);
+        }
+
+        final Flyway flyway = new Flyway();
+        flyway.setDataSource(dataSource);
+        flyway.setLocations(dialect.getMigrationLocation());
+        flyway.setTable(HISTORY_TABLE);
+        flyway.setClassLoader(MetaDataSchema.class.getClassLoader());
+
+        final int applied = flyway.migrate();
+        LOG.info("Applied {} {} metadata schema migration(s)", applied, dialect);
+        return applied;
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2024 Jiaqi Liu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.qubitpi.athena.metastore.jdbc;
+
+import static io.github.qubitpi.athena.config.ErrorMessageFormat.UNSUPPORTED_DATABASE;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.validation.constraints.NotNull;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * The SQL databases that {@link MetaDataSchema} supports, together with what differs between them.
+ * <p>
+ * Metadata is saved with an upsert, so that saving the metadata of a file again overwrites it instead of failing on
+ * the unique index on {@code file_id}. Each dialect writes it in its own syntax, taking the file ID, file name and
+ * file type, in this order, as many times as {@link #getUpsertRepetitions()}.
+ */
+public enum SqlDialect {
+
+    /**
+     * MySQL, which upserts through {@code ON DUPLICATE KEY UPDATE}.
+     */
+    MYSQL(
+            "MySQL",
+            "mysql",
+            "INSERT INTO ATHENA_META_DATA (file_id, file_name, file_type) VALUES (?, ?, ?) "
+                    + "ON DUPLICATE KEY UPDATE file_name = VALUES(file_name), file_type = VALUES(file_type)",
+            1
+    ),
+
+    /**
+     * Apache Derby, which upserts through a {@code MERGE} against a one-row system table.
+     */
+    DERBY(
+            "Apache Derby",
+            "derby",
+            "MERGE INTO ATHENA_META_DATA USING SYSIBM.SYSDUMMY1 ON ATHENA_META_DATA.file_id = ? "
+                    + "WHEN MATCHED THEN UPDATE SET file_name = ?, file_type = ? "
+                    + "WHEN NOT MATCHED THEN INSERT (file_id, file_name, file_type) VALUES (?, ?, ?)",
+            2
+    ),
+
+    /**
+     * H2, which upserts through {@code MERGE ... KEY}.
+     */
+    H2(
+            "H2",
+            "h2",
+            "MERGE INTO ATHENA_META_DATA (file_id, file_name, file_type) KEY (file_id) VALUES (?, ?, ?)",
+            1
+    );
+
+    private static final Logger LOG = LoggerFactory.getLogger(SqlDialect.class);
+
+    private final String productName;
+    private final String migrationDirectory;
+    private final String upsertStatement;
+    private final int upsertRepetitions;
+
+    /**
+     * Constructor.
+     *
+     * @param productName  The database product name reported by the JDBC driver
+     * @param migrationDirectory  The name of the directory holding the schema migrations of this dialect
+     * @param upsertStatement  The statement that inserts or overwrites the metadata of a file
+     * @param upsertRepetitions  The number of times the upsert statement takes the file ID, file name and file type
+     */
+    SqlDialect(
+            final @NotNull String productName,
+            final @NotNull String migrationDirectory,
+            final @NotNull String upsertStatement,
+            final int upsertRepetitions
+    ) {
+        this.productName = productName;
+        this.migrationDirectory = migrationDirectory;
+        this.upsertStatement = upsertStatement;
+        this.upsertRepetitions = upsertRepetitions;
+    }
+
+    /**
+     * Returns the dialect of the database a connection is connected to.
+     *
+     * @param connection  An open connection
+     *
+     * @return the dialect of the database
+     *
+     * @throws SQLException if the database cannot be told
+     * @throws IllegalStateException if the database is not supported
+     */
+    @NotNull
+    public static SqlDialect of(final @NotNull Connection connection) throws SQLException {
+        final String productName = Objects.requireNonNull(connection).getMetaData().getDatabaseProductName();
+        return Arrays.stream(values())
+                .filter(dialect -> dialect.productName.equals(productName))
+                .findFirst()
+                .orElseThrow(() -> {
+                    LOG.error(UNSUPPORTED_DATABASE.logFormat(productName, Arrays.toString(values())));
+                    return new IllegalStateException(UNSUPPORTED_DATABASE.format());
+                });
+    }
+
+    /**
+     * Returns the Flyway location of the schema migrations of this dialect.
+     *
+     * @return a classpath location
+     */
+    @NotNull
+    public String getMigrationLocation() {
+        return "classpath:db/migration/athena/" + migrationDirectory;
+    }
+
+    /**
+     * Returns the statement that inserts the metadata of a file, or overwrites it if the file already has metadata.
+     *
+     * @return a statement to be bound by {@link #bindUpsert(PreparedStatement, String, String, String)}
+     */
+    @NotNull
+    public String getUpsertStatement() {
+        return upsertStatement;
+    }
+
+    /**
+     * Returns the number of times the {@link #getUpsertStatement() upsert statement} takes the file ID, file name and
+     * file type.
+     *
+     * @return 1 or more
+     */
+    public int getUpsertRepetitions() {
+        return upsertRepetitions;
+    }
+
+    /**
+     * Sets the parameters of a prepared {@link #getUpsertStatement() upsert statement}.
+     *
+     * @param statement  The prepared upsert statement
+     * @param fileId  The ID of the file
+     * @param fileName  The name of the file
+     * @param fileType  The type of the file
+     *
+     * @throws SQLException if a parameter cannot be set
+     */
+    public void bindUpsert(
+            final @NotNull PreparedStatement statement,
+            final @NotNull String fileId,
+            final @NotNull String fileName,
+            final @NotNull String fileType
+    ) throws SQLException {
+        for (int repetition = 0; repetition < upsertRepetitions; repetition++) {
+            statement.setString(3 * repetition + 1, fileId);
+            statement.setString(3 * repetition + 2, fileName);
+            statement.setString(3 * repetition + 3, fileType);
+        }
+    }
+}
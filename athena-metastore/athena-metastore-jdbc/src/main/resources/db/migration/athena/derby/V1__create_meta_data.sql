@@ -12,16 +12,13 @@
 -- See the License for the specific language governing permissions and
 -- limitations under the License.
 
--- Define Schemas
-CREATE TABLE BOOK_META_DATA (
-    id        BIGINT NOT NULL generated always as identity ( start with 1, increment by 1 ),
+-- One row per file; the primary key is the unique index on file_id that all lookups and saves go through
+CREATE TABLE ATHENA_META_DATA (
     file_id   VARCHAR(255) NOT NULL,
     file_name VARCHAR(255) NOT NULL,
     file_type VARCHAR(8)   NOT NULL,
-    PRIMARY KEY (id)
+    CONSTRAINT ATHENA_META_DATA_PK PRIMARY KEY (file_id)
 );
 
--- Predefined test data
-INSERT INTO BOOK_META_DATA (file_id, file_name, file_type) VALUES ('1', 'Harry Potter', 'PDF');
-INSERT INTO BOOK_META_DATA (file_id, file_name, file_type) VALUES ('2', 'Moby Dick', 'PDF');
-INSERT INTO BOOK_META_DATA (file_id, file_name, file_type) VALUES ('3', 'Interview with the vampire', 'PDF');
+-- Backs the keyset pagination of listings filtered by file type
+CREATE INDEX ATHENA_META_DATA_FILE_TYPE ON ATHENA_META_DATA (file_type, file_id);
@@ -0,0 +1,24 @@
+-- Copyright 2024 Jiaqi Liu
+--
+-- Licensed under the Apache License, Version 2.0 (the "License");
+-- you may not use this file except in compliance with the License.
+-- You may obtain a copy of the License at
+--
+--     http://www.apache.org/licenses/LICENSE-2.0
+--
+-- Unless required by applicable law or agreed to in writing, software
+-- distributed under the License is distributed on an "AS IS" BASIS,
+-- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+-- See the License for the specific language governing permissions and
+-- limitations under the License.
+
+-- One row per file; the primary key is the unique index on file_id that all lookups and saves go through
+CREATE TABLE ATHENA_META_DATA (
+    file_id   VARCHAR(255) NOT NULL,
+    file_name VARCHAR(255) NOT NULL,
+    file_type VARCHAR(8)   NOT NULL,
+    CONSTRAINT ATHENA_META_DATA_PK PRIMARY KEY (file_id)
+);
+
+-- Backs the keyset pagination of listings filtered by file type
+CREATE INDEX ATHENA_META_DATA_FILE_TYPE ON ATHENA_META_DATA (file_type, file_id);
@@ -0,0 +1,22 @@
+-- Copyright 2024 Jiaqi Liu
+--
+-- Licensed under the Apache License, Version 2.0 (the "License");
+-- you may not use this file except in compliance with the License.
+-- You may obtain a copy of the License at
+--
+--     http://www.apache.org/licenses/LICENSE-2.0
+--
+-- Unless required by applicable law or agreed to in writing, software
+-- distributed under the License is distributed on an "AS IS" BASIS,
+-- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+-- See the License for the specific language governing permissions and
+-- limitations under the License.
+
+-- One row per file stored compressed by a compressing file store, with the content coding of the stored bytes and the
+-- size of the file once decoded
+CREATE TABLE ATHENA_FILE_ENCODING (
+    file_id        VARCHAR(255) NOT NULL,
+    content_coding VARCHAR(32)  NOT NULL,
+    file_size      BIGINT       NOT NULL,
+    CONSTRAINT ATHENA_FILE_ENCODING_PK PRIMARY KEY (file_id)
+);
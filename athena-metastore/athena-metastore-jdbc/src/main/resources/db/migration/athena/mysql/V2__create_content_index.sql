@@ -0,0 +1,29 @@
+-- Copyright 2024 Jiaqi Liu
+--
+-- Licensed under the Apache License, Version 2.0 (the "License");
+-- you may not use this file except in compliance with the License.
+-- You may obtain a copy of the License at
+--
+--     http://www.apache.org/licenses/LICENSE-2.0
+--
+-- Unless required by applicable law or agreed to in writing, software
+-- distributed under the License is distributed on an "AS IS" BASIS,
+-- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+-- See the License for the specific language governing permissions and
+-- limitations under the License.
+
+-- One row per distinct file content stored by a deduplicating file store, together with the number of file IDs sharing
+-- it. Reference counts are incremented and decremented in the same transaction as the rows below
+CREATE TABLE ATHENA_CONTENT_BLOB (
+    digest          VARCHAR(80)  NOT NULL,
+    blob_id         VARCHAR(255) NOT NULL,
+    reference_count BIGINT       NOT NULL,
+    CONSTRAINT ATHENA_CONTENT_BLOB_PK PRIMARY KEY (digest)
+) ENGINE = InnoDB;
+
+-- One row per deduplicated file, pointing at the content it shares
+CREATE TABLE ATHENA_CONTENT_REFERENCE (
+    file_id VARCHAR(255) NOT NULL,
+    digest  VARCHAR(80)  NOT NULL,
+    CONSTRAINT ATHENA_CONTENT_REFERENCE_PK PRIMARY KEY (file_id)
+) ENGINE = InnoDB;
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2024 Jiaqi Liu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.qubitpi.athena.metastore.jdbc
+
+import io.github.qubitpi.athena.file.File
+import io.github.qubitpi.athena.file.identifier.FileIdGenerator
+import io.github.qubitpi.athena.filestore.FileStore
+import io.github.qubitpi.athena.filestore.dedup.DeduplicatingFileStore
+import io.github.qubitpi.athena.metadata.FileType
+import io.github.qubitpi.athena.metadata.MetaData
+
+import org.apache.derby.jdbc.EmbeddedDataSource
+
+import spock.lang.Specification
+
+import java.util.concurrent.Callable
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import java.util.concurrent.atomic.AtomicInteger
+
+import javax.sql.DataSource
+
+class JdbcContentIndexSpec extends Specification {
+
+    static final String CONTENT = "Identical book content"
+
+    DataSource dataSource = new EmbeddedDataSource(
+            databaseName: "memory:athena-" + UUID.randomUUID(),
+            createDatabase: "create"
+    )
+
+    /**
+     * The origin that both deduplicating stores decorate, as blob ID to content.
+     */
+    Map<String, String> blobs = new ConcurrentHashMap<>()
+
+    DeduplicatingFileStore nodeA
+    DeduplicatingFileStore nodeB
+
+    def setup() {
+        MetaDataSchema.migrate(dataSource)
+
+        FileStore origin = new InMemoryFileStore(blobs)
+        FileIdGenerator fileIdGenerator = { File file -> UUID.randomUUID().toString() } as FileIdGenerator
+
+        // two application instances, each with its own index client, sharing one origin and one database
+        nodeA = new DeduplicatingFileStore(origin, fileIdGenerator, new JdbcContentIndex(dataSource))
+        nodeB = new DeduplicatingFileStore(origin, fileIdGenerator, new JdbcContentIndex(dataSource))
+    }
+
+    def "A file uploaded through one instance is downloaded through another"() {
+        when:
+        String fileId = nodeA.upload(newFile(CONTENT))
+
+        then:
+        nodeB.download(fileId).text == CONTENT
+    }
+
+    def "Identical content uploaded through two instances is stored once and reclaimed once unreferenced"() {
+        when: "the same content is uploaded through both instances"
+        String first = nodeA.upload(newFile(CONTENT))
+        String second = nodeB.upload(newFile(CONTENT))
+
+        then: "the origin holds a single blob shared by both files"
+        first != second
+        blobs.size() == 1
+        new JdbcContentIndex(dataSource).getReferenceCount(digest(CONTENT)) == 2
+
+        when: "one file is deleted through the instance that did not upload it"
+        nodeB.delete(first)
+
+        then: "the blob is kept for the other file"
+        blobs.size() == 1
+        nodeA.download(second).text == CONTENT
+
+        when: "the other file is deleted"
+        nodeA.delete(second)
+
+        then: "the blob is reclaimed"
+        blobs.isEmpty()
+        new JdbcContentIndex(dataSource).getReferenceCount(digest(CONTENT)) == 0
+    }
+
+    def "Concurrent uploads of identical content through two instances leave a single blob"() {
+        given:
+        int uploads = 16
+        ExecutorService executor = Executors.newFixedThreadPool(uploads)
+        CountDownLatch start = new CountDownLatch(1)
+        AtomicInteger count = new AtomicInteger()
+
+        when: "both instances upload the same content at once"
+        List<Future<String>> fileIds = (1..uploads).collect {
+            DeduplicatingFileStore node = count.incrementAndGet() % 2 == 0 ? nodeA : nodeB
+            executor.submit({
+                start.await()
+                node.upload(newFile(CONTENT))
+            } as Callable<String>)
+        }
+        start.countDown()
+        List<String> uploaded = fileIds*.get()
+
+        then: "duplicates uploaded while racing are deleted"
+        uploaded.toSet().size() == uploads
+        blobs.size() == 1
+        new JdbcContentIndex(dataSource).getReferenceCount(digest(CONTENT)) == uploads
+
+        and: "every file is downloadable through either instance"
+        uploaded.every { nodeA.download(it).text == CONTENT && nodeB.download(it).text == CONTENT }
+
+        cleanup:
+        executor.shutdownNow()
+    }
+
+    def "A file ID cannot be indexed twice"() {
+        given:
+        JdbcContentIndex contentIndex = new JdbcContentIndex(dataSource)
+        contentIndex.addBlob("file", "sha256-1", "blob")
+
+        when:
+        contentIndex.addReference("file", "sha256-1")
+
+        then:
+        thrown(IllegalArgumentException)
+        contentIndex.getReferenceCount("sha256-1") == 1
+    }
+
+    static File newFile(String content) {
+        new File(new MetaData("book.txt", FileType.TXT), new ByteArrayInputStream(content.bytes))
+    }
+
+    static String digest(String content) {
+        "sha256-" + content.bytes.digest("SHA-256")
+    }
+
+    /**
+     * An origin file store keeping blobs in memory.
+     */
+    static class InMemoryFileStore implements FileStore {
+
+        final Map<String, String> blobs
+
+        InMemoryFileStore(Map<String, String> blobs) {
+            this.blobs = blobs
+        }
+
+        @Override
+        String upload(File file) {
+            String blobId = UUID.randomUUID().toString()
+            blobs.put(blobId, file.fileContent.text)
+            blobId
+        }
+
+        @Override
+        InputStream download(String fileId) {
+            new ByteArrayInputStream(blobs.get(fileId).bytes)
+        }
+
+        @Override
+        boolean delete(String fileId) {
+            blobs.remove(fileId) != null
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2024 Jiaqi Liu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.qubitpi.athena.metastore.jdbc
+
+import io.github.qubitpi.athena.file.File
+import io.github.qubitpi.athena.filestore.FileStore
+import io.github.qubitpi.athena.filestore.compression.CompressingFileStore
+import io.github.qubitpi.athena.filestore.compression.CompressionCodec
+import io.github.qubitpi.athena.filestore.compression.FileEncoding
+import io.github.qubitpi.athena.metadata.FileType
+import io.github.qubitpi.athena.metadata.MetaData
+
+import org.apache.derby.jdbc.EmbeddedDataSource
+
+import spock.lang.Specification
+
+import java.util.concurrent.ConcurrentHashMap
+
+import javax.sql.DataSource
+
+class JdbcEncodingIndexSpec extends Specification {
+
+    static final String CONTENT = "Compressible book content ".multiply(100)
+
+    DataSource dataSource = new EmbeddedDataSource(
+            databaseName: "memory:athena-" + UUID.randomUUID(),
+            createDatabase: "create"
+    )
+
+    /**
+     * The origin that both compressing stores decorate, as file ID to stored bytes.
+     */
+    Map<String, byte[]> blobs = new ConcurrentHashMap<>()
+
+    CompressingFileStore nodeA
+    CompressingFileStore nodeB
+
+    def setup() {
+        MetaDataSchema.migrate(dataSource)
+
+        FileStore origin = new InMemoryFileStore(blobs)
+
+        // two application instances, each with its own index client, sharing one origin and one database
+        nodeA = new CompressingFileStore(
+                origin,
+                new JdbcEncodingIndex(dataSource),
+                [(FileType.TXT): CompressionCodec.GZIP]
+        )
+        nodeB = new CompressingFileStore(
+                origin,
+                new JdbcEncodingIndex(dataSource),
+                [(FileType.TXT): CompressionCodec.GZIP]
+        )
+    }
+
+    def "A file compressed by one instance is decoded by another"() {
+        when:
+        String fileId = nodeA.upload(newFile(CONTENT))
+
+        then: "the file ID is that of the origin"
+        blobs.keySet() == [fileId] as Set
+
+        and: "the other instance knows how the file is encoded"
+        nodeB.download(fileId).text == CONTENT
+        nodeB.getContentEncoding(fileId) == Optional.of("gzip")
+        nodeB.getSize(fileId) == OptionalLong.of(CONTENT.length())
+
+        when: "the file is deleted through the other instance"
+        nodeB.delete(fileId)
+
+        then: "its encoding is forgotten"
+        blobs.isEmpty()
+        new JdbcEncodingIndex(dataSource).getEncoding(fileId) == Optional.empty()
+    }
+
+    def "A file ID cannot be indexed twice"() {
+        given:
+        JdbcEncodingIndex encodingIndex = new JdbcEncodingIndex(dataSource)
+        encodingIndex.addEncoding("file", new FileEncoding("gzip", 10))
+
+        when:
+        encodingIndex.addEncoding("file", new FileEncoding("deflate", 20))
+
+        then:
+        thrown(IllegalArgumentException)
+        encodingIndex.getEncoding("file").get().contentCoding == "gzip"
+        encodingIndex.getEncoding("file").get().size == 10
+    }
+
+    def "Removing an unknown file ID is a no-op"() {
+        expect:
+        !new JdbcEncodingIndex(dataSource).removeEncoding("unknown")
+    }
+
+    static File newFile(String content) {
+        new File(new MetaData("book.txt", FileType.TXT), new ByteArrayInputStream(content.bytes))
+    }
+
+    /**
+     * An origin file store keeping stored bytes in memory.
+     */
+    static class InMemoryFileStore implements FileStore {
+
+        final Map<String, byte[]> blobs
+
+        InMemoryFileStore(Map<String, byte[]> blobs) {
+            this.blobs = blobs
+        }
+
+        @Override
+        String upload(File file) {
+            String blobId = UUID.randomUUID().toString()
+            blobs.put(blobId, file.fileContent.bytes)
+            blobId
+        }
+
+        @Override
+        InputStream download(String fileId) {
+            new ByteArrayInputStream(blobs.get(fileId))
+        }
+
+        @Override
+        boolean delete(String fileId) {
+            blobs.remove(fileId) != null
+        }
+    }
+}
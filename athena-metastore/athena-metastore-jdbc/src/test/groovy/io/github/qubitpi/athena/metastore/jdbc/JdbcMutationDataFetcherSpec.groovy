@@ -0,0 +1,148 @@
+/*
+ * Copyright 2024 Jiaqi Liu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.qubitpi.athena.metastore.jdbc
+
+
+import io.github.qubitpi.athena.metadata.FileType
+import io.github.qubitpi.athena.metadata.MetaData
+
+import graphql.schema.DataFetchingEnvironment
+import spock.lang.Specification
+import spock.lang.Subject
+
+import java.sql.Connection
+import java.sql.DatabaseMetaData
+import java.sql.PreparedStatement
+import java.sql.SQLException
+import java.util.concurrent.CompletionException
+
+import javax.sql.DataSource
+
+class JdbcMutationDataFetcherSpec extends Specification {
+
+    static final String FILE_NAME = "pride-and-prejudice.pdf"
+    static final String FILE_TYPE = "PDF"
+    static final String FILE_ID = "df93if92eef"
+
+    @Subject
+    JdbcMutationDataFetcher dataFetcher
+
+    DataFetchingEnvironment dataFetchingEnvironment
+
+    DatabaseMetaData mysql = Mock(DatabaseMetaData) { getDatabaseProductName() >> "MySQL" }
+
+    @SuppressWarnings('GroovyAccessibility')
+    def setup() {
+        dataFetchingEnvironment = Mock(DataFetchingEnvironment) {
+            getArgument(JdbcMutationDataFetcher.FILE_ID) >> FILE_ID
+            getArgument(MetaData.FILE_NAME) >> FILE_NAME
+            getArgument(MetaData.FILE_TYPE) >> FILE_TYPE
+        }
+    }
+
+    @SuppressWarnings('GroovyAccessibility')
+    def "Happy path meta data persistence causes DataSource to execute save query"() {
+        setup: "instruct data source to fake a save setup"
+        PreparedStatement preparedStatement = Mock(PreparedStatement)
+        Connection connection = Mock(Connection) {
+            getMetaData() >> mysql
+            prepareStatement(SqlDialect.MYSQL.upsertStatement) >> preparedStatement
+        }
+        dataFetcher = new JdbcMutationDataFetcher(
+                Mock(DataSource) {
+                    getConnection() >> connection
+                }
+        )
+
+        when: "meta data is being saved"
+        dataFetcher.get(dataFetchingEnvironment)
+
+        then: "a SQL upsert query is sent"
+        1 * preparedStatement.setString(1, FILE_ID)
+        1 * preparedStatement.setString(2, FILE_NAME)
+        1 * preparedStatement.setString(3, FILE_TYPE)
+        1 * preparedStatement.executeUpdate()
+    }
+
+    @SuppressWarnings('GroovyAccessibility')
+    def "Metadata of many files is saved as a single JDBC batch in one transaction"() {
+        setup:
+        PreparedStatement preparedStatement = Mock(PreparedStatement)
+        Connection connection = Mock(Connection) {
+            getMetaData() >> mysql
+            prepareStatement(SqlDialect.MYSQL.upsertStatement) >> preparedStatement
+            getAutoCommit() >> true
+        }
+        dataFetcher = new JdbcMutationDataFetcher(Mock(DataSource) { getConnection() >> connection })
+
+        when:
+        dataFetcher.saveMetaData([
+                (FILE_ID): new MetaData(FILE_NAME, FileType.PDF),
+                "other": new MetaData("emma.txt", FileType.TXT)
+        ]).toCompletableFuture().join()
+
+        then: "both records are added to one batch"
+        1 * connection.setAutoCommit(false)
+        1 * preparedStatement.setString(1, FILE_ID)
+        1 * preparedStatement.setString(3, "TXT")
+        2 * preparedStatement.addBatch()
+
+        then: "the batch is executed and committed once"
+        1 * preparedStatement.executeBatch()
+        1 * connection.commit()
+        0 * preparedStatement.executeUpdate()
+
+        then:
+        1 * connection.setAutoCommit(true)
+    }
+
+    @SuppressWarnings('GroovyAccessibility')
+    def "A failed batch is rolled back and reported through the returned stage"() {
+        setup:
+        PreparedStatement preparedStatement = Mock(PreparedStatement) {
+            executeBatch() >> { throw new SQLException("duplicate key") }
+        }
+        Connection connection = Mock(Connection) {
+            getMetaData() >> mysql
+            prepareStatement(SqlDialect.MYSQL.upsertStatement) >> preparedStatement
+        }
+        dataFetcher = new JdbcMutationDataFetcher(Mock(DataSource) { getConnection() >> connection })
+
+        when:
+        dataFetcher.saveMetaData([(FILE_ID): new MetaData(FILE_NAME, FileType.PDF)]).toCompletableFuture().join()
+
+        then:
+        CompletionException exception = thrown()
+        exception.cause instanceof SQLException
+        1 * connection.rollback()
+        0 * connection.commit()
+    }
+
+    def "Unsupported databases are rejected"() {
+        setup:
+        Connection connection = Mock(Connection) {
+            getMetaData() >> Mock(DatabaseMetaData) { getDatabaseProductName() >> "Oracle" }
+        }
+        dataFetcher = new JdbcMutationDataFetcher(Mock(DataSource) { getConnection() >> connection })
+
+        when:
+        dataFetcher.get(dataFetchingEnvironment)
+
+        then:
+        thrown(IllegalStateException)
+        0 * connection.prepareStatement(_)
+    }
+}
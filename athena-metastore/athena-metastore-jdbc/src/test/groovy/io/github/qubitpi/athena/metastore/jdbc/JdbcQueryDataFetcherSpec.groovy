@@ -0,0 +1,186 @@
+/*
+ * Copyright 2024 Jiaqi Liu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.qubitpi.athena.metastore.jdbc
+
+import io.github.qubitpi.athena.metadata.FileType
+import io.github.qubitpi.athena.metadata.MetaData
+
+import graphql.schema.DataFetchingEnvironment
+import spock.lang.Specification
+import spock.lang.Subject
+
+import java.sql.Connection
+import java.sql.PreparedStatement
+import java.sql.ResultSet
+
+import javax.sql.DataSource
+
+class JdbcQueryDataFetcherSpec extends Specification {
+
+    static final String FILE_NAME = "pride-and-prejudice.pdf"
+    static final String FILE_TYPE = "PDF"
+    static final String UNUSED_FILE_ID = "df93if92eef"
+
+    @Subject
+    JdbcQueryDataFetcher dataFetcher
+
+    DataFetchingEnvironment dataFetchingEnvironment
+
+    @SuppressWarnings('GroovyAccessibility')
+    def setup() {
+        dataFetchingEnvironment = Mock(DataFetchingEnvironment) {
+            getArgument(JdbcQueryDataFetcher.FILE_ID) >> UNUSED_FILE_ID
+        }
+    }
+
+    @SuppressWarnings('GroovyAccessibility')
+    def "Happy path meta data fetching retrieves data in two-column format from DB"() {
+        setup: "instruct datasource to return a valid one-row two-column data"
+        ResultSet resultSet = Mock(ResultSet) {
+            next() >> true
+            getString(JdbcQueryDataFetcher.FILE_NAME_COLUMN) >> FILE_NAME
+            getString(JdbcQueryDataFetcher.FILE_TYPE_COLUMN) >> FILE_TYPE
+        }
+        PreparedStatement preparedStatement = Mock(PreparedStatement) {executeQuery() >> resultSet }
+        Connection connection = Mock(Connection) {
+            prepareStatement(JdbcQueryDataFetcher.META_DATA_FETCH_QUERY_TEMPLATE) >> preparedStatement
+        }
+        dataFetcher = new JdbcQueryDataFetcher(
+                Mock(DataSource) {
+                    getConnection() >> connection
+                }
+        )
+
+        when: "meta data is being fetched from datasource"
+        MetaData metaData = dataFetcher.get(dataFetchingEnvironment)
+
+        then: "meta data attributes got returned in db column results and are used to construct the metadata object"
+        metaData.getFileName() == FILE_NAME
+        metaData.getFileType() == FileType.PDF
+
+        and: "resources have been released after db query"
+        1 * resultSet.close()
+        1 * connection.close()
+        1 * preparedStatement.close()
+    }
+
+    def "When a file ID is not associated with any metadata, runtime exception is thrown"() {
+        setup: "instruct datasource to return empty data"
+        ResultSet resultSet = Mock(ResultSet) {
+            next() >> false
+        }
+        PreparedStatement preparedStatement = Mock(PreparedStatement) {executeQuery() >> resultSet }
+        Connection connection = Mock(Connection) {
+            prepareStatement(JdbcQueryDataFetcher.META_DATA_FETCH_QUERY_TEMPLATE) >> preparedStatement
+        }
+        dataFetcher = new JdbcQueryDataFetcher(
+                Mock(DataSource) {
+                    getConnection() >> connection
+                }
+        )
+
+        when: "meta data is being fetched from datasource"
+        dataFetcher.get(dataFetchingEnvironment)
+
+        then: "IllegalStateException is thrown with message"
+        Exception exception = thrown(IllegalStateException)
+        exception.message == "No meta data found for file ID '${UNUSED_FILE_ID}'"
+
+        and: "resources have been released after db query anyway"
+        1 * resultSet.close()
+        1 * connection.close()
+        1 * preparedStatement.close()
+    }
+
+    def "Metadata of many files is fetched with a single IN query on one connection"() {
+        setup: "instruct datasource to return 2 rows"
+        ResultSet resultSet = Mock(ResultSet) {
+            next() >>> [true, true, false]
+            getString("file_id") >>> ["1", "2"]
+            getString("file_name") >>> ["a.pdf", "b.txt"]
+            getString("file_type") >>> ["PDF", "TXT"]
+        }
+        PreparedStatement preparedStatement = Mock(PreparedStatement) { executeQuery() >> resultSet }
+        Connection connection = Mock(Connection)
+        dataFetcher = new JdbcQueryDataFetcher(
+                Mock(DataSource) {
+                    getConnection() >> connection
+                }
+        )
+
+        when: "the metadata of 3 files is fetched"
+        Map<String, MetaData> metaDataByFileId = dataFetcher.getMetaData(["1", "2", "3"] as LinkedHashSet)
+                .toCompletableFuture()
+                .join()
+
+        then: "a single statement looks all of them up"
+        1 * connection.prepareStatement(
+                "SELECT file_id, file_name, file_type FROM ATHENA_META_DATA WHERE file_id IN (?, ?, ?, ?)"
+        ) >> preparedStatement
+        1 * preparedStatement.setString(1, "1")
+        1 * preparedStatement.setString(2, "2")
+        1 * preparedStatement.setString(3, "3")
+
+        and: "the IN list is padded to a power of two with the last file ID"
+        1 * preparedStatement.setString(4, "3")
+
+        and: "files without metadata are left out"
+        metaDataByFileId.keySet() == ["1", "2"] as Set
+        metaDataByFileId["2"].fileName == "b.txt"
+        metaDataByFileId["2"].fileType == FileType.TXT
+
+        and: "resources have been released after db query"
+        1 * resultSet.close()
+        1 * connection.close()
+        1 * preparedStatement.close()
+    }
+
+    def "A page of metadata is listed by seeking past the previous page and reading the page in one round trip"() {
+        setup: "instruct datasource to return 2 rows"
+        ResultSet resultSet = Mock(ResultSet) {
+            next() >>> [true, true, false]
+            getString("file_id") >>> ["3", "4"]
+            getString("file_name") >>> ["c.pdf", "d.pdf"]
+            getString("file_type") >>> ["PDF", "PDF"]
+        }
+        PreparedStatement preparedStatement = Mock(PreparedStatement) { executeQuery() >> resultSet }
+        Connection connection = Mock(Connection)
+        dataFetcher = new JdbcQueryDataFetcher(
+                Mock(DataSource) {
+                    getConnection() >> connection
+                }
+        )
+
+        when: "the PDF files after file 2 are listed"
+        Map<String, MetaData> metaDataByFileId = dataFetcher.listMetaData("2", FileType.PDF, 5)
+                .toCompletableFuture()
+                .join()
+
+        then: "the query starts right after file 2 instead of skipping the files before it"
+        1 * connection.prepareStatement(
+                "SELECT file_id, file_name, file_type FROM ATHENA_META_DATA WHERE file_id > ? AND file_type = ? " +
+                        "ORDER BY file_id"
+        ) >> preparedStatement
+        1 * preparedStatement.setString(1, "2")
+        1 * preparedStatement.setString(2, "PDF")
+        1 * preparedStatement.setMaxRows(5)
+        1 * preparedStatement.setFetchSize(5)
+
+        and: "files are returned in the order of their IDs"
+        metaDataByFileId.keySet() as List == ["3", "4"]
+        metaDataByFileId["4"].fileName == "d.pdf"
+    }
+}
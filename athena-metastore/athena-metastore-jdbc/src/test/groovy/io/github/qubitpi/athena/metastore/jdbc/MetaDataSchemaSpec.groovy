@@ -0,0 +1,116 @@
+/*
+ * Copyright 2024 Jiaqi Liu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.qubitpi.athena.metastore.jdbc
+
+import io.github.qubitpi.athena.metadata.FileType
+import io.github.qubitpi.athena.metadata.MetaData
+
+import org.apache.derby.jdbc.EmbeddedDataSource
+
+import spock.lang.Specification
+
+import java.sql.Connection
+import java.sql.ResultSet
+import java.sql.SQLException
+
+import javax.sql.DataSource
+
+class MetaDataSchemaSpec extends Specification {
+
+    DataSource dataSource = new EmbeddedDataSource(
+            databaseName: "memory:athena-" + UUID.randomUUID(),
+            createDatabase: "create"
+    )
+
+    def "Migrations are applied once"() {
+        expect:
+        MetaDataSchema.migrate(dataSource) == 3
+        MetaDataSchema.migrate(dataSource) == 0
+    }
+
+    def "File IDs are unique"() {
+        given:
+        MetaDataSchema.migrate(dataSource)
+        insert("1", "a.txt")
+
+        when:
+        insert("1", "b.txt")
+
+        then:
+        thrown(SQLException)
+    }
+
+    @SuppressWarnings("GroovyAccessibility")
+    def "Saving metadata of a file again overwrites it"() {
+        given:
+        MetaDataSchema.migrate(dataSource)
+        JdbcMutationDataFetcher mutationDataFetcher = new JdbcMutationDataFetcher(dataSource)
+        JdbcQueryDataFetcher queryDataFetcher = new JdbcQueryDataFetcher(dataSource)
+
+        when: "a file is saved, then saved again together with another one"
+        mutationDataFetcher.saveMetaData([a: new MetaData("a.txt", FileType.TXT)]).toCompletableFuture().join()
+        mutationDataFetcher.saveMetaData([
+                a: new MetaData("a.pdf", FileType.PDF),
+                b: new MetaData("b.txt", FileType.TXT)
+        ]).toCompletableFuture().join()
+
+        then: "each file has the metadata it was saved with last"
+        Map<String, MetaData> metaDataByFileId = queryDataFetcher.getMetaData(["a", "b", "c"] as Set)
+                .toCompletableFuture()
+                .join()
+        metaDataByFileId.keySet() == ["a", "b"] as Set
+        metaDataByFileId["a"].fileName == "a.pdf"
+        metaDataByFileId["a"].fileType == FileType.PDF
+
+        and: "files are listed page by page"
+        queryDataFetcher.listMetaData(null, null, 1).toCompletableFuture().join().keySet() as List == ["a"]
+        queryDataFetcher.listMetaData("a", null, 5).toCompletableFuture().join().keySet() as List == ["b"]
+        queryDataFetcher.listMetaData(null, FileType.TXT, 5).toCompletableFuture().join().keySet() as List == ["b"]
+    }
+
+    def "Lookups by file ID go through the primary key index"() {
+        given:
+        MetaDataSchema.migrate(dataSource)
+
+        expect:
+        indexedColumns().contains("FILE_ID")
+    }
+
+    /**
+     * Inserts a row without upserting it.
+     */
+    void insert(String fileId, String fileName) {
+        try (Connection connection = dataSource.connection) {
+            connection.prepareStatement(
+                    "INSERT INTO ATHENA_META_DATA (file_id, file_name, file_type) VALUES ('$fileId', '$fileName', 'TXT')"
+            ).executeUpdate()
+        }
+    }
+
+    /**
+     * Returns the columns of the unique indexes of the metadata table.
+     */
+    List<String> indexedColumns() {
+        try (Connection connection = dataSource.connection) {
+            ResultSet indexes = connection.metaData.getIndexInfo(null, null, "ATHENA_META_DATA", true, false)
+            List<String> columns = []
+            while (indexes.next()) {
+                columns << indexes.getString("COLUMN_NAME")
+            }
+            return columns
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2024 Jiaqi Liu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.qubitpi.athena.server;
+
+import io.github.qubitpi.athena.application.ResourceConfig;
+
+import org.eclipse.jetty.server.Server;
+
+import net.jcip.annotations.Immutable;
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * {@link AthenaServer} runs an Athena application on an embedded Jetty server, without any external servlet container.
+ * <p>
+ * The application is Athena's {@link ResourceConfig}, whose bindings come from the {@code resource_binder} config, and
+ * the server is built by {@link ServerFactory} from the system config. For example
+ * <pre>
+ * {@code
+ * java -cp "my-athena-app.jar:lib/*" io.github.qubitpi.athena.server.AthenaServer
+ * }
+ * </pre>
+ * The server runs until the JVM shuts down, at which point it is stopped gracefully.
+ */
+@Immutable
+@ThreadSafe
+public final class AthenaServer {
+
+    /**
+     * Constructor.
+     * <p>
+     * Suppress default constructor for noninstantiability.
+     *
+     * @throws AssertionError when called
+     */
+    private AthenaServer() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Starts Athena and waits until it is stopped.
+     *
+     * @param args  Command line arguments, which are ignored
+     *
+     * @throws Exception if the application cannot be configured or the server cannot be started
+     */
+    @SuppressWarnings("checkstyle:uncommentedmain")
+    public static void main(final String[] args) throws Exception {
+        final Server server = ServerFactory.newInstance(new ResourceConfig());
+        server.start();
+        server.join();
+    }
+}
@@ -0,0 +1,447 @@
+/*
+ * Copyright 2024 Jiaqi Liu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.qubitpi.athena.server;
+
+import io.github.qubitpi.athena.config.SystemConfig;
+import io.github.qubitpi.athena.config.SystemConfigFactory;
+
+import org.eclipse.jetty.alpn.server.ALPNServerConnectionFactory;
+import org.eclipse.jetty.http2.HTTP2Cipher;
+import org.eclipse.jetty.http2.server.AbstractHTTP2ServerConnectionFactory;
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
+import org.eclipse.jetty.http2.server.HTTP2ServerConnectionFactory;
+import org.eclipse.jetty.server.ConnectionFactory;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.SecureRequestCustomizer;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.SslConnectionFactory;
+import org.eclipse.jetty.server.handler.StatisticsHandler;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.util.VirtualThreads;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.glassfish.jersey.servlet.ServletContainer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.validation.constraints.NotNull;
+import net.jcip.annotations.Immutable;
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * {@link ServerFactory} builds the embedded Jetty server that runs an Athena application in production.
+ * <p>
+ * Requests are handled on virtual threads when the JVM supports them, i.e. on JDK 21 and above, and on a bounded pool
+ * of platform threads otherwise. With virtual threads, a request blocked on the file store or on the metadata database
+ * costs a few kilobytes of heap instead of a platform thread, so thousands of concurrent transfers do not need a huge
+ * thread pool; the pool then only runs Jetty's acceptors and selectors. Virtual threads can be turned off with
+ * {@value #VIRTUAL_THREADS_KEY}.
+ * <p>
+ * Stopping the server, including on JVM shutdown, is graceful: the server stops accepting connections and waits up to
+ * {@value #STOP_TIMEOUT_MILLIS_KEY} milliseconds for the requests in flight to complete before closing the remaining
+ * connections.
+ * <p>
+ * The server speaks HTTP/2 besides HTTP/1.1, so that a client multiplexes its many small metadata calls and its
+ * downloads over a single connection instead of opening one connection, and paying one handshake, per concurrent
+ * request. The cleartext connector accepts HTTP/1.1 and h2c, either upgraded from HTTP/1.1 or with prior knowledge. If
+ * a key store is configured with {@value #TLS_KEY_STORE_PATH_KEY}, a TLS connector is opened on
+ * {@value #TLS_PORT_KEY} as well, on which ALPN negotiates h2, or HTTP/1.1 for clients without HTTP/2. How many
+ * requests a client may run concurrently on one connection is bounded by
+ * {@value #HTTP2_MAX_CONCURRENT_STREAMS_KEY}, and how many bytes of request content a connection and each of its
+ * requests may have in flight is bounded by the {@value #HTTP2_INITIAL_SESSION_RECV_WINDOW_KEY} and
+ * {@value #HTTP2_INITIAL_STREAM_RECV_WINDOW_KEY} flow-control windows; larger windows let big uploads use the
+ * bandwidth of high-latency links.
+ * <p>
+ * HTTP/1.1 connections are persistent. Idle connections are kept for {@value #IDLE_TIMEOUT_MILLIS_KEY} milliseconds,
+ * bursts of new connections queue up to {@value #ACCEPT_QUEUE_SIZE_KEY} deep and large responses are written in
+ * {@value #OUTPUT_BUFFER_SIZE_KEY}-byte chunks.
+ * <p>
+ * All settings are read from the system config:
+ * <ul>
+ *     <li> {@value #PORT_KEY}: the port to listen on, 8080 by default
+ *     <li> {@value #PATH_SPEC_KEY}: the servlet path of the application, "/v1/*" by default
+ *     <li> {@value #ACCEPTORS_KEY}: the number of acceptor threads, chosen by Jetty from the number of CPUs if not
+ *     positive
+ *     <li> {@value #SELECTORS_KEY}: the number of selectors, chosen by Jetty from the number of CPUs if not positive
+ *     <li> {@value #ACCEPT_QUEUE_SIZE_KEY}: the max number of pending connections, chosen by the OS if not positive
+ *     <li> {@value #OUTPUT_BUFFER_SIZE_KEY}: the size in bytes of the response buffer, 32 KiB by default
+ *     <li> {@value #HTTP2_MAX_CONCURRENT_STREAMS_KEY}: the max number of concurrent requests on an HTTP/2
+ *     connection, 128 by default
+ *     <li> {@value #HTTP2_INITIAL_SESSION_RECV_WINDOW_KEY}: the flow-control window in bytes of an HTTP/2 connection,
+ *     1 MiB by default
+ *     <li> {@value #HTTP2_INITIAL_STREAM_RECV_WINDOW_KEY}: the flow-control window in bytes of an HTTP/2 request,
+ *     512 KiB by default
+ *     <li> {@value #TLS_PORT_KEY}: the port of the TLS connector, 8443 by default
+ *     <li> {@value #TLS_KEY_STORE_PATH_KEY}: the path of the key store holding the server certificate; no TLS
+ *     connector is opened if it is not set
+ *     <li> {@value #TLS_KEY_STORE_PASSWORD_KEY}: the password of the key store
+ *     <li> {@value #MIN_THREADS_KEY} and {@value #MAX_THREADS_KEY}: the bounds of the platform thread pool, 8 and 200
+ *     by default
+ *     <li> {@value #IDLE_TIMEOUT_MILLIS_KEY}: how long idle connections and pool threads are kept, 30 seconds by
+ *     default
+ *     <li> {@value #VIRTUAL_THREADS_KEY}: whether requests run on virtual threads when supported, {@code true} by
+ *     default
+ *     <li> {@value #STOP_TIMEOUT_MILLIS_KEY}: how long a stop waits for requests in flight, 30 seconds by default
+ * </ul>
+ */
+@Immutable
+@ThreadSafe
+public final class ServerFactory {
+
+    /**
+     * The config key of the port to listen on.
+     */
+    public static final String PORT_KEY = "server_port";
+
+    /**
+     * The config key of the servlet path of the application.
+     */
+    public static final String PATH_SPEC_KEY = "server_path_spec";
+
+    /**
+     * The config key of the number of acceptor threads.
+     */
+    public static final String ACCEPTORS_KEY = "server_acceptors";
+
+    /**
+     * The config key of the number of selectors.
+     */
+    public static final String SELECTORS_KEY = "server_selectors";
+
+    /**
+     * The config key of the max number of pending connections.
+     */
+    public static final String ACCEPT_QUEUE_SIZE_KEY = "server_accept_queue_size";
+
+    /**
+     * The config key of the size in bytes of the response buffer.
+     */
+    public static final String OUTPUT_BUFFER_SIZE_KEY = "server_output_buffer_size";
+
+    /**
+     * The config key of the max number of concurrent requests on an HTTP/2 connection.
+     */
+    public static final String HTTP2_MAX_CONCURRENT_STREAMS_KEY = "server_http2_max_concurrent_streams";
+
+    /**
+     * The config key of the initial flow-control window, in bytes, of an HTTP/2 connection.
+     */
+    public static final String HTTP2_INITIAL_SESSION_RECV_WINDOW_KEY = "server_http2_initial_session_recv_window";
+
+    /**
+     * The config key of the initial flow-control window, in bytes, of an HTTP/2 request.
+     */
+    public static final String HTTP2_INITIAL_STREAM_RECV_WINDOW_KEY = "server_http2_initial_stream_recv_window";
+
+    /**
+     * The config key of the port of the TLS connector.
+     */
+    public static final String TLS_PORT_KEY = "server_tls_port";
+
+    /**
+     * The config key of the path of the key store holding the server certificate.
+     */
+    public static final String TLS_KEY_STORE_PATH_KEY = "server_tls_key_store_path";
+
+    /**
+     * The config key of the password of the key store.
+     */
+    public static final String TLS_KEY_STORE_PASSWORD_KEY = "server_tls_key_store_password";
+
+    /**
+     * The config key of the min number of platform threads in the pool.
+     */
+    public static final String MIN_THREADS_KEY = "server_min_threads";
+
+    /**
+     * The config key of the max number of platform threads in the pool.
+     */
+    public static final String MAX_THREADS_KEY = "server_max_threads";
+
+    /**
+     * The config key of how long, in milliseconds, idle connections and pool threads are kept.
+     */
+    public static final String IDLE_TIMEOUT_MILLIS_KEY = "server_idle_timeout_millis";
+
+    /**
+     * The config key of whether requests run on virtual threads when the JVM supports them.
+     */
+    public static final String VIRTUAL_THREADS_KEY = "server_virtual_threads";
+
+    /**
+     * The config key of how long, in milliseconds, a stop waits for requests in flight.
+     */
+    public static final String STOP_TIMEOUT_MILLIS_KEY = "server_stop_timeout_millis";
+
+    private static final Logger LOG = LoggerFactory.getLogger(ServerFactory.class);
+    private static final SystemConfig SYSTEM_CONFIG = SystemConfigFactory.getInstance();
+
+    private static final int DEFAULT_PORT = 8080;
+    private static final String DEFAULT_PATH_SPEC = "/v1/*";
+    private static final int DEFAULT_ACCEPTORS = -1;
+    private static final int DEFAULT_SELECTORS = -1;
+    private static final int DEFAULT_ACCEPT_QUEUE_SIZE = 0;
+    private static final int DEFAULT_OUTPUT_BUFFER_SIZE = 32 * 1024;
+    private static final int DEFAULT_HTTP2_MAX_CONCURRENT_STREAMS = 128;
+    private static final int DEFAULT_HTTP2_INITIAL_SESSION_RECV_WINDOW = 1024 * 1024;
+    private static final int DEFAULT_HTTP2_INITIAL_STREAM_RECV_WINDOW = 512 * 1024;
+    private static final int DEFAULT_TLS_PORT = 8443;
+    private static final String HTTP_1_1 = "http/1.1";
+    private static final int DEFAULT_MIN_THREADS = 8;
+    private static final int DEFAULT_MAX_THREADS = 200;
+    private static final int DEFAULT_IDLE_TIMEOUT_MILLIS = 30_000;
+    private static final boolean DEFAULT_VIRTUAL_THREADS = true;
+    private static final long DEFAULT_STOP_TIMEOUT_MILLIS = 30_000L;
+
+    private static final String THREAD_POOL_NAME = "athena";
+
+    /**
+     * Constructor.
+     * <p>
+     * Suppress default constructor for noninstantiability.
+     *
+     * @throws AssertionError when called
+     */
+    private ServerFactory() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Returns a new, not yet started, embedded server that serves a specified application.
+     *
+     * @param resourceConfig  The Jersey application to serve, such as Athena's
+     * {@link io.github.qubitpi.athena.application.ResourceConfig}
+     *
+     * @return a new server configured from the system config
+     *
+     * @throws NullPointerException if {@code resourceConfig} is {@code null}
+     */
+    @NotNull
+    public static Server newInstance(final @NotNull ResourceConfig resourceConfig) {
+        Objects.requireNonNull(resourceConfig, "resourceConfig");
+
+        final int idleTimeout = getIntProperty(IDLE_TIMEOUT_MILLIS_KEY, DEFAULT_IDLE_TIMEOUT_MILLIS);
+
+        final Server server = new Server(
+                newThreadPool(
+                        getIntProperty(MIN_THREADS_KEY, DEFAULT_MIN_THREADS),
+                        getIntProperty(MAX_THREADS_KEY, DEFAULT_MAX_THREADS),
+                        idleTimeout,
+                        SYSTEM_CONFIG.getBooleanProperty(SYSTEM_CONFIG.getPackageVariableName(VIRTUAL_THREADS_KEY))
+                                .orElse(DEFAULT_VIRTUAL_THREADS)
+                )
+        );
+
+        final HttpConfiguration httpConfiguration = newHttpConfiguration();
+        server.addConnector(newConnector(
+                server,
+                getIntProperty(PORT_KEY, DEFAULT_PORT),
+                idleTimeout,
+                new HttpConnectionFactory(httpConfiguration),
+                configure(new HTTP2CServerConnectionFactory(httpConfiguration))
+        ));
+
+        final Optional<String> keyStorePath = SYSTEM_CONFIG.getStringProperty(
+                SYSTEM_CONFIG.getPackageVariableName(TLS_KEY_STORE_PATH_KEY)
+        );
+        if (keyStorePath.isPresent()) {
+            server.addConnector(newTlsConnector(server, keyStorePath.get(), idleTimeout, httpConfiguration));
+        }
+
+        final ServletHolder servletHolder = new ServletHolder(new ServletContainer(resourceConfig));
+        servletHolder.setAsyncSupported(true);
+        final ServletContextHandler servletContextHandler = new ServletContextHandler(
+                ServletContextHandler.NO_SESSIONS
+        );
+        servletContextHandler.addServlet(
+                servletHolder,
+                SYSTEM_CONFIG.getStringProperty(SYSTEM_CONFIG.getPackageVariableName(PATH_SPEC_KEY))
+                        .orElse(DEFAULT_PATH_SPEC)
+        );
+
+        // counts the requests in flight, so that a graceful stop can wait for them
+        final StatisticsHandler statisticsHandler = new StatisticsHandler();
+        statisticsHandler.setHandler(servletContextHandler);
+        server.setHandler(statisticsHandler);
+
+        server.setStopTimeout(
+                SYSTEM_CONFIG.getLongProperty(SYSTEM_CONFIG.getPackageVariableName(STOP_TIMEOUT_MILLIS_KEY))
+                        .orElse(DEFAULT_STOP_TIMEOUT_MILLIS)
+        );
+        server.setStopAtShutdown(true);
+
+        return server;
+    }
+
+    /**
+     * Returns a new thread pool for handling requests.
+     *
+     * @param minThreads  The min number of platform threads in the pool
+     * @param maxThreads  The max number of platform threads in the pool
+     * @param idleTimeout  How long, in milliseconds, an idle platform thread is kept
+     * @param useVirtualThreads  Whether requests should run on virtual threads if the JVM supports them
+     *
+     * @return a new thread pool that runs requests on virtual threads if {@code useVirtualThreads} is {@code true}
+     * and the JVM supports them, or on its own platform threads otherwise
+     */
+    @NotNull
+    static QueuedThreadPool newThreadPool(
+            final int minThreads,
+            final int maxThreads,
+            final int idleTimeout,
+            final boolean useVirtualThreads
+    ) {
+        final QueuedThreadPool threadPool = new QueuedThreadPool(maxThreads, minThreads, idleTimeout);
+        threadPool.setName(THREAD_POOL_NAME);
+
+        if (useVirtualThreads && VirtualThreads.areSupported()) {
+            threadPool.setUseVirtualThreads(true);
+            LOG.info("Requests are handled on virtual threads");
+        } else if (useVirtualThreads) {
+            LOG.info("Virtual threads are not supported by this JVM; requests are handled on platform threads");
+        }
+
+        return threadPool;
+    }
+
+    /**
+     * Returns a new TLS connector on which ALPN negotiates HTTP/2, or HTTP/1.1 for clients that do not support it.
+     *
+     * @param server  The server the connector belongs to
+     * @param keyStorePath  The path of the key store holding the server certificate
+     * @param idleTimeout  How long, in milliseconds, an idle connection is kept
+     * @param httpConfiguration  The HTTP settings of the cleartext connector
+     *
+     * @return a new connector listening on the TLS port
+     */
+    @NotNull
+    private static ServerConnector newTlsConnector(
+            final @NotNull Server server,
+            final @NotNull String keyStorePath,
+            final int idleTimeout,
+            final @NotNull HttpConfiguration httpConfiguration
+    ) {
+        final SslContextFactory.Server sslContextFactory = new SslContextFactory.Server();
+        sslContextFactory.setKeyStorePath(keyStorePath);
+        sslContextFactory.setKeyStorePassword(
+                SYSTEM_CONFIG.getStringProperty(SYSTEM_CONFIG.getPackageVariableName(TLS_KEY_STORE_PASSWORD_KEY))
+                        .orElse(null)
+        );
+        // HTTP/2 forbids the cipher suites of older TLS versions
+        sslContextFactory.setCipherComparator(HTTP2Cipher.COMPARATOR);
+
+        final HttpConfiguration httpsConfiguration = new HttpConfiguration(httpConfiguration);
+        httpsConfiguration.addCustomizer(new SecureRequestCustomizer());
+
+        final HTTP2ServerConnectionFactory http2 = configure(new HTTP2ServerConnectionFactory(httpsConfiguration));
+        final ALPNServerConnectionFactory alpn = new ALPNServerConnectionFactory(http2.getProtocol(), HTTP_1_1);
+        alpn.setDefaultProtocol(HTTP_1_1);
+
+        return newConnector(
+                server,
+                getIntProperty(TLS_PORT_KEY, DEFAULT_TLS_PORT),
+                idleTimeout,
+                new SslConnectionFactory(sslContextFactory, alpn.getProtocol()),
+                alpn,
+                http2,
+                new HttpConnectionFactory(httpsConfiguration)
+        );
+    }
+
+    /**
+     * Returns a new connector speaking some protocols.
+     *
+     * @param server  The server the connector belongs to
+     * @param port  The port to listen on
+     * @param idleTimeout  How long, in milliseconds, an idle connection is kept
+     * @param connectionFactories  The protocols of the connector, the first one being the protocol of new connections
+     *
+     * @return a new connector with the configured acceptors, selectors and accept queue
+     */
+    @NotNull
+    private static ServerConnector newConnector(
+            final @NotNull Server server,
+            final int port,
+            final int idleTimeout,
+            final @NotNull ConnectionFactory... connectionFactories
+    ) {
+        final ServerConnector connector = new ServerConnector(
+                server,
+                getIntProperty(ACCEPTORS_KEY, DEFAULT_ACCEPTORS),
+                getIntProperty(SELECTORS_KEY, DEFAULT_SELECTORS),
+                connectionFactories
+        );
+        connector.setPort(port);
+        connector.setIdleTimeout(idleTimeout);
+        connector.setAcceptQueueSize(getIntProperty(ACCEPT_QUEUE_SIZE_KEY, DEFAULT_ACCEPT_QUEUE_SIZE));
+        return connector;
+    }
+
+    /**
+     * Applies the configured stream concurrency and flow-control windows to an HTTP/2 protocol.
+     *
+     * @param connectionFactory  The HTTP/2 protocol, either h2 or h2c
+     * @param <T>  The type of the HTTP/2 protocol
+     *
+     * @return {@code connectionFactory}
+     */
+    @NotNull
+    private static <T extends AbstractHTTP2ServerConnectionFactory> T configure(final @NotNull T connectionFactory) {
+        connectionFactory.setMaxConcurrentStreams(
+                getIntProperty(HTTP2_MAX_CONCURRENT_STREAMS_KEY, DEFAULT_HTTP2_MAX_CONCURRENT_STREAMS)
+        );
+        connectionFactory.setInitialSessionRecvWindow(
+                getIntProperty(HTTP2_INITIAL_SESSION_RECV_WINDOW_KEY, DEFAULT_HTTP2_INITIAL_SESSION_RECV_WINDOW)
+        );
+        connectionFactory.setInitialStreamRecvWindow(
+                getIntProperty(HTTP2_INITIAL_STREAM_RECV_WINDOW_KEY, DEFAULT_HTTP2_INITIAL_STREAM_RECV_WINDOW)
+        );
+        return connectionFactory;
+    }
+
+    /**
+     * Returns the HTTP settings shared by all connections.
+     *
+     * @return a new HTTP configuration with persistent connections and the configured response buffer size
+     */
+    @NotNull
+    static HttpConfiguration newHttpConfiguration() {
+        final HttpConfiguration httpConfiguration = new HttpConfiguration();
+        httpConfiguration.setSendServerVersion(false);
+        httpConfiguration.setPersistentConnectionsEnabled(true);
+        httpConfiguration.setOutputBufferSize(getIntProperty(OUTPUT_BUFFER_SIZE_KEY, DEFAULT_OUTPUT_BUFFER_SIZE));
+        return httpConfiguration;
+    }
+
+    /**
+     * Returns an integer setting from the system config.
+     *
+     * @param key  The config key of the setting
+     * @param defaultValue  The value of the setting if it is not configured
+     *
+     * @return the configured value or {@code defaultValue}
+     */
+    private static int getIntProperty(final @NotNull String key, final int defaultValue) {
+        return SYSTEM_CONFIG.getIntProperty(SYSTEM_CONFIG.getPackageVariableName(key)).orElse(defaultValue);
+    }
+}
@@ -0,0 +1,329 @@
+/*
+ * Copyright 2024 Jiaqi Liu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.qubitpi.athena.server
+
+import io.github.qubitpi.athena.config.SystemConfig
+import io.github.qubitpi.athena.config.SystemConfigFactory
+
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory
+import org.eclipse.jetty.http2.server.HTTP2ServerConnectionFactory
+import org.eclipse.jetty.server.HttpConnectionFactory
+import org.eclipse.jetty.server.Server
+import org.eclipse.jetty.server.ServerConnector
+import org.eclipse.jetty.util.VirtualThreads
+import org.eclipse.jetty.util.thread.QueuedThreadPool
+import org.glassfish.jersey.server.ResourceConfig
+
+import jakarta.ws.rs.GET
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import javax.net.ssl.SSLContext
+import javax.net.ssl.TrustManagerFactory
+
+import java.net.http.HttpClient
+import java.net.http.HttpRequest
+import java.net.http.HttpResponse
+import java.nio.file.Path
+import java.nio.file.Paths
+import java.security.KeyStore
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class ServerFactorySpec extends Specification {
+
+    static final SystemConfig SYSTEM_CONFIG = SystemConfigFactory.getInstance()
+
+    static final List<String> KEYS = [
+            ServerFactory.PORT_KEY,
+            ServerFactory.ACCEPTORS_KEY,
+            ServerFactory.SELECTORS_KEY,
+            ServerFactory.ACCEPT_QUEUE_SIZE_KEY,
+            ServerFactory.OUTPUT_BUFFER_SIZE_KEY,
+            ServerFactory.HTTP2_MAX_CONCURRENT_STREAMS_KEY,
+            ServerFactory.HTTP2_INITIAL_SESSION_RECV_WINDOW_KEY,
+            ServerFactory.HTTP2_INITIAL_STREAM_RECV_WINDOW_KEY,
+            ServerFactory.TLS_PORT_KEY,
+            ServerFactory.TLS_KEY_STORE_PATH_KEY,
+            ServerFactory.TLS_KEY_STORE_PASSWORD_KEY,
+            ServerFactory.STOP_TIMEOUT_MILLIS_KEY
+    ]
+
+    static final HttpClient CLIENT = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build()
+
+    static final String KEY_STORE_PASSWORD = "changeit"
+
+    @TempDir
+    Path tempDir
+
+    Server server
+
+    def setup() {
+        SYSTEM_CONFIG.setProperty(SYSTEM_CONFIG.getPackageVariableName(ServerFactory.PORT_KEY), "0")
+        SlowResource.entered = new CountDownLatch(1)
+        SlowResource.released = new CountDownLatch(1)
+    }
+
+    def cleanup() {
+        SlowResource.released.countDown()
+        server?.stop()
+        KEYS.each { SYSTEM_CONFIG.clearProperty(SYSTEM_CONFIG.getPackageVariableName(it)) }
+    }
+
+    def "Server serves the application under the configured path"() {
+        given:
+        server = start()
+
+        expect:
+        get("/v1/thread").statusCode() == 200
+        get("/thread").statusCode() == 404
+    }
+
+    def "Requests run on virtual threads if and only if the JVM supports them"() {
+        given:
+        server = start()
+
+        expect:
+        get("/v1/thread").body() == String.valueOf(VirtualThreads.areSupported())
+        ((QueuedThreadPool) server.threadPool).useVirtualThreads == VirtualThreads.areSupported()
+    }
+
+    def "Thread pool falls back to platform threads when virtual threads are off or unsupported"() {
+        when:
+        QueuedThreadPool threadPool = ServerFactory.newThreadPool(2, 16, 1000, useVirtualThreads)
+
+        then:
+        threadPool.minThreads == 2
+        threadPool.maxThreads == 16
+        threadPool.idleTimeout == 1000
+        threadPool.useVirtualThreads == (useVirtualThreads && VirtualThreads.areSupported())
+
+        where:
+        useVirtualThreads << [true, false]
+    }
+
+    def "Acceptors and selectors are tunable"() {
+        given:
+        SYSTEM_CONFIG.setProperty(SYSTEM_CONFIG.getPackageVariableName(ServerFactory.ACCEPTORS_KEY), "1")
+        SYSTEM_CONFIG.setProperty(SYSTEM_CONFIG.getPackageVariableName(ServerFactory.SELECTORS_KEY), "3")
+
+        when:
+        server = start()
+        ServerConnector connector = (ServerConnector) server.connectors[0]
+
+        then:
+        connector.acceptors == 1
+        connector.selectorManager.selectorCount == 3
+        get("/v1/thread").statusCode() == 200
+    }
+
+    def "Connections are persistent and their queue and buffers are tunable"() {
+        given:
+        SYSTEM_CONFIG.setProperty(SYSTEM_CONFIG.getPackageVariableName(ServerFactory.ACCEPT_QUEUE_SIZE_KEY), "128")
+        SYSTEM_CONFIG.setProperty(SYSTEM_CONFIG.getPackageVariableName(ServerFactory.OUTPUT_BUFFER_SIZE_KEY), "65536")
+
+        when:
+        server = start()
+        ServerConnector connector = (ServerConnector) server.connectors[0]
+
+        then:
+        connector.acceptQueueSize == 128
+        connector.getConnectionFactory(HttpConnectionFactory).httpConfiguration.outputBufferSize == 65536
+        connector.getConnectionFactory(HttpConnectionFactory).httpConfiguration.persistentConnectionsEnabled
+
+        when: "a client sends several requests"
+        List<HttpResponse<String>> responses = (1..3).collect { get("/v1/thread") }
+
+        then: "they are all served over one connection"
+        responses*.statusCode() == [200, 200, 200]
+        responses.every { !it.headers().firstValue("Connection").isPresent() }
+        connector.connectedEndPoints.size() == 1
+    }
+
+    def "Cleartext connector speaks h2c with the configured stream concurrency and flow-control windows"() {
+        given:
+        SYSTEM_CONFIG.setProperty(
+                SYSTEM_CONFIG.getPackageVariableName(ServerFactory.HTTP2_MAX_CONCURRENT_STREAMS_KEY), "64"
+        )
+        SYSTEM_CONFIG.setProperty(
+                SYSTEM_CONFIG.getPackageVariableName(ServerFactory.HTTP2_INITIAL_SESSION_RECV_WINDOW_KEY), "4194304"
+        )
+        SYSTEM_CONFIG.setProperty(
+                SYSTEM_CONFIG.getPackageVariableName(ServerFactory.HTTP2_INITIAL_STREAM_RECV_WINDOW_KEY), "2097152"
+        )
+
+        when:
+        server = start()
+        ServerConnector connector = (ServerConnector) server.connectors[0]
+        HTTP2CServerConnectionFactory h2c = connector.getConnectionFactory(HTTP2CServerConnectionFactory)
+
+        then: "HTTP/1.1 and h2c share the cleartext connector"
+        server.connectors.length == 1
+        connector.protocols == ["http/1.1", "h2c"]
+        h2c.maxConcurrentStreams == 64
+        h2c.initialSessionRecvWindow == 4194304
+        h2c.initialStreamRecvWindow == 2097152
+
+        when: "an HTTP/2 client sends several requests"
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_2).build()
+        URI uri = URI.create("http://localhost:${connector.localPort}/v1/thread")
+        List<HttpResponse<String>> responses = (1..3).collect {
+            client.send(HttpRequest.newBuilder(uri).GET().build(), HttpResponse.BodyHandlers.ofString())
+        }
+
+        then: "they are served over h2c on one connection"
+        responses*.statusCode() == [200, 200, 200]
+        responses*.version() == [HttpClient.Version.HTTP_2] * 3
+        connector.connectedEndPoints.size() == 1
+    }
+
+    def "TLS connector negotiates h2 through ALPN"() {
+        given: "a key store with a certificate for localhost"
+        Path keyStore = newKeyStore()
+        SYSTEM_CONFIG.setProperty(SYSTEM_CONFIG.getPackageVariableName(ServerFactory.TLS_PORT_KEY), "0")
+        SYSTEM_CONFIG.setProperty(
+                SYSTEM_CONFIG.getPackageVariableName(ServerFactory.TLS_KEY_STORE_PATH_KEY), keyStore.toString()
+        )
+        SYSTEM_CONFIG.setProperty(
+                SYSTEM_CONFIG.getPackageVariableName(ServerFactory.TLS_KEY_STORE_PASSWORD_KEY), KEY_STORE_PASSWORD
+        )
+
+        when:
+        server = start()
+        ServerConnector connector = (ServerConnector) server.connectors[1]
+
+        then:
+        connector.protocols == ["ssl", "alpn", "h2", "http/1.1"]
+        connector.getConnectionFactory(HTTP2ServerConnectionFactory).maxConcurrentStreams == 128
+
+        when: "a client that trusts the certificate sends a request"
+        HttpResponse<String> response = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .sslContext(trusting(keyStore))
+                .build()
+                .send(
+                        HttpRequest.newBuilder(URI.create("https://localhost:${connector.localPort}/v1/thread"))
+                                .GET()
+                                .build(),
+                        HttpResponse.BodyHandlers.ofString()
+                )
+
+        then:
+        response.statusCode() == 200
+        response.version() == HttpClient.Version.HTTP_2
+    }
+
+    def "Stopping the server waits for requests in flight"() {
+        given:
+        SYSTEM_CONFIG.setProperty(SYSTEM_CONFIG.getPackageVariableName(ServerFactory.STOP_TIMEOUT_MILLIS_KEY), "10000")
+        server = start()
+
+        and: "a request blocked in the application"
+        CompletableFuture<HttpResponse<String>> response = CompletableFuture.supplyAsync { get("/v1/slow") }
+        SlowResource.entered.await(10, TimeUnit.SECONDS)
+
+        when: "the server is asked to stop"
+        CompletableFuture<Void> stop = CompletableFuture.runAsync { server.stop() }
+        Thread.sleep(500)
+
+        then: "it is still draining"
+        !stop.isDone()
+
+        when: "the request completes"
+        SlowResource.released.countDown()
+
+        then: "the request succeeds and the server stops"
+        response.get(10, TimeUnit.SECONDS).statusCode() == 200
+        response.get().body() == "done"
+        stop.get(10, TimeUnit.SECONDS) == null
+        server.isStopped()
+    }
+
+    /**
+     * Starts a server for the test resources.
+     */
+    static Server start() {
+        Server server = ServerFactory.newInstance(new ResourceConfig(ThreadResource, SlowResource))
+        server.start()
+        return server
+    }
+
+    /**
+     * Creates a PKCS12 key store holding a self-signed certificate for localhost.
+     */
+    Path newKeyStore() {
+        Path keyStore = tempDir.resolve("keystore.p12")
+        Process keytool = new ProcessBuilder(
+                Paths.get(System.getProperty("java.home"), "bin", "keytool").toString(),
+                "-genkeypair", "-alias", "athena", "-keyalg", "RSA", "-keysize", "2048", "-validity", "1",
+                "-dname", "CN=localhost", "-ext", "SAN=dns:localhost", "-storetype", "PKCS12",
+                "-keystore", keyStore.toString(), "-storepass", KEY_STORE_PASSWORD, "-keypass", KEY_STORE_PASSWORD
+        ).redirectErrorStream(true).start()
+        keytool.inputStream.text
+        assert keytool.waitFor() == 0
+        return keyStore
+    }
+
+    /**
+     * Returns a TLS context that trusts the certificates of a key store.
+     */
+    static SSLContext trusting(Path keyStore) {
+        KeyStore trustStore = KeyStore.getInstance("PKCS12")
+        keyStore.toFile().withInputStream { trustStore.load(it, KEY_STORE_PASSWORD.toCharArray()) }
+        TrustManagerFactory trustManagerFactory = TrustManagerFactory.getInstance(
+                TrustManagerFactory.getDefaultAlgorithm()
+        )
+        trustManagerFactory.init(trustStore)
+        SSLContext sslContext = SSLContext.getInstance("TLS")
+        sslContext.init(null, trustManagerFactory.trustManagers, null)
+        return sslContext
+    }
+
+    /**
+     * Sends a GET request to the started server.
+     */
+    HttpResponse<String> get(String path) {
+        int port = ((ServerConnector) server.connectors[0]).localPort
+        return CLIENT.send(
+                HttpRequest.newBuilder(URI.create("http://localhost:${port}${path}")).GET().build(),
+                HttpResponse.BodyHandlers.ofString()
+        )
+    }
+
+    @jakarta.ws.rs.Path("/thread")
+    static class ThreadResource {
+
+        @GET
+        String isVirtual() {
+            return String.valueOf(VirtualThreads.isVirtualThread())
+        }
+    }
+
+    @jakarta.ws.rs.Path("/slow")
+    static class SlowResource {
+
+        static volatile CountDownLatch entered
+        static volatile CountDownLatch released
+
+        @GET
+        String await() {
+            entered.countDown()
+            released.await(10, TimeUnit.SECONDS)
+            return "done"
+        }
+    }
+}
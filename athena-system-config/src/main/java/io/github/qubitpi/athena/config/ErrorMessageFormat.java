@@ -60,10 +60,100 @@ public enum ErrorMessageFormat implements MessageFormatter {
             "Invalid GraphQL query (cause: %s): '%s'"
     ),
 
+    /**
+     * When an archive download request is invalid.
+     */
+    INVALID_ARCHIVE_REQUEST(
+            "Athena could not create the archive because %s",
+            "Invalid archive request: %s"
+    ),
+
+    /**
+     * When a batch upload request is invalid.
+     */
+    INVALID_UPLOAD_REQUEST(
+            "Athena could not store the files because %s",
+            "Invalid upload request: %s"
+    ),
+
+    /**
+     * When a lookup of the metadata of many files is invalid.
+     */
+    INVALID_LOOKUP_REQUEST(
+            "Athena could not look up metadata because %s",
+            "Invalid metadata lookup request: %s"
+    ),
+
+    /**
+     * When a metadata listing request is invalid.
+     */
+    INVALID_PAGE_REQUEST(
+            "Athena could not list metadata because %s",
+            "Invalid metadata listing request: %s"
+    ),
+
     /**
      * When meta data not found.
      */
-    META_DATA_NOT_FOUND("No meta data found for file ID '%s'");
+    META_DATA_NOT_FOUND("No meta data found for file ID '%s'"),
+
+    /**
+     * When a file store holds no file under a requested file ID.
+     */
+    FILE_NOT_FOUND("No file found for file ID '%s'"),
+
+    /**
+     * When a newly generated file ID is already taken by a stored file.
+     */
+    FILE_ID_CONFLICT("File ID '%s' is already taken; please upload the file again"),
+
+    /**
+     * When a GraphQL execution runs out of time.
+     */
+    GRAPHQL_EXECUTION_TIMEOUT(
+            "Athena gave up on the request because it ran longer than %d ms",
+            "GraphQL execution ran longer than %d ms; field '%s' was not fetched"
+    ),
+
+    /**
+     * When the database holding metadata is not one that Athena can work with.
+     */
+    UNSUPPORTED_DATABASE(
+            "Athena could not process the request due to an internal error.",
+            "Unsupported metadata database '%s'; supported ones are %s"
+    ),
+
+    /**
+     * When a file store fails to read or write a file.
+     */
+    FILE_STORE_IO_ERROR(
+            "Athena could not process the request due to a storage error.",
+            "I/O error while accessing file '%s' in file store: %s"
+    ),
+
+    /**
+     * When the index of a deduplicating file store cannot be read or updated.
+     */
+    CONTENT_INDEX_ERROR(
+            FILE_STORE_IO_ERROR.messageFormat,
+            "Error while indexing the content of file '%s': %s"
+    ),
+
+    /**
+     * When the index of a compressing file store cannot be read or updated.
+     */
+    ENCODING_INDEX_ERROR(
+            FILE_STORE_IO_ERROR.messageFormat,
+            "Error while indexing the encoding of file '%s': %s"
+    ),
+
+    /**
+     * When the database holding metadata cannot be brought up to the current schema.
+     */
+    DATABASE_MIGRATION_ERROR(
+            "Athena could not start due to a database error.",
+            "Failed to migrate the metadata database: %s"
+    );
 
     private final String messageFormat;
     private final String loggingFormat;